@@ -0,0 +1,255 @@
+package com.coupon.benchmark;
+
+import com.coupon.cache.CompanyCache;
+import com.coupon.dto.VerificationAnalytics;
+import com.coupon.dto.VerificationAnalytics.CompanyCount;
+import com.coupon.dto.VerificationAnalytics.DailyCount;
+import com.coupon.dto.VerificationAnalytics.OperatorCount;
+import com.coupon.dto.VerificationRecord;
+import com.coupon.entity.Company;
+import com.coupon.repository.PartitionedVerificationLogRepository;
+import com.coupon.service.AnalyticsSnapshotService;
+import com.coupon.service.VerificationAnalyticsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 核销分析快照校验
+ * <p>
+ * 在临时SQLite文件中写入最近若干天的核销记录，导出每日列式快照，检查：分析接口的总数、每日核销数、
+ * 星期×小时热力图、企业与操作员排行与直接对 verification_logs 执行 GROUP BY 的结果完全一致，
+ * 按企业筛选的结果同样一致；分析查询期间连接池没有借出任何连接。最后报告快照大小与每条记录字节数，
+ * 以及 GROUP BY 与快照查询的耗时。
+ * <p>
+ * 参数（--名称=值）: days 天数，默认 90；per-day 每天核销数，默认 2000；operators 操作员数，默认 50；
+ * repeat 计时重复次数，默认 5。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@analytics -Danalytics.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class AnalyticsCheck {
+
+    private static final int SEED_CHUNK = 1000;
+
+    private final CheckHarness harness;
+
+    private AnalyticsCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new AnalyticsCheck(new CheckHarness("analytics", args)).run());
+    }
+
+    private int run() throws Exception {
+        int days = harness.intOption("days", 90);
+        int perDay = harness.intOption("per-day", 2000);
+        int operatorCount = harness.intOption("operators", 50);
+        int repeat = harness.intOption("repeat", 5);
+
+        // 变更日志轮询与分析查询无关，调大间隔以免其借出的连接干扰连接数检查
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.NONE,
+                "--coupon.change-feed.poll-interval-ms=3600000")) {
+            PartitionedVerificationLogRepository logRepository =
+                    application.getBean(PartitionedVerificationLogRepository.class);
+            AnalyticsSnapshotService snapshotService = application.getBean(AnalyticsSnapshotService.class);
+            VerificationAnalyticsService analyticsService = application.getBean(VerificationAnalyticsService.class);
+            JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+            MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+            List<Long> companyIds = application.getBean(CompanyCache.class).getActiveCompanies().stream()
+                    .map(Company::getId)
+                    .toList();
+
+            LocalDate to = LocalDate.now().minusDays(1);
+            LocalDate from = to.minusDays(days - 1);
+            long seedStart = System.nanoTime();
+            seed(logRepository, new TransactionTemplate(application.getBean(PlatformTransactionManager.class)),
+                    companyIds, from, days, perDay, operatorCount);
+            harness.log("写入 %d 天 × %d 条核销记录，耗时 %d ms", days, perDay,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+            long exportStart = System.nanoTime();
+            long exported = snapshotService.exportRange(from, to);
+            long exportMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - exportStart);
+            long bytes = 0;
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                bytes += Files.size(snapshotService.snapshotFile(day));
+            }
+            harness.log("导出 %d 条记录，耗时 %d ms；快照共 %d 字节，每条 %.2f 字节", exported, exportMillis, bytes,
+                    (double) bytes / exported);
+
+            Supplier<VerificationAnalytics> analytics = () -> analyticsService.analyze(from, to, null, operatorCount);
+            String dbFile = jdbcTemplate.queryForObject(
+                    "SELECT file FROM pragma_database_list WHERE name = 'main'", String.class);
+            harness.log("数据库文件 %d 字节", Files.size(Path.of(dbFile)));
+
+            double before = connectionBorrows(meterRegistry);
+            VerificationAnalytics report = analytics.get();
+            double borrowed = connectionBorrows(meterRegistry) - before;
+            if (borrowed != 0) {
+                harness.fail("分析查询借出了 " + (long) borrowed + " 次数据库连接");
+            }
+            compare("全部企业", report, jdbcTemplate, from, to, null);
+            Long companyId = companyIds.get(0);
+            compare("企业 " + companyId, analyticsService.analyze(from, to, companyId, operatorCount),
+                    jdbcTemplate, from, to, companyId);
+            if (report.getMissingDays().size() != 0) {
+                harness.fail("存在未导出的日期: " + report.getMissingDays());
+            }
+
+            long sqlNanos = time(repeat, () -> sqlAggregate(jdbcTemplate, from, to, null));
+            long snapshotNanos = time(repeat, analytics::get);
+            harness.log("GROUP BY 平均 %.1f ms，快照查询平均 %.1f ms", sqlNanos / 1e6, snapshotNanos / 1e6);
+        }
+
+        return harness.finish();
+    }
+
+    /**
+     * 写入核销记录：每批一个事务，时间集中在营业时段，企业与操作员按不均匀的权重分布
+     */
+    private static void seed(PartitionedVerificationLogRepository logRepository, TransactionTemplate transactionTemplate,
+                             List<Long> companyIds, LocalDate from, int days, int perDay, int operatorCount) {
+        Random random = new Random(42);
+        List<VerificationRecord> chunk = new ArrayList<>(SEED_CHUNK);
+        long couponId = 0;
+        for (int day = 0; day < days; day++) {
+            LocalDateTime start = from.plusDays(day).atStartOfDay();
+            for (int i = 0; i < perDay; i++) {
+                double hour = Math.min(23.999, Math.max(0, 14 + random.nextGaussian() * 4));
+                LocalDateTime time = start.plus((long) (hour * 3_600_000), ChronoUnit.MILLIS);
+                long companyId = companyIds.get(random.nextInt(random.nextInt(companyIds.size()) + 1));
+                String operator = String.valueOf(13900000000L + random.nextInt(random.nextInt(operatorCount) + 1));
+                couponId++;
+                chunk.add(new VerificationRecord(null, couponId, String.format("%08d", couponId), companyId,
+                        operator, "127.0.0.1", time));
+                if (chunk.size() == SEED_CHUNK) {
+                    transactionTemplate.executeWithoutResult(status -> logRepository.insertRecords(chunk));
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> logRepository.insertRecords(chunk));
+        }
+    }
+
+    /**
+     * 与直接在数据库上 GROUP BY 的结果比较
+     */
+    private void compare(String name, VerificationAnalytics report, JdbcTemplate jdbcTemplate,
+                         LocalDate from, LocalDate to, Long companyId) {
+        SqlAggregate expected = sqlAggregate(jdbcTemplate, from, to, companyId);
+        if (report.getTotal() != expected.total) {
+            harness.fail(name + " 总数 " + report.getTotal() + "，数据库 " + expected.total);
+        }
+        Map<LocalDate, Long> daily = new HashMap<>();
+        long cumulative = 0;
+        for (DailyCount count : report.getDaily()) {
+            cumulative += count.getCount();
+            if (count.getCumulative() != cumulative) {
+                harness.fail(name + " " + count.getDay() + " 累计数不正确");
+            }
+            if (count.getCount() > 0) {
+                daily.put(count.getDay(), count.getCount());
+            }
+        }
+        check(name, "每日核销数", daily, expected.daily);
+        Map<String, Long> heatmap = new HashMap<>();
+        for (int weekday = 0; weekday < 7; weekday++) {
+            for (int hour = 0; hour < 24; hour++) {
+                if (report.getHeatmap()[weekday][hour] > 0) {
+                    heatmap.put(weekday + "-" + hour, report.getHeatmap()[weekday][hour]);
+                }
+            }
+        }
+        check(name, "热力图", heatmap, expected.heatmap);
+        Map<Long, Long> companies = new HashMap<>();
+        for (CompanyCount count : report.getCompanies()) {
+            companies.put(count.getCompanyId(), count.getCount());
+        }
+        check(name, "企业核销数", companies, expected.companies);
+        Map<String, Long> operators = new HashMap<>();
+        for (OperatorCount count : report.getOperators()) {
+            operators.put(count.getUserPhone(), count.getCount());
+        }
+        check(name, "操作员核销数", operators, expected.operators);
+        harness.log("%s: 校验 %d 条核销，%d 个企业，%d 个操作员", name, report.getTotal(), companies.size(), operators.size());
+    }
+
+    private <K> void check(String name, String item, Map<K, Long> actual, Map<K, Long> expected) {
+        if (!actual.equals(expected)) {
+            harness.fail(name + " " + item + "与数据库不一致");
+        }
+    }
+
+    /**
+     * 数据库上的同等统计；星期按星期一为0换算，与分析报表一致
+     */
+    private static SqlAggregate sqlAggregate(JdbcTemplate jdbcTemplate, LocalDate from, LocalDate to, Long companyId) {
+        String local = "datetime(verification_time / 1000, 'unixepoch', 'localtime')";
+        String where = " FROM verification_logs WHERE verification_time >= ? AND verification_time < ?"
+                       + (companyId != null ? " AND company_id = " + companyId : "");
+        Object[] args = {Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay())};
+        SqlAggregate aggregate = new SqlAggregate();
+        jdbcTemplate.query("SELECT date(" + local + "), COUNT(*)" + where + " GROUP BY 1", rs -> {
+            aggregate.daily.put(LocalDate.parse(rs.getString(1)), rs.getLong(2));
+            aggregate.total += rs.getLong(2);
+        }, args);
+        jdbcTemplate.query("SELECT (CAST(strftime('%w', " + local + ") AS INTEGER) + 6) % 7, CAST(strftime('%H', "
+                           + local + ") AS INTEGER), COUNT(*)" + where + " GROUP BY 1, 2",
+                rs -> {
+                    aggregate.heatmap.put(rs.getInt(1) + "-" + rs.getInt(2), rs.getLong(3));
+                }, args);
+        jdbcTemplate.query("SELECT company_id, COUNT(*)" + where + " GROUP BY 1", rs -> {
+            aggregate.companies.put(rs.getLong(1), rs.getLong(2));
+        }, args);
+        jdbcTemplate.query("SELECT user_phone, COUNT(*)" + where + " GROUP BY 1", rs -> {
+            aggregate.operators.put(rs.getString(1), rs.getLong(2));
+        }, args);
+        return aggregate;
+    }
+
+    private static double connectionBorrows(MeterRegistry meterRegistry) {
+        return meterRegistry.get("hikaricp.connections.usage").timer().count();
+    }
+
+    private static long time(int repeat, Supplier<?> action) {
+        action.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            action.get();
+        }
+        return (System.nanoTime() - start) / repeat;
+    }
+
+    /**
+     * 数据库统计结果
+     */
+    private static final class SqlAggregate {
+        private long total;
+        private final Map<LocalDate, Long> daily = new HashMap<>();
+        private final Map<String, Long> heatmap = new HashMap<>();
+        private final Map<Long, Long> companies = new HashMap<>();
+        private final Map<String, Long> operators = new HashMap<>();
+    }
+}
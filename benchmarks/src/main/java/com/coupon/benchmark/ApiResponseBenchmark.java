@@ -0,0 +1,71 @@
+package com.coupon.benchmark;
+
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.CouponVerifyResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API响应序列化基准
+ * <p>
+ * ObjectMapper 按 application.yml 中的 spring.jackson 配置构建，与接口实际输出一致。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<CouponVerifyResponse> success;
+    private ApiResponse<Object> error;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .timeZone(TimeZone.getTimeZone("Asia/Shanghai"))
+                .simpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                .build();
+        success = ApiResponse.success("核销成功",
+                new CouponVerifyResponse("A1B2C3D4", "阿里巴巴集团", LocalDateTime.now(), false));
+        error = ApiResponse.error("券码不存在或企业不匹配");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] serializeSuccess() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(success);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] serializeSuccessConcurrent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(success);
+    }
+
+    @Benchmark
+    public byte[] serializeError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(error);
+    }
+}
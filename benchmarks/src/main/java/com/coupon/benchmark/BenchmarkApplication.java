@@ -0,0 +1,154 @@
+package com.coupon.benchmark;
+
+import com.coupon.CouponVerificationApplication;
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.entity.Company;
+import com.coupon.repository.CompanyRepository;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponStateService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的应用实例
+ * <p>
+ * 启动完整应用（Web方式时监听随机端口），关闭定时分层与分区滚动任务，数据文件与状态快照写入临时目录。
+ * 内存存储使用共享缓存的SQLite内存库，文件存储使用临时目录中的SQLite文件。
+ * 共享缓存在并发写入时直接返回表锁错误而不会等待，因此内存库只使用一个连接，写入在连接池处串行；
+ * 文件库在饱和并发下等待写锁的连接可能被持续插队，忙等待上限放宽到30秒，避免超时失败中断测量。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private static final int SEED_CHUNK = 500;
+
+    private final Path workDir;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(Path workDir, ConfigurableApplicationContext context) {
+        this.workDir = workDir;
+        this.context = context;
+    }
+
+    /**
+     * 以非Web方式启动应用并等待券码状态索引就绪
+     *
+     * @param storage 存储方式：memory 或 file
+     * @return 应用实例
+     */
+    static BenchmarkApplication start(String storage) throws IOException, InterruptedException {
+        return start(storage, WebApplicationType.NONE);
+    }
+
+    /**
+     * 启动应用并等待券码状态索引就绪
+     *
+     * @param storage            存储方式：memory 或 file
+     * @param webApplicationType 应用类型
+     * @param extraArgs          追加的启动参数（--名称=值），与默认参数同名时覆盖默认值
+     * @return 应用实例
+     */
+    static BenchmarkApplication start(String storage, WebApplicationType webApplicationType, String... extraArgs)
+            throws IOException, InterruptedException {
+        Path workDir = Files.createTempDirectory("coupon-benchmark");
+        String url;
+        int poolSize;
+        if ("memory".equals(storage)) {
+            url = "jdbc:sqlite:file:" + workDir.getFileName() + "?mode=memory&cache=shared&transaction_mode=IMMEDIATE";
+            poolSize = 1;
+        } else if ("file".equals(storage)) {
+            url = "jdbc:sqlite:" + workDir.resolve("coupon_system.db") + "?transaction_mode=IMMEDIATE&busy_timeout=30000";
+            poolSize = 10;
+        } else {
+            throw new IllegalArgumentException("未知的存储方式: " + storage);
+        }
+
+        List<String> args = new ArrayList<>(List.of("--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--coupon.tiering.enabled=false",
+                // 压测客户端都来自本机，按IP限流会拒绝大部分请求
+                "--coupon.rate-limit.enabled=false",
+                "--coupon.log-partition.enabled=false",
+                "--coupon.log-partition.archive-dir=" + workDir.resolve("log-archive"),
+                "--coupon.analytics.dir=" + workDir.resolve("analytics"),
+                "--coupon.state.snapshot-path=" + workDir.resolve("coupon-state.snapshot"),
+                "--logging.level.root=WARN",
+                "--logging.level.com.coupon=WARN"));
+        for (String extraArg : extraArgs) {
+            String name = extraArg.substring(0, extraArg.indexOf('=') + 1);
+            args.removeIf(arg -> arg.startsWith(name));
+            args.add(extraArg);
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CouponVerificationApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(new String[0]));
+
+        CouponStateService couponStateService = context.getBean(CouponStateService.class);
+        while (couponStateService.lookup("00000000", 0L) == CouponStateService.UNKNOWN) {
+            Thread.sleep(10);
+        }
+        return new BenchmarkApplication(workDir, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Web方式启动时实际监听的端口
+     */
+    int port() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /**
+     * Web方式启动时的访问地址
+     */
+    String baseUrl() {
+        return "http://localhost:" + port();
+    }
+
+    /**
+     * 写入启用状态的企业
+     *
+     * @return 企业ID
+     */
+    long seedCompany(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setIsActive(true);
+        return getBean(CompanyRepository.class).save(company).getId();
+    }
+
+    /**
+     * 通过券码服务分批生成券码
+     */
+    List<String> seedCoupons(long companyId, int count) {
+        CouponService couponService = getBean(CouponService.class);
+        List<String> codes = new ArrayList<>();
+        while (codes.size() < count) {
+            int chunk = Math.min(SEED_CHUNK, count - codes.size());
+            codes.addAll(couponService.batchAddCoupons(new BatchAddCouponRequest(companyId, chunk)));
+        }
+        return codes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+}
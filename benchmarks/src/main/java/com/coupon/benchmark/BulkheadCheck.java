@@ -0,0 +1,196 @@
+package com.coupon.benchmark;
+
+import com.coupon.bulkhead.TenantBulkhead;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.WebApplicationType;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static com.coupon.benchmark.CheckHarness.HISTOGRAM_MAX_NANOS;
+import static com.coupon.benchmark.CheckHarness.millis;
+
+/**
+ * 企业隔离舱校验
+ * <p>
+ * 在临时SQLite文件上启动应用，预热后先让企业B以固定速率单独核销，测得基准 p99；
+ * 再让企业A开环发起超出其配额的批量生成券码请求（每次 flood-batch 个，长写事务占用SQLite写锁），
+ * 同时企业B保持原速率核销，测量B的 p99。B在A洪峰期间的 p99 不超过基准的 (1 + tolerance) 倍加 slack-ms、
+ * B无失败或被拒绝的请求、且A有请求被以429拒绝时通过。写事务不可抢占，B至多等待A一个正在执行的批量写入，
+ * slack-ms 按此留出余量。传入 --bulkhead=false 关闭隔离舱运行同一场景，用于对比。
+ * <p>
+ * 到达速率超出CPU处理能力时，请求在进入隔离舱前的解析与认证已占满CPU，任何准入控制都无法保持B的延迟，
+ * 因此洪峰使用单次开销集中在数据库写入的批量生成，而不是以核销请求压满CPU。
+ * <p>
+ * 参数（--名称=值）: victim-rate 企业B每秒核销数，默认 20；flood-rate 企业A每秒批量生成请求数，默认 40；
+ * flood-batch 每次批量生成数量，默认 100；warmup-rate 预热期间每个企业每秒核销数，默认 30；
+ * warmup 预热秒数，默认 30；duration 每阶段测量秒数，默认 15；tolerance 默认 1.0；slack-ms 默认 100。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@bulkhead
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class BulkheadCheck {
+
+    private final CheckHarness harness;
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private String baseUrl;
+    private String token;
+
+    private BulkheadCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new BulkheadCheck(new CheckHarness("bulkhead", args)).run());
+    }
+
+    private int run() throws Exception {
+        int victimRate = harness.intOption("victim-rate", 20);
+        int floodRate = harness.intOption("flood-rate", 40);
+        int floodBatch = harness.intOption("flood-batch", 100);
+        int warmupRate = harness.intOption("warmup-rate", 30);
+        int warmup = harness.intOption("warmup", 30);
+        int duration = harness.intOption("duration", 15);
+        boolean bulkhead = harness.booleanOption("bulkhead", true);
+
+        Histogram baseline;
+        Histogram flooded;
+        Outcome victimBaseline;
+        Outcome victimFlooded;
+        Outcome flood;
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                "--coupon.bulkhead.enabled=" + bulkhead)) {
+            baseUrl = application.baseUrl();
+            token = harness.login(baseUrl);
+
+            long tenantA = application.seedCompany("洪峰企业A");
+            long tenantB = application.seedCompany("企业B");
+            harness.log("写入券码...");
+            Iterator<String> codesA = application.seedCoupons(tenantA, warmupRate * warmup).iterator();
+            Iterator<String> codesB = application.seedCoupons(tenantB,
+                    warmupRate * warmup + victimRate * (2 * duration + 2)).iterator();
+
+            harness.log("预热 %d 秒: 两个企业各 %d 请求/秒", warmup, warmupRate);
+            Thread warmupA = drive(tenantA, codesA, warmupRate, warmup, new Outcome());
+            drive(tenantB, codesB, warmupRate, warmup, new Outcome()).join();
+            warmupA.join();
+            awaitIdle();
+
+            harness.log("阶段1 %d 秒: 企业B单独 %d 请求/秒", duration, victimRate);
+            victimBaseline = new Outcome();
+            drive(tenantB, codesB, victimRate, duration, victimBaseline).join();
+            awaitIdle();
+
+            harness.log("阶段2 %d 秒: 企业A 批量生成 %d 次/秒（每次 %d 个），企业B 核销 %d 次/秒",
+                    duration, floodRate, floodBatch, victimRate);
+            flood = new Outcome();
+            victimFlooded = new Outcome();
+            String floodBody = "{\"companyId\":" + tenantA + ",\"count\":" + floodBatch + "}";
+            Thread floodThread = drive(floodRate, duration + 2, flood,
+                    () -> harness.post(baseUrl + "/api/coupon/batch-add", floodBody, token));
+            Thread.sleep(1000);
+            drive(tenantB, codesB, victimRate, duration, victimFlooded).join();
+            floodThread.join();
+            awaitIdle();
+
+            if (bulkhead) {
+                application.getBean(TenantBulkhead.class).snapshot().forEach(stats -> harness.log(
+                        "企业%d 隔离舱: 放行 %d，拒绝 %d，平均执行 %.2f ms，排队平均 %.2f ms，最长 %.2f ms",
+                        stats.getCompanyId(), stats.getAdmitted(), stats.getRejected(), stats.getAvgServiceMs(),
+                        stats.getAvgWaitMs(), stats.getMaxWaitMs()));
+            }
+            baseline = victimBaseline.recorder.getIntervalHistogram();
+            flooded = victimFlooded.recorder.getIntervalHistogram();
+        }
+
+        double baselineP99 = millis(baseline.getValueAtPercentile(99));
+        double floodedP99 = millis(flooded.getValueAtPercentile(99));
+        harness.log("企业B单独: %d 次，p50 %.2f ms，p99 %.2f ms，失败 %d", baseline.getTotalCount(),
+                millis(baseline.getValueAtPercentile(50)), baselineP99, victimBaseline.failed.get());
+        harness.log("企业B洪峰期间: %d 次，p50 %.2f ms，p99 %.2f ms，失败 %d", flooded.getTotalCount(),
+                millis(flooded.getValueAtPercentile(50)), floodedP99, victimFlooded.failed.get());
+        harness.log("企业A: 成功 %d，429拒绝 %d，其他失败 %d", flood.recorder.getIntervalHistogram().getTotalCount(),
+                flood.rejected.get(), flood.failed.get());
+
+        double limit = baselineP99 * (1 + harness.doubleOption("tolerance", 1.0))
+                + harness.doubleOption("slack-ms", 100);
+        harness.expect(floodedP99 <= limit, String.format("企业B p99 %.2f ms 超过上限 %.2f ms", floodedP99, limit));
+        harness.expect(victimBaseline.failed.get() + victimBaseline.rejected.get()
+                + victimFlooded.failed.get() + victimFlooded.rejected.get() == 0, "企业B存在失败或被拒绝的请求");
+        harness.expect(flood.rejected.get() > 0, "企业A洪峰未超出配额，没有请求被拒绝，可提高 flood-rate 或 flood-batch");
+        return harness.finish("通过: 企业A洪峰期间企业B的 p99 保持在上限 %.2f ms 以内", limit);
+    }
+
+    /**
+     * 在独立线程上按固定到达速率开环发送核销请求
+     */
+    private Thread drive(long companyId, Iterator<String> codes, int rate, int seconds, Outcome outcome) {
+        return drive(rate, seconds, outcome, () -> harness.post(baseUrl + "/api/coupon/verify",
+                "{\"code\":\"" + codes.next() + "\",\"companyId\":" + companyId + "}", token));
+    }
+
+    /**
+     * 在独立线程上按固定到达速率开环发送请求
+     */
+    private Thread drive(int rate, int seconds, Outcome outcome, Supplier<HttpRequest> requests) {
+        Thread thread = new Thread(() -> {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            for (long i = 0; ; i++) {
+                long intended = start + i * intervalNanos;
+                if (intended >= end) {
+                    return;
+                }
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(requests.get(), intended, outcome);
+            }
+        }, "bulkhead-driver");
+        thread.start();
+        return thread;
+    }
+
+    private void send(HttpRequest request, long intended, Outcome outcome) {
+        inFlight.incrementAndGet();
+        harness.httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> {
+                    long now = System.nanoTime();
+                    if (failure == null && response.statusCode() == 429) {
+                        outcome.rejected.incrementAndGet();
+                    } else if (failure == null && response.statusCode() == 200
+                            && response.body().contains("\"success\":true")) {
+                        outcome.recorder.recordValue(Math.min(now - intended, HISTOGRAM_MAX_NANOS));
+                    } else {
+                        outcome.failed.incrementAndGet();
+                    }
+                    inFlight.decrementAndGet();
+                });
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        while (inFlight.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 一组请求的结果：成功请求的延迟、429拒绝数与其他失败数
+     */
+    private static final class Outcome {
+        private final Recorder recorder = new Recorder(HISTOGRAM_MAX_NANOS, 3);
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+    }
+}
@@ -0,0 +1,127 @@
+package com.coupon.benchmark;
+
+import com.coupon.cache.CompanyCache;
+import com.coupon.cache.UserStatusCache;
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponStateService;
+import com.coupon.state.CouponStateIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 变更日志失效校验
+ * <p>
+ * 启动共用同一个SQLite文件的两个应用实例 A 与 B，每轮在 A 上执行一次修改，测量 B 的本地缓存反映该修改的延迟：
+ * A 新增券码后 B 的券码状态索引不再判定不存在，A 核销后 B 判定已使用，直接执行SQL修改企业名称后 B 的企业缓存更新，
+ * 禁用与重新启用用户后 B 的用户状态缓存更新。任一修改未在 max-lag-ms 内生效时失败。
+ * 最后报告 B 的轮询次数与单次轮询耗时（每次轮询每个库一条主键范围查询，与节点数无关）。
+ * <p>
+ * 参数（--名称=值）: rounds 每类修改的轮数，默认 20；max-lag-ms 默认 1000。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@change-feed -Dchange-feed.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class ChangeFeedCheck {
+
+    private static final long COMPANY_ID = 1L;
+    private static final long USER_ID = 1L;
+    private static final String OPERATOR = "13800138000";
+
+    private final CheckHarness harness;
+
+    private ChangeFeedCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new ChangeFeedCheck(new CheckHarness("change-feed", args)).run());
+    }
+
+    private int run() throws Exception {
+        int rounds = harness.intOption("rounds", 20);
+        long maxLagMs = harness.longOption("max-lag-ms", 1000);
+
+        Path dataDir = Files.createTempDirectory("change-feed-check");
+        String url = "--spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("coupon_system.db")
+                     + "?transaction_mode=IMMEDIATE&busy_timeout=30000";
+        try (BenchmarkApplication nodeA = BenchmarkApplication.start("file", WebApplicationType.NONE, url);
+             BenchmarkApplication nodeB = BenchmarkApplication.start("file", WebApplicationType.NONE, url)) {
+            CouponService couponServiceA = nodeA.getBean(CouponService.class);
+            JdbcTemplate jdbcA = nodeA.getBean(JdbcTemplate.class);
+            CouponStateService stateB = nodeB.getBean(CouponStateService.class);
+            CompanyCache companyCacheB = nodeB.getBean(CompanyCache.class);
+            UserStatusCache userStatusCacheB = nodeB.getBean(UserStatusCache.class);
+            String originalName = companyCacheB.getName(COMPANY_ID);
+
+            Histogram added = new Histogram(3);
+            Histogram used = new Histogram(3);
+            Histogram company = new Histogram(3);
+            Histogram user = new Histogram(3);
+            for (int round = 0; round < rounds; round++) {
+                String code = couponServiceA.batchAddCoupons(new BatchAddCouponRequest(COMPANY_ID, 1)).get(0);
+                measure(added, "新增券码", maxLagMs,
+                        () -> stateB.lookup(code, COMPANY_ID) == CouponStateIndex.UNUSED);
+
+                couponServiceA.verifyCoupon(new CouponVerifyRequest(code, COMPANY_ID), OPERATOR, "127.0.0.1", null);
+                measure(used, "核销券码", maxLagMs, () -> stateB.lookup(code, COMPANY_ID) > CouponStateIndex.UNUSED);
+
+                String name = originalName + "-" + round;
+                jdbcA.update("UPDATE companies SET name = ? WHERE id = ?", name, COMPANY_ID);
+                measure(company, "修改企业名称", maxLagMs, () -> name.equals(companyCacheB.getName(COMPANY_ID)));
+
+                jdbcA.update("UPDATE users SET is_active = 0 WHERE id = ?", USER_ID);
+                measure(user, "禁用用户", maxLagMs, () -> !userStatusCacheB.isActive(USER_ID));
+                jdbcA.update("UPDATE users SET is_active = 1 WHERE id = ?", USER_ID);
+                measure(user, "启用用户", maxLagMs, () -> userStatusCacheB.isActive(USER_ID));
+            }
+            jdbcA.update("UPDATE companies SET name = ? WHERE id = ?", originalName, COMPANY_ID);
+
+            report("新增券码", added);
+            report("核销券码", used);
+            report("修改企业名称", company);
+            report("禁用/启用用户", user);
+            Timer poll = nodeB.getBean(MeterRegistry.class).get("coupon.changefeed.poll").timer();
+            harness.log("节点 B 轮询 %d 次，单次平均 %.3f ms，最长 %.3f ms", poll.count(),
+                    poll.mean(TimeUnit.MILLISECONDS), poll.max(TimeUnit.MILLISECONDS));
+        } finally {
+            FileSystemUtils.deleteRecursively(dataDir);
+        }
+
+        return harness.finish();
+    }
+
+    /**
+     * 等待节点 B 反映修改，记录从修改提交到生效的毫秒数
+     */
+    private void measure(Histogram histogram, String name, long maxLagMs, BooleanSupplier applied)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+        while (!applied.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                harness.fail(name + " 未在 " + maxLagMs + " ms 内生效");
+                return;
+            }
+            Thread.sleep(1);
+        }
+        histogram.recordValue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void report(String name, Histogram histogram) {
+        harness.log("%s: %d 次，延迟 p50 %d ms，p99 %d ms，最长 %d ms", name, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,198 @@
+package com.coupon.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 校验程序的公共部分
+ * <p>
+ * 解析 --名称=值 参数（只写 --名称 时值为 true），按校验名称前缀输出日志，收集失败项并给出进程退出码，
+ * 提供共用的 ObjectMapper、HTTP/1.1 客户端、登录与请求构造。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+final class CheckHarness {
+
+    /**
+     * 延迟直方图可记录的最大值，超出的延迟按此值记录
+     */
+    static final long HISTOGRAM_MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * 初始化数据中的管理员账号
+     */
+    static final String PHONE = "13800138000";
+    static final String PASSWORD = "123456";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String name;
+    private final Map<String, String> options = new HashMap<>();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * @param name 日志前缀中的校验名称
+     * @param args 命令行参数
+     */
+    CheckHarness(String name, String[] args) {
+        this.name = name;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("参数格式应为 --名称=值: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+    }
+
+    boolean hasOption(String name) {
+        return options.containsKey(name);
+    }
+
+    String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    boolean booleanOption(String name, boolean defaultValue) {
+        return options.containsKey(name) ? Boolean.parseBoolean(options.get(name)) : defaultValue;
+    }
+
+    void log(String format, Object... args) {
+        System.out.println("[" + name + "] " + String.format(format, args));
+    }
+
+    /**
+     * 纳秒换算为毫秒，保留两位小数
+     */
+    static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    void fail(String failure) {
+        failures.add(failure);
+    }
+
+    void expect(boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+
+    /**
+     * 输出校验结论
+     *
+     * @return 进程退出码，没有失败项时为 0
+     */
+    int finish() {
+        return finish("通过");
+    }
+
+    /**
+     * 输出校验结论
+     *
+     * @param passFormat 通过时输出的日志
+     * @return 进程退出码，没有失败项时为 0
+     */
+    int finish(String passFormat, Object... args) {
+        if (failures.isEmpty()) {
+            log(passFormat, args);
+            return 0;
+        }
+        failures.forEach(failure -> log("失败: %s", failure));
+        return 1;
+    }
+
+    ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * 以管理员账号登录
+     *
+     * @param baseUrl 应用地址，如 http://localhost:8080
+     * @return 访问令牌
+     */
+    String login(String baseUrl) throws IOException, InterruptedException {
+        return login(baseUrl, PHONE, PASSWORD);
+    }
+
+    /**
+     * 通过登录接口获取令牌
+     */
+    String login(String baseUrl, String phone, String password) throws IOException, InterruptedException {
+        String body = objectMapper.writeValueAsString(Map.of("phone", phone, "password", password));
+        HttpResponse<String> response = httpClient.send(post(baseUrl + "/api/auth/login", body, null),
+                HttpResponse.BodyHandlers.ofString());
+        JsonNode json = objectMapper.readTree(response.body());
+        if (!json.path("success").asBoolean()) {
+            throw new IllegalStateException(phone + " 登录失败: " + response.body());
+        }
+        return json.path("data").path("token").asText();
+    }
+
+    /**
+     * JSON 请求
+     *
+     * @param bearer 访问令牌，为 null 时不带认证头
+     */
+    HttpRequest post(String url, String body, String bearer) {
+        return request(url, bearer)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /**
+     * @param bearer 访问令牌，为 null 时不带认证头
+     */
+    HttpRequest get(String url, String bearer) {
+        return request(url, bearer).GET().build();
+    }
+
+    private HttpRequest.Builder request(String url, String bearer) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT);
+        if (bearer != null) {
+            builder.header("Authorization", "Bearer " + bearer);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,237 @@
+package com.coupon.benchmark;
+
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.service.CouponService;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+
+import java.net.ServerSocket;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.coupon.benchmark.CheckHarness.HISTOGRAM_MAX_NANOS;
+import static com.coupon.benchmark.CheckHarness.millis;
+
+/**
+ * 集群模式校验
+ * <p>
+ * 在本机启动单节点集群与 N 节点集群（同一进程内的多个应用实例，各自使用临时SQLite文件与固定端口），
+ * 每个节点生成归自己所有的券码，压测客户端把核销请求轮流发给各节点，以相同并发窗口比较吞吐量。同时检查：
+ * 全部核销成功，约 (N-1)/N 的请求被转发且全部经 HTTP/2 转发，已核销的券码从其他节点再次核销时被拒绝，
+ * 转发核销多次券时返回剩余次数，只能看到本节点数据的核销记录查询被拒绝。
+ * 吞吐量随节点数的提升取决于CPU核数：单核机器上所有节点共享一个核，只能验证正确性与转发开销。
+ * <p>
+ * 参数（--名称=值）: nodes 节点数，默认 3；scans 每种部署测量的核销数，默认 3000；warmup 默认 500；
+ * window 并发窗口，默认 32；min-scaling N 节点吞吐量相对单节点的最低倍数，默认 0（不检查）。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@cluster -Dcluster.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class ClusterCheck {
+
+    private static final long COMPANY_ID = 1L;
+
+    private final CheckHarness harness;
+
+    private ClusterCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new ClusterCheck(new CheckHarness("cluster", args)).run());
+    }
+
+    private int run() throws Exception {
+        int nodes = harness.intOption("nodes", 3);
+        double minScaling = harness.doubleOption("min-scaling", 0);
+
+        Result single = runCluster(1);
+        Result cluster = runCluster(nodes);
+        single.report("单节点");
+        cluster.report(nodes + " 节点");
+        double scaling = cluster.throughput() / single.throughput();
+        harness.log("%d 节点吞吐量为单节点的 %.2f 倍（%d 个CPU核）", nodes, scaling,
+                Runtime.getRuntime().availableProcessors());
+        harness.expect(scaling >= minScaling, String.format("吞吐量倍数 %.2f 低于 %.2f", scaling, minScaling));
+        return harness.finish();
+    }
+
+    private Result runCluster(int nodeCount) throws Exception {
+        int scans = harness.intOption("scans", 3000);
+        int warmup = harness.intOption("warmup", 500);
+        int window = harness.intOption("window", 32);
+
+        Path membersFile = Files.createTempFile("cluster-members", ".properties");
+        int[] ports = new int[nodeCount];
+        StringBuilder members = new StringBuilder();
+        for (int i = 0; i < nodeCount; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+            members.append("node-").append(i + 1).append("=http://127.0.0.1:").append(ports[i]).append('\n');
+        }
+        Files.writeString(membersFile, members);
+
+        List<BenchmarkApplication> applications = new ArrayList<>();
+        try {
+            harness.log("启动 %d 个节点...", nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                applications.add(BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                        "--server.port=" + ports[i],
+                        "--coupon.cluster.enabled=true",
+                        "--coupon.cluster.node-id=node-" + (i + 1),
+                        "--coupon.cluster.members-file=" + membersFile,
+                        "--coupon.cluster.secret=cluster-check"));
+            }
+            String token = harness.login(applications.get(0).baseUrl());
+
+            // 每个节点只能生成归自己的券码，按节点平均生成后打乱
+            List<String> codes = new ArrayList<>();
+            int perNode = (warmup + scans) / nodeCount + 1;
+            for (BenchmarkApplication application : applications) {
+                codes.addAll(application.seedCoupons(COMPANY_ID, perNode));
+            }
+            Collections.shuffle(codes, new Random(42));
+
+            harness.log("%d 节点: 预热 %d 次，测量 %d 次，并发窗口 %d", nodeCount, warmup, scans, window);
+            verifyAll(ports, token, codes.subList(0, warmup), window, true);
+            Result result = verifyAll(ports, token, codes.subList(warmup, warmup + scans), window, true);
+
+            // 已核销的券码从下一个节点再次核销应被拒绝
+            Result replay = verifyAll(ports, token, codes.subList(warmup, warmup + Math.min(100, scans)), window, false);
+            harness.expect(replay.failed.get() == 0,
+                    nodeCount + " 节点: " + replay.failed.get() + " 个已核销的券码再次核销成功");
+            if (nodeCount > 1) {
+                checkNodeScope(applications.get(1), ports[0], token);
+            }
+
+            long forwarded = 0;
+            long nonHttp2 = 0;
+            for (BenchmarkApplication application : applications) {
+                for (Timer timer : application.getBean(MeterRegistry.class).find("coupon.cluster.forward").timers()) {
+                    forwarded += timer.count();
+                    if (!"HTTP_2".equals(timer.getId().getTag("protocol"))) {
+                        nonHttp2 += timer.count();
+                    }
+                }
+            }
+            long total = warmup + scans + replay.histogram.getTotalCount();
+            double expected = (nodeCount - 1) / (double) nodeCount;
+            harness.log("%d 节点: 转发 %d / %d 次（%.1f%%，预期约 %.1f%%），非 HTTP/2 转发 %d 次",
+                    nodeCount, forwarded, total, 100.0 * forwarded / total, 100 * expected, nonHttp2);
+            harness.expect(Math.abs((double) forwarded / total - expected) <= 0.1, nodeCount + " 节点: 转发比例偏离预期");
+            harness.expect(nonHttp2 == 0, nodeCount + " 节点: 存在未使用 HTTP/2 的转发");
+            harness.expect(result.failed.get() == 0, nodeCount + " 节点: " + result.failed.get() + " 次核销失败");
+            return result;
+        } finally {
+            for (BenchmarkApplication application : applications) {
+                application.close();
+            }
+            Files.deleteIfExists(membersFile);
+        }
+    }
+
+    /**
+     * 经节点1转发核销节点2的多次券应带回剩余次数；核销记录查询只能看到本节点数据，应被拒绝
+     */
+    private void checkNodeScope(BenchmarkApplication owner, int port, String token) throws Exception {
+        BatchAddCouponRequest request = new BatchAddCouponRequest(COMPANY_ID, 1);
+        request.setUsageLimit(3);
+        String code = owner.getBean(CouponService.class).batchAddCoupons(request).get(0);
+        JsonNode verified = harness.objectMapper().readTree(harness.httpClient().send(
+                harness.post("http://localhost:" + port + "/api/coupon/verify",
+                        "{\"code\":\"" + code + "\",\"companyId\":" + COMPANY_ID + "}", token),
+                HttpResponse.BodyHandlers.ofString()).body());
+        harness.expect(verified.path("data").path("remainingUses").asInt(-1) == 2,
+                "转发核销多次券的剩余次数不正确: " + verified);
+
+        JsonNode records = harness.objectMapper().readTree(harness.httpClient().send(
+                harness.get("http://localhost:" + port + "/api/coupon/records", token),
+                HttpResponse.BodyHandlers.ofString()).body());
+        harness.expect(!records.path("success").asBoolean(true), "集群模式下核销记录查询未被拒绝: " + records);
+    }
+
+    /**
+     * 轮流发往各节点核销，保持 window 个请求同时进行
+     *
+     * @param expectSuccess true 时统计核销失败数，false 时统计意外成功数
+     */
+    private Result verifyAll(int[] ports, String token, List<String> codes, int window, boolean expectSuccess)
+            throws InterruptedException {
+        Result result = new Result(codes.size());
+        Semaphore permits = new Semaphore(window);
+        result.start = System.nanoTime();
+        for (int i = 0; i < codes.size(); i++) {
+            // 再次核销时换到下一个节点，保证大部分请求经过转发
+            int port = ports[(i + (expectSuccess ? 0 : 1)) % ports.length];
+            HttpRequest request = harness.post("http://localhost:" + port + "/api/coupon/verify",
+                    "{\"code\":\"" + codes.get(i) + "\",\"companyId\":" + COMPANY_ID + "}", token);
+            permits.acquire();
+            long sent = System.nanoTime();
+            harness.httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        boolean success = failure == null && response.body().contains("\"success\":true");
+                        result.complete(sent, success == expectSuccess);
+                        permits.release();
+                    });
+        }
+        result.await();
+        return result;
+    }
+
+    /**
+     * 一组核销的结果：延迟分布与不符合预期的请求数
+     */
+    private final class Result {
+        private final Histogram histogram = new Histogram(HISTOGRAM_MAX_NANOS, 3);
+        private final CountDownLatch done;
+        private final AtomicLong failed = new AtomicLong();
+        private long start;
+        private long end;
+
+        private Result(int count) {
+            this.done = new CountDownLatch(count);
+        }
+
+        private synchronized void complete(long sent, boolean expected) {
+            long now = System.nanoTime();
+            histogram.recordValue(Math.min(now - sent, HISTOGRAM_MAX_NANOS));
+            if (!expected) {
+                failed.incrementAndGet();
+            }
+            end = now;
+            done.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            if (!done.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("等待核销结果超时，剩余 " + done.getCount() + " 个");
+            }
+        }
+
+        private double throughput() {
+            return histogram.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / (end - start);
+        }
+
+        private void report(String name) {
+            harness.log("%s: %d 次，%.1f 次/秒，p50 %.2f ms，p99 %.2f ms，失败 %d", name, histogram.getTotalCount(),
+                    throughput(), millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)), failed.get());
+        }
+    }
+}
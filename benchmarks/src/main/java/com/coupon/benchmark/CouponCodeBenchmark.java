@@ -0,0 +1,39 @@
+package com.coupon.benchmark;
+
+import com.coupon.service.CouponService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 券码生成基准
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CouponCodeBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public String generate() {
+        return CouponService.generateCouponCode();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generateConcurrent() {
+        return CouponService.generateCouponCode();
+    }
+}
@@ -0,0 +1,122 @@
+package com.coupon.benchmark;
+
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponStateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 券码核销基准
+ * <p>
+ * 通过 {@link CouponService#verifyCoupon} 核销未使用的券码，包含状态索引判定、券码更新、核销记录写入与事务提交。
+ * 每轮迭代前批量写入一批新券码，保证每次调用都走成功核销路径。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CouponVerifyBenchmark {
+
+    private static final Long COMPANY_ID = 1L;
+
+    @Param({"memory", "file"})
+    public String storage;
+
+    @Param({"100000"})
+    public int couponsPerIteration;
+
+    private BenchmarkApplication application;
+    private CouponService couponService;
+    private CouponStateService couponStateService;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private String[] codes;
+    private long serial;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        application = BenchmarkApplication.start(storage);
+        couponService = application.getBean(CouponService.class);
+        couponStateService = application.getBean(CouponStateService.class);
+        jdbcTemplate = application.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+    }
+
+    /**
+     * 写入本轮迭代使用的券码
+     */
+    @Setup(Level.Iteration)
+    public void seedCoupons() {
+        codes = new String[couponsPerIteration];
+        for (int i = 0; i < codes.length; i++) {
+            String code = Long.toString(serial++, 36).toUpperCase(Locale.ROOT);
+            codes[i] = "00000000".substring(code.length()) + code;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = Arrays.stream(codes)
+                .map(code -> new Object[]{code, COMPANY_ID, now})
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "INSERT INTO coupons (code, company_id, is_used, created_at) VALUES (?, ?, 0, ?)", rows));
+        couponStateService.recordAdded(Arrays.asList(codes), COMPANY_ID);
+        next.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CouponVerifyResponse verify() {
+        return verifyNext();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CouponVerifyResponse verifyConcurrent() {
+        return verifyNext();
+    }
+
+    private CouponVerifyResponse verifyNext() {
+        int index = next.getAndIncrement();
+        if (index >= codes.length) {
+            throw new IllegalStateException("本轮券码已用完，请调大 couponsPerIteration");
+        }
+        return couponService.verifyCoupon(new CouponVerifyRequest(codes[index], COMPANY_ID), "13800138000", "127.0.0.1", null);
+    }
+}
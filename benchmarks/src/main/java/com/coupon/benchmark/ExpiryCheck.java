@@ -0,0 +1,222 @@
+package com.coupon.benchmark;
+
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.entity.Coupon;
+import com.coupon.service.CouponExpiryService;
+import com.coupon.service.CouponOutOfValidityException;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponStateService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 券码过期清理校验
+ * <p>
+ * 在临时SQLite文件中写入大量不限期的券码，以及失效时间分布在过去若干小时、当前小时与未来的带有效期券码和已核销券码，检查：
+ * 清理前核销已过期券码被拒绝；过期清理只查询过期时间桶索引（查询计划中没有对 coupons 的全表扫描）；
+ * 清理后早于当前小时桶过期的券码全部移入归档表并记录过期时间，当前桶内已过期、未来过期、不限期与已核销的券码都留在热表；
+ * 清理后核销已归档的过期券码仍被判定为过期；移走热表中ID最大的券码后新写入的券码不复用已归档的ID，再次清理正常归档。
+ * 最后报告清理耗时、无可清理时的空转耗时，以及按失效时间全表扫描的耗时作对比。
+ * <p>
+ * 参数（--名称=值）: unlimited 不限期券码数，默认 200000；expired 已过期券码数，默认 5000；hours 过期券码分布的小时数，默认 48。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@expiry -Dexpiry.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class ExpiryCheck {
+
+    private static final long COMPANY_ID = 1L;
+    private static final String OPERATOR = "13800138000";
+    private static final int SEED_CHUNK = 5000;
+    private static final int SIDE_COUNT = 1000;
+
+    private final CheckHarness harness;
+
+    private ExpiryCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new ExpiryCheck(new CheckHarness("expiry", args)).run());
+    }
+
+    private int run() throws Exception {
+        int unlimited = harness.intOption("unlimited", 200000);
+        int expired = harness.intOption("expired", 5000);
+        int hours = harness.intOption("hours", 48);
+
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.NONE)) {
+            JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+            TransactionTemplate transactionTemplate =
+                    new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+            CouponService couponService = application.getBean(CouponService.class);
+            CouponExpiryService expiryService = application.getBean(CouponExpiryService.class);
+            MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+            long currentBucket = Coupon.expiryBucketOf(now);
+            LocalDateTime currentBucketStart = LocalDateTime.ofInstant(
+                    Instant.ofEpochSecond(currentBucket * Coupon.EXPIRY_BUCKET_SECONDS), ZoneId.systemDefault());
+            Random random = new Random(42);
+
+            long seedStart = System.nanoTime();
+            seed(jdbcTemplate, transactionTemplate, "K", unlimited, i -> null, false);
+            seed(jdbcTemplate, transactionTemplate, "E", expired,
+                    i -> now.minusSeconds(Coupon.EXPIRY_BUCKET_SECONDS + random.nextInt(hours * 3600)), false);
+            // 当前桶刚开始（不足一秒）时无法构造桶内已过期的券码
+            int currentSeconds = (int) Duration.between(currentBucketStart, now).getSeconds();
+            int currentCount = currentSeconds > 0 ? SIDE_COUNT : 0;
+            seed(jdbcTemplate, transactionTemplate, "C", currentCount,
+                    i -> currentBucketStart.plusSeconds(random.nextInt(currentSeconds)), false);
+            seed(jdbcTemplate, transactionTemplate, "F", SIDE_COUNT,
+                    i -> now.plusSeconds(1 + random.nextInt(hours * 3600)), false);
+            seed(jdbcTemplate, transactionTemplate, "U", SIDE_COUNT,
+                    i -> now.minusSeconds(Coupon.EXPIRY_BUCKET_SECONDS + random.nextInt(hours * 3600)), true);
+            harness.log("写入 %d 个不限期、%d 个已过期、%d 个当前桶内已过期、%d 个未来过期、%d 个已核销券码，耗时 %d ms",
+                    unlimited, expired, currentCount, SIDE_COUNT, SIDE_COUNT,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+            // 直接写入的券码不经过核销服务，手动登记到内存索引
+            List<String> probes = new ArrayList<>(List.of(code("E", 0), code("F", 0), code("K", 0)));
+            if (currentCount > 0) {
+                probes.add(code("C", 0));
+            }
+            application.getBean(CouponStateService.class).recordAdded(probes, COMPANY_ID);
+            expectOutOfValidity(couponService, code("E", 0), true, "清理前核销已过期券码");
+            if (currentCount > 0) {
+                expectOutOfValidity(couponService, code("C", 0), true, "核销当前桶内已过期券码");
+            }
+
+            checkPlan(jdbcTemplate, "SELECT MIN(expiry_bucket) FROM coupons WHERE expiry_bucket < " + currentBucket);
+            checkPlan(jdbcTemplate, "SELECT id FROM coupons WHERE expiry_bucket = " + (currentBucket - 1)
+                                    + " ORDER BY id LIMIT 500");
+
+            double archivedBefore = meterRegistry.get("coupon.expiry.archived").counter().count();
+            long sweepStart = System.nanoTime();
+            expiryService.archiveExpiredCoupons();
+            long sweepMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sweepStart);
+            long archived = (long) (meterRegistry.get("coupon.expiry.archived").counter().count() - archivedBefore);
+            harness.log("清理归档 %d 个过期券码，耗时 %d ms", archived, sweepMillis);
+
+            expectCount(archived, expired, "归档数量");
+            expectCount(count(jdbcTemplate, "coupons", "E"), 0, "热表中剩余的已过期券码");
+            expectCount(count(jdbcTemplate, "coupons", "C"), currentCount, "热表中当前桶内已过期券码");
+            expectCount(count(jdbcTemplate, "coupons", "F"), SIDE_COUNT, "热表中未来过期券码");
+            expectCount(count(jdbcTemplate, "coupons", "U"), SIDE_COUNT, "热表中已核销券码");
+            expectCount(count(jdbcTemplate, "coupons", "K"), unlimited, "热表中不限期券码");
+            expectCount(jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM coupons_archive WHERE expired_at IS NOT NULL AND used_at IS NULL", Long.class),
+                    expired, "归档表中的过期券码");
+            expectOutOfValidity(couponService, code("E", 0), true, "核销已归档的过期券码");
+            expectOutOfValidity(couponService, code("F", 0), false, "核销未来过期券码");
+
+            long idleStart = System.nanoTime();
+            expiryService.archiveExpiredCoupons();
+            long idleMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - idleStart);
+
+            // 清理移走热表中ID最大的一批券码后再写入新券码：新ID不得复用已归档的ID，再次清理不得与归档表主键冲突
+            for (String prefix : List.of("R", "S")) {
+                seed(jdbcTemplate, transactionTemplate, prefix, SIDE_COUNT,
+                        i -> now.minusSeconds(Coupon.EXPIRY_BUCKET_SECONDS + random.nextInt(hours * 3600)), false);
+                Long reused = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coupons WHERE code LIKE ? " +
+                        "AND id IN (SELECT id FROM coupons_archive)", Long.class, prefix + "%");
+                expectCount(reused, 0, "复用归档券码ID的新券码");
+                double before = meterRegistry.get("coupon.expiry.archived").counter().count();
+                try {
+                    expiryService.archiveExpiredCoupons();
+                } catch (RuntimeException e) {
+                    harness.fail("再次清理失败: " + e.getMessage());
+                }
+                expectCount((long) (meterRegistry.get("coupon.expiry.archived").counter().count() - before),
+                        SIDE_COUNT, "再次清理归档数量");
+                expectCount(count(jdbcTemplate, "coupons_archive", prefix), SIDE_COUNT, "再次清理后归档表中的过期券码");
+            }
+
+            Timestamp cutoff = Timestamp.valueOf(now);
+            long scanStart = System.nanoTime();
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coupons WHERE is_used = 0 AND valid_until < ?",
+                    Long.class, cutoff);
+            long scanMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scanStart);
+            harness.log("无可清理时空转 %d μs，按失效时间全表扫描 %d μs", idleMicros, scanMicros);
+        }
+
+        return harness.finish();
+    }
+
+    /**
+     * 写入券码：每批一个事务，券码为前缀加序号的36进制编码；过期时间桶与 {@link Coupon} 保存时的计算一致
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, String prefix,
+                             int count, IntFunction<LocalDateTime> validUntil, boolean used) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now().minusDays(7));
+        List<Object[]> chunk = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime until = validUntil.apply(i);
+            chunk.add(new Object[]{code(prefix, i), createdAt, used, COMPANY_ID,
+                    until != null ? Timestamp.valueOf(until) : null,
+                    until != null && !used ? Coupon.expiryBucketOf(until) : null,
+                    used ? createdAt : null, used ? OPERATOR : null});
+            if (chunk.size() == SEED_CHUNK || i == count - 1) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "INSERT INTO coupons (code, created_at, is_used, company_id, valid_until, expiry_bucket, " +
+                        "used_at, used_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", chunk));
+                chunk.clear();
+            }
+        }
+    }
+
+    private static String code(String prefix, int index) {
+        String digits = Integer.toString(index, 36).toUpperCase();
+        return prefix + "0".repeat(7 - digits.length()) + digits;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String table, String prefix) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE code LIKE ?", Long.class,
+                prefix + "%");
+    }
+
+    private void checkPlan(JdbcTemplate jdbcTemplate, String sql) {
+        List<String> plan = jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql, (rs, rowNum) -> rs.getString(4));
+        if (plan.stream().noneMatch(step -> step.contains("idx_coupons_expiry_bucket"))
+            || plan.stream().anyMatch(step -> step.startsWith("SCAN coupons"))) {
+            harness.fail("清理查询未使用过期时间桶索引: " + sql + " -> " + plan);
+        }
+    }
+
+    private void expectOutOfValidity(CouponService couponService, String code, boolean expectExpired, String name) {
+        try {
+            couponService.verifyCoupon(new CouponVerifyRequest(code, COMPANY_ID), OPERATOR, "127.0.0.1", null);
+            if (expectExpired) {
+                harness.fail(name + "应被拒绝，实际核销成功");
+            }
+        } catch (CouponOutOfValidityException e) {
+            if (!expectExpired || !e.isExpired()) {
+                harness.fail(name + "结果不正确: " + e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            harness.fail(name + "结果不正确: " + e.getMessage());
+        }
+    }
+
+    private void expectCount(long actual, long expected, String name) {
+        if (actual != expected) {
+            harness.fail(name + " " + actual + "，应为 " + expected);
+        }
+    }
+}
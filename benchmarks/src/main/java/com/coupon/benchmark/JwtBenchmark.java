@@ -0,0 +1,65 @@
+package com.coupon.benchmark;
+
+import com.coupon.metrics.ExpectedOutcomeLog;
+import com.coupon.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT令牌基准
+ * <p>
+ * 每个认证请求都会在过滤器中校验并解析一次令牌，登录时签发一次。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(new ExpectedOutcomeLog(new SimpleMeterRegistry()));
+        DirectFieldAccessor accessor = new DirectFieldAccessor(jwtUtil);
+        accessor.setPropertyValue("jwtSecret", "your-secret-key-change-in-production");
+        accessor.setPropertyValue("jwtExpiration", 86400000L);
+        token = jwtUtil.generateToken(1L, "13800138000");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(1L, "13800138000");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String validateAndParse() {
+        return jwtUtil.validateToken(token) ? jwtUtil.getPhoneFromToken(token) : null;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String validateAndParseConcurrent() {
+        return jwtUtil.validateToken(token) ? jwtUtil.getPhoneFromToken(token) : null;
+    }
+}
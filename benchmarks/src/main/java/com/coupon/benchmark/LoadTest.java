@@ -0,0 +1,443 @@
+package com.coupon.benchmark;
+
+import com.coupon.entity.Company;
+import com.coupon.entity.User;
+import com.coupon.repository.CompanyRepository;
+import com.coupon.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.coupon.benchmark.CheckHarness.HISTOGRAM_MAX_NANOS;
+import static com.coupon.benchmark.CheckHarness.PASSWORD;
+import static com.coupon.benchmark.CheckHarness.millis;
+
+/**
+ * 核销接口负载测试
+ * <p>
+ * 在临时SQLite文件上启动应用，通过服务层写入企业与券码，模拟操作员经 /api/auth/login 登录后，
+ * 按固定到达速率（开环）发起 /api/coupon/verify 与 /api/coupon/records 请求。
+ * 延迟从计划发送时间起算，服务端变慢时请求排队等待的时间同样计入，避免协调遗漏（coordinated omission）。
+ * 结果与基线对比，p99 或吞吐量退化超出容差、或错误比例超限时以非零状态退出。
+ * <p>
+ * 指定 find-max 时改为搜索最大可持续速率：在同一应用上从 rate 起按 step 逐级提高到达速率，
+ * 每级预热后测量，吞吐量达到到达速率的95%、核销 p99 不超过 slo-p99-ms 且错误比例不超限即为可持续，
+ * 首个不可持续的级别结束搜索。用于对比平台线程与虚拟线程（Java 21）的承载能力。
+ * <p>
+ * 参数（--名称=值）:
+ * <ul>
+ *     <li>companies 企业数量，默认 5</li>
+ *     <li>coupons 券码数量，默认 20000，需覆盖预热与测量期间的全部核销请求</li>
+ *     <li>operators 操作员数量，默认 8</li>
+ *     <li>rate 每秒请求数，默认 50</li>
+ *     <li>warmup 预热秒数，默认 10；duration 测量秒数，默认 30</li>
+ *     <li>records-ratio 记录查询请求占比，默认 0.1</li>
+ *     <li>baseline 基线文件，默认 load-baseline.json；tolerance 允许退化比例，默认 0.2</li>
+ *     <li>max-error-rate 允许错误比例，默认 0.001</li>
+ *     <li>update-baseline 用本次结果覆盖基线</li>
+ *     <li>virtual-threads 是否启用虚拟线程（仅 Java 21 及以上生效），默认按应用配置</li>
+ *     <li>find-max 搜索最大可持续速率；step 速率步长，默认 10；max-rate 速率上限，默认 200；
+ *     slo-p99-ms 核销 p99 上限，默认 500。券码数量默认按全部级别计算</li>
+ * </ul>
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class LoadTest {
+
+    private final CheckHarness harness;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter resultWriter;
+
+    private final Recorder verifyRecorder = new Recorder(HISTOGRAM_MAX_NANOS, 3);
+    private final Recorder recordsRecorder = new Recorder(HISTOGRAM_MAX_NANOS, 3);
+    private final Histogram verifyHistogram = new Histogram(HISTOGRAM_MAX_NANOS, 3);
+    private final Histogram recordsHistogram = new Histogram(HISTOGRAM_MAX_NANOS, 3);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong lastCompletion = new AtomicLong();
+
+    private String baseUrl;
+    private long measureStart;
+    private int nextCoupon;
+
+    private LoadTest(CheckHarness harness) {
+        this.harness = harness;
+        this.objectMapper = harness.objectMapper();
+        this.resultWriter = objectMapper.writerWithDefaultPrettyPrinter();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new LoadTest(new CheckHarness("load-test", args)).run());
+    }
+
+    private int run() throws Exception {
+        int companies = harness.intOption("companies", 5);
+        int operators = harness.intOption("operators", 8);
+        int rate = harness.intOption("rate", 50);
+        int warmup = harness.intOption("warmup", 10);
+        int duration = harness.intOption("duration", 30);
+        double recordsRatio = harness.doubleOption("records-ratio", 0.1);
+        boolean findMax = harness.hasOption("find-max");
+
+        List<Integer> rates = new ArrayList<>();
+        if (findMax) {
+            int maxRate = harness.intOption("max-rate", 200);
+            int step = harness.intOption("step", 10);
+            for (int stageRate = rate; stageRate <= maxRate; stageRate += step) {
+                rates.add(stageRate);
+            }
+        } else {
+            rates.add(rate);
+        }
+        long maxVerifies = Math.round(rates.stream().mapToInt(Integer::intValue).sum()
+                * (1 - recordsRatio) * (warmup + duration) * 1.05);
+        int coupons = harness.intOption("coupons", findMax ? (int) maxVerifies : 20000);
+        if (coupons < maxVerifies) {
+            throw new IllegalArgumentException("券码数量不足，当前参数下至少需要 " + maxVerifies + " 个");
+        }
+
+        List<String> appArgs = new ArrayList<>();
+        if (harness.hasOption("virtual-threads")) {
+            appArgs.add("--spring.threads.virtual.enabled=" + harness.option("virtual-threads", "true"));
+        }
+
+        List<Map<String, Object>> stages = new ArrayList<>();
+        String threading;
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                appArgs.toArray(new String[0]))) {
+            baseUrl = application.baseUrl();
+            threading = Threading.VIRTUAL.isActive(application.getBean(Environment.class)) ? "virtual" : "platform";
+
+            harness.log("写入 %d 个企业、%d 个券码、%d 个操作员...", companies, coupons, operators);
+            List<Long> companyIds = seedCompanies(application, companies);
+            List<Object[]> couponPool = seedCoupons(application, companyIds, coupons);
+            List<String> tokens = login(seedOperators(application, operators));
+
+            for (int stageRate : rates) {
+                harness.log("开始压测: %d 请求/秒，预热 %d 秒，测量 %d 秒（Java %d，%s线程）", stageRate, warmup, duration,
+                        Runtime.version().feature(), "virtual".equals(threading) ? "虚拟" : "平台");
+                drive(stageRate, warmup, duration, recordsRatio, couponPool, companyIds, tokens);
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("rate", stageRate);
+                result.put("recordsRatio", recordsRatio);
+                result.put("durationSeconds", duration);
+                result.put("throughput", throughput(duration));
+                result.put("errorRate", errorRate());
+                result.put("verify", percentiles(verifyHistogram));
+                result.put("records", percentiles(recordsHistogram));
+                stages.add(result);
+                harness.log("结果: %s", resultWriter.writeValueAsString(result));
+                if (findMax && !sustainable(result)) {
+                    break;
+                }
+            }
+        }
+
+        if (findMax) {
+            return reportMaxRate(stages, threading);
+        }
+        Map<String, Object> result = stages.get(0);
+        Path resultFile = Paths.get("target", "load-test-result.json");
+        Files.createDirectories(resultFile.getParent());
+        resultWriter.writeValue(resultFile.toFile(), result);
+        harness.log("结果已写入 %s", resultFile.toAbsolutePath());
+
+        return gate(result);
+    }
+
+    /**
+     * 吞吐量跟上到达速率、核销 p99 不超过SLO且错误比例不超限
+     */
+    private boolean sustainable(Map<String, Object> result) {
+        int rate = (int) result.get("rate");
+        @SuppressWarnings("unchecked")
+        double p99 = (double) ((Map<String, Object>) result.get("verify")).get("p99Ms");
+        return (double) result.get("throughput") >= rate * 0.95
+                && p99 <= harness.doubleOption("slo-p99-ms", 500)
+                && (double) result.get("errorRate") <= harness.doubleOption("max-error-rate", 0.001);
+    }
+
+    /**
+     * 输出最大可持续速率
+     *
+     * @return 进程退出码，首个级别即不可持续时为 1
+     */
+    private int reportMaxRate(List<Map<String, Object>> stages, String threading) throws Exception {
+        Map<String, Object> lastSustainable = null;
+        for (Map<String, Object> stage : stages) {
+            if (sustainable(stage)) {
+                lastSustainable = stage;
+            }
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("javaVersion", Runtime.version().feature());
+        report.put("threading", threading);
+        report.put("sloP99Ms", harness.doubleOption("slo-p99-ms", 500));
+        report.put("maxSustainableRate", lastSustainable == null ? 0 : lastSustainable.get("rate"));
+        report.put("stages", stages);
+
+        Path resultFile = Paths.get("target", "load-test-max-rate-" + threading + ".json");
+        Files.createDirectories(resultFile.getParent());
+        resultWriter.writeValue(resultFile.toFile(), report);
+        harness.log("最大可持续速率: %s 请求/秒（%s线程），结果已写入 %s", report.get("maxSustainableRate"),
+                "virtual".equals(threading) ? "虚拟" : "平台", resultFile.toAbsolutePath());
+        return lastSustainable == null ? 1 : 0;
+    }
+
+    /**
+     * 写入企业主数据
+     */
+    private List<Long> seedCompanies(BenchmarkApplication application, int count) {
+        List<Company> companies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Company company = new Company();
+            company.setName("负载测试企业" + i);
+            company.setIsActive(true);
+            companies.add(company);
+        }
+        return application.getBean(CompanyRepository.class).saveAll(companies).stream()
+                .map(Company::getId)
+                .toList();
+    }
+
+    /**
+     * 通过券码服务批量生成券码，返回按企业轮换排列的 (券码, 企业ID) 列表
+     */
+    private List<Object[]> seedCoupons(BenchmarkApplication application, List<Long> companyIds, int count) {
+        List<List<String>> codesByCompany = new ArrayList<>();
+        int perCompany = (count + companyIds.size() - 1) / companyIds.size();
+        for (Long companyId : companyIds) {
+            codesByCompany.add(application.seedCoupons(companyId, perCompany));
+        }
+
+        List<Object[]> pool = new ArrayList<>();
+        for (int i = 0; i < perCompany; i++) {
+            for (int c = 0; c < companyIds.size(); c++) {
+                pool.add(new Object[]{codesByCompany.get(c).get(i), companyIds.get(c)});
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 创建操作员账号，返回手机号列表
+     */
+    private List<String> seedOperators(BenchmarkApplication application, int count) {
+        PasswordEncoder passwordEncoder = application.getBean(PasswordEncoder.class);
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setPhone(String.format("139%08d", i));
+            user.setPasswordHash(passwordHash);
+            user.setIsActive(true);
+            users.add(user);
+        }
+        return application.getBean(UserRepository.class).saveAll(users).stream()
+                .map(User::getPhone)
+                .toList();
+    }
+
+    /**
+     * 操作员通过登录接口获取令牌
+     */
+    private List<String> login(List<String> phones) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        for (String phone : phones) {
+            tokens.add(harness.login(baseUrl, phone, PASSWORD));
+        }
+        return tokens;
+    }
+
+    /**
+     * 按计划时间表开环发送请求，直到测量结束且在途请求全部完成
+     */
+    private void drive(int rate, int warmup, int duration, double recordsRatio, List<Object[]> couponPool,
+                       List<Long> companyIds, List<String> tokens) throws Exception {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(duration);
+        verifyHistogram.reset();
+        recordsHistogram.reset();
+        errors.set(0);
+        lastCompletion.set(0);
+
+        Thread reporter = new Thread(this::report, "load-test-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String token = tokens.get((int) (i % tokens.size()));
+            boolean measured = intended >= measureStart;
+            if (ThreadLocalRandom.current().nextDouble() < recordsRatio) {
+                Long companyId = companyIds.get(ThreadLocalRandom.current().nextInt(companyIds.size()));
+                send(harness.get(baseUrl + "/api/coupon/records?page=1&limit=20&companyId=" + companyId, token),
+                        intended, measured ? recordsRecorder : null);
+            } else {
+                Object[] coupon = couponPool.get(nextCoupon++);
+                String body = objectMapper.writeValueAsString(Map.of("code", coupon[0], "companyId", coupon[1]));
+                send(harness.post(baseUrl + "/api/coupon/verify", body, token), intended,
+                        measured ? verifyRecorder : null);
+            }
+        }
+
+        while (inFlight.get() > 0) {
+            Thread.sleep(10);
+        }
+        reporter.interrupt();
+        reporter.join();
+        verifyHistogram.add(verifyRecorder.getIntervalHistogram());
+        recordsHistogram.add(recordsRecorder.getIntervalHistogram());
+    }
+
+    /**
+     * 异步发送请求，完成时按计划发送时间记录延迟
+     *
+     * @param recorder 延迟记录器，预热期间为 null
+     */
+    private void send(HttpRequest request, long intended, Recorder recorder) {
+        inFlight.incrementAndGet();
+        harness.httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> {
+                    long now = System.nanoTime();
+                    if (recorder != null) {
+                        boolean ok = failure == null && response.statusCode() == 200
+                                && response.body().contains("\"success\":true");
+                        if (ok) {
+                            recorder.recordValue(Math.min(now - intended, HISTOGRAM_MAX_NANOS));
+                            lastCompletion.accumulateAndGet(now, Math::max);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    inFlight.decrementAndGet();
+                });
+    }
+
+    /**
+     * 每秒输出一次区间统计，并把区间直方图累加到总直方图
+     */
+    private void report() {
+        Histogram verifyInterval = null;
+        Histogram recordsInterval = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            verifyInterval = verifyRecorder.getIntervalHistogram(verifyInterval);
+            recordsInterval = recordsRecorder.getIntervalHistogram(recordsInterval);
+            verifyHistogram.add(verifyInterval);
+            recordsHistogram.add(recordsInterval);
+            if (System.nanoTime() >= measureStart) {
+                harness.log("核销 %d 次 p99 %.2f ms，查询 %d 次 p99 %.2f ms，在途 %d，错误 %d",
+                        verifyInterval.getTotalCount(), millis(verifyInterval.getValueAtPercentile(99)),
+                        recordsInterval.getTotalCount(), millis(recordsInterval.getValueAtPercentile(99)),
+                        inFlight.get(), errors.get());
+            }
+        }
+    }
+
+    /**
+     * 成功请求吞吐量；服务端跟不上到达速率时，测量窗口延长到最后一个请求完成
+     */
+    private double throughput(int duration) {
+        long completed = verifyHistogram.getTotalCount() + recordsHistogram.getTotalCount();
+        double elapsed = (lastCompletion.get() - measureStart) / 1e9;
+        return Math.round(completed / Math.max(duration, elapsed) * 10) / 10.0;
+    }
+
+    private double errorRate() {
+        long completed = verifyHistogram.getTotalCount() + recordsHistogram.getTotalCount();
+        long total = completed + errors.get();
+        return total == 0 ? 0 : (double) errors.get() / total;
+    }
+
+    private Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", histogram.getTotalCount());
+        result.put("p50Ms", millis(histogram.getValueAtPercentile(50)));
+        result.put("p90Ms", millis(histogram.getValueAtPercentile(90)));
+        result.put("p99Ms", millis(histogram.getValueAtPercentile(99)));
+        result.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+        result.put("maxMs", millis(histogram.getMaxValue()));
+        return result;
+    }
+
+    /**
+     * 与基线对比
+     *
+     * @return 进程退出码，0 表示通过
+     */
+    private int gate(Map<String, Object> result) throws Exception {
+        Path baselineFile = Paths.get(harness.option("baseline", "load-baseline.json"));
+        if (harness.hasOption("update-baseline")) {
+            resultWriter.writeValue(baselineFile.toFile(), result);
+            harness.log("已更新基线 %s", baselineFile.toAbsolutePath());
+            return 0;
+        }
+        if (!Files.exists(baselineFile)) {
+            harness.log("基线文件 %s 不存在，跳过对比（使用 --update-baseline 生成）", baselineFile.toAbsolutePath());
+            return 0;
+        }
+
+        JsonNode baseline = objectMapper.readTree(baselineFile.toFile());
+        JsonNode current = objectMapper.valueToTree(result);
+        if (baseline.path("rate").asInt() != current.path("rate").asInt()
+                || baseline.path("recordsRatio").asDouble() != current.path("recordsRatio").asDouble()) {
+            harness.log("失败: 基线的到达速率或请求比例与本次不同，无法对比");
+            return 2;
+        }
+
+        double tolerance = harness.doubleOption("tolerance", 0.2);
+        double maxErrorRate = harness.doubleOption("max-error-rate", 0.001);
+        for (String operation : List.of("verify", "records")) {
+            double basePercentile = baseline.path(operation).path("p99Ms").asDouble();
+            double currentPercentile = current.path(operation).path("p99Ms").asDouble();
+            if (currentPercentile > basePercentile * (1 + tolerance)) {
+                harness.fail(String.format("%s p99 %.2f ms 超过基线 %.2f ms",
+                        operation, currentPercentile, basePercentile));
+            }
+        }
+        double baseThroughput = baseline.path("throughput").asDouble();
+        double currentThroughput = current.path("throughput").asDouble();
+        harness.expect(currentThroughput >= baseThroughput * (1 - tolerance),
+                String.format("吞吐量 %.1f/s 低于基线 %.1f/s", currentThroughput, baseThroughput));
+        double errorRate = current.path("errorRate").asDouble();
+        harness.expect(errorRate <= maxErrorRate, String.format("错误比例 %.4f 超过上限 %.4f", errorRate, maxErrorRate));
+        return harness.finish("通过: 未超出基线容差 %.0f%%", tolerance * 100);
+    }
+}
@@ -0,0 +1,246 @@
+package com.coupon.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import com.coupon.metrics.ExpectedOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.core.env.Environment;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.coupon.benchmark.CheckHarness.HISTOGRAM_MAX_NANOS;
+import static com.coupon.benchmark.CheckHarness.millis;
+
+/**
+ * 失败核销洪峰下的日志开销校验
+ * <p>
+ * 分两轮启动应用（日志级别 INFO）：改进轮使用默认的异步追加器与抽样日志；对照轮使用同步控制台输出
+ * （benchmarks 资源 logback-sync.xml）且抽样间隔为0，即每次失败输出一行日志。每轮先由单个客户端顺序核销有效券码，
+ * 在预热（同时发送失败请求）后测量无干扰时的核销延迟，再以固定到达速率发送失败请求（不存在的券码、已使用的券码、无效令牌轮换），
+ * 同时测量有效核销的延迟与洪峰期间输出的日志行数。
+ * 改进轮中洪峰期间的日志行数超过每种结果每个抽样间隔一行、预期内失败未计数，或有效核销 p50 较无干扰时
+ * 变慢超过 max-slowdown 倍时失败。
+ * <p>
+ * 参数（--名称=值）: warmup 预热秒数，默认 10；duration 每个阶段秒数，默认 10；flood-rate 每秒失败请求数，默认 300；
+ * max-slowdown 默认 3.0。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@log-flood -Dlog-flood.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class LogFloodCheck {
+
+    private static final long COMPANY_ID = 1L;
+
+    private final CheckHarness harness;
+
+    private String baseUrl;
+
+    private LogFloodCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new LogFloodCheck(new CheckHarness("log-flood", args)).run());
+    }
+
+    private int run() throws Exception {
+        int warmup = harness.intOption("warmup", 10);
+        int duration = harness.intOption("duration", 10);
+        int floodRate = harness.intOption("flood-rate", 300);
+        double maxSlowdown = harness.doubleOption("max-slowdown", 3.0);
+
+        // 改进轮先运行，对照轮在已预热的JVM中运行，比较结果偏向对照轮
+        runPhase("异步抽样", warmup, duration, floodRate, maxSlowdown, true);
+        runPhase("同步逐条", warmup, duration, floodRate, maxSlowdown, false,
+                "--logging.config=classpath:logback-sync.xml", "--coupon.logging.sample-interval-ms=0");
+        return harness.finish();
+    }
+
+    private void runPhase(String name, int warmup, int duration, int floodRate, double maxSlowdown, boolean gated,
+                          String... extraArgs) throws Exception {
+        List<String> args = new ArrayList<>(List.of("--logging.level.root=INFO", "--logging.level.com.coupon=INFO"));
+        args.addAll(List.of(extraArgs));
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                args.toArray(new String[0]))) {
+            baseUrl = application.baseUrl();
+            // 每个阶段按每秒最多300次有效核销准备券码
+            List<String> codes = application.seedCoupons(COMPANY_ID, (warmup + duration * 2) * 300);
+            String token = harness.login(baseUrl);
+            String usedCode = codes.remove(codes.size() - 1);
+            verify(usedCode, token);
+
+            // 预热：洪峰与有效核销的代码路径在测量前完成编译
+            measureVerifies(codes, token, warmup, new Flood(floodRate, usedCode, token));
+            Histogram quiet = measureVerifies(codes, token, duration, null);
+            LogCounter logCounter = LogCounter.attach();
+            MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+            double expectedBefore = expectedOutcomes(meterRegistry);
+            Flood flood = new Flood(floodRate, usedCode, token);
+            Histogram flooded = measureVerifies(codes, token, duration, flood);
+            long floodSent = flood.sent.get();
+            double expectedCounted = expectedOutcomes(meterRegistry) - expectedBefore;
+            long logLines = logCounter.detach();
+
+            double slowdown = (double) flooded.getValueAtPercentile(50) / quiet.getValueAtPercentile(50);
+            harness.log("%s: 无干扰核销 %d 次 p50 %.2f ms p99 %.2f ms；洪峰下核销 %d 次 p50 %.2f ms p99 %.2f ms（p50 %.2f 倍）",
+                    name, quiet.getTotalCount(), millis(quiet.getValueAtPercentile(50)),
+                    millis(quiet.getValueAtPercentile(99)), flooded.getTotalCount(),
+                    millis(flooded.getValueAtPercentile(50)), millis(flooded.getValueAtPercentile(99)), slowdown);
+            harness.log("%s: 失败请求 %d 次，计数 %.0f 次，输出日志 %d 行", name, floodSent, expectedCounted, logLines);
+
+            if (gated) {
+                long intervalMs = Long.parseLong(application.getBean(Environment.class)
+                        .getProperty("coupon.logging.sample-interval-ms", "10000"));
+                long maxLines = ExpectedOutcome.values().length * (duration * 1000L / intervalMs + 2);
+                if (logLines > maxLines) {
+                    harness.fail(name + " 洪峰期间输出 " + logLines + " 行日志，上限 " + maxLines);
+                }
+                if (expectedCounted < floodSent) {
+                    harness.fail(name + " 预期内失败只计数 " + (long) expectedCounted + " 次，发送 " + floodSent + " 次");
+                }
+                if (slowdown > maxSlowdown) {
+                    harness.fail(String.format("%s 洪峰下核销 p50 变慢 %.2f 倍，上限 %.2f", name, slowdown, maxSlowdown));
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个客户端顺序核销有效券码，返回每次核销的延迟；指定洪峰时同时发送失败请求
+     */
+    private Histogram measureVerifies(List<String> codes, String token, int duration, Flood flood) throws Exception {
+        Histogram histogram = new Histogram(HISTOGRAM_MAX_NANOS, 3);
+        if (flood != null) {
+            flood.start();
+        }
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        try {
+            while (System.nanoTime() < end && !codes.isEmpty()) {
+                long start = System.nanoTime();
+                HttpResponse<String> response = verify(codes.remove(codes.size() - 1), token);
+                if (!response.body().contains("\"success\":true")) {
+                    harness.fail("有效券码核销失败: " + response.statusCode() + " " + response.body());
+                    break;
+                }
+                histogram.recordValue(Math.min(System.nanoTime() - start, HISTOGRAM_MAX_NANOS));
+            }
+        } finally {
+            if (flood != null) {
+                flood.stop();
+            }
+        }
+        return histogram;
+    }
+
+    private HttpResponse<String> verify(String code, String token) throws Exception {
+        return harness.httpClient().send(verifyRequest(code, token), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest verifyRequest(String code, String token) throws Exception {
+        return harness.post(baseUrl + "/api/coupon/verify",
+                harness.objectMapper().writeValueAsString(Map.of("code", code, "companyId", COMPANY_ID)), token);
+    }
+
+    private static double expectedOutcomes(MeterRegistry meterRegistry) {
+        return meterRegistry.get("coupon.outcome.expected").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    /**
+     * 按固定到达速率异步发送失败请求：不存在的券码、已使用的券码、无效令牌轮换
+     */
+    private final class Flood {
+        private final int rate;
+        private final String usedCode;
+        private final String token;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong sent = new AtomicLong();
+        private Thread thread;
+
+        private Flood(int rate, String usedCode, String token) {
+            this.rate = rate;
+            this.usedCode = usedCode;
+            this.token = token;
+        }
+
+        private void start() {
+            running.set(true);
+            thread = new Thread(this::drive, "log-flood");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+
+        private void drive() {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            try {
+                for (long i = 0; running.get(); i++) {
+                    long wait;
+                    while ((wait = start + i * intervalNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    HttpRequest request = switch ((int) (i % 3)) {
+                        case 0 -> verifyRequest(String.format("ZZ%06d", i % 1_000_000), token);
+                        case 1 -> verifyRequest(usedCode, token);
+                        default -> verifyRequest(usedCode, "invalid.token." + i);
+                    };
+                    harness.httpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding());
+                    sent.incrementAndGet();
+                }
+            } catch (Exception e) {
+                harness.fail("发送失败请求出错: " + e);
+            }
+        }
+    }
+
+    /**
+     * 统计根日志器收到的日志事件数
+     */
+    private static final class LogCounter extends AppenderBase<ILoggingEvent> {
+        private final AtomicLong events = new AtomicLong();
+        private Logger root;
+
+        static LogCounter attach() {
+            LogCounter counter = new LogCounter();
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+            counter.setContext(context);
+            counter.start();
+            counter.root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+            counter.root.addAppender(counter);
+            return counter;
+        }
+
+        long detach() {
+            root.detachAppender(this);
+            stop();
+            return events.get();
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            events.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.coupon.benchmark;
+
+import com.coupon.entity.Coupon;
+import com.coupon.offline.OfflineSnapshot;
+import com.coupon.repository.CouponRepository;
+import com.coupon.repository.PartitionedVerificationLogRepository;
+import com.coupon.repository.PartitionedVerificationLogRepository.Partition;
+import com.coupon.repository.PartitionedVerificationLogRepository.State;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.http.HttpResponse;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 离线核销校验
+ * <p>
+ * 在临时SQLite文件上启动应用，检查：快照签名可用公钥校验且篡改任一字节即失败，快照恰好包含未使用券码；
+ * 两个扫码站对同一券码的离线核销、离线核销与在线核销交错时，以最早的核销时间为准，且两个企业以相反顺序上传
+ * 同样的记录后券码最终状态一致；不存在的券码、超前服务器时间的记录记为冲突；核销时间落在已滚动和已归档月份的
+ * 离线记录同步后可按日期查到，且随分区重新归档。最后比较逐次在线核销与一次同步整批离线记录的耗时。
+ * <p>
+ * 参数（--名称=值）: coupons 快照券码数，默认 20000；batch 同步批量，默认 1000。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@offline -Doffline.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class OfflineSyncCheck {
+
+    private final CheckHarness harness;
+    private final ObjectMapper objectMapper;
+
+    private BenchmarkApplication application;
+    private String baseUrl;
+    private String token;
+
+    private OfflineSyncCheck(CheckHarness harness) {
+        this.harness = harness;
+        this.objectMapper = harness.objectMapper();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new OfflineSyncCheck(new CheckHarness("offline", args)).run());
+    }
+
+    private int run() throws Exception {
+        int couponCount = harness.intOption("coupons", 20000);
+        int batch = harness.intOption("batch", 1000);
+
+        try (BenchmarkApplication started = BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                "--coupon.offline.max-batch=" + batch)) {
+            application = started;
+            baseUrl = application.baseUrl();
+            token = harness.login(baseUrl);
+
+            checkSnapshot(couponCount);
+            checkConflictResolution();
+            checkBackdatedPartitions();
+            compareThroughput(batch);
+        }
+        return harness.finish();
+    }
+
+    /**
+     * 快照签名、篡改检测与内容
+     */
+    private void checkSnapshot(int couponCount) throws Exception {
+        long companyId = application.seedCompany("离线快照企业");
+        harness.log("写入 %d 个券码...", couponCount);
+        List<String> codes = application.seedCoupons(companyId, couponCount);
+        List<String> used = codes.subList(0, 10);
+        for (String code : used) {
+            verifyOnline(companyId, code);
+        }
+
+        JsonNode key = get("/api/coupon/offline/public-key").path("data");
+        PublicKey publicKey = KeyFactory.getInstance(key.path("algorithm").asText())
+                .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(key.path("publicKey").asText())));
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = harness.httpClient().send(
+                harness.get(baseUrl + "/api/coupon/offline/snapshot?companyId=" + companyId, token),
+                HttpResponse.BodyHandlers.ofByteArray());
+        double downloadMs = (System.nanoTime() - start) / 1e6;
+        byte[] data = response.body();
+        OfflineSnapshot snapshot = OfflineSnapshot.decode(data, publicKey);
+        harness.log("快照: %d 个券码，%d 字节（每个券码 %.2f 字节），下载 %.1f ms",
+                snapshot.size(), data.length, (double) data.length / snapshot.size(), downloadMs);
+
+        harness.expect(snapshot.getCompanyId() == companyId, "快照企业ID不正确");
+        harness.expect(snapshot.size() == couponCount - used.size(), "快照券码数应为 " + (couponCount - used.size()));
+        harness.expect(used.stream().noneMatch(snapshot::contains), "快照包含已使用的券码");
+        harness.expect(codes.subList(used.size(), codes.size()).stream().allMatch(snapshot::contains), "快照缺少未使用的券码");
+        harness.expect(!snapshot.contains("ZZZZZZZZ"), "快照包含不存在的券码");
+
+        data[data.length / 2] ^= 1;
+        try {
+            OfflineSnapshot.decode(data, publicKey);
+            harness.fail("篡改后的快照通过了签名校验");
+        } catch (IllegalArgumentException e) {
+            harness.log("篡改检测: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 同一批记录以相反顺序上传到两个企业：券码最终状态应一致，冲突报告取决于服务端当时已知的核销
+     */
+    private void checkConflictResolution() throws Exception {
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusMinutes(30);
+        Map<String, LocalDateTime> first = null;
+        for (boolean reversed : new boolean[]{false, true}) {
+            long companyId = application.seedCompany(reversed ? "离线冲突企业B" : "离线冲突企业A");
+            List<String> codes = application.seedCoupons(companyId, 4);
+            String onlyOffline = codes.get(0);
+            String bothStations = codes.get(1);
+            String onlineLater = codes.get(2);
+            String onlineEarlier = codes.get(3);
+
+            // 在线核销发生在当前时间：晚于C的离线核销，早于D的离线核销
+            verifyOnline(companyId, onlineLater);
+            verifyOnline(companyId, onlineEarlier);
+
+            ArrayNode stationA = objectMapper.createArrayNode();
+            add(stationA, onlyOffline, base.plusMinutes(1));
+            add(stationA, bothStations, base.plusMinutes(5));
+            add(stationA, onlineLater, base.plusMinutes(2));
+            add(stationA, "ZZZZZZZZ", base.plusMinutes(3));
+            ArrayNode stationB = objectMapper.createArrayNode();
+            add(stationB, bothStations, base.plusMinutes(4));
+            add(stationB, onlineEarlier, LocalDateTime.now().plusSeconds(1));
+            add(stationB, onlyOffline, LocalDateTime.now().plusDays(1));
+
+            Map<String, List<String>> conflicts = new TreeMap<>();
+            for (ArrayNode station : reversed ? List.of(stationB, stationA) : List.of(stationA, stationB)) {
+                for (JsonNode conflict : sync(companyId, station).path("data").path("conflicts")) {
+                    conflicts.computeIfAbsent(label(codes, conflict.path("code").asText()), k -> new ArrayList<>())
+                            .add(conflict.path("reason").asText());
+                }
+            }
+            Map<String, LocalDateTime> states = new TreeMap<>();
+            CouponRepository couponRepository = application.getBean(CouponRepository.class);
+            for (String code : codes) {
+                states.put(label(codes, code), couponRepository.findByCodeAndCompanyId(code, companyId)
+                        .map(Coupon::getUsedAt).orElse(null));
+            }
+            harness.log("%s上传: 使用时间 %s，冲突 %s", reversed ? "逆序" : "顺序", states, conflicts);
+
+            harness.expect(base.plusMinutes(1).equals(states.get("A")), "仅离线核销的券码应以离线时间生效");
+            harness.expect(base.plusMinutes(4).equals(states.get("B")), "两个扫码站核销同一券码时应以较早者为准");
+            harness.expect(base.plusMinutes(2).equals(states.get("C")), "较早的离线核销应取代较晚的在线核销");
+            harness.expect(List.of("INVALID").equals(conflicts.get("A")), "超前服务器时间的记录应记为 INVALID");
+            harness.expect(conflicts.getOrDefault("B", List.of()).size() == 1, "同一券码的两条离线核销应有一条冲突");
+            harness.expect(List.of("SUPERSEDED").equals(conflicts.get("C")), "被取代的在线核销应记为 SUPERSEDED");
+            harness.expect(List.of("ALREADY_USED").equals(conflicts.get("D")), "晚于在线核销的离线核销应记为 ALREADY_USED");
+            harness.expect(List.of("NOT_FOUND").equals(conflicts.get("ZZZZZZZZ")), "不存在的券码应记为 NOT_FOUND");
+            if (first == null) {
+                first = states;
+            } else {
+                harness.expect(first.get("A").equals(states.get("A")) && first.get("B").equals(states.get("B"))
+                        && first.get("C").equals(states.get("C")), "上传顺序不同时券码最终状态不一致");
+            }
+        }
+    }
+
+    /**
+     * 核销时间落在已滚动（分区表）和已归档月份的离线记录：同步后应进入所属月份的分区，按日期可查
+     */
+    private void checkBackdatedPartitions() throws Exception {
+        long companyId = application.seedCompany("离线补写企业");
+        List<String> codes = application.seedCoupons(companyId, 4);
+        LocalDateTime sealed = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusMonths(1).withDayOfMonth(10).plusHours(12);
+        LocalDateTime archived = sealed.minusMonths(5);
+
+        ArrayNode earlier = objectMapper.createArrayNode();
+        add(earlier, codes.get(0), sealed);
+        add(earlier, codes.get(1), archived);
+        sync(companyId, earlier);
+        PartitionedVerificationLogRepository logRepository = application.getBean(PartitionedVerificationLogRepository.class);
+        TransactionTemplate transactionTemplate =
+                new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+        for (LocalDateTime time : List.of(sealed, archived)) {
+            YearMonth month = YearMonth.from(time);
+            transactionTemplate.executeWithoutResult(status -> {
+                logRepository.beginRollover(month);
+                while (logRepository.moveChunk(month, 100) > 0) {
+                    // 全部移入分区
+                }
+                logRepository.completeRollover(month);
+            });
+        }
+        logRepository.archivePartition(YearMonth.from(archived));
+
+        ArrayNode later = objectMapper.createArrayNode();
+        add(later, codes.get(2), sealed.plusHours(1));
+        add(later, codes.get(3), archived.plusHours(1));
+        harness.expect(sync(companyId, later).path("data").path("applied").asInt() == 2, "补写的历史记录应全部生效");
+
+        Map<YearMonth, State> states = new TreeMap<>();
+        for (Partition partition : logRepository.findPartitions()) {
+            states.put(partition.getMonth(), partition.getState());
+        }
+        harness.log("补写后分区状态: %s，热表中早于本月的月份 %s", states,
+                logRepository.findHotMonthsBefore(YearMonth.now()));
+        harness.expect(logRepository.findHotMonthsBefore(YearMonth.now()).isEmpty(), "补写的历史记录不应留在热表");
+        harness.expect(states.get(YearMonth.from(archived)) == State.TABLE, "补写已归档月份时应恢复为分区表");
+        for (LocalDateTime time : List.of(sealed, archived)) {
+            harness.expect(recordCount(companyId, time) == 2, "应能按日期查到 " + time.toLocalDate() + " 的2条核销记录");
+        }
+
+        logRepository.archivePartition(YearMonth.from(archived));
+        harness.expect(recordCount(companyId, archived) == 2, "重新归档后应仍能查到 " + archived.toLocalDate() + " 的2条核销记录");
+    }
+
+    private long recordCount(long companyId, LocalDateTime time) throws Exception {
+        return get("/api/coupon/records?date=" + time.toLocalDate() + "&companyId=" + companyId + "&page=1&limit=5")
+                .path("data").path("pagination").path("total").asLong();
+    }
+
+    /**
+     * 逐次在线核销与一次同步整批离线记录的耗时
+     */
+    private void compareThroughput(int batch) throws Exception {
+        long companyId = application.seedCompany("离线吞吐企业");
+        List<String> codes = application.seedCoupons(companyId, batch * 2);
+
+        long start = System.nanoTime();
+        for (String code : codes.subList(0, batch)) {
+            verifyOnline(companyId, code);
+        }
+        double onlineMs = (System.nanoTime() - start) / 1e6;
+
+        ArrayNode redemptions = objectMapper.createArrayNode();
+        LocalDateTime redeemedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusHours(1);
+        for (String code : codes.subList(batch, codes.size())) {
+            add(redemptions, code, redeemedAt = redeemedAt.plusSeconds(1));
+        }
+        start = System.nanoTime();
+        JsonNode data = sync(companyId, redemptions).path("data");
+        double syncMs = (System.nanoTime() - start) / 1e6;
+
+        harness.expect(data.path("applied").asInt() == batch, "整批离线记录应全部生效");
+        harness.log("%d 次在线核销 %.0f ms（每次 %.2f ms），同步 %d 条离线记录 %.0f ms（每条 %.3f ms）",
+                batch, onlineMs, onlineMs / batch, batch, syncMs, syncMs / batch);
+    }
+
+    private void add(ArrayNode redemptions, String code, LocalDateTime redeemedAt) {
+        ObjectNode redemption = redemptions.addObject();
+        redemption.put("code", code);
+        redemption.put("redeemedAt", redeemedAt.toString());
+    }
+
+    private static String label(List<String> codes, String code) {
+        int index = codes.indexOf(code);
+        return index >= 0 ? String.valueOf((char) ('A' + index)) : code;
+    }
+
+    private void verifyOnline(long companyId, String code) throws Exception {
+        JsonNode json = post("/api/coupon/verify",
+                objectMapper.writeValueAsString(Map.of("code", code, "companyId", companyId)));
+        if (!json.path("success").asBoolean()) {
+            throw new IllegalStateException("在线核销失败: " + json);
+        }
+    }
+
+    private JsonNode sync(long companyId, ArrayNode redemptions) throws Exception {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("companyId", companyId);
+        body.set("redemptions", redemptions);
+        JsonNode json = post("/api/coupon/offline/sync", objectMapper.writeValueAsString(body));
+        if (!json.path("success").asBoolean()) {
+            throw new IllegalStateException("离线同步失败: " + json);
+        }
+        return json;
+    }
+
+    private JsonNode post(String path, String body) throws Exception {
+        HttpResponse<String> response = harness.httpClient().send(harness.post(baseUrl + path, body, token),
+                HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readTree(response.body());
+    }
+
+    private JsonNode get(String path) throws Exception {
+        HttpResponse<String> response = harness.httpClient().send(harness.get(baseUrl + path, token),
+                HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,89 @@
+package com.coupon.benchmark;
+
+import com.coupon.metrics.VerificationStage;
+import com.coupon.metrics.VerificationStageMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分阶段耗时统计开销基准
+ * <p>
+ * 每次操作相当于一次核销请求的全部埋点：每个阶段一次开始计时与一次记录。
+ * 直接运行 main 时执行基准并校验每请求开销低于1微秒，超出时以退出码1结束：
+ * mvn -f benchmarks/pom.xml compile exec:exec@stage-overhead
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageMetricsBenchmark {
+
+    /**
+     * 每请求埋点开销上限（纳秒）
+     */
+    private static final double OVERHEAD_BUDGET_NANOS = 1000.0;
+
+    private static final VerificationStage[] STAGES = VerificationStage.values();
+
+    private final VerificationStageMetrics metrics = new VerificationStageMetrics();
+
+    @Benchmark
+    @Threads(1)
+    public void recordRequest() {
+        recordAllStages();
+    }
+
+    /**
+     * 线程数取CPU核数：线程多于核数时平均耗时包含时间片等待，不反映埋点开销
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void recordRequestConcurrent() {
+        recordAllStages();
+    }
+
+    private void recordAllStages() {
+        for (VerificationStage stage : STAGES) {
+            long start = metrics.start();
+            metrics.record(stage, start);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(StageMetricsBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+
+        boolean withinBudget = true;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            double score = result.getPrimaryResult().getScore();
+            boolean ok = score < OVERHEAD_BUDGET_NANOS;
+            withinBudget &= ok;
+            System.out.printf("%s: %.1f ns/请求 %s%n", benchmark.substring(benchmark.lastIndexOf('.') + 1),
+                    score, ok ? "通过" : "超出" + (long) OVERHEAD_BUDGET_NANOS + "ns预算");
+        }
+        System.exit(withinBudget ? 0 : 1);
+    }
+}
@@ -0,0 +1,189 @@
+package com.coupon.benchmark;
+
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponVerificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多次券并发核销校验
+ * <p>
+ * 在临时SQLite文件上生成一个使用次数上限为 limit 的券码，由 threads 个操作员线程同时反复核销，直到被判定已用完，检查：
+ * 成功次数、数据库中的已使用次数与核销记录数都恰好等于上限，券码标记为已使用，各次核销返回的剩余次数 0 ~ limit-1 各出现一次，
+ * 用完后再核销被拒绝。再生成一个设置了操作员上限的券码，检查总次数等于上限且每个操作员不超过操作员上限。
+ * 内存预扣开启与关闭各运行一次，报告耗时、进入数据库查询的核销数与等待进行中核销的请求数。
+ * <p>
+ * 参数（--名称=值）: threads 线程数，默认 64；limit 使用次数上限，默认 1000；
+ * operator-limit 第二个券码的操作员上限，默认 2；operator-code-limit 第二个券码的使用次数上限，默认 100。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@usage-limit -Dusage-limit.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class UsageLimitCheck {
+
+    private static final long COMPANY_ID = 1L;
+
+    private final CheckHarness harness;
+
+    private UsageLimitCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new UsageLimitCheck(new CheckHarness("usage-limit", args)).run());
+    }
+
+    private int run() throws Exception {
+        int threads = harness.intOption("threads", 64);
+        int limit = harness.intOption("limit", 1000);
+        int operatorLimit = harness.intOption("operator-limit", 2);
+        int operatorCodeLimit = harness.intOption("operator-code-limit", 100);
+
+        for (boolean counters : new boolean[]{true, false}) {
+            String mode = counters ? "内存预扣" : "无预扣";
+            // 所有线程同时排队，隔离舱队列容纳全部线程，拒绝只来自数据库判定
+            try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.NONE,
+                    "--coupon.usage.enabled=" + counters,
+                    "--coupon.bulkhead.queue-capacity=" + threads * 2,
+                    "--coupon.bulkhead.queue-timeout-ms=30000")) {
+                CouponService couponService = application.getBean(CouponService.class);
+                CouponVerificationService verificationService = application.getBean(CouponVerificationService.class);
+                JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+                MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+
+                String code = createCoupon(couponService, limit, null);
+                double lookupsBefore = lookups(meterRegistry);
+                AtomicIntegerArray remainingSeen = new AtomicIntegerArray(limit);
+                Result result = hammer(verificationService, code, threads, mode, remainingSeen);
+                long lookups = (long) (lookups(meterRegistry) - lookupsBefore);
+                harness.log("%s: %d 线程核销上限 %d 次的券码，成功 %d 次，耗时 %d ms（%.0f 次/秒），进入数据库查询 %d 次，等待进行中核销 %d 次",
+                        mode, threads, limit, result.successes, result.millis, result.successes * 1000.0 / result.millis,
+                        lookups, counters ? (long) meterRegistry.get("coupon.usage.waited").counter().count() : 0);
+
+                harness.expect(result.successes == limit, mode + " 成功次数 " + result.successes + "，应为 " + limit);
+                Map<String, Object> row = jdbcTemplate.queryForMap(
+                        "SELECT use_count, is_used FROM coupons WHERE code = ?", code);
+                harness.expect(((Number) row.get("use_count")).intValue() == limit,
+                        mode + " 数据库已使用次数 " + row.get("use_count") + "，应为 " + limit);
+                harness.expect(((Number) row.get("is_used")).intValue() == 1, mode + " 券码用完后未标记为已使用");
+                long logs = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM verification_logs WHERE coupon_code = ?", Long.class, code);
+                harness.expect(logs == limit, mode + " 核销记录 " + logs + " 条，应为 " + limit);
+                for (int i = 0; i < limit; i++) {
+                    if (remainingSeen.get(i) != 1) {
+                        harness.fail(mode + " 剩余次数 " + i + " 出现 " + remainingSeen.get(i) + " 次，应为1次");
+                        break;
+                    }
+                }
+                try {
+                    verificationService.verify(new CouponVerifyRequest(code, COMPANY_ID), "13700000000", "127.0.0.1", null);
+                    harness.fail(mode + " 用完后再核销仍然成功");
+                } catch (CouponAlreadyUsedException e) {
+                    // 预期
+                }
+
+                String operatorCode = createCoupon(couponService, operatorCodeLimit, operatorLimit);
+                Result operatorResult = hammer(verificationService, operatorCode, threads, mode, null);
+                int expected = Math.min(operatorCodeLimit, threads * operatorLimit);
+                harness.expect(operatorResult.successes == expected,
+                        mode + " 操作员上限券码成功 " + operatorResult.successes + " 次，应为 " + expected);
+                Integer maxPerOperator = jdbcTemplate.queryForObject("SELECT MAX(n) FROM (SELECT COUNT(*) AS n " +
+                        "FROM verification_logs WHERE coupon_code = ? GROUP BY user_phone)", Integer.class, operatorCode);
+                harness.expect(maxPerOperator != null && maxPerOperator <= operatorLimit,
+                        mode + " 单个操作员最多核销 " + maxPerOperator + " 次，上限为 " + operatorLimit);
+            }
+        }
+
+        return harness.finish();
+    }
+
+    private static String createCoupon(CouponService couponService, int usageLimit, Integer perOperatorLimit) {
+        BatchAddCouponRequest request = new BatchAddCouponRequest(COMPANY_ID, 1);
+        request.setUsageLimit(usageLimit);
+        request.setPerOperatorLimit(perOperatorLimit);
+        return couponService.batchAddCoupons(request).get(0);
+    }
+
+    /**
+     * 每个线程作为一个操作员反复核销同一券码，直到被判定已用完；隔离舱拒绝时稍后重试
+     */
+    private Result hammer(CouponVerificationService verificationService, String code, int threads, String mode,
+                          AtomicIntegerArray remainingSeen) throws InterruptedException {
+        AtomicLong successes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            String operator = String.valueOf(13900000000L + t);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        try {
+                            CouponVerifyResponse response = verificationService.verify(
+                                    new CouponVerifyRequest(code, COMPANY_ID), operator, "127.0.0.1", null);
+                            if (response.isDuplicate()) {
+                                harness.fail(mode + " 不同操作员的核销被合并为重复扫码");
+                                return;
+                            }
+                            successes.incrementAndGet();
+                            if (remainingSeen != null) {
+                                remainingSeen.incrementAndGet(response.getRemainingUses());
+                            }
+                        } catch (TenantBulkheadRejectedException e) {
+                            Thread.sleep(5);
+                        } catch (CouponAlreadyUsedException e) {
+                            return;
+                        } catch (RuntimeException e) {
+                            harness.fail(mode + " 核销失败: " + e);
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        executor.shutdown();
+        return new Result(successes.get(), millis);
+    }
+
+    private static double lookups(MeterRegistry meterRegistry) {
+        return meterRegistry.get("coupon.verify.stage.count").tag("stage", "coupon-lookup").functionCounter().count();
+    }
+
+    /**
+     * 一轮并发核销的结果
+     */
+    private static final class Result {
+        private final long successes;
+        private final long millis;
+
+        private Result(long successes, long millis) {
+            this.successes = successes;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.coupon.benchmark;
+
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.protocol.BinaryVerifyProtocol;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 核销协议编解码基准
+ * <p>
+ * 对比服务端处理一次核销的请求解析与响应序列化开销：JSON 解析 CouponVerifyRequest 并输出 ApiResponse，
+ * 二进制协议解析10字节请求并写入13字节响应。每种协议的请求与响应字节数在启动时打印，
+ * 配合 -prof gc 的每次操作分配量比较。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyProtocolBenchmark {
+
+    private static final String CODE = "A1B2C3D4";
+    private static final long COMPANY_ID = 1L;
+
+    private ObjectMapper objectMapper;
+    private byte[] jsonRequest;
+    private byte[] binaryRequest;
+    private byte[] binaryResponse;
+    private CouponVerifyResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .timeZone(TimeZone.getTimeZone("Asia/Shanghai"))
+                .simpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                .build();
+        jsonRequest = objectMapper.writeValueAsBytes(new CouponVerifyRequest(CODE, COMPANY_ID));
+        binaryRequest = new byte[BinaryVerifyProtocol.REQUEST_LENGTH];
+        BinaryVerifyProtocol.encodeRequest(CODE, COMPANY_ID, binaryRequest);
+        binaryResponse = new byte[BinaryVerifyProtocol.MAX_RESPONSE_LENGTH];
+        response = new CouponVerifyResponse(CODE, "阿里巴巴集团", LocalDateTime.now(), false);
+
+        byte[] jsonResponse = objectMapper.writeValueAsBytes(ApiResponse.success("核销成功", response));
+        System.out.printf("%n[protocol] JSON 请求 %d 字节，响应 %d 字节：%s%n", jsonRequest.length, jsonResponse.length,
+                new String(jsonResponse, StandardCharsets.UTF_8));
+        System.out.printf("[protocol] 二进制 请求 %d 字节，响应 %d 字节%n", binaryRequest.length,
+                BinaryVerifyProtocol.encodeResponse(binaryResponse, BinaryVerifyProtocol.SUCCESS,
+                        response.getVerificationTime(), COMPANY_ID));
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        CouponVerifyRequest request = objectMapper.readValue(jsonRequest, CouponVerifyRequest.class);
+        return objectMapper.writeValueAsBytes(ApiResponse.success("核销成功",
+                new CouponVerifyResponse(request.getCode(), response.getCompany(), response.getVerificationTime(), false)));
+    }
+
+    @Benchmark
+    public int binary() throws IOException {
+        CouponVerifyRequest request = BinaryVerifyProtocol.readRequest(new ByteArrayInputStream(binaryRequest));
+        return BinaryVerifyProtocol.encodeResponse(binaryResponse, BinaryVerifyProtocol.SUCCESS,
+                response.getVerificationTime(), request.getCompanyId());
+    }
+
+    @Benchmark
+    public int binaryResponseOnly() {
+        return BinaryVerifyProtocol.encodeResponse(binaryResponse, BinaryVerifyProtocol.SUCCESS,
+                response.getVerificationTime(), COMPANY_ID);
+    }
+}
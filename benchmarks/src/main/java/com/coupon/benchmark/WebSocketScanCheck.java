@@ -0,0 +1,256 @@
+package com.coupon.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.coupon.benchmark.CheckHarness.HISTOGRAM_MAX_NANOS;
+import static com.coupon.benchmark.CheckHarness.millis;
+
+/**
+ * 扫码站长连接校验
+ * <p>
+ * 在临时SQLite文件上启动应用，以相同的并发窗口分别通过 HTTP 接口与 /ws/scan 长连接核销同样数量的券码，
+ * 比较吞吐量与延迟。长连接阶段同时检查：每个关联ID恰好收到一个结果且全部核销成功、收到服务端心跳，
+ * 一次发出超过单连接上限的消息时多出的消息被立即拒绝。长连接吞吐量不低于 HTTP 的 min-speedup 倍时通过。
+ * <p>
+ * 参数（--名称=值）: scans 每种方式测量的核销数，默认 2000；warmup 每种方式预热的核销数，默认 1000；
+ * window 并发窗口（进行中的请求数），默认 16；min-speedup 默认 1.0。
+ * <p>
+ * 运行: mvn -f benchmarks/pom.xml compile exec:exec@websocket -Dwebsocket.args="..."
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class WebSocketScanCheck {
+
+    private static final int MAX_IN_FLIGHT = 32;
+
+    private final CheckHarness harness;
+
+    private String baseUrl;
+    private String token;
+    private long companyId;
+
+    private WebSocketScanCheck(CheckHarness harness) {
+        this.harness = harness;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new WebSocketScanCheck(new CheckHarness("websocket", args)).run());
+    }
+
+    private int run() throws Exception {
+        int scans = harness.intOption("scans", 2000);
+        int warmup = harness.intOption("warmup", 1000);
+        int window = harness.intOption("window", 16);
+
+        Phase http;
+        Phase socket;
+        Station overload;
+        try (BenchmarkApplication application = BenchmarkApplication.start("file", WebApplicationType.SERVLET,
+                "--coupon.websocket.max-in-flight=" + MAX_IN_FLIGHT,
+                "--coupon.websocket.heartbeat-ms=500")) {
+            baseUrl = application.baseUrl();
+            token = harness.login(baseUrl);
+            companyId = application.seedCompany("扫码站企业");
+            harness.log("写入券码...");
+            List<String> codes = application.seedCoupons(companyId, 2 * (warmup + scans) + 2 * MAX_IN_FLIGHT);
+
+            harness.log("HTTP 预热 %d 次，测量 %d 次，并发窗口 %d", warmup, scans, window);
+            runHttp(codes.subList(0, warmup), window);
+            http = runHttp(codes.subList(warmup, warmup + scans), window);
+
+            harness.log("长连接 预热 %d 次，测量 %d 次，并发窗口 %d", warmup, scans, window);
+            Station station = connect();
+            runSocket(station, codes.subList(warmup + scans, 2 * warmup + scans), window);
+            socket = runSocket(station, codes.subList(2 * warmup + scans, 2 * (warmup + scans)), window);
+            Thread.sleep(1500);
+            station.webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+
+            overload = connect();
+            List<String> burst = codes.subList(2 * (warmup + scans), 2 * (warmup + scans) + 2 * MAX_IN_FLIGHT);
+            runSocket(overload, burst, burst.size());
+            overload.webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+            socket.pings = station.pings.get();
+        }
+
+        http.report("HTTP");
+        socket.report("长连接");
+        double speedup = socket.throughput() / http.throughput();
+        harness.log("长连接吞吐量为 HTTP 的 %.2f 倍，心跳 %d 次，超限拒绝 %d 条", speedup, socket.pings, overload.overloaded.get());
+
+        harness.expect(http.failed.get() + socket.failed.get() == 0, "存在核销失败的请求");
+        harness.expect(socket.unmatched.get() == 0, "长连接收到 " + socket.unmatched.get() + " 个无法匹配或重复的关联ID");
+        harness.expect(socket.pings > 0, "长连接未收到服务端心跳");
+        harness.expect(overload.overloaded.get() > 0,
+                "一次发出 " + 2 * MAX_IN_FLIGHT + " 条消息时没有消息因超出进行中上限被拒绝");
+        double minSpeedup = harness.doubleOption("min-speedup", 1.0);
+        harness.expect(speedup >= minSpeedup,
+                String.format("长连接吞吐量仅为 HTTP 的 %.2f 倍，低于 %.2f", speedup, minSpeedup));
+        return harness.finish("通过: 长连接核销结果完整，吞吐量为 HTTP 的 %.2f 倍", speedup);
+    }
+
+    /**
+     * 通过 HTTP 接口核销，保持 window 个请求同时进行
+     */
+    private Phase runHttp(List<String> codes, int window) throws InterruptedException {
+        Phase phase = new Phase(codes.size());
+        Semaphore permits = new Semaphore(window);
+        phase.start = System.nanoTime();
+        for (String code : codes) {
+            permits.acquire();
+            long sent = System.nanoTime();
+            harness.httpClient().sendAsync(harness.post(baseUrl + "/api/coupon/verify", verifyBody(code), token),
+                            HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        boolean success = failure == null && response.body().contains("\"success\":true");
+                        phase.complete(sent, success);
+                        permits.release();
+                    });
+        }
+        phase.await();
+        return phase;
+    }
+
+    /**
+     * 通过长连接核销，保持 window 条消息同时进行，结果按关联ID匹配
+     */
+    private Phase runSocket(Station station, List<String> codes, int window) throws Exception {
+        Phase phase = new Phase(codes.size());
+        Semaphore permits = new Semaphore(window);
+        station.phase = phase;
+        station.permits = permits;
+        phase.start = System.nanoTime();
+        for (String code : codes) {
+            permits.acquire();
+            String id = Long.toString(station.nextId++);
+            phase.sentAt.put(id, System.nanoTime());
+            station.webSocket.sendText("{\"id\":\"" + id + "\",\"code\":\"" + code + "\",\"companyId\":" + companyId + "}",
+                    true).join();
+        }
+        phase.await();
+        return phase;
+    }
+
+    private Station connect() {
+        Station station = new Station();
+        station.webSocket = harness.httpClient().newWebSocketBuilder()
+                .header("Authorization", "Bearer " + token)
+                .buildAsync(URI.create(baseUrl.replace("http://", "ws://") + "/ws/scan"), station)
+                .join();
+        return station;
+    }
+
+    private String verifyBody(String code) {
+        return "{\"code\":\"" + code + "\",\"companyId\":" + companyId + "}";
+    }
+
+    /**
+     * 一组核销的结果：延迟分布、失败数与长连接中无法匹配的关联ID数
+     */
+    private final class Phase {
+        private final Histogram histogram = new Histogram(HISTOGRAM_MAX_NANOS, 3);
+        private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        private final CountDownLatch done;
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong unmatched = new AtomicLong();
+        private long start;
+        private long end;
+        private long pings;
+
+        private Phase(int count) {
+            this.done = new CountDownLatch(count);
+        }
+
+        private synchronized void complete(long sent, boolean success) {
+            long now = System.nanoTime();
+            histogram.recordValue(Math.min(now - sent, HISTOGRAM_MAX_NANOS));
+            if (!success) {
+                failed.incrementAndGet();
+            }
+            end = now;
+            done.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            if (!done.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("等待核销结果超时，剩余 " + done.getCount() + " 个");
+            }
+        }
+
+        private double throughput() {
+            return histogram.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / (end - start);
+        }
+
+        private void report(String name) {
+            harness.log("%s: %d 次，%.1f 次/秒，p50 %.2f ms，p99 %.2f ms，失败 %d", name, histogram.getTotalCount(),
+                    throughput(), millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)), failed.get());
+        }
+    }
+
+    /**
+     * 长连接客户端：按关联ID匹配结果，统计心跳与超限拒绝
+     */
+    private final class Station implements WebSocket.Listener {
+        private final StringBuilder buffer = new StringBuilder();
+        private final AtomicLong pings = new AtomicLong();
+        private final AtomicLong overloaded = new AtomicLong();
+        private WebSocket webSocket;
+        private volatile Phase phase;
+        private volatile Semaphore permits;
+        private long nextId;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            buffer.append(data);
+            if (last) {
+                onResult(buffer.toString());
+                buffer.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onPing(WebSocket webSocket, ByteBuffer message) {
+            pings.incrementAndGet();
+            return WebSocket.Listener.super.onPing(webSocket, message);
+        }
+
+        private void onResult(String text) {
+            try {
+                JsonNode json = harness.objectMapper().readTree(text);
+                Long sent = phase.sentAt.remove(json.path("id").asText());
+                if (sent == null) {
+                    phase.unmatched.incrementAndGet();
+                    return;
+                }
+                boolean success = json.path("success").asBoolean();
+                if (!success && json.path("message").asText().contains("进行中的核销请求过多")) {
+                    overloaded.incrementAndGet();
+                    success = true;
+                }
+                phase.complete(sent, success);
+            } catch (Exception e) {
+                phase.unmatched.incrementAndGet();
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
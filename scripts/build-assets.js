@@ -0,0 +1,66 @@
+#!/usr/bin/env node
+/**
+ * 静态资源构建
+ *
+ * 用法: node scripts/build-assets.js <源目录> <输出目录>
+ * 为 scripts/ 与 styles/ 下的文件按内容哈希重命名（main.js -> main.1a2b3c4d.js），改写 index.html 引用哈希后的文件名，
+ * 并为每个文件生成 gzip 与 brotli 预压缩版本（仅在压缩后更小时生成）。哈希文件名随内容变化，可由服务端长期缓存。
+ */
+const crypto = require('crypto');
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const [source, output] = process.argv.slice(2);
+if (!source || !output) {
+  console.error('用法: node scripts/build-assets.js <源目录> <输出目录>');
+  process.exit(1);
+}
+
+const HASHED_DIRS = ['scripts', 'styles'];
+
+fs.rmSync(output, { recursive: true, force: true });
+
+function write(relativePath, content) {
+  const target = path.join(output, relativePath);
+  fs.mkdirSync(path.dirname(target), { recursive: true });
+  fs.writeFileSync(target, content);
+
+  const gzip = zlib.gzipSync(content, { level: 9 });
+  const brotli = zlib.brotliCompressSync(content, {
+    params: {
+      [zlib.constants.BROTLI_PARAM_MODE]: zlib.constants.BROTLI_MODE_TEXT,
+      [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+      [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length
+    }
+  });
+  if (gzip.length < content.length) {
+    fs.writeFileSync(target + '.gz', gzip);
+  }
+  if (brotli.length < content.length) {
+    fs.writeFileSync(target + '.br', brotli);
+  }
+  console.log(`[assets] ${relativePath}: ${content.length} 字节, gzip ${gzip.length}, br ${brotli.length}`);
+}
+
+const renamed = {};
+for (const dir of HASHED_DIRS) {
+  const dirPath = path.join(source, dir);
+  if (!fs.existsSync(dirPath)) {
+    continue;
+  }
+  for (const name of fs.readdirSync(dirPath).sort()) {
+    const content = fs.readFileSync(path.join(dirPath, name));
+    const hash = crypto.createHash('sha256').update(content).digest('hex').slice(0, 8);
+    const extension = path.extname(name);
+    const hashedName = `${path.basename(name, extension)}.${hash}${extension}`;
+    renamed[`${dir}/${name}`] = `${dir}/${hashedName}`;
+    write(`${dir}/${hashedName}`, content);
+  }
+}
+
+let index = fs.readFileSync(path.join(source, 'index.html'), 'utf8');
+for (const [original, hashed] of Object.entries(renamed)) {
+  index = index.split(`"${original}"`).join(`"${hashed}"`);
+}
+write('index.html', Buffer.from(index, 'utf8'));
@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+#
+# AppCDS 训练启动：以 AOT 模式启动解压后的应用，完成一次登录、生成券码与核销后正常停机，
+# 由 JVM 在退出时把启动及核销路径上加载过的类写入 CDS 归档
+#
+# 用法: scripts/cds-training.sh <cds-app目录>
+#   由 mvn -Pstartup package 调用，依赖: java, curl
+#
+set -euo pipefail
+
+CDS_DIR="$(cd "$1" && pwd)"
+MAIN_CLASS="com.coupon.CouponVerificationApplication"
+PORT="${CDS_TRAINING_PORT:-3999}"
+WORK_DIR="$CDS_DIR/training"
+BASE="http://localhost:$PORT/api"
+
+rm -rf "$WORK_DIR" "$CDS_DIR/application.jsa"
+mkdir -p "$WORK_DIR/data"
+
+(cd "$WORK_DIR" && exec java -XX:ArchiveClassesAtExit="$CDS_DIR/application.jsa" -Dspring.aot.enabled=true \
+    -cp "$CDS_DIR/application.jar:$CDS_DIR/BOOT-INF/lib/*" "$MAIN_CLASS" \
+    --server.port="$PORT" > "$WORK_DIR/training.log" 2>&1) &
+APP_PID=$!
+
+post() {
+    curl -sf -X POST "$BASE$1" -H 'Content-Type: application/json' ${TOKEN:+-H "Authorization: Bearer $TOKEN"} -d "$2"
+}
+
+# 取JSON响应中的字段（券码与令牌均不含引号）
+field() {
+    grep -o "\"$1\":\[\?\"[^\"]*\"" | head -1 | sed 's/.*"\([^"]*\)"$/\1/'
+}
+
+TOKEN=""
+for _ in $(seq 1 600); do
+    if ! kill -0 "$APP_PID" 2>/dev/null; then
+        echo "训练启动失败" >&2
+        tail -20 "$WORK_DIR/training.log" >&2
+        exit 1
+    fi
+    TOKEN="$(post /auth/login '{"phone":"13800138000","password":"123456"}' | field token || true)"
+    [ -n "$TOKEN" ] && break
+    sleep 0.5
+done
+
+CODE="$(post /coupon/batch-add '{"companyId":1,"count":1}' | field codes)"
+post /coupon/verify "{\"code\":\"$CODE\",\"companyId\":1}" | grep -q '"success":true'
+
+kill "$APP_PID"
+wait "$APP_PID" || true
+rm -rf "$WORK_DIR"
+[ -f "$CDS_DIR/application.jsa" ]
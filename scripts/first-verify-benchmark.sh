@@ -0,0 +1,137 @@
+#!/usr/bin/env bash
+#
+# 启动耗时基准：从启动进程到第一次成功调用 /api/coupon/verify 的耗时
+#
+# 用法: scripts/first-verify-benchmark.sh [启动方式] [次数] [构建目录]
+#   启动方式: jar（默认，直接运行可执行jar）
+#             cds（运行 mvn -Pstartup package 生成的 target/cds-app，启用AOT与CDS归档）
+#   次数默认 5，构建目录默认 target
+#   依赖: java, python3
+#
+set -euo pipefail
+
+MODE="${1:-jar}"
+RUNS="${2:-5}"
+TARGET_DIR="$(cd "${3:-target}" && pwd)"
+JAR="$TARGET_DIR/coupon-verification-system-1.0.0-exec.jar"
+CDS_DIR="$TARGET_DIR/cds-app"
+MAIN_CLASS="com.coupon.CouponVerificationApplication"
+PORT="${PORT:-3900}"
+WORK_DIR="$(mktemp -d)"
+APP_PID=""
+
+cleanup() {
+    [ -n "$APP_PID" ] && kill "$APP_PID" 2>/dev/null || true
+    rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+start_app() {
+    local mode="$1" log_file="$2"
+    if [ "$mode" = "cds" ]; then
+        (cd "$WORK_DIR" && exec java -Dfile.encoding=UTF-8 \
+            -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -Dspring.aot.enabled=true \
+            -cp "$CDS_DIR/application.jar:$CDS_DIR/BOOT-INF/lib/*" "$MAIN_CLASS" \
+            --server.port="$PORT" > "$log_file" 2>&1) &
+    else
+        (cd "$WORK_DIR" && exec java -Dfile.encoding=UTF-8 -jar "$JAR" --server.port="$PORT" > "$log_file" 2>&1) &
+    fi
+    APP_PID=$!
+}
+
+stop_app() {
+    kill "$APP_PID"
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=""
+}
+
+# 轮询登录并核销指定券码，输出自 start_ns 起的毫秒数
+poll_first_verify() {
+    python3 - "$PORT" "$1" "$2" "$APP_PID" <<'PY'
+import json, os, sys, time, urllib.request
+port, start_ns, code, pid = sys.argv[1], int(sys.argv[2]), sys.argv[3], int(sys.argv[4])
+base = "http://localhost:%s/api" % port
+
+def post(path, body, token=None):
+    headers = {"Content-Type": "application/json"}
+    if token:
+        headers["Authorization"] = "Bearer " + token
+    request = urllib.request.Request(base + path, json.dumps(body).encode(), headers)
+    with urllib.request.urlopen(request, timeout=30) as response:
+        return json.load(response)
+
+deadline = time.time() + 600
+token = None
+while time.time() < deadline:
+    try:
+        os.kill(pid, 0)
+    except OSError:
+        sys.exit("应用已退出")
+    try:
+        if token is None:
+            login = post("/auth/login", {"phone": "13800138000", "password": "123456"})
+            if not login["success"]:
+                time.sleep(0.02)
+                continue
+            token = login["data"]["token"]
+        result = post("/coupon/verify", {"code": code, "companyId": 1}, token)
+        if not result["success"]:
+            sys.exit("核销失败: " + result["message"])
+        print((time.time_ns() - start_ns) // 1_000_000)
+        sys.exit(0)
+    except OSError:
+        time.sleep(0.02)
+sys.exit("等待核销超时")
+PY
+}
+
+mkdir -p "$WORK_DIR/data"
+
+echo "初始化数据库并生成测试券码..."
+start_app jar "$WORK_DIR/init.log"
+python3 - "$PORT" "$RUNS" "$WORK_DIR/codes" <<'PY'
+import json, sys, time, urllib.request
+port, runs, codes_file = sys.argv[1], int(sys.argv[2]), sys.argv[3]
+base = "http://localhost:%s/api" % port
+
+def post(path, body, token=None):
+    headers = {"Content-Type": "application/json"}
+    if token:
+        headers["Authorization"] = "Bearer " + token
+    request = urllib.request.Request(base + path, json.dumps(body).encode(), headers)
+    with urllib.request.urlopen(request, timeout=30) as response:
+        return json.load(response)
+
+for _ in range(600):
+    try:
+        login = post("/auth/login", {"phone": "13800138000", "password": "123456"})
+        if login["success"]:
+            token = login["data"]["token"]
+            break
+    except OSError:
+        pass
+    time.sleep(0.5)
+else:
+    sys.exit("应用启动超时")
+codes = post("/coupon/batch-add", {"companyId": 1, "count": runs}, token)["data"]["codes"]
+open(codes_file, "w").write("\n".join(codes) + "\n")
+PY
+stop_app
+
+TIMES=()
+for run in $(seq 1 "$RUNS"); do
+    code="$(sed -n "${run}p" "$WORK_DIR/codes")"
+    start_ns="$(date +%s%N)"
+    start_app "$MODE" "$WORK_DIR/run-$run.log"
+    if ! elapsed="$(poll_first_verify "$start_ns" "$code")"; then
+        tail -20 "$WORK_DIR/run-$run.log" >&2
+        exit 1
+    fi
+    stop_app
+    echo "第${run}次: ${elapsed} ms"
+    TIMES+=("$elapsed")
+done
+
+MEDIAN="$(printf '%s\n' "${TIMES[@]}" | sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }')"
+echo
+echo "启动方式: $MODE，首次核销成功耗时中位数: ${MEDIAN} ms"
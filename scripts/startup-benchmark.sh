@@ -0,0 +1,97 @@
+#!/usr/bin/env bash
+#
+# 启动耗时基准：对比券码状态索引"全量重建"与"快照加载+追赶"两种启动方式的就绪耗时
+#
+# 用法: scripts/startup-benchmark.sh [券码数量] [jar路径]
+#   券码数量默认 1000000，jar 默认 target/coupon-verification-system-1.0.0-exec.jar
+#   依赖: java, python3（用于直接向SQLite写入测试券码）
+#
+set -euo pipefail
+
+COUPONS="${1:-1000000}"
+JAR="$(cd "$(dirname "${2:-target/coupon-verification-system-1.0.0-exec.jar}")" && pwd)/$(basename "${2:-target/coupon-verification-system-1.0.0-exec.jar}")"
+PORT="${PORT:-3900}"
+WORK_DIR="$(mktemp -d)"
+APP_PID=""
+
+cleanup() {
+    [ -n "$APP_PID" ] && kill "$APP_PID" 2>/dev/null || true
+    rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+start_app() {
+    local log_file="$1"
+    (cd "$WORK_DIR" && exec java -Dfile.encoding=UTF-8 -jar "$JAR" --server.port="$PORT" > "$log_file" 2>&1) &
+    APP_PID=$!
+}
+
+stop_app() {
+    kill "$APP_PID"
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=""
+}
+
+# 等待指定日志出现，应用退出或超时返回失败
+wait_for_log() {
+    local log_file="$1" pattern="$2" timeout="${3:-600}"
+    for _ in $(seq 1 "$timeout"); do
+        grep -q "$pattern" "$log_file" 2>/dev/null && return 0
+        if ! kill -0 "$APP_PID" 2>/dev/null; then
+            echo "应用已退出，日志: $log_file" >&2
+            tail -20 "$log_file" >&2
+            return 1
+        fi
+        sleep 1
+    done
+    echo "等待日志超时: $pattern" >&2
+    return 1
+}
+
+mkdir -p "$WORK_DIR/data"
+
+echo "初始化数据库..."
+start_app "$WORK_DIR/init.log"
+wait_for_log "$WORK_DIR/init.log" "券码状态就绪"
+stop_app
+
+echo "写入 $COUPONS 个测试券码（10% 已使用）..."
+python3 - "$WORK_DIR/data/coupon_system.db" "$COUPONS" <<'PY'
+import random, sqlite3, sys, time
+db, total = sys.argv[1], int(sys.argv[2])
+chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+now = int(time.time() * 1000)
+conn = sqlite3.connect(db)
+conn.execute("DELETE FROM coupons")
+codes = set()
+rows = []
+while len(codes) < total:
+    code = "".join(random.choices(chars, k=8))
+    if code in codes:
+        continue
+    codes.add(code)
+    used = random.random() < 0.1
+    rows.append((code, now, 1 if used else 0, now if used else None, "13800138000" if used else None, random.randint(1, 5)))
+    if len(rows) == 100000:
+        conn.executemany("INSERT INTO coupons (code, created_at, is_used, used_at, used_by, company_id) VALUES (?, ?, ?, ?, ?, ?)", rows)
+        rows.clear()
+conn.executemany("INSERT INTO coupons (code, created_at, is_used, used_at, used_by, company_id) VALUES (?, ?, ?, ?, ?, ?)", rows)
+conn.commit()
+PY
+rm -f "$WORK_DIR/data/coupon-state.snapshot"
+
+echo "全量重建启动..."
+start_app "$WORK_DIR/rebuild.log"
+wait_for_log "$WORK_DIR/rebuild.log" "券码状态就绪"
+REBUILD_LINE="$(grep "券码状态就绪" "$WORK_DIR/rebuild.log")"
+stop_app
+
+echo "快照启动..."
+start_app "$WORK_DIR/snapshot.log"
+wait_for_log "$WORK_DIR/snapshot.log" "券码状态就绪"
+SNAPSHOT_LINE="$(grep "券码状态就绪" "$WORK_DIR/snapshot.log")"
+stop_app
+
+echo
+echo "全量重建: ${REBUILD_LINE#* - }"
+echo "快照加载: ${SNAPSHOT_LINE#* - }"
@@ -0,0 +1,299 @@
+package com.coupon.analytics;
+
+import com.coupon.dto.VerificationRecord;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 单日核销记录列式文件
+ * <p>
+ * 每天的核销记录按核销时间升序存为三列，分析查询只解压所需的列，不访问数据库。所有整数均为大端序。
+ * <pre>
+ * 头部: 魔数 "CVCF" 4字节 | 版本 4字节 | 日期（epoch天数）4字节 | 记录数 4字节
+ * 企业字典: 数量 4字节 | 企业ID 8字节 * 数量
+ * 操作员字典: 数量 4字节 | 手机号（modified UTF-8）* 数量
+ * 三个列块（时间、企业、操作员）: 原始长度 4字节 | 压缩长度 4字节 | DEFLATE 压缩数据
+ * </pre>
+ * 时间列为当日毫秒数的差值（首条为与零点的差值），企业与操作员列为字典下标，均以变长整数（每字节7位）编码。
+ * 写入先写临时文件再原子替换，同一天的文件可以重新导出。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+public final class VerificationColumnFile {
+
+    private static final int MAGIC = 0x43564346;
+    private static final int VERSION = 1;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /**
+     * 日期
+     */
+    private final LocalDate day;
+
+    /**
+     * 记录数
+     */
+    private final int rowCount;
+
+    /**
+     * 企业字典，企业列保存下标
+     */
+    private final long[] companies;
+
+    /**
+     * 操作员字典，操作员列保存下标
+     */
+    private final String[] operators;
+
+    /**
+     * 各条记录的当日毫秒数（升序）
+     */
+    private final int[] millisOfDay;
+
+    /**
+     * 各条记录的企业字典下标
+     */
+    private final int[] companyIndexes;
+
+    /**
+     * 各条记录的操作员字典下标
+     */
+    private final int[] operatorIndexes;
+
+    private VerificationColumnFile(LocalDate day, int rowCount, long[] companies, String[] operators,
+                                   int[] millisOfDay, int[] companyIndexes, int[] operatorIndexes) {
+        this.day = day;
+        this.rowCount = rowCount;
+        this.companies = companies;
+        this.operators = operators;
+        this.millisOfDay = millisOfDay;
+        this.companyIndexes = companyIndexes;
+        this.operatorIndexes = operatorIndexes;
+    }
+
+    /**
+     * 写入一天的核销记录
+     *
+     * @param target  目标文件
+     * @param day     日期
+     * @param records 当天的核销记录，顺序任意；没有企业ID的早期记录以企业ID 0 保存
+     * @return 文件字节数
+     * @throws IOException 写入失败
+     */
+    public static long write(Path target, LocalDate day, List<VerificationRecord> records) throws IOException {
+        int count = records.size();
+        long[] times = new long[count];
+        Map<Long, Integer> companyDictionary = new HashMap<>();
+        Map<String, Integer> operatorDictionary = new HashMap<>();
+        int[] companyIndexes = new int[count];
+        int[] operatorIndexes = new int[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            VerificationRecord record = records.get(i);
+            times[i] = record.getVerificationTime().toLocalTime().toNanoOfDay() / 1_000_000;
+            Long companyId = record.getCompanyId() != null ? record.getCompanyId() : 0L;
+            companyIndexes[i] = companyDictionary.computeIfAbsent(companyId, id -> companyDictionary.size());
+            operatorIndexes[i] = operatorDictionary.computeIfAbsent(record.getUserPhone(), phone -> operatorDictionary.size());
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+
+        VarIntWriter timeColumn = new VarIntWriter(count * 2);
+        VarIntWriter companyColumn = new VarIntWriter(count);
+        VarIntWriter operatorColumn = new VarIntWriter(count);
+        long previous = 0;
+        for (int i : order) {
+            timeColumn.write(times[i] - previous);
+            previous = times[i];
+            companyColumn.write(companyIndexes[i]);
+            operatorColumn.write(operatorIndexes[i]);
+        }
+
+        long[] companies = new long[companyDictionary.size()];
+        companyDictionary.forEach((id, index) -> companies[index] = id);
+        String[] operators = new String[operatorDictionary.size()];
+        operatorDictionary.forEach((phone, index) -> operators[index] = phone);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(count + 1024);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((int) day.toEpochDay());
+            out.writeInt(count);
+            out.writeInt(companies.length);
+            for (long company : companies) {
+                out.writeLong(company);
+            }
+            out.writeInt(operators.length);
+            for (String operator : operators) {
+                out.writeUTF(operator);
+            }
+            writeBlock(out, timeColumn);
+            writeBlock(out, companyColumn);
+            writeBlock(out, operatorColumn);
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, buffer.toByteArray());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return buffer.size();
+    }
+
+    /**
+     * 读取并解压列式文件
+     *
+     * @param file 列式文件
+     * @return 文件内容
+     * @throws IOException 读取失败或格式不正确
+     */
+    public static VerificationColumnFile read(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("无法识别的核销记录列式文件: " + file);
+            }
+            LocalDate day = LocalDate.ofEpochDay(in.readInt());
+            int count = in.readInt();
+            long[] companies = new long[in.readInt()];
+            for (int i = 0; i < companies.length; i++) {
+                companies[i] = in.readLong();
+            }
+            String[] operators = new String[in.readInt()];
+            for (int i = 0; i < operators.length; i++) {
+                operators[i] = in.readUTF();
+            }
+
+            int[] millisOfDay = new int[count];
+            ByteBuffer times = readBlock(in, file);
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += readVarInt(times);
+                if (time >= MILLIS_PER_DAY) {
+                    throw new IOException("核销记录列式文件时间列损坏: " + file);
+                }
+                millisOfDay[i] = (int) time;
+            }
+            int[] companyIndexes = readIndexes(readBlock(in, file), count, companies.length, file);
+            int[] operatorIndexes = readIndexes(readBlock(in, file), count, operators.length, file);
+            return new VerificationColumnFile(day, count, companies, operators, millisOfDay, companyIndexes, operatorIndexes);
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, VarIntWriter column) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(column.bytes, 0, column.length);
+            deflater.finish();
+            byte[] compressed = new byte[column.length + 64];
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            out.writeInt(column.length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer readBlock(DataInputStream in, Path file) throws IOException {
+        int rawLength = in.readInt();
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new IOException("核销记录列式文件列块长度不符: " + file);
+            }
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw new IOException("核销记录列式文件列块损坏: " + file, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int[] readIndexes(ByteBuffer column, int count, int dictionarySize, Path file) throws IOException {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            long index = readVarInt(column);
+            if (index >= dictionarySize) {
+                throw new IOException("核销记录列式文件字典下标越界: " + file);
+            }
+            indexes[i] = (int) index;
+        }
+        return indexes;
+    }
+
+    private static long readVarInt(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("核销记录列式文件列块过短");
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("核销记录列式文件变长整数过长");
+    }
+
+    /**
+     * 变长整数列缓冲区
+     */
+    private static final class VarIntWriter {
+        private byte[] bytes;
+        private int length;
+
+        private VarIntWriter(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        private void write(long value) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+}
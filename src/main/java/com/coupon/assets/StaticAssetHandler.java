@@ -0,0 +1,112 @@
+package com.coupon.assets;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpRequestHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * 静态资源处理器
+ * <p>
+ * 按 Accept-Encoding 选择构建时生成的预压缩版本（优先 brotli，其次 gzip），运行时不再压缩。
+ * 带内容哈希的文件设置一年的 immutable 缓存，index.html 每次协商缓存以便发布后立即引用新文件名。
+ * 容器支持时通过 Tomcat sendfile 由操作系统直接把文件写入套接字，不经过JVM堆。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+public class StaticAssetHandler implements HttpRequestHandler {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private final StaticAssetStore store;
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StaticAssetStore.Asset asset = store.find(request.getServletPath());
+        if (asset == null) {
+            // 直接返回状态码，不转发到需要认证的错误页
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, asset.isImmutable() ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ETAG, asset.getEtag());
+        if (asset.getGzip() != null || asset.getBrotli() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(asset.getEtag()) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        Path file = asset.getIdentity();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (asset.getBrotli() != null && accepts(acceptEncoding, "br")) {
+            file = asset.getBrotli();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "br");
+        } else if (asset.getGzip() != null && accepts(acceptEncoding, "gzip")) {
+            file = asset.getGzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        long length = Files.size(file);
+        response.setContentType(asset.getContentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        Files.copy(file, response.getOutputStream());
+    }
+
+    /**
+     * Accept-Encoding 是否接受指定编码，q=0 表示拒绝
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim();
+            if (!name.equals(coding) && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                if (params[i].trim().matches("q=0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+package com.coupon.assets;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 静态资源索引
+ * <p>
+ * 启动时扫描构建步骤生成的 classpath:/static，按请求路径登记原文件及其 .gz、.br 预压缩版本。
+ * 操作系统零拷贝发送只能作用于普通文件，资源位于jar中时先解压到临时目录。
+ * 文件名带内容哈希的资源内容不会变化，可长期缓存；其他资源（index.html）按内容摘要生成ETag。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class StaticAssetStore {
+
+    private static final String LOCATION = "classpath:/static/";
+    private static final Pattern HASHED_NAME = Pattern.compile(".*\\.[0-9a-f]{8}\\.[a-z0-9]+$");
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private Path extractedDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Resource root = resolver.getResource(LOCATION);
+        if (!root.exists()) {
+            log.warn("未找到构建后的静态资源 {}，前端页面不可用（构建需要 Node.js）", LOCATION);
+            return;
+        }
+        String rootUrl = root.getURL().toString();
+        Map<String, Path> files = new ConcurrentHashMap<>();
+        for (Resource resource : resolver.getResources(LOCATION + "**/*")) {
+            if (!resource.isReadable()) {
+                continue;
+            }
+            String relativePath = resource.getURL().toString().substring(rootUrl.length());
+            files.put(relativePath, toFile(resource, relativePath));
+        }
+
+        for (Map.Entry<String, Path> entry : files.entrySet()) {
+            String relativePath = entry.getKey();
+            if (relativePath.endsWith(".gz") || relativePath.endsWith(".br")) {
+                continue;
+            }
+            Path file = entry.getValue();
+            boolean immutable = HASHED_NAME.matcher(relativePath).matches();
+            MediaType mediaType = MediaTypeFactory.getMediaType(relativePath).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            String contentType = "text".equals(mediaType.getType()) || relativePath.endsWith(".js")
+                    ? mediaType + ";charset=UTF-8" : mediaType.toString();
+            assets.put("/" + relativePath, new Asset(file, files.get(relativePath + ".gz"), files.get(relativePath + ".br"),
+                    contentType, "\"" + digest(file) + "\"", immutable));
+        }
+        log.info("已加载{}个静态资源{}", assets.size(), extractedDir != null ? "（解压到 " + extractedDir + "）" : "");
+    }
+
+    @PreDestroy
+    public void cleanup() throws IOException {
+        if (extractedDir != null) {
+            FileSystemUtils.deleteRecursively(extractedDir);
+        }
+    }
+
+    /**
+     * 按请求路径查找资源
+     *
+     * @param path 请求路径，如 /scripts/main.1a2b3c4d.js
+     * @return 资源，不存在时返回null
+     */
+    public Asset find(String path) {
+        return assets.get(path);
+    }
+
+    private Path toFile(Resource resource, String relativePath) throws IOException {
+        if (resource.isFile()) {
+            return resource.getFile().toPath();
+        }
+        if (extractedDir == null) {
+            extractedDir = Files.createTempDirectory("coupon-static");
+        }
+        Path target = extractedDir.resolve(relativePath);
+        Files.createDirectories(target.getParent());
+        try (InputStream input = resource.getInputStream()) {
+            Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private static String digest(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file)), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 静态资源：原文件与可为空的 .gz、.br 预压缩版本
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Asset {
+        private final Path identity;
+        private final Path gzip;
+        private final Path brotli;
+        private final String contentType;
+        private final String etag;
+
+        /**
+         * 文件名带内容哈希，可长期缓存
+         */
+        private final boolean immutable;
+    }
+}
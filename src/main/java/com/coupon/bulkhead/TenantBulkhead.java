@@ -0,0 +1,330 @@
+package com.coupon.bulkhead;
+
+import com.coupon.dto.TenantBulkheadStats;
+import com.coupon.sharding.ShardRouter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 企业隔离舱
+ * <p>
+ * 按企业ID限制核销与批量生成的并发：每个企业的并发上限与队列容量按权重放大，同一数据库（未分片时为单库，
+ * 分片模式下为企业所在分片）上的企业共享该库的总并发上限，各库互不占用。
+ * 企业未达上限且无人排队时直接执行，否则进入该企业的等待队列；有请求完成时，在同一数据库有排队请求的企业中
+ * 放行虚拟时间（累计执行时间除以权重）最小的企业，同一企业内先到先得。按执行时间而不是请求数分配，
+ * 耗时长的批量写入不会挤占短小的核销请求；空闲后重新排队的企业从当前系统虚拟时间起算，不能积攒额度。
+ * 队列已满或排队超时立即拒绝并给出建议重试时间，单个企业的突发流量只会占满自己的配额与队列。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TenantBulkhead {
+
+    /**
+     * 平均执行耗时的平滑系数
+     */
+    private static final double SERVICE_TIME_ALPHA = 0.1;
+
+    private final MeterRegistry meterRegistry;
+    private final ShardRouter shardRouter;
+
+    @Value("${coupon.bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.bulkhead.max-concurrent:1}")
+    private int maxConcurrent;
+
+    @Value("${coupon.bulkhead.tenant-concurrent:1}")
+    private int tenantConcurrent;
+
+    @Value("${coupon.bulkhead.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${coupon.bulkhead.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Value("${coupon.bulkhead.weights:}")
+    private String weightsSpec;
+
+    private final Lock lock = new ReentrantLock();
+    private final Map<Long, Tenant> tenants = new HashMap<>();
+    private final Map<Integer, Pool> pools = new HashMap<>();
+    private final Map<Long, Integer> weights = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String entry : StringUtils.commaDelimitedListToStringArray(weightsSpec)) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalStateException("企业权重格式错误: " + entry);
+            }
+            weights.put(Long.parseLong(pair[0].trim()), Math.max(1, Integer.parseInt(pair[1].trim())));
+        }
+        if (enabled) {
+            log.info("企业隔离舱已启用: 单库总并发{}，单企业并发{}，队列{}，权重{}",
+                    maxConcurrent, tenantConcurrent, queueCapacity, weights);
+        }
+    }
+
+    /**
+     * 在企业配额内执行操作
+     *
+     * @param companyId 企业ID
+     * @param action    操作
+     * @return 操作结果
+     * @throws TenantBulkheadRejectedException 队列已满或排队超时
+     */
+    public <T> T execute(Long companyId, Supplier<T> action) {
+        if (!enabled || companyId == null) {
+            return action.get();
+        }
+        Tenant tenant = acquire(companyId);
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            release(tenant, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 各企业统计
+     *
+     * @return 按企业ID排序的统计
+     */
+    public List<TenantBulkheadStats> snapshot() {
+        lock.lock();
+        try {
+            List<TenantBulkheadStats> stats = new ArrayList<>();
+            for (Tenant tenant : tenants.values()) {
+                stats.add(new TenantBulkheadStats(tenant.companyId, tenant.weight, tenant.limit, tenant.queueCapacity,
+                        tenant.active, tenant.queue.size(), tenant.admitted, tenant.rejected,
+                        Math.round(tenant.avgServiceNanos / 10_000.0) / 100.0,
+                        Math.round(tenant.waitTimer.mean(TimeUnit.MILLISECONDS) * 100) / 100.0,
+                        Math.round(tenant.waitTimer.max(TimeUnit.MILLISECONDS) * 100) / 100.0));
+            }
+            stats.sort(Comparator.comparing(TenantBulkheadStats::getCompanyId));
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Tenant acquire(Long companyId) {
+        lock.lock();
+        try {
+            Tenant tenant = tenants.computeIfAbsent(companyId, this::register);
+            Pool pool = tenant.pool;
+            if (tenant.queue.isEmpty() && tenant.active == 0) {
+                tenant.virtualTime = Math.max(tenant.virtualTime, pool.systemVirtualTime);
+            }
+            if (tenant.queue.isEmpty() && tenant.active < tenant.limit && pool.active < maxConcurrent) {
+                admit(tenant);
+                return tenant;
+            }
+            if (tenant.queue.size() >= tenant.queueCapacity) {
+                throw reject(tenant);
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            tenant.queue.addLast(waiter);
+            long queuedAt = System.nanoTime();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+            try {
+                while (!waiter.granted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            tenant.waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            if (waiter.granted) {
+                return tenant;
+            }
+            tenant.queue.remove(waiter);
+            throw reject(tenant);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Tenant tenant, long serviceNanos) {
+        lock.lock();
+        try {
+            tenant.pool.active--;
+            tenant.active--;
+            tenant.avgServiceNanos = tenant.avgServiceNanos == 0 ? serviceNanos
+                    : tenant.avgServiceNanos + (serviceNanos - tenant.avgServiceNanos) * SERVICE_TIME_ALPHA;
+            tenant.virtualTime += (double) serviceNanos / tenant.weight;
+            dispatch(tenant.pool);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 依次放行同一数据库上虚拟时间最小的排队企业，直到该库总并发用满或没有可放行的企业
+     */
+    private void dispatch(Pool pool) {
+        while (pool.active < maxConcurrent) {
+            Tenant next = null;
+            for (Tenant tenant : pool.tenants) {
+                if (tenant.queue.isEmpty() || tenant.active >= tenant.limit) {
+                    continue;
+                }
+                if (next == null || tenant.virtualTime < next.virtualTime) {
+                    next = tenant;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.queue.pollFirst();
+            waiter.granted = true;
+            admit(next);
+            waiter.condition.signal();
+        }
+    }
+
+    private void admit(Tenant tenant) {
+        Pool pool = tenant.pool;
+        pool.systemVirtualTime = Math.max(pool.systemVirtualTime, tenant.virtualTime);
+        pool.active++;
+        tenant.active++;
+        tenant.admitted++;
+    }
+
+    /**
+     * 建议重试时间：排在前面的请求按企业并发上限与平均执行耗时估算，至少1秒
+     */
+    private TenantBulkheadRejectedException reject(Tenant tenant) {
+        tenant.rejected++;
+        double pendingNanos = (tenant.queue.size() + tenant.active) * tenant.avgServiceNanos / tenant.limit;
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(pendingNanos / TimeUnit.SECONDS.toNanos(1)));
+        return new TenantBulkheadRejectedException(tenant.companyId, retryAfterSeconds);
+    }
+
+    private Tenant register(Long companyId) {
+        int weight = weights.getOrDefault(companyId, 1);
+        String company = String.valueOf(companyId);
+        Timer waitTimer = Timer.builder("coupon.bulkhead.wait")
+                .description("企业请求排队等待时间")
+                .tag("company", company)
+                .register(meterRegistry);
+        // 写锁属于SQLite文件：分片模式按企业所在分片划分并发池，未分片时共用一个
+        Pool pool = pools.computeIfAbsent(shardRouter.isEnabled() ? shardRouter.shardFor(companyId) : 0,
+                shard -> new Pool());
+        Tenant tenant = new Tenant(companyId, weight,
+                Math.min(maxConcurrent, tenantConcurrent * weight), queueCapacity * weight, pool, waitTimer);
+        pool.tenants.add(tenant);
+        Gauge.builder("coupon.bulkhead.active", tenant, read(t -> t.active))
+                .description("企业执行中的请求数")
+                .tag("company", company)
+                .register(meterRegistry);
+        Gauge.builder("coupon.bulkhead.queued", tenant, read(t -> t.queue.size()))
+                .description("企业排队中的请求数")
+                .tag("company", company)
+                .register(meterRegistry);
+        FunctionCounter.builder("coupon.bulkhead.admitted", tenant, read(t -> t.admitted))
+                .description("企业累计放行请求数")
+                .tag("company", company)
+                .register(meterRegistry);
+        FunctionCounter.builder("coupon.bulkhead.rejected", tenant, read(t -> t.rejected))
+                .description("企业累计拒绝请求数")
+                .tag("company", company)
+                .register(meterRegistry);
+        return tenant;
+    }
+
+    private ToDoubleFunction<Tenant> read(ToDoubleFunction<Tenant> field) {
+        return tenant -> {
+            lock.lock();
+            try {
+                return field.applyAsDouble(tenant);
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * 企业配额，除计时器外的字段均在 lock 内访问
+     */
+    private static final class Tenant {
+        private final Long companyId;
+        private final int weight;
+        private final int limit;
+        private final int queueCapacity;
+        private final Pool pool;
+        private final Deque<Waiter> queue = new ArrayDeque<>();
+        private final Timer waitTimer;
+        private int active;
+        private long admitted;
+        private long rejected;
+        private double avgServiceNanos;
+        private double virtualTime;
+
+        private Tenant(Long companyId, int weight, int limit, int queueCapacity, Pool pool, Timer waitTimer) {
+            this.companyId = companyId;
+            this.weight = weight;
+            this.limit = limit;
+            this.queueCapacity = queueCapacity;
+            this.pool = pool;
+            this.waitTimer = waitTimer;
+        }
+    }
+
+    /**
+     * 一个数据库的并发池，字段均在 lock 内访问
+     */
+    private static final class Pool {
+        private final List<Tenant> tenants = new ArrayList<>();
+
+        /**
+         * 该库上所有企业执行中的请求数
+         */
+        private int active;
+
+        /**
+         * 该库的系统虚拟时间：最近一次放行的企业的虚拟时间
+         */
+        private double systemVirtualTime;
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
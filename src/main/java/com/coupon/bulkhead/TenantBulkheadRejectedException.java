@@ -0,0 +1,25 @@
+package com.coupon.bulkhead;
+
+import lombok.Getter;
+
+/**
+ * 企业隔离舱拒绝异常
+ * <p>
+ * 企业的等待队列已满或排队超时时抛出，控制器据此返回 429 与 Retry-After。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+public class TenantBulkheadRejectedException extends RuntimeException {
+
+    /**
+     * 建议重试等待秒数
+     */
+    private final long retryAfterSeconds;
+
+    public TenantBulkheadRejectedException(Long companyId, long retryAfterSeconds) {
+        super("企业" + companyId + "当前请求过多，请" + retryAfterSeconds + "秒后重试");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
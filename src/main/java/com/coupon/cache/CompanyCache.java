@@ -0,0 +1,141 @@
+package com.coupon.cache;
+
+import com.coupon.entity.Company;
+import com.coupon.repository.CompanyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 企业主数据缓存
+ * <p>
+ * 企业数量少且很少修改，首次访问时一次载入全部企业，之后企业列表与企业名称不再查询数据库。
+ * 任一节点（或直接执行SQL）修改企业后，变更日志轮询按企业ID重新载入对应条目。
+ * 未开启变更日志时无法得知其他节点的修改，直接查询数据库。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+public class CompanyCache {
+
+    private final CompanyRepository companyRepository;
+
+    @Value("${coupon.change-feed.enabled:true}")
+    private boolean enabled;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * 按企业ID索引的全部企业，载入前为null；更新时整体替换，读取不加锁
+     */
+    private volatile Map<Long, Company> companies;
+
+    /**
+     * 按名称排序的激活企业
+     */
+    private volatile List<Company> activeCompanies;
+
+    /**
+     * 查询所有激活的企业
+     *
+     * @return 按名称排序的企业列表
+     */
+    public List<Company> getActiveCompanies() {
+        if (!enabled) {
+            return companyRepository.findByIsActiveTrueOrderByName();
+        }
+        ensureLoaded();
+        return activeCompanies;
+    }
+
+    /**
+     * 查询企业名称
+     *
+     * @param companyId 企业ID
+     * @return 企业名称，企业不存在时返回null
+     */
+    public String getName(Long companyId) {
+        if (!enabled) {
+            return companyRepository.findById(companyId).map(Company::getName).orElse(null);
+        }
+        Company company = ensureLoaded().get(companyId);
+        return company != null ? company.getName() : null;
+    }
+
+    /**
+     * 载入全部企业
+     */
+    public void reload() {
+        lock.lock();
+        try {
+            Map<Long, Company> loaded = new HashMap<>();
+            for (Company company : companyRepository.findAll()) {
+                loaded.put(company.getId(), company);
+            }
+            publish(loaded);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按企业ID重新载入，已删除的企业移出缓存；尚未载入时不做处理
+     *
+     * @param companyIds 发生变更的企业ID
+     */
+    public void refresh(Collection<Long> companyIds) {
+        lock.lock();
+        try {
+            if (companies == null) {
+                return;
+            }
+            Map<Long, Company> updated = new HashMap<>(companies);
+            updated.keySet().removeAll(companyIds);
+            for (Company company : companyRepository.findAllById(companyIds)) {
+                updated.put(company.getId(), company);
+            }
+            publish(updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<Long, Company> ensureLoaded() {
+        Map<Long, Company> current = companies;
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (companies == null) {
+                reload();
+            }
+            return companies;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(Map<Long, Company> loaded) {
+        List<Company> active = new ArrayList<>();
+        for (Company company : loaded.values()) {
+            if (Boolean.TRUE.equals(company.getIsActive())) {
+                active.add(company);
+            }
+        }
+        active.sort(Comparator.comparing(Company::getName));
+        activeCompanies = List.copyOf(active);
+        companies = Map.copyOf(loaded);
+    }
+}
@@ -0,0 +1,118 @@
+package com.coupon.cache;
+
+import com.coupon.entity.User;
+import com.coupon.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 用户激活状态缓存
+ * <p>
+ * 认证时检查令牌中的用户是否仍处于激活状态，使禁用账号在令牌过期前即失效。首次访问时一次载入全部激活用户，
+ * 之后激活用户的认证不再查询数据库，只有未命中（新建或已禁用的用户）时查询；任一节点（或直接执行SQL）
+ * 新增、禁用或删除用户后，变更日志轮询按用户ID重新载入。
+ * 未开启变更日志时无法得知账号状态变化，不做检查，与只校验令牌签名与有效期的行为一致。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+public class UserStatusCache {
+
+    private final UserRepository userRepository;
+
+    @Value("${coupon.change-feed.enabled:true}")
+    private boolean enabled;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * 激活用户ID，载入前为null；更新时整体替换，读取不加锁
+     */
+    private volatile Set<Long> activeUserIds;
+
+    /**
+     * 用户是否处于激活状态
+     *
+     * @param userId 用户ID
+     * @return 是否激活，未开启变更日志时恒为true
+     */
+    public boolean isActive(Long userId) {
+        if (!enabled) {
+            return true;
+        }
+        Set<Long> current = activeUserIds;
+        if (current != null && current.contains(userId)) {
+            return true;
+        }
+        // 未命中时查询数据库：刚创建的用户可能尚未被轮询到；与按变更重新载入互斥，避免覆盖更新的状态
+        lock.lock();
+        try {
+            if (activeUserIds == null) {
+                reload();
+            }
+            if (activeUserIds.contains(userId)) {
+                return true;
+            }
+            boolean active = userRepository.findById(userId).map(User::getIsActive).orElse(false);
+            if (active) {
+                Set<Long> updated = new HashSet<>(activeUserIds);
+                updated.add(userId);
+                activeUserIds = Set.copyOf(updated);
+            }
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 载入全部激活用户
+     */
+    public void reload() {
+        lock.lock();
+        try {
+            Set<Long> loaded = new HashSet<>();
+            for (User user : userRepository.findAll()) {
+                if (Boolean.TRUE.equals(user.getIsActive())) {
+                    loaded.add(user.getId());
+                }
+            }
+            activeUserIds = Set.copyOf(loaded);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按用户ID重新载入激活状态；尚未载入时不做处理
+     *
+     * @param userIds 发生变更的用户ID
+     */
+    public void refresh(Collection<Long> userIds) {
+        lock.lock();
+        try {
+            if (activeUserIds == null) {
+                return;
+            }
+            Set<Long> updated = new HashSet<>(activeUserIds);
+            updated.removeAll(userIds);
+            for (User user : userRepository.findAllById(userIds)) {
+                if (Boolean.TRUE.equals(user.getIsActive())) {
+                    updated.add(user.getId());
+                }
+            }
+            activeUserIds = Set.copyOf(updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.coupon.changefeed;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 变更日志记录，对应 change_log 表的一行
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+@RequiredArgsConstructor
+public final class ChangeLogEntry {
+
+    /** 企业新增、修改或删除 */
+    public static final String COMPANY = "company";
+    /** 用户新增、修改或删除 */
+    public static final String USER = "user";
+    /** 券码新增或使用状态变化 */
+    public static final String COUPON = "coupon";
+
+    /**
+     * 自增ID，即提交顺序
+     */
+    private final long id;
+
+    /**
+     * 实体类型：{@link #COMPANY}、{@link #USER} 或 {@link #COUPON}
+     */
+    private final String entity;
+
+    /**
+     * 实体主键
+     */
+    private final long entityId;
+
+    /**
+     * 券码所属企业ID（仅券码）
+     */
+    private final Long companyId;
+
+    /**
+     * 券码（仅券码）
+     */
+    private final String code;
+
+    /**
+     * 使用时间，未使用为null（仅券码）
+     */
+    private final LocalDateTime usedAt;
+
+    /**
+     * 写入时间（毫秒时间戳）
+     */
+    private final long changedAt;
+}
@@ -0,0 +1,232 @@
+package com.coupon.changefeed;
+
+import com.coupon.cache.CompanyCache;
+import com.coupon.cache.UserStatusCache;
+import com.coupon.service.CouponStateService;
+import com.coupon.sharding.ShardContext;
+import com.coupon.sharding.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 变更日志轮询
+ * <p>
+ * 企业、用户与券码的写入由数据库触发器在同一事务中记入 change_log（见 db/migration/V5__change_log.sql），
+ * 共用数据库文件的每个节点按自增ID轮询，批量更新本地的企业缓存、用户激活状态缓存、券码状态索引与各分片的企业副本，
+ * 其他节点的修改与直接执行的SQL在一个轮询间隔内生效。每次轮询在每个库上只执行一条主键范围查询，
+ * 与节点数无关；本节点自己的写入同样会被读到，重复应用是幂等的。
+ * 启动时从当前最大ID开始，此前的变更已包含在启动时载入的缓存与券码状态索引中。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChangeLogTailer {
+
+    private static final String POLL_SQL = "SELECT id, entity, entity_id, company_id, code, used_at, changed_at " +
+                                           "FROM change_log WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * 全局库在水位数组中的位置，分片 i 位于 i + 1
+     */
+    private static final int GLOBAL = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final CompanyCache companyCache;
+    private final UserStatusCache userStatusCache;
+    private final CouponStateService couponStateService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${coupon.change-feed.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.change-feed.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${coupon.change-feed.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${coupon.sharding.shard-count:1}")
+    private int configuredShardCount;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * 各库已应用的最大变更ID
+     */
+    private long[] lastIds;
+
+    private Timer pollTimer;
+    private Timer lagTimer;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        pollTimer = Timer.builder("coupon.changefeed.poll")
+                .description("变更日志单次轮询耗时")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("coupon.changefeed.lag")
+                .description("变更从提交到在本节点生效的耗时")
+                .register(meterRegistry);
+
+        // 先取水位再载入缓存：两者之间的变更会被再次应用，不会遗漏
+        lastIds = new long[shardRouter.isEnabled() ? configuredShardCount + 1 : 1];
+        lastIds[GLOBAL] = maxId();
+        if (shardRouter.isEnabled()) {
+            shardRouter.onAllShards(() -> {
+                lastIds[ShardContext.current() + 1] = maxId();
+                return null;
+            });
+        }
+        companyCache.reload();
+        userStatusCache.reload();
+    }
+
+    /**
+     * 轮询全局库与各分片的新变更；一批取满时立即继续，直到追上
+     */
+    @Scheduled(fixedDelayString = "${coupon.change-feed.poll-interval-ms:200}",
+               initialDelayString = "${coupon.change-feed.poll-interval-ms:200}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            drain(GLOBAL);
+            if (shardRouter.isEnabled()) {
+                shardRouter.onAllShards(() -> {
+                    drain(ShardContext.current() + 1);
+                    return null;
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("变更日志轮询失败: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清理超过保留时长的变更；各节点都会执行，重复删除无副作用
+     */
+    @Scheduled(fixedDelayString = "${coupon.change-feed.prune-interval-ms:300000}",
+               initialDelayString = "${coupon.change-feed.prune-interval-ms:300000}")
+    public void prune() {
+        if (!enabled) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        int deleted = deleteBefore(cutoff);
+        if (shardRouter.isEnabled()) {
+            deleted += shardRouter.onAllShards(() -> deleteBefore(cutoff)).stream().mapToInt(Integer::intValue).sum();
+        }
+        if (deleted > 0) {
+            log.info("已清理{}条变更日志", deleted);
+        }
+    }
+
+    private void drain(int slot) {
+        int polled;
+        do {
+            polled = pollOnce(slot);
+        } while (polled == batchSize);
+    }
+
+    /**
+     * 读取并应用一批变更
+     *
+     * @param slot 库在水位数组中的位置
+     * @return 本批变更数
+     */
+    private int pollOnce(int slot) {
+        long start = System.nanoTime();
+        List<ChangeLogEntry> entries = jdbcTemplate.query(POLL_SQL, (rs, rowNum) -> {
+            long companyId = rs.getLong(4);
+            Long nullableCompanyId = rs.wasNull() ? null : companyId;
+            Timestamp usedAt = rs.getTimestamp(6);
+            return new ChangeLogEntry(rs.getLong(1), rs.getString(2), rs.getLong(3), nullableCompanyId,
+                    rs.getString(5), usedAt != null ? usedAt.toLocalDateTime() : null, rs.getLong(7));
+        }, lastIds[slot], batchSize);
+        pollTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        // 按实体类型分组：企业与用户每批各重新载入一次，券码按顺序写入状态索引
+        Set<Long> companyIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        Map<Long, List<String>> addedCodes = new HashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            switch (entry.getEntity()) {
+                case ChangeLogEntry.COMPANY -> companyIds.add(entry.getEntityId());
+                case ChangeLogEntry.USER -> userIds.add(entry.getEntityId());
+                case ChangeLogEntry.COUPON -> {
+                    if (entry.getUsedAt() == null) {
+                        addedCodes.computeIfAbsent(entry.getCompanyId(), id -> new ArrayList<>()).add(entry.getCode());
+                    } else {
+                        // 同一批内先新增后使用的券码：新增先写入，保证使用状态最后生效
+                        flushAdded(addedCodes);
+                        couponStateService.recordUsed(entry.getCode(), entry.getCompanyId(), entry.getUsedAt());
+                    }
+                }
+                default -> log.warn("未知的变更类型: {}", entry.getEntity());
+            }
+        }
+        flushAdded(addedCodes);
+        // 分片只记录券码变更，企业与用户变更只来自全局库，重新载入时不在分片上下文中
+        if (!companyIds.isEmpty()) {
+            companyCache.refresh(companyIds);
+            shardRouter.syncCompanies(companyIds);
+        }
+        if (!userIds.isEmpty()) {
+            userStatusCache.refresh(userIds);
+        }
+
+        long now = System.currentTimeMillis();
+        for (ChangeLogEntry entry : entries) {
+            lagTimer.record(Math.max(0, now - entry.getChangedAt()), TimeUnit.MILLISECONDS);
+        }
+        lastIds[slot] = entries.get(entries.size() - 1).getId();
+        return entries.size();
+    }
+
+    private void flushAdded(Map<Long, List<String>> addedCodes) {
+        for (Map.Entry<Long, List<String>> added : addedCodes.entrySet()) {
+            couponStateService.recordAdded(added.getValue(), added.getKey());
+        }
+        addedCodes.clear();
+    }
+
+    private long maxId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM change_log", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    private int deleteBefore(long cutoff) {
+        return jdbcTemplate.update("DELETE FROM change_log WHERE changed_at < ?", cutoff);
+    }
+}
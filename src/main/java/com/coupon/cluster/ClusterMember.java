@@ -0,0 +1,37 @@
+package com.coupon.cluster;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.net.URI;
+
+/**
+ * 集群节点
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+@RequiredArgsConstructor
+public final class ClusterMember {
+
+    /**
+     * 节点ID
+     */
+    private final String id;
+
+    /**
+     * 节点地址，如 http://10.0.0.2:3000
+     */
+    private final URI baseUri;
+
+    /**
+     * 是否为当前节点
+     */
+    private final boolean local;
+
+    @Override
+    public String toString() {
+        return id + "=" + baseUri;
+    }
+}
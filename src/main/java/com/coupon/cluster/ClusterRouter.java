@@ -0,0 +1,298 @@
+package com.coupon.cluster;
+
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.cache.CompanyCache;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.idempotency.IdempotencyCache;
+import com.coupon.protocol.BinaryVerifyProtocol;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponNotFoundException;
+import com.coupon.service.CouponOutOfValidityException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群路由器
+ * <p>
+ * 集群模式下每个节点只保存一致性哈希环上归属自己的券码及其核销记录，是这部分券码的唯一写入方。
+ * 节点收到不属于自己的券码核销时，经节点间共享的 HTTP/2 连接（明文 h2c，单连接多路复用）以二进制协议
+ * 转发到所属节点，并把结果还原为与本地核销相同的响应或异常。成员列表来自静态配置文件（节点ID=地址），
+ * 节点间请求以共享密钥认证。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterRouter {
+
+    /**
+     * 节点间转发接口
+     */
+    public static final String FORWARD_PATH = "/api/cluster/verify";
+
+    /**
+     * 节点间认证请求头
+     */
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+
+    /**
+     * 转发请求的操作员手机号请求头
+     */
+    public static final String OPERATOR_HEADER = "X-Cluster-Operator";
+
+    /**
+     * 转发请求的客户端IP请求头，所属节点只在共享密钥校验通过后采用
+     */
+    public static final String CLIENT_IP_HEADER = "X-Cluster-Client-Ip";
+
+    /**
+     * 所属节点返回多次券剩余使用次数的响应头，二进制协议本身不含该字段
+     */
+    public static final String REMAINING_USES_HEADER = "X-Cluster-Remaining-Uses";
+
+    private final CompanyCache companyCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${coupon.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${coupon.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${coupon.cluster.members-file:config/cluster-members.properties}")
+    private String membersFile;
+
+    @Value("${coupon.cluster.virtual-nodes:160}")
+    private int virtualNodes;
+
+    @Value("${coupon.cluster.secret:}")
+    private String secret;
+
+    @Value("${coupon.cluster.forward-timeout-ms:5000}")
+    private long forwardTimeoutMs;
+
+    private final Map<String, Timer> forwardTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failureCounters = new ConcurrentHashMap<>();
+
+    private List<ClusterMember> members = List.of();
+    private ConsistentHashRing ring;
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (!StringUtils.hasText(secret)) {
+            throw new IllegalStateException("集群模式需要配置 coupon.cluster.secret");
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(membersFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        List<ClusterMember> loaded = new ArrayList<>();
+        for (String id : new TreeSet<>(properties.stringPropertyNames())) {
+            loaded.add(new ClusterMember(id, URI.create(properties.getProperty(id).trim()), id.equals(nodeId)));
+        }
+        if (loaded.stream().noneMatch(ClusterMember::isLocal)) {
+            throw new IllegalStateException("成员配置 " + membersFile + " 中没有当前节点 " + nodeId);
+        }
+        members = List.copyOf(loaded);
+        ring = new ConsistentHashRing(members, virtualNodes);
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(forwardTimeoutMs))
+                .build();
+        log.info("集群模式已启用: 当前节点{}，成员{}，每节点{}个虚拟节点", nodeId, members, virtualNodes);
+    }
+
+    /**
+     * 是否开启集群模式
+     *
+     * @return 是否开启
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 集群成员
+     *
+     * @return 按节点ID排序的成员列表，未开启时为空
+     */
+    public List<ClusterMember> getMembers() {
+        return members;
+    }
+
+    /**
+     * 查找券码所属节点
+     *
+     * @param code 券码
+     * @return 所属节点
+     */
+    public ClusterMember ownerOf(String code) {
+        return ring.ownerOf(code);
+    }
+
+    /**
+     * 券码是否归当前节点所有，未开启集群时恒为 true
+     *
+     * @param code 券码
+     * @return 是否归当前节点
+     */
+    public boolean isLocal(String code) {
+        return !enabled || ring.ownerOf(code).isLocal();
+    }
+
+    /**
+     * 要求以单节点部署：集群模式下各节点只保存归自己的券码与核销记录，
+     * 按企业或日期汇总的功能在单个节点上得不到完整结果，直接拒绝
+     *
+     * @param feature 功能名称
+     * @throws UnsupportedOperationException 已开启集群模式
+     */
+    public void requireSingleNode(String feature) {
+        if (enabled) {
+            throw new UnsupportedOperationException("集群模式下不支持" + feature + "，各节点只保存归自己的券码");
+        }
+    }
+
+    /**
+     * 校验节点间认证请求头
+     *
+     * @param token 请求头的值
+     * @return 是否为集群内节点
+     */
+    public boolean isTrusted(String token) {
+        return enabled && token != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 将核销转发到券码所属节点
+     *
+     * @param owner          所属节点
+     * @param request        核销请求
+     * @param userPhone      操作员手机号
+     * @param ipAddress      客户端IP
+     * @param idempotencyKey 客户端幂等键，可为空
+     * @return 所属节点的核销结果
+     * @throws CouponNotFoundException         券码不存在
+     * @throws CouponAlreadyUsedException      券码已使用
+     * @throws CouponOutOfValidityException    券码不在有效期内
+     * @throws TenantBulkheadRejectedException 所属节点上企业配额已满
+     */
+    public CouponVerifyResponse forward(ClusterMember owner, CouponVerifyRequest request, String userPhone,
+                                        String ipAddress, String idempotencyKey) {
+        byte[] body = new byte[BinaryVerifyProtocol.REQUEST_LENGTH];
+        BinaryVerifyProtocol.encodeRequest(request.getCode(), request.getCompanyId(), body);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(owner.getBaseUri().resolve(FORWARD_PATH))
+                .timeout(Duration.ofMillis(forwardTimeoutMs))
+                .header("Content-Type", BinaryVerifyProtocol.MEDIA_TYPE)
+                .header("Accept", BinaryVerifyProtocol.MEDIA_TYPE)
+                .header(TOKEN_HEADER, secret)
+                .header(OPERATOR_HEADER, userPhone)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (ipAddress != null) {
+            builder.header(CLIENT_IP_HEADER, ipAddress);
+        }
+        if (idempotencyKey != null) {
+            builder.header(IdempotencyCache.HEADER, idempotencyKey);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            failureCounter(owner).increment();
+            throw new RuntimeException("券码所属节点" + owner.getId() + "不可用");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("转发核销请求被中断");
+        }
+        forwardTimer(owner, response.version()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        byte[] result = response.body();
+        if (result.length < 9) {
+            failureCounter(owner).increment();
+            throw new RuntimeException("券码所属节点" + owner.getId() + "响应异常: HTTP " + response.statusCode());
+        }
+        long value = BinaryVerifyProtocol.decodeValue(result);
+        switch (result[0]) {
+            case BinaryVerifyProtocol.SUCCESS:
+            case BinaryVerifyProtocol.DUPLICATE:
+                return new CouponVerifyResponse(request.getCode(), companyName(request.getCompanyId()),
+                        BinaryVerifyProtocol.toDateTime(value), result[0] == BinaryVerifyProtocol.DUPLICATE,
+                        response.headers().firstValue(REMAINING_USES_HEADER).map(Integer::valueOf).orElse(null));
+            case BinaryVerifyProtocol.NOT_FOUND:
+                throw new CouponNotFoundException();
+            case BinaryVerifyProtocol.ALREADY_USED:
+                throw new CouponAlreadyUsedException(value != 0 ? BinaryVerifyProtocol.toDateTime(value) : null);
+            case BinaryVerifyProtocol.OUT_OF_VALIDITY:
+                LocalDateTime boundary = BinaryVerifyProtocol.toDateTime(value);
+                throw boundary.isAfter(LocalDateTime.now())
+                        ? CouponOutOfValidityException.notYetValid(boundary)
+                        : CouponOutOfValidityException.expired(boundary);
+            case BinaryVerifyProtocol.THROTTLED:
+                throw new TenantBulkheadRejectedException(request.getCompanyId(), value);
+            case BinaryVerifyProtocol.INVALID:
+                throw new IllegalArgumentException("券码格式不正确");
+            default:
+                throw new RuntimeException("券码所属节点" + owner.getId() + "核销失败");
+        }
+    }
+
+    /**
+     * 企业名称：各节点的企业主数据相同，转发结果只带企业ID，名称取本地缓存
+     */
+    private String companyName(Long companyId) {
+        String name = companyCache.getName(companyId);
+        return name != null ? name : "";
+    }
+
+    private Timer forwardTimer(ClusterMember owner, HttpClient.Version version) {
+        return forwardTimers.computeIfAbsent(owner.getId() + "/" + version, key -> Timer.builder("coupon.cluster.forward")
+                .description("转发到券码所属节点的核销耗时")
+                .tag("node", owner.getId())
+                .tag("protocol", version.name())
+                .register(meterRegistry));
+    }
+
+    private Counter failureCounter(ClusterMember owner) {
+        return failureCounters.computeIfAbsent(owner.getId(), id -> Counter.builder("coupon.cluster.forward.failed")
+                .description("转发失败次数")
+                .tag("node", id)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,89 @@
+package com.coupon.cluster;
+
+import com.coupon.state.CouponStateIndex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 券码一致性哈希环
+ * <p>
+ * 每个节点按节点ID在环上放置若干虚拟节点，券码顺时针归属第一个虚拟节点所在的节点。
+ * 虚拟节点位置只取决于节点ID，各节点读取同一份成员配置即得到相同的归属；增减一个节点只移动约 1/N 的券码。
+ * 环保存为升序的位置数组与对应节点数组，查找为一次二分查找。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class ConsistentHashRing {
+
+    private final long[] points;
+    private final ClusterMember[] owners;
+
+    /**
+     * @param members      集群节点
+     * @param virtualNodes 每个节点的虚拟节点数
+     */
+    public ConsistentHashRing(List<ClusterMember> members, int virtualNodes) {
+        if (members.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("集群至少需要一个节点与一个虚拟节点");
+        }
+        long[][] entries = new long[members.size() * virtualNodes][];
+        MessageDigest digest = sha256();
+        int index = 0;
+        for (int member = 0; member < members.size(); member++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                byte[] hash = digest.digest((members.get(member).getId() + "#" + replica).getBytes(StandardCharsets.UTF_8));
+                entries[index++] = new long[]{ByteBuffer.wrap(hash).getLong(), member};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        points = new long[entries.length];
+        owners = new ClusterMember[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = members.get((int) entries[i][1]);
+        }
+    }
+
+    /**
+     * 查找券码所属节点
+     *
+     * @param code 券码
+     * @return 所属节点
+     */
+    public ClusterMember ownerOf(String code) {
+        int index = Arrays.binarySearch(points, hash(code));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 券码哈希：压缩后的券码经 MurmurHash3 末尾混合，格式不正确的券码退回字符串哈希
+     */
+    static long hash(String code) {
+        long packed = CouponStateIndex.packCode(code);
+        long h = packed >= 0 ? packed : code.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
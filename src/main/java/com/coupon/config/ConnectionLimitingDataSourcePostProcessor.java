@@ -0,0 +1,86 @@
+package com.coupon.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 以信号量限制同时持有的数据库连接数
+ * <p>
+ * 获取连接前先取得许可，连接关闭时归还。等待许可的虚拟线程在信号量上挂起并让出载体线程，
+ * 不会大量堆积在连接池的等待队列中；按公平顺序放行，超时后抛出 {@link SQLTransientConnectionException}。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class ConnectionLimitingDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final int permits;
+    private final long acquireTimeoutMs;
+
+    /**
+     * @param permits          最大并发连接数
+     * @param acquireTimeoutMs 等待许可的超时时间（毫秒）
+     */
+    public ConnectionLimitingDataSourcePostProcessor(int permits, long acquireTimeoutMs) {
+        this.permits = permits;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        Semaphore semaphore = new Semaphore(permits, true);
+        MethodInterceptor advice = invocation -> {
+            if (!"getConnection".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            if (!semaphore.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("数据库繁忙，等待连接超时");
+            }
+            try {
+                return limitedConnection((Connection) invocation.proceed(), semaphore);
+            } catch (Throwable e) {
+                semaphore.release();
+                throw e;
+            }
+        };
+
+        if (bean instanceof Advised advised) {
+            advised.addAdvice(advice);
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(advice);
+        return factory.getProxy();
+    }
+
+    private static Connection limitedConnection(Connection connection, Semaphore semaphore) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(ConnectionLimitingDataSourcePostProcessor.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            semaphore.release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,24 @@
+package com.coupon.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 全局库迁移配置
+ * <p>
+ * Spring Boot 自动把 Flyway 回调注册到全局库的迁移中；分片库的迁移见 {@link ShardingConfig}。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Configuration
+public class FlywayConfig {
+
+    /**
+     * 首次迁移改用Flyway之前建表的全局库时，先补齐至V1结构
+     */
+    @Bean
+    public LegacySchemaUpgrade legacySchemaUpgrade() {
+        return new LegacySchemaUpgrade("db/migration/V1__baseline_schema.sql");
+    }
+}
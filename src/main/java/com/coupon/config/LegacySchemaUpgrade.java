@@ -0,0 +1,145 @@
+package com.coupon.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 旧版数据库结构升级
+ * <p>
+ * 改用Flyway之前的数据库由Hibernate（ddl-auto）建表，首次迁移时以V1为基线，V1本身不会执行，
+ * 而旧表缺少核销记录的冗余券码与企业ID列、归档表与分区目录，V3及之后的迁移会因此失败。
+ * 本回调在迁移开始前（数据库尚无迁移记录但已有券码表，或迁移记录中有基线）补齐缺少的列并回填旧核销记录，
+ * 再执行一遍V1脚本（全部为 IF NOT EXISTS），把旧结构补成V1的结构；对已是V1结构的数据库不做任何修改。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+public class LegacySchemaUpgrade implements Callback {
+
+    private static final String BACKFILL_LOG_COLUMNS = "UPDATE verification_logs " +
+            "SET coupon_code = (SELECT c.code FROM coupons c WHERE c.id = verification_logs.coupon_id), " +
+            "company_id = (SELECT c.company_id FROM coupons c WHERE c.id = verification_logs.coupon_id) " +
+            "WHERE coupon_code IS NULL AND coupon_id IN (SELECT id FROM coupons)";
+
+    private final String baselineScript;
+
+    /**
+     * @param baselineScript V1脚本的类路径位置
+     */
+    public LegacySchemaUpgrade(String baselineScript) {
+        this.baselineScript = baselineScript;
+    }
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_MIGRATE;
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        Connection connection = context.getConnection();
+        String historyTable = context.getConfiguration().getTable();
+        try {
+            boolean legacy = tableExists(connection, historyTable)
+                    ? isBaselined(connection, historyTable)
+                    : tableExists(connection, "coupons");
+            if (!legacy || !tableExists(connection, "verification_logs")) {
+                return;
+            }
+            List<String> added = new ArrayList<>();
+            addColumnIfMissing(connection, "verification_logs", "coupon_code", "varchar(8)", added);
+            addColumnIfMissing(connection, "verification_logs", "company_id", "bigint", added);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : baselineStatements()) {
+                    statement.execute(sql);
+                }
+            }
+            if (!added.isEmpty()) {
+                // 分片库没有全局库V3那样的回填迁移，补列后在此回填旧核销记录
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(BACKFILL_LOG_COLUMNS);
+                }
+                log.info("旧版数据库结构已补齐至基线: 新增列 {}", added);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("升级旧版数据库结构失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return "legacy-schema-upgrade";
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean isBaselined(Connection connection, String historyTable) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT 1 FROM \"" + historyTable + "\" WHERE type = 'BASELINE' LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    private static void addColumnIfMissing(Connection connection, String table, String column, String type,
+                                           List<String> added) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("name"))) {
+                        return;
+                    }
+                }
+            }
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+            added.add(table + "." + column);
+        }
+    }
+
+    /**
+     * V1脚本按分号拆分为单条语句（脚本中只有建表与建索引语句，不含触发器）
+     */
+    private List<String> baselineStatements() throws IOException {
+        String script = new ClassPathResource(baselineScript).getContentAsString(StandardCharsets.UTF_8);
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : withoutComments.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
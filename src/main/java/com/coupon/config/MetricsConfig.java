@@ -0,0 +1,27 @@
+package com.coupon.config;
+
+import com.coupon.metrics.TimedJsonHttpMessageConverter;
+import com.coupon.metrics.VerificationStageMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * 指标配置
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 替换默认的JSON转换器，以记录核销响应的序列化耗时
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   VerificationStageMetrics stageMetrics) {
+        return new TimedJsonHttpMessageConverter(objectMapper, stageMetrics);
+    }
+}
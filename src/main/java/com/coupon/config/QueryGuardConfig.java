@@ -0,0 +1,65 @@
+package com.coupon.config;
+
+import com.coupon.metrics.QueryBudgetFilter;
+import com.coupon.metrics.QueryCountingDataSourcePostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL语句计数配置
+ * <p>
+ * 开启后统计每个API请求执行的SQL语句数，超出预算的请求记录告警，用于发现懒加载级联与N+1查询。
+ * 语句计数需要代理每个连接与语句，默认关闭。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "coupon.query-guard", name = "enabled", havingValue = "true")
+public class QueryGuardConfig {
+
+    /**
+     * 数据源语句计数
+     */
+    @Bean
+    public static QueryCountingDataSourcePostProcessor queryCountingDataSourcePostProcessor() {
+        return new QueryCountingDataSourcePostProcessor();
+    }
+
+    /**
+     * 请求语句预算过滤器
+     *
+     * @param budgets       各路径预算，格式: 路径=语句数,路径=语句数
+     * @param defaultBudget 未配置路径的预算
+     */
+    @Bean
+    public FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(
+            @Value("${coupon.query-guard.budgets:}") String budgets,
+            @Value("${coupon.query-guard.default-budget:10}") int defaultBudget) {
+        FilterRegistrationBean<QueryBudgetFilter> registration =
+                new FilterRegistrationBean<>(new QueryBudgetFilter(parseBudgets(budgets), defaultBudget));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private static Map<String, Integer> parseBudgets(String budgets) {
+        Map<String, Integer> result = new HashMap<>();
+        for (String entry : StringUtils.commaDelimitedListToStringArray(budgets)) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalStateException("SQL语句预算格式错误: " + entry);
+            }
+            result.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return result;
+    }
+}
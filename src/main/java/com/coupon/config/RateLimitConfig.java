@@ -0,0 +1,68 @@
+package com.coupon.config;
+
+import com.coupon.ratelimit.TokenBucketRateLimiter;
+import com.coupon.ratelimit.VerifyRateLimitFilter;
+import com.coupon.security.ClientIpResolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 核销限流配置
+ * <p>
+ * 过滤器排在 Spring Security 过滤器链之后，此时JWT已解析、操作员已知，而请求体尚未读取，
+ * 被限流的请求不做JSON解析也不访问数据库。过滤器同时注册为Bean，扫码站长连接处理器与其共用令牌桶。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "coupon.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    /**
+     * 核销限流：HTTP核销接口与扫码站长连接共用
+     *
+     * @param operatorRate  单个操作员每秒令牌数
+     * @param operatorBurst 单个操作员突发容量
+     * @param ipRate        单个客户端IP每秒令牌数
+     * @param ipBurst       单个客户端IP突发容量
+     * @param maxEntries    每类限流键最多保留的令牌桶数量
+     */
+    @Bean
+    public VerifyRateLimitFilter verifyRateLimitFilter(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            ClientIpResolver clientIpResolver,
+            @Value("${coupon.rate-limit.operator-rate:10}") int operatorRate,
+            @Value("${coupon.rate-limit.operator-burst:20}") int operatorBurst,
+            @Value("${coupon.rate-limit.ip-rate:50}") int ipRate,
+            @Value("${coupon.rate-limit.ip-burst:100}") int ipBurst,
+            @Value("${coupon.rate-limit.max-entries:100000}") int maxEntries) {
+        log.info("核销限流已启用: 操作员{}/s（突发{}），IP {}/s（突发{}），令牌桶上限{}",
+                operatorRate, operatorBurst, ipRate, ipBurst, maxEntries);
+        return new VerifyRateLimitFilter(
+                new TokenBucketRateLimiter(operatorRate, operatorBurst, maxEntries),
+                new TokenBucketRateLimiter(ipRate, ipBurst, maxEntries),
+                clientIpResolver, objectMapper, meterRegistry);
+    }
+
+    /**
+     * 过滤器只作用于核销接口
+     */
+    @Bean
+    public FilterRegistrationBean<VerifyRateLimitFilter> verifyRateLimitFilterRegistration(
+            VerifyRateLimitFilter filter) {
+        FilterRegistrationBean<VerifyRateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/coupon/verify");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
@@ -1,8 +1,11 @@
 package com.coupon.config;
 
+import com.coupon.security.JwtAccessDeniedHandler;
 import com.coupon.security.JwtAuthenticationEntryPoint;
 import com.coupon.security.JwtAuthenticationFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -20,6 +23,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Spring Security安全配置
@@ -33,8 +37,12 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+    private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${coupon.cors.allowed-origins:*}")
+    private List<String> allowedOrigins;
+
     /**
      * 密码编码器
      */
@@ -52,12 +60,12 @@ public class SecurityConfig {
     }
 
     /**
-     * CORS配置
+     * CORS配置，允许的来源由 coupon.cors.allowed-origins 配置
      */
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOriginPatterns(Arrays.asList("*"));
+        configuration.setAllowedOriginPatterns(allowedOrigins);
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
@@ -67,6 +75,16 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * JWT过滤器只在安全过滤器链中执行，不作为Servlet过滤器对所有请求重复注册
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration() {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     /**
      * 安全过滤器链
      */
@@ -75,13 +93,24 @@ public class SecurityConfig {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(AbstractHttpConfigurer::disable)
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .exceptionHandling(exception -> exception.authenticationEntryPoint(jwtAuthenticationEntryPoint))
+            .exceptionHandling(exception -> exception
+                .authenticationEntryPoint(jwtAuthenticationEntryPoint)
+                .accessDeniedHandler(jwtAccessDeniedHandler))
             .authorizeHttpRequests(auth -> auth
-                // 允许访问静态资源
-                .requestMatchers("/", "/index.html", "/favicon.ico", 
-                               "/styles/**", "/scripts/**", "/public/**").permitAll()
                 // 允许访问登录接口
                 .requestMatchers("/api/auth/login").permitAll()
+                // 前端资源允许匿名访问，仍经过安全过滤器链以带上安全响应头；
+                // 资源处理器已设置 Cache-Control，安全配置不再覆盖为 no-cache
+                .requestMatchers(WebMvcConfig.STATIC_PATHS).permitAll()
+                .requestMatchers("/", "/favicon.ico").permitAll()
+                // 扫码站长连接在握手拦截器中校验JWT
+                .requestMatchers(WebSocketConfig.SCAN_ENDPOINT).permitAll()
+                // 集群节点间接口以共享密钥认证
+                .requestMatchers("/api/cluster/**").permitAll()
+                // 允许匿名健康检查
+                .requestMatchers("/actuator/health").permitAll()
+                // 管理接口仅限管理员
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 // 其他所有请求需要认证
                 .anyRequest().authenticated()
             )
@@ -0,0 +1,86 @@
+package com.coupon.config;
+
+import com.coupon.sharding.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分片存储配置
+ * <p>
+ * 开启后券码与核销记录按企业ID分散到多个SQLite文件中，用户与企业主数据仍保存在全局库。
+ * 全局库由Spring Boot按 db/migration 迁移，各分片在创建数据源时按 db/shard-migration 迁移。
+ * 全局库与每个分片的连接池都按 spring.datasource.hikari.* 配置，分片连接池名称固定为 coupon-shard-编号。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "coupon.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    /**
+     * 分片路由数据源
+     */
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+                                             @Value("${coupon.sharding.shard-count}") int shardCount,
+                                             @Value("${coupon.sharding.url-pattern}") String urlPattern) {
+        if (shardCount < 1) {
+            throw new IllegalStateException("分片数量必须大于0");
+        }
+
+        Binder binder = Binder.get(environment);
+        HikariDataSource globalDataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        bindHikariProperties(binder, globalDataSource);
+
+        Map<Object, Object> shardDataSources = new HashMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            HikariDataSource shardDataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.getDriverClassName())
+                    .url(String.format(urlPattern, shard))
+                    .build();
+            bindHikariProperties(binder, shardDataSource);
+            shardDataSource.setPoolName("coupon-shard-" + shard);
+            Flyway.configure()
+                    .dataSource(shardDataSource)
+                    .locations("classpath:db/shard-migration")
+                    .baselineOnMigrate(true)
+                    .callbacks(new LegacySchemaUpgrade("db/shard-migration/V1__shard_schema.sql"))
+                    .load()
+                    .migrate();
+            shardDataSources.put(shard, shardDataSource);
+        }
+        log.info("分片存储已启用，分片数量: {}", shardCount);
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setDefaultTargetDataSource(globalDataSource);
+        routingDataSource.setTargetDataSources(shardDataSources);
+        return routingDataSource;
+    }
+
+    /**
+     * 自行创建的数据源不经过Spring Boot的自动配置，连接池参数需要单独绑定
+     */
+    private static void bindHikariProperties(Binder binder, HikariDataSource dataSource) {
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    }
+}
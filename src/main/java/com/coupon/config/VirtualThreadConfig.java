@@ -0,0 +1,45 @@
+package com.coupon.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 虚拟线程模式配置
+ * <p>
+ * 在 Java 21 及以上且 spring.threads.virtual.enabled 开启时生效：Tomcat 请求处理与定时任务由
+ * Spring Boot 切换到虚拟线程，本配置再以信号量限制数据库并发。
+ * sqlite-jdbc 在 synchronized 本地方法中执行SQL（包括忙等待写锁时的休眠），期间虚拟线程无法卸载、
+ * 一直占用载体线程，因此默认并发上限取连接池大小与载体线程数的较小值，
+ * 避免等待写锁的请求占满载体线程，使持有写锁的事务无法继续执行。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    /**
+     * 数据库并发限制
+     *
+     * @param maxConcurrency   并发上限，0 表示自动
+     * @param poolSize         连接池大小
+     * @param acquireTimeoutMs 等待超时时间（毫秒）
+     */
+    @Bean
+    public static ConnectionLimitingDataSourcePostProcessor connectionLimitingDataSourcePostProcessor(
+            @Value("${coupon.db.max-concurrency:0}") int maxConcurrency,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${coupon.db.acquire-timeout-ms:30000}") long acquireTimeoutMs) {
+        int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                Runtime.getRuntime().availableProcessors());
+        int permits = maxConcurrency > 0 ? maxConcurrency : Math.min(poolSize, carriers);
+        log.info("虚拟线程模式已启用，数据库并发上限: {}（连接池{}，载体线程{}）", permits, poolSize, carriers);
+        return new ConnectionLimitingDataSourcePostProcessor(permits, acquireTimeoutMs);
+    }
+}
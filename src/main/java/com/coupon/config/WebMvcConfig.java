@@ -0,0 +1,52 @@
+package com.coupon.config;
+
+import com.coupon.assets.StaticAssetHandler;
+import com.coupon.metrics.EndpointEventInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Web MVC配置
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    /**
+     * 由 StaticAssetHandler 提供的前端资源路径，同时在安全配置中允许匿名访问
+     */
+    public static final String[] STATIC_PATHS = {"/index.html", "/scripts/**", "/styles/**"};
+
+    private final EndpointEventInterceptor endpointEventInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(endpointEventInterceptor).addPathPatterns("/api/**");
+    }
+
+    /**
+     * 前端资源映射，优先于默认的静态资源处理器
+     */
+    @Bean
+    public SimpleUrlHandlerMapping staticAssetHandlerMapping(StaticAssetHandler staticAssetHandler) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping();
+        mapping.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        Map<String, Object> urlMap = new LinkedHashMap<>();
+        for (String path : STATIC_PATHS) {
+            urlMap.put(path, staticAssetHandler);
+        }
+        mapping.setUrlMap(urlMap);
+        return mapping;
+    }
+}
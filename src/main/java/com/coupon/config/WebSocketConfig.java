@@ -0,0 +1,62 @@
+package com.coupon.config;
+
+import com.coupon.websocket.JwtHandshakeInterceptor;
+import com.coupon.websocket.ScanWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.util.List;
+
+/**
+ * 扫码站长连接配置
+ * <p>
+ * 固定扫码站通过 {@code /ws/scan} 建立一次认证的长连接，核销消息只是一个小文本帧，
+ * 省去每次扫码的HTTP请求头、令牌校验与安全过滤器链。握手只接受 coupon.cors.allowed-origins 中的来源。
+ * 非Web方式启动（如基准测试）时不注册。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    /**
+     * 扫码站连接路径
+     */
+    public static final String SCAN_ENDPOINT = "/ws/scan";
+
+    private final ScanWebSocketHandler scanWebSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Value("${coupon.cors.allowed-origins:*}")
+    private List<String> allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(scanWebSocketHandler, SCAN_ENDPOINT)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOriginPatterns(allowedOrigins.toArray(new String[0]));
+    }
+
+    /**
+     * 单条消息大小上限：核销消息只有几十字节，拒绝异常大的帧
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${coupon.websocket.max-message-bytes:1024}") int maxMessageBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        return container;
+    }
+}
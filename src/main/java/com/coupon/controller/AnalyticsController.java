@@ -0,0 +1,79 @@
+package com.coupon.controller;
+
+import com.coupon.cluster.ClusterRouter;
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.VerificationAnalytics;
+import com.coupon.service.AnalyticsSnapshotService;
+import com.coupon.service.VerificationAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 核销分析控制器（仅管理员）
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final VerificationAnalyticsService verificationAnalyticsService;
+    private final AnalyticsSnapshotService analyticsSnapshotService;
+    private final ClusterRouter clusterRouter;
+
+    /**
+     * 查询核销分析报表
+     *
+     * @param from      起始日期（yyyy-MM-dd，含）
+     * @param to        结束日期（yyyy-MM-dd，含）
+     * @param companyId 企业ID
+     * @param limit     操作员排行条数
+     * @return 分析报表
+     */
+    @GetMapping
+    public ApiResponse<VerificationAnalytics> analyze(@RequestParam String from,
+                                                      @RequestParam String to,
+                                                      @RequestParam(required = false) Long companyId,
+                                                      @RequestParam(defaultValue = "10") int limit) {
+        try {
+            clusterRouter.requireSingleNode("核销分析");
+            return ApiResponse.success(verificationAnalyticsService.analyze(
+                    LocalDate.parse(from), LocalDate.parse(to), companyId, limit));
+        } catch (UnsupportedOperationException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("查询核销分析失败: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 重新导出日期范围内的每日快照（补导历史数据）
+     *
+     * @param from 起始日期（yyyy-MM-dd，含）
+     * @param to   结束日期（yyyy-MM-dd，含）
+     * @return 导出的记录数
+     */
+    @PostMapping("/snapshots")
+    public ApiResponse<Map<String, Object>> exportSnapshots(@RequestParam String from, @RequestParam String to) {
+        try {
+            clusterRouter.requireSingleNode("核销分析快照导出");
+            Map<String, Object> result = new HashMap<>();
+            result.put("records", analyticsSnapshotService.exportRange(LocalDate.parse(from), LocalDate.parse(to)));
+            return ApiResponse.success("快照已导出", result);
+        } catch (UnsupportedOperationException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("导出核销分析快照失败: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.coupon.controller;
+
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.protocol.BinaryVerifyProtocol;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponNotFoundException;
+import com.coupon.service.CouponOutOfValidityException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * 二进制协议核销的请求解析与响应编码
+ * <p>
+ * 扫码枪接口与集群节点间转发接口共用：读取请求、执行核销、把结果与异常映射为 {@link BinaryVerifyProtocol} 状态。
+ * 请求过多时返回 429 与 Retry-After，请求格式错误时返回 400。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+final class BinaryVerifyExchange {
+
+    private BinaryVerifyExchange() {
+    }
+
+    /**
+     * 处理一次二进制核销
+     *
+     * @param httpRequest  HTTP请求
+     * @param httpResponse HTTP响应
+     * @param verifier     核销操作
+     */
+    static void handle(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+                       Function<CouponVerifyRequest, CouponVerifyResponse> verifier) throws IOException {
+        byte[] buffer = new byte[BinaryVerifyProtocol.MAX_RESPONSE_LENGTH];
+        int length;
+        try {
+            CouponVerifyRequest request = BinaryVerifyProtocol.readRequest(httpRequest.getInputStream());
+            CouponVerifyResponse response = verifier.apply(request);
+            length = BinaryVerifyProtocol.encodeResponse(buffer,
+                    response.isDuplicate() ? BinaryVerifyProtocol.DUPLICATE : BinaryVerifyProtocol.SUCCESS,
+                    response.getVerificationTime(), request.getCompanyId());
+        } catch (IllegalArgumentException e) {
+            httpResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+            length = BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.INVALID, 0L, 0L);
+        } catch (CouponNotFoundException e) {
+            length = BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.NOT_FOUND, 0L, 0L);
+        } catch (CouponAlreadyUsedException e) {
+            length = e.getUsedAt() != null
+                    ? BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.ALREADY_USED, e.getUsedAt(), 0L)
+                    : BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.ALREADY_USED, 0L, 0L);
+        } catch (CouponOutOfValidityException e) {
+            length = BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.OUT_OF_VALIDITY,
+                    e.getBoundary(), 0L);
+        } catch (TenantBulkheadRejectedException e) {
+            httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            length = BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.THROTTLED,
+                    e.getRetryAfterSeconds(), 0L);
+        } catch (Exception e) {
+            log.error("券码核销失败: {}", e.getMessage());
+            length = BinaryVerifyProtocol.encodeResponse(buffer, BinaryVerifyProtocol.ERROR, 0L, 0L);
+        }
+        httpResponse.setContentType(BinaryVerifyProtocol.MEDIA_TYPE);
+        httpResponse.setContentLength(length);
+        httpResponse.getOutputStream().write(buffer, 0, length);
+    }
+}
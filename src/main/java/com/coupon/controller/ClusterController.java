@@ -0,0 +1,62 @@
+package com.coupon.controller;
+
+import com.coupon.cluster.ClusterRouter;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.idempotency.IdempotencyCache;
+import com.coupon.protocol.BinaryVerifyProtocol;
+import com.coupon.security.ClientIpResolver;
+import com.coupon.service.CouponVerificationService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 集群节点间接口
+ * <p>
+ * 只接受携带集群共享密钥的请求，操作员与客户端IP由转发节点在集群专用请求头中给出，
+ * 多次券的剩余使用次数以响应头返回。
+ * 客户端IP不取 X-Forwarded-For（转发节点不在可信代理之列，该头会被忽略），缺少集群请求头时退回连接的远端地址。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/cluster")
+@RequiredArgsConstructor
+public class ClusterController {
+
+    private final ClusterRouter clusterRouter;
+    private final CouponVerificationService couponVerificationService;
+    private final ClientIpResolver clientIpResolver;
+
+    /**
+     * 核销转发来的、归当前节点所有的券码，协议见 {@link BinaryVerifyProtocol}
+     *
+     * @param httpRequest  HTTP请求
+     * @param httpResponse HTTP响应
+     */
+    @PostMapping(value = "/verify", consumes = BinaryVerifyProtocol.MEDIA_TYPE, produces = BinaryVerifyProtocol.MEDIA_TYPE)
+    public void verifyForwarded(HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws IOException {
+        String operator = httpRequest.getHeader(ClusterRouter.OPERATOR_HEADER);
+        if (!clusterRouter.isTrusted(httpRequest.getHeader(ClusterRouter.TOKEN_HEADER)) || operator == null) {
+            httpResponse.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        String clientIp = httpRequest.getHeader(ClusterRouter.CLIENT_IP_HEADER);
+        String ipAddress = clientIp != null ? clientIp : clientIpResolver.resolve(httpRequest);
+        BinaryVerifyExchange.handle(httpRequest, httpResponse, request -> {
+            CouponVerifyResponse response = couponVerificationService.verifyOwned(
+                    request, operator, ipAddress, httpRequest.getHeader(IdempotencyCache.HEADER));
+            if (response.getRemainingUses() != null) {
+                httpResponse.setHeader(ClusterRouter.REMAINING_USES_HEADER, response.getRemainingUses().toString());
+            }
+            return response;
+        });
+    }
+}
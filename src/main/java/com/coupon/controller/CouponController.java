@@ -1,19 +1,42 @@
 package com.coupon.controller;
 
+import com.coupon.bulkhead.TenantBulkhead;
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.cluster.ClusterRouter;
 import com.coupon.dto.ApiResponse;
 import com.coupon.dto.BatchAddCouponRequest;
 import com.coupon.dto.CouponVerifyRequest;
 import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.dto.OfflineSyncRequest;
+import com.coupon.dto.OfflineSyncResponse;
 import com.coupon.entity.Company;
+import com.coupon.idempotency.IdempotencyCache;
+import com.coupon.metrics.VerificationStage;
+import com.coupon.metrics.VerificationStageMetrics;
+import com.coupon.security.ClientIpResolver;
 import com.coupon.security.UserPrincipal;
+import com.coupon.offline.OfflineSnapshot;
+import com.coupon.protocol.BinaryVerifyProtocol;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponNotFoundException;
+import com.coupon.service.CouponOutOfValidityException;
 import com.coupon.service.CouponService;
+import com.coupon.service.CouponVerificationService;
+import com.coupon.service.OfflineSyncService;
+import com.coupon.sharding.ShardRouter;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +54,13 @@ import java.util.Map;
 public class CouponController {
 
     private final CouponService couponService;
+    private final ShardRouter shardRouter;
+    private final VerificationStageMetrics stageMetrics;
+    private final TenantBulkhead tenantBulkhead;
+    private final CouponVerificationService couponVerificationService;
+    private final OfflineSyncService offlineSyncService;
+    private final ClientIpResolver clientIpResolver;
+    private final ClusterRouter clusterRouter;
 
     /**
      * 获取企业列表
@@ -55,23 +85,63 @@ public class CouponController {
      * @param request        核销请求
      * @param authentication 认证信息
      * @param httpRequest    HTTP请求
+     * @param httpResponse   HTTP响应
      * @return 核销结果
      */
     @PostMapping("/verify")
     public ApiResponse<CouponVerifyResponse> verifyCoupon(@Valid @RequestBody CouponVerifyRequest request,
                                                           Authentication authentication,
-                                                          HttpServletRequest httpRequest) {
+                                                          HttpServletRequest httpRequest,
+                                                          HttpServletResponse httpResponse) {
+        long verifyStart = stageMetrics.start();
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-            String ipAddress = getClientIpAddress(httpRequest);
+            String ipAddress = clientIpResolver.resolve(httpRequest);
+            String idempotencyKey = httpRequest.getHeader(IdempotencyCache.HEADER);
             
-            CouponVerifyResponse response = couponService.verifyCoupon(
-                    request, userPrincipal.getPhone(), ipAddress);
+            CouponVerifyResponse response = couponVerificationService.verify(request, userPrincipal.getPhone(),
+                    ipAddress, idempotencyKey);
+            if (response.isDuplicate()) {
+                return ApiResponse.error(CouponVerificationService.duplicateMessage(response), response);
+            }
             
             return ApiResponse.success("核销成功", response);
+        } catch (TenantBulkheadRejectedException e) {
+            return tooManyRequests(httpResponse, e);
+        } catch (CouponNotFoundException | CouponAlreadyUsedException | CouponOutOfValidityException e) {
+            // 预期内的失败已由核销入口计数并抽样记录日志
+            return ApiResponse.error(e.getMessage());
         } catch (Exception e) {
             log.error("券码核销失败: {}", e.getMessage());
             return ApiResponse.error(e.getMessage());
+        } finally {
+            stageMetrics.record(VerificationStage.VERIFY, verifyStart);
+        }
+    }
+
+    /**
+     * 核销券码（二进制协议）
+     * <p>
+     * 请求与响应格式见 {@link BinaryVerifyProtocol}，按 Content-Type 与 Accept 协商，
+     * 核销流程与JSON接口相同，状态映射见 {@link BinaryVerifyExchange}。
+     *
+     * @param authentication 认证信息
+     * @param httpRequest    HTTP请求
+     * @param httpResponse   HTTP响应
+     */
+    @PostMapping(value = "/verify", consumes = BinaryVerifyProtocol.MEDIA_TYPE, produces = BinaryVerifyProtocol.MEDIA_TYPE)
+    public void verifyCouponBinary(Authentication authentication,
+                                   HttpServletRequest httpRequest,
+                                   HttpServletResponse httpResponse) throws IOException {
+        long verifyStart = stageMetrics.start();
+        try {
+            BinaryVerifyExchange.handle(httpRequest, httpResponse, request -> {
+                UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+                return couponVerificationService.verify(request, userPrincipal.getPhone(),
+                        clientIpResolver.resolve(httpRequest), httpRequest.getHeader(IdempotencyCache.HEADER));
+            });
+        } finally {
+            stageMetrics.record(VerificationStage.VERIFY, verifyStart);
         }
     }
 
@@ -91,8 +161,11 @@ public class CouponController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "20") int limit) {
         try {
+            clusterRouter.requireSingleNode("核销记录查询");
             Map<String, Object> records = couponService.getVerificationRecords(date, companyId, page, limit);
             return ApiResponse.success(records);
+        } catch (UnsupportedOperationException e) {
+            return ApiResponse.error(e.getMessage());
         } catch (Exception e) {
             log.error("查询核销记录失败: {}", e.getMessage());
             return ApiResponse.error("服务器错误");
@@ -102,18 +175,23 @@ public class CouponController {
     /**
      * 批量添加券码（测试用）
      *
-     * @param request 批量添加请求
+     * @param request      批量添加请求
+     * @param httpResponse HTTP响应
      * @return 生成结果
      */
     @PostMapping("/batch-add")
-    public ApiResponse<Map<String, Object>> batchAddCoupons(@Valid @RequestBody BatchAddCouponRequest request) {
+    public ApiResponse<Map<String, Object>> batchAddCoupons(@Valid @RequestBody BatchAddCouponRequest request,
+                                                            HttpServletResponse httpResponse) {
         try {
-            List<String> codes = couponService.batchAddCoupons(request);
+            List<String> codes = tenantBulkhead.execute(request.getCompanyId(),
+                    () -> shardRouter.onShard(request.getCompanyId(), () -> couponService.batchAddCoupons(request)));
             
             Map<String, Object> data = new HashMap<>();
             data.put("codes", codes);
             
             return ApiResponse.success("成功生成" + request.getCount() + "个券码", data);
+        } catch (TenantBulkheadRejectedException e) {
+            return tooManyRequests(httpResponse, e);
         } catch (Exception e) {
             log.error("批量生成券码失败: {}", e.getMessage());
             return ApiResponse.error(e.getMessage());
@@ -121,22 +199,84 @@ public class CouponController {
     }
 
     /**
-     * 获取客户端IP地址
+     * 下载离线快照：企业未使用券码的签名集合，格式见 {@link OfflineSnapshot}
      *
-     * @param request HTTP请求
-     * @return IP地址
+     * @param companyId 企业ID
+     * @return 快照字节，失败时为错误响应
      */
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedForHeader = request.getHeader("X-Forwarded-For");
-        if (xForwardedForHeader != null && !xForwardedForHeader.isEmpty() && !"unknown".equalsIgnoreCase(xForwardedForHeader)) {
-            return xForwardedForHeader.split(",")[0];
+    @GetMapping("/offline/snapshot")
+    public ResponseEntity<?> getOfflineSnapshot(@RequestParam Long companyId) {
+        try {
+            clusterRouter.requireSingleNode("离线快照");
+            byte[] snapshot = shardRouter.onShard(companyId, () -> offlineSyncService.snapshot(companyId));
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(OfflineSnapshot.MEDIA_TYPE))
+                    .body(snapshot);
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("生成离线快照失败: {}", e.getMessage());
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
         }
+    }
 
-        String xRealIpHeader = request.getHeader("X-Real-IP");
-        if (xRealIpHeader != null && !xRealIpHeader.isEmpty() && !"unknown".equalsIgnoreCase(xRealIpHeader)) {
-            return xRealIpHeader;
+    /**
+     * 获取离线快照签名公钥
+     *
+     * @return 算法与X.509编码公钥（Base64）
+     */
+    @GetMapping("/offline/public-key")
+    public ApiResponse<Map<String, Object>> getOfflinePublicKey() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("algorithm", OfflineSnapshot.SIGNATURE_ALGORITHM);
+        data.put("publicKey", offlineSyncService.publicKey());
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * 同步离线核销记录
+     *
+     * @param request        同步请求
+     * @param authentication 认证信息
+     * @param httpRequest    HTTP请求
+     * @param httpResponse   HTTP响应
+     * @return 生效数与冲突列表
+     */
+    @PostMapping("/offline/sync")
+    public ApiResponse<OfflineSyncResponse> syncOfflineRedemptions(@Valid @RequestBody OfflineSyncRequest request,
+                                                                   Authentication authentication,
+                                                                   HttpServletRequest httpRequest,
+                                                                   HttpServletResponse httpResponse) {
+        try {
+            clusterRouter.requireSingleNode("离线核销同步");
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            String ipAddress = clientIpResolver.resolve(httpRequest);
+            OfflineSyncResponse response = tenantBulkhead.execute(request.getCompanyId(),
+                    () -> shardRouter.onShard(request.getCompanyId(),
+                            () -> offlineSyncService.sync(request, userPrincipal.getPhone(), ipAddress)));
+            
+            return ApiResponse.success("同步完成，生效" + response.getApplied() + "条，冲突"
+                    + response.getConflicts().size() + "条", response);
+        } catch (TenantBulkheadRejectedException e) {
+            return tooManyRequests(httpResponse, e);
+        } catch (UnsupportedOperationException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("离线核销同步失败: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
         }
+    }
 
-        return request.getRemoteAddr();
+    /**
+     * 企业配额已满：返回 429 与建议重试时间
+     *
+     * @param httpResponse HTTP响应
+     * @param e            拒绝异常
+     * @return 错误响应
+     */
+    private <T> ApiResponse<T> tooManyRequests(HttpServletResponse httpResponse, TenantBulkheadRejectedException e) {
+        httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        httpResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return ApiResponse.error(e.getMessage());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.coupon.controller;
+
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.JfrRecordingSummary;
+import com.coupon.service.JfrRecordingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JFR录制控制器（仅管理员）
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/jfr")
+@RequiredArgsConstructor
+public class JfrController {
+
+    private final JfrRecordingService jfrRecordingService;
+
+    /**
+     * 启动录制
+     *
+     * @return 录制ID
+     */
+    @PostMapping("/start")
+    public ApiResponse<Map<String, Object>> start() {
+        try {
+            Map<String, Object> result = new HashMap<>();
+            result.put("id", jfrRecordingService.start());
+            return ApiResponse.success("录制已启动", result);
+        } catch (Exception e) {
+            log.error("启动JFR录制失败: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 停止录制并返回各接口的分配与锁竞争摘要
+     *
+     * @return 录制摘要
+     */
+    @PostMapping("/stop")
+    public ApiResponse<JfrRecordingSummary> stop() {
+        try {
+            return ApiResponse.success("录制已停止", jfrRecordingService.stop());
+        } catch (Exception e) {
+            log.error("停止JFR录制失败: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 下载原始 .jfr 文件
+     *
+     * @param id 录制ID
+     * @return 录制文件
+     */
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+        try {
+            Path file = jfrRecordingService.getRecordingFile(id);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                    .body(new FileSystemResource(file));
+        } catch (Exception e) {
+            log.error("下载JFR录制失败: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.coupon.controller;
+
+import com.coupon.bulkhead.TenantBulkhead;
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.StageLatencySummary;
+import com.coupon.dto.TenantBulkheadStats;
+import com.coupon.metrics.VerificationStageMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 指标控制器
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final VerificationStageMetrics stageMetrics;
+    private final TenantBulkhead tenantBulkhead;
+
+    /**
+     * 获取核销链路各阶段耗时分布
+     *
+     * @return 各阶段耗时统计（微秒）
+     */
+    @GetMapping("/verification-stages")
+    public ApiResponse<List<StageLatencySummary>> getVerificationStages() {
+        return ApiResponse.success(stageMetrics.snapshot());
+    }
+
+    /**
+     * 获取各企业隔离舱的并发、排队与拒绝情况
+     *
+     * @return 各企业统计
+     */
+    @GetMapping("/bulkheads")
+    public ApiResponse<List<TenantBulkheadStats>> getBulkheads() {
+        return ApiResponse.success(tenantBulkhead.snapshot());
+    }
+}
@@ -7,6 +7,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.time.LocalDateTime;
+
 /**
  * 批量添加券码请求DTO
  * 
@@ -30,4 +32,32 @@ public class BatchAddCouponRequest {
     @Min(value = 1, message = "生成数量最少为1")
     @Max(value = 100, message = "生成数量最多为100")
     private Integer count = 10;
+
+    /**
+     * 生效时间，为空表示生成即生效
+     */
+    private LocalDateTime validFrom;
+
+    /**
+     * 失效时间，为空时按企业默认有效天数计算
+     */
+    private LocalDateTime validUntil;
+
+    /**
+     * 每个券码的使用次数上限，默认1（单次券）
+     */
+    @NotNull(message = "使用次数上限不能为空")
+    @Min(value = 1, message = "使用次数上限最少为1")
+    private Integer usageLimit = 1;
+
+    /**
+     * 每个操作员的使用次数上限，为空表示不限
+     */
+    @Min(value = 1, message = "操作员使用次数上限最少为1")
+    private Integer perOperatorLimit;
+
+    public BatchAddCouponRequest(Long companyId, Integer count) {
+        this.companyId = companyId;
+        this.count = count;
+    }
 } 
\ No newline at end of file
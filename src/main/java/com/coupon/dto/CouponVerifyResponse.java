@@ -1,5 +1,6 @@
 package com.coupon.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -31,4 +32,19 @@ public class CouponVerifyResponse {
      * 核销时间
      */
     private LocalDateTime verificationTime;
+
+    /**
+     * 是否为合并到同时提交的相同请求的重复扫码，此时核销时间为首个请求的核销时间
+     */
+    private boolean duplicate;
+
+    /**
+     * 多次券核销后的剩余使用次数，重复扫码时为首个请求核销后的剩余次数，单次券与幂等回放时为空
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer remainingUses;
+
+    public CouponVerifyResponse(String code, String company, LocalDateTime verificationTime, boolean duplicate) {
+        this(code, company, verificationTime, duplicate, null);
+    }
 } 
\ No newline at end of file
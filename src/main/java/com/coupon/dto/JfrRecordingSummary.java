@@ -0,0 +1,109 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * JFR录制摘要DTO
+ * <p>
+ * 按接口汇总录制期间的请求数、采样估算的分配量、主要分配位置、竞争最多的锁与虚拟线程固定位置。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JfrRecordingSummary {
+
+    /**
+     * 录制ID，用于下载原始 .jfr 文件
+     */
+    private String id;
+
+    /**
+     * 录制时长（毫秒）
+     */
+    private long durationMs;
+
+    /**
+     * .jfr 文件大小（字节）
+     */
+    private long fileSize;
+
+    /**
+     * 各接口统计，按分配量降序
+     */
+    private List<EndpointProfile> endpoints;
+
+    /**
+     * 接口统计
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EndpointProfile {
+
+        /**
+         * 控制器方法
+         */
+        private String endpoint;
+
+        /**
+         * 请求数
+         */
+        private long requests;
+
+        /**
+         * 分配字节数（采样估算）
+         */
+        private long allocatedBytes;
+
+        /**
+         * 每请求分配字节数
+         */
+        private long allocatedBytesPerRequest;
+
+        /**
+         * 主要分配位置，值为分配字节数
+         */
+        private List<Hotspot> allocationSites;
+
+        /**
+         * 竞争最多的锁，值为等待毫秒数
+         */
+        private List<Hotspot> contendedLocks;
+
+        /**
+         * 虚拟线程固定在载体线程上阻塞的位置，值为阻塞毫秒数
+         */
+        private List<Hotspot> pinnedSites;
+    }
+
+    /**
+     * 热点
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Hotspot {
+
+        /**
+         * 位置描述：类型 @ 栈顶方法
+         */
+        private String site;
+
+        /**
+         * 事件数
+         */
+        private long count;
+
+        /**
+         * 累计值
+         */
+        private long value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 离线核销记录DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineRedemption {
+
+    /**
+     * 券码
+     */
+    private String code;
+
+    /**
+     * 扫码站本地核销时间
+     */
+    private LocalDateTime redeemedAt;
+}
@@ -0,0 +1,60 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 离线核销冲突DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineSyncConflict {
+
+    /**
+     * 冲突原因
+     */
+    public enum Reason {
+        /** 券码不存在或企业不匹配，未生效 */
+        NOT_FOUND,
+        /** 券码已被更早的核销使用，未生效 */
+        ALREADY_USED,
+        /** 本条更早，已生效，原有的较晚核销被取代 */
+        SUPERSEDED,
+        /** 离线核销时间不在券码有效期内，或券码已过期归档，未生效 */
+        OUT_OF_VALIDITY,
+        /** 券码格式错误、缺少时间或时间晚于服务器当前时间，未生效 */
+        INVALID
+    }
+
+    /**
+     * 券码
+     */
+    private String code;
+
+    /**
+     * 本条记录的离线核销时间
+     */
+    private LocalDateTime redeemedAt;
+
+    /**
+     * 冲突原因
+     */
+    private Reason reason;
+
+    /**
+     * 另一方核销时间：ALREADY_USED 为生效的更早核销，SUPERSEDED 为被取代的较晚核销
+     */
+    private LocalDateTime usedAt;
+
+    /**
+     * 另一方操作员手机号，含义同 usedAt
+     */
+    private String usedBy;
+}
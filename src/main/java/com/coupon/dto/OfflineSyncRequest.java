@@ -0,0 +1,33 @@
+package com.coupon.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 离线核销同步请求DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineSyncRequest {
+
+    /**
+     * 企业ID
+     */
+    @NotNull(message = "企业不能为空")
+    private Long companyId;
+
+    /**
+     * 断网期间的核销记录，单条格式错误只记为冲突，不影响其他记录
+     */
+    @NotEmpty(message = "核销记录不能为空")
+    private List<OfflineRedemption> redemptions;
+}
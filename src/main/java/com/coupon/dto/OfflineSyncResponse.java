@@ -0,0 +1,29 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 离线核销同步响应DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineSyncResponse {
+
+    /**
+     * 生效的核销数（含取代较晚核销的记录）
+     */
+    private int applied;
+
+    /**
+     * 冲突列表，按核销时间排序
+     */
+    private List<OfflineSyncConflict> conflicts;
+}
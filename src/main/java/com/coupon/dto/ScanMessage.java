@@ -0,0 +1,37 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 扫码站长连接核销消息DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanMessage {
+
+    /**
+     * 关联ID，原样返回，用于匹配乱序到达的结果
+     */
+    private String id;
+
+    /**
+     * 券码
+     */
+    private String code;
+
+    /**
+     * 企业ID
+     */
+    private Long companyId;
+
+    /**
+     * 幂等键，可为空
+     */
+    private String idempotencyKey;
+}
@@ -0,0 +1,44 @@
+package com.coupon.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 扫码站长连接核销结果DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScanResult {
+
+    /**
+     * 对应消息的关联ID
+     */
+    private String id;
+
+    /**
+     * 是否核销成功
+     */
+    private boolean success;
+
+    /**
+     * 提示信息
+     */
+    private String message;
+
+    /**
+     * 核销结果
+     */
+    private CouponVerifyResponse data;
+
+    /**
+     * 企业配额已满或核销被限流时的建议重试秒数
+     */
+    private Long retryAfter;
+}
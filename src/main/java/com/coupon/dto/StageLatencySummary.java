@@ -0,0 +1,59 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 核销阶段耗时统计DTO
+ * <p>
+ * 自服务启动以来的累计分布，耗时单位均为微秒。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StageLatencySummary {
+
+    /**
+     * 阶段名称
+     */
+    private String stage;
+
+    /**
+     * 样本数
+     */
+    private long count;
+
+    /**
+     * 平均耗时
+     */
+    private double mean;
+
+    /**
+     * 中位数
+     */
+    private double p50;
+
+    /**
+     * 90分位
+     */
+    private double p90;
+
+    /**
+     * 99分位
+     */
+    private double p99;
+
+    /**
+     * 99.9分位
+     */
+    private double p999;
+
+    /**
+     * 最大耗时
+     */
+    private double max;
+}
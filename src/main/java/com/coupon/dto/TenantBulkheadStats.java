@@ -0,0 +1,72 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 企业隔离舱统计DTO
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantBulkheadStats {
+
+    /**
+     * 企业ID
+     */
+    private Long companyId;
+
+    /**
+     * 权重
+     */
+    private int weight;
+
+    /**
+     * 并发上限
+     */
+    private int concurrencyLimit;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity;
+
+    /**
+     * 执行中的请求数
+     */
+    private int active;
+
+    /**
+     * 排队中的请求数
+     */
+    private int queued;
+
+    /**
+     * 累计放行请求数
+     */
+    private long admitted;
+
+    /**
+     * 累计拒绝请求数（队列满或排队超时）
+     */
+    private long rejected;
+
+    /**
+     * 平均执行耗时（毫秒）
+     */
+    private double avgServiceMs;
+
+    /**
+     * 排队请求的平均等待时间（毫秒）
+     */
+    private double avgWaitMs;
+
+    /**
+     * 近期最长排队等待时间（毫秒）
+     */
+    private double maxWaitMs;
+}
@@ -0,0 +1,134 @@
+package com.coupon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 核销分析报表DTO
+ * <p>
+ * 由每日列式快照计算，不包含当天及尚未导出日期的核销。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificationAnalytics {
+
+    /**
+     * 起始日期（含）
+     */
+    private LocalDate from;
+
+    /**
+     * 结束日期（含）
+     */
+    private LocalDate to;
+
+    /**
+     * 企业ID筛选，为空表示全部企业
+     */
+    private Long companyId;
+
+    /**
+     * 核销总数
+     */
+    private long total;
+
+    /**
+     * 每日核销数与累计核销数（核销曲线）
+     */
+    private List<DailyCount> daily;
+
+    /**
+     * 按星期与小时统计的核销数，第一维为星期一至星期日，第二维为0至23时
+     */
+    private long[][] heatmap;
+
+    /**
+     * 各企业核销数，按核销数降序
+     */
+    private List<CompanyCount> companies;
+
+    /**
+     * 核销数最多的操作员，按核销数降序
+     */
+    private List<OperatorCount> operators;
+
+    /**
+     * 没有快照文件的日期，这些日期未计入统计
+     */
+    private List<LocalDate> missingDays;
+
+    /**
+     * 单日核销数
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DailyCount {
+
+        /**
+         * 日期
+         */
+        private LocalDate day;
+
+        /**
+         * 当日核销数
+         */
+        private long count;
+
+        /**
+         * 截至当日的累计核销数
+         */
+        private long cumulative;
+    }
+
+    /**
+     * 企业核销数
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CompanyCount {
+
+        /**
+         * 企业ID
+         */
+        private Long companyId;
+
+        /**
+         * 企业名称，企业已删除时为空
+         */
+        private String companyName;
+
+        /**
+         * 核销数
+         */
+        private long count;
+    }
+
+    /**
+     * 操作员核销数
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OperatorCount {
+
+        /**
+         * 操作员手机号
+         */
+        private String userPhone;
+
+        /**
+         * 核销数
+         */
+        private long count;
+    }
+}
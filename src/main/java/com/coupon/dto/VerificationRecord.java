@@ -0,0 +1,56 @@
+package com.coupon.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 核销记录行DTO
+ * <p>
+ * 与存储位置无关的核销记录，可来自热表、月分区表或压缩归档文件。
+ * 
+ * @author System
+ * @version 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificationRecord {
+
+    /**
+     * 记录ID
+     */
+    private Long id;
+
+    /**
+     * 券码ID
+     */
+    private Long couponId;
+
+    /**
+     * 券码
+     */
+    private String couponCode;
+
+    /**
+     * 企业ID
+     */
+    private Long companyId;
+
+    /**
+     * 操作员手机号
+     */
+    private String userPhone;
+
+    /**
+     * IP地址
+     */
+    private String ipAddress;
+
+    /**
+     * 核销时间
+     */
+    private LocalDateTime verificationTime;
+}
@@ -0,0 +1,74 @@
+package com.coupon.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 归档券码实体类
+ * <p>
+ * 已核销的券码由分层任务、过期未使用的券码由过期清理任务从热表移入此表，仅用于回答"券码已被使用"或"券码已过期"的查询。
+ * 
+ * @author System
+ * @version 1.0.0
+ */
+@Entity
+@Table(name = "coupons_archive", indexes = {
+        @Index(name = "idx_coupons_archive_code", columnList = "code")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedCoupon {
+
+    /**
+     * 主键ID（沿用热表中的ID）
+     */
+    @Id
+    private Long id;
+
+    /**
+     * 券码
+     */
+    @Column(name = "code", nullable = false, length = 8)
+    private String code;
+
+    /**
+     * 企业ID
+     */
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    /**
+     * 使用时间
+     */
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+
+    /**
+     * 使用者手机号
+     */
+    @Column(name = "used_by", length = 11)
+    private String usedBy;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 归档时间
+     */
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    /**
+     * 过期时间，仅过期清理移入的券码有值
+     */
+    @Column(name = "expired_at")
+    private LocalDateTime expiredAt;
+}
@@ -1,8 +1,11 @@
 package com.coupon.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -43,6 +46,12 @@ public class Company {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    /**
+     * 批量生成券码的默认有效天数，为空时使用全局默认值
+     */
+    @Column(name = "coupon_valid_days")
+    private Integer couponValidDays;
+
     /**
      * 创建时间
      */
@@ -53,6 +62,9 @@ public class Company {
     /**
      * 关联的券码列表
      */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
     @OneToMany(mappedBy = "company", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Coupon> coupons;
 } 
\ No newline at end of file
@@ -1,17 +1,24 @@
 package com.coupon.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 /**
  * 券码实体类
+ * <p>
+ * 有效期截止时间所在的时间桶（{@link #EXPIRY_BUCKET_SECONDS} 秒一桶）在保存时计算，已使用或不限期的券码不入桶，
+ * 过期清理据此逐桶处理而不扫描整表。
  * 
  * @author System
  * @version 1.0.0
@@ -24,6 +31,11 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class Coupon {
 
+    /**
+     * 过期时间桶的跨度（秒）
+     */
+    public static final long EXPIRY_BUCKET_SECONDS = 3600;
+
     /**
      * 主键ID
      */
@@ -40,28 +52,66 @@ public class Coupon {
     /**
      * 关联的企业
      */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "company_id", nullable = false)
     private Company company;
 
     /**
-     * 是否已使用
+     * 是否已使用（多次券为使用次数已达上限）
      */
     @Column(name = "is_used", nullable = false)
     private Boolean isUsed = false;
 
     /**
-     * 使用时间
+     * 使用次数上限，1为单次券
+     */
+    @Column(name = "usage_limit", nullable = false)
+    private Integer usageLimit = 1;
+
+    /**
+     * 已使用次数
+     */
+    @Column(name = "use_count", nullable = false)
+    private Integer useCount = 0;
+
+    /**
+     * 每个操作员的使用次数上限，为空表示不限
+     */
+    @Column(name = "per_operator_limit")
+    private Integer perOperatorLimit;
+
+    /**
+     * 使用时间（多次券为用完的那一次）
      */
     @Column(name = "used_at")
     private LocalDateTime usedAt;
 
     /**
-     * 使用者手机号
+     * 使用者手机号（多次券为用完的那一次）
      */
     @Column(name = "used_by", length = 11)
     private String usedBy;
 
+    /**
+     * 生效时间，为空表示创建即生效
+     */
+    @Column(name = "valid_from")
+    private LocalDateTime validFrom;
+
+    /**
+     * 失效时间（不含），为空表示不限期
+     */
+    @Column(name = "valid_until")
+    private LocalDateTime validUntil;
+
+    /**
+     * 失效时间所在的时间桶，已使用或不限期时为空
+     */
+    @Column(name = "expiry_bucket")
+    private Long expiryBucket;
+
     /**
      * 创建时间
      */
@@ -72,6 +122,36 @@ public class Coupon {
     /**
      * 核销记录列表
      */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
     @OneToMany(mappedBy = "coupon", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<VerificationLog> verificationLogs;
-} 
\ No newline at end of file
+
+    /**
+     * 判断给定时间是否在有效期内
+     *
+     * @param time 时间
+     * @return 是否有效
+     */
+    public boolean isValidAt(LocalDateTime time) {
+        return (validFrom == null || !time.isBefore(validFrom))
+                && (validUntil == null || time.isBefore(validUntil));
+    }
+
+    /**
+     * 计算时间所在的过期时间桶
+     *
+     * @param time 时间
+     * @return 时间桶编号
+     */
+    public static long expiryBucketOf(LocalDateTime time) {
+        return Math.floorDiv(time.atZone(ZoneId.systemDefault()).toEpochSecond(), EXPIRY_BUCKET_SECONDS);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateExpiryBucket() {
+        expiryBucket = Boolean.TRUE.equals(isUsed) || validUntil == null ? null : expiryBucketOf(validUntil);
+    }
+}
@@ -2,7 +2,9 @@ package com.coupon.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -16,7 +18,11 @@ import java.time.LocalDateTime;
  * @version 1.0.0
  */
 @Entity
-@Table(name = "verification_logs")
+@Table(name = "verification_logs", indexes = {
+        @Index(name = "idx_verification_logs_time", columnList = "verification_time"),
+        @Index(name = "idx_verification_logs_company_time", columnList = "company_id, verification_time"),
+        @Index(name = "idx_verification_logs_idempotency", columnList = "user_phone, idempotency_key", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,10 +39,24 @@ public class VerificationLog {
     /**
      * 关联的券码
      */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "coupon_id", nullable = false)
     private Coupon coupon;
 
+    /**
+     * 券码（冗余存储，券码归档后记录仍可独立查询）
+     */
+    @Column(name = "coupon_code", length = 8)
+    private String couponCode;
+
+    /**
+     * 企业ID（冗余存储）
+     */
+    @Column(name = "company_id")
+    private Long companyId;
+
     /**
      * 操作员手机号
      */
@@ -55,4 +75,10 @@ public class VerificationLog {
      */
     @Column(name = "ip_address", length = 45)
     private String ipAddress;
-} 
\ No newline at end of file
+
+    /**
+     * 客户端提交的幂等键，重试时据此回放首次核销结果
+     */
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+}
@@ -0,0 +1,148 @@
+package com.coupon.idempotency;
+
+import com.coupon.dto.CouponVerifyResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 核销幂等结果缓存
+ * <p>
+ * 按操作员手机号与 Idempotency-Key 保存成功核销的响应，客户端超时重试时直接回放，不再访问数据库。
+ * 条目按写入顺序排列：超过存活时间的条目从头部清理，超过容量时淘汰最早写入的条目。
+ * 同一幂等键用于其他券码或企业时拒绝，避免客户端错误复用幂等键时回放不相关的结果。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+public class IdempotencyCache {
+
+    /**
+     * 幂等键请求头
+     */
+    public static final String HEADER = "Idempotency-Key";
+
+    /**
+     * 幂等键最大长度，与 verification_logs.idempotency_key 列一致
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    @Value("${coupon.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${coupon.idempotency.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private final Lock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final Counter cacheReplayed;
+    private final Counter logReplayed;
+
+    public IdempotencyCache(MeterRegistry meterRegistry) {
+        this.cacheReplayed = replayedCounter(meterRegistry, "cache");
+        this.logReplayed = replayedCounter(meterRegistry, "log");
+        Gauge.builder("coupon.idempotency.entries", this, IdempotencyCache::size)
+                .description("幂等结果缓存条目数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找可回放的核销结果
+     *
+     * @param userPhone      操作员手机号
+     * @param idempotencyKey 幂等键
+     * @param companyId      企业ID
+     * @param code           券码
+     * @return 首次核销的响应，未命中时返回null
+     * @throws RuntimeException 幂等键已用于其他券码
+     */
+    public CouponVerifyResponse lookup(String userPhone, String idempotencyKey, Long companyId, String code) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key(userPhone, idempotencyKey));
+            if (entry == null || entry.expiresAt - now <= 0) {
+                return null;
+            }
+            if (!entry.companyId.equals(companyId) || !entry.response.getCode().equals(code)) {
+                throw new RuntimeException("幂等键已用于其他券码的核销");
+            }
+            cacheReplayed.increment();
+            return entry.response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 保存成功核销的响应
+     *
+     * @param userPhone      操作员手机号
+     * @param idempotencyKey 幂等键
+     * @param companyId      企业ID
+     * @param response       核销响应
+     */
+    public void put(String userPhone, String idempotencyKey, Long companyId, CouponVerifyResponse response) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext() && (iterator.next().expiresAt - now <= 0 || entries.size() >= maxEntries)) {
+                iterator.remove();
+            }
+            String key = key(userPhone, idempotencyKey);
+            entries.remove(key);
+            entries.put(key, new Entry(companyId, response, now + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次从核销记录回放的结果（缓存已淘汰或应用重启后的重试）
+     */
+    public void recordLogReplay() {
+        logReplayed.increment();
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(String userPhone, String idempotencyKey) {
+        return userPhone + '\n' + idempotencyKey;
+    }
+
+    private static Counter replayedCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("coupon.idempotency.replayed")
+                .description("按幂等键回放的核销请求数")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private static final class Entry {
+        private final Long companyId;
+        private final CouponVerifyResponse response;
+        private final long expiresAt;
+
+        private Entry(Long companyId, CouponVerifyResponse response, long expiresAt) {
+            this.companyId = companyId;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
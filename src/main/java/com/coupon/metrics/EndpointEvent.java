@@ -0,0 +1,30 @@
+package com.coupon.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * API请求JFR事件
+ * <p>
+ * 覆盖一次请求在控制器方法中的处理区间，用于把同一线程上的分配采样与锁竞争事件归属到接口。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Name(EndpointEvent.NAME)
+@Label("API请求")
+@Category("Coupon")
+@StackTrace(false)
+public class EndpointEvent extends Event {
+
+    public static final String NAME = "com.coupon.Endpoint";
+
+    /**
+     * 控制器方法，如 CouponController.verifyCoupon
+     */
+    @Label("接口")
+    public String endpoint;
+}
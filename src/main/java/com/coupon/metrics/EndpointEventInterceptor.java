@@ -0,0 +1,44 @@
+package com.coupon.metrics;
+
+import com.coupon.service.JfrRecordingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 在JFR录制期间为每个控制器方法的调用记录 {@link EndpointEvent}
+ * <p>
+ * 未在录制时不创建事件，不产生额外分配。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+public class EndpointEventInterceptor implements HandlerInterceptor {
+
+    private static final String EVENT_ATTRIBUTE = EndpointEventInterceptor.class.getName() + ".event";
+
+    private final JfrRecordingService jfrRecordingService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (jfrRecordingService.isRecording() && handler instanceof HandlerMethod handlerMethod) {
+            EndpointEvent event = new EndpointEvent();
+            event.endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+            event.begin();
+            request.setAttribute(EVENT_ATTRIBUTE, event);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(EVENT_ATTRIBUTE) instanceof EndpointEvent event) {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.coupon.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 预期内的失败结果
+ * <p>
+ * 由客户端输入或令牌状态引起、服务端无需处理的失败，只计数并抽样记录日志，见 {@link ExpectedOutcomeLog}。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExpectedOutcome {
+
+    /**
+     * 券码不存在或企业不匹配
+     */
+    COUPON_NOT_FOUND("券码不存在"),
+
+    /**
+     * 券码已被核销
+     */
+    COUPON_ALREADY_USED("券码已使用"),
+
+    /**
+     * 券码尚未生效或已过期
+     */
+    COUPON_OUT_OF_VALIDITY("券码不在有效期内"),
+
+    /**
+     * 令牌已过期
+     */
+    TOKEN_EXPIRED("令牌已过期"),
+
+    /**
+     * 令牌签名、格式不正确或为空
+     */
+    TOKEN_INVALID("令牌无效"),
+
+    /**
+     * 未携带有效令牌访问受保护接口
+     */
+    UNAUTHORIZED("未认证请求");
+
+    /**
+     * 日志中的描述
+     */
+    private final String description;
+}
@@ -0,0 +1,78 @@
+package com.coupon.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预期内失败的计数与抽样日志
+ * <p>
+ * 扫码风暴（大量已使用或不存在的券码）与令牌集中过期时，逐条记录 ERROR 日志会使控制台输出成为瓶颈。
+ * 这类结果改为累加 coupon.outcome.expected 计数器（按 outcome 标签区分），每种结果每个抽样间隔最多输出一行
+ * INFO 日志，包含间隔内的次数与最近一次的详情。记录路径只有计数器与 {@link LongAdder} 累加，
+ * 不加锁；只有取得输出权的线程才格式化日志。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class ExpectedOutcomeLog {
+
+    private final Map<ExpectedOutcome, Sample> samples = new EnumMap<>(ExpectedOutcome.class);
+
+    @Value("${coupon.logging.sample-interval-ms:10000}")
+    private long sampleIntervalMs;
+
+    public ExpectedOutcomeLog(MeterRegistry meterRegistry) {
+        long now = System.nanoTime();
+        for (ExpectedOutcome outcome : ExpectedOutcome.values()) {
+            samples.put(outcome, new Sample(Counter.builder("coupon.outcome.expected")
+                    .description("预期内的失败结果数")
+                    .tag("outcome", outcome.name())
+                    .register(meterRegistry), now));
+        }
+    }
+
+    /**
+     * 记录一次预期内的失败
+     *
+     * @param outcome 结果类型
+     * @param detail  详情，仅在输出日志时使用
+     */
+    public void record(ExpectedOutcome outcome, String detail) {
+        Sample sample = samples.get(outcome);
+        sample.counter.increment();
+        sample.pending.increment();
+
+        long now = System.nanoTime();
+        long next = sample.nextLogAt.get();
+        if (now - next >= 0
+            && sample.nextLogAt.compareAndSet(next, now + TimeUnit.MILLISECONDS.toNanos(sampleIntervalMs))) {
+            log.info("{}: 近{}秒内{}次，最近一次: {}", outcome.getDescription(),
+                    TimeUnit.MILLISECONDS.toSeconds(sampleIntervalMs), sample.pending.sumThenReset(), detail);
+        }
+    }
+
+    /**
+     * 单种结果的计数器与抽样状态
+     */
+    private static final class Sample {
+        private final Counter counter;
+        private final LongAdder pending = new LongAdder();
+        private final AtomicLong nextLogAt;
+
+        private Sample(Counter counter, long nextLogAt) {
+            this.counter = counter;
+            this.nextLogAt = new AtomicLong(nextLogAt);
+        }
+    }
+}
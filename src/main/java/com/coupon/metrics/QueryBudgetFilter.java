@@ -0,0 +1,78 @@
+package com.coupon.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * SQL语句预算过滤器
+ * <p>
+ * 统计每个请求执行的SQL语句数，写入响应头 {@value #COUNT_HEADER}；超出该路径的语句预算时记录告警。
+ * 响应头在响应提交前写入，响应体不经缓存直接写出，JFR录制文件等大文件下载不占用额外内存；
+ * 流式写出过程中执行的语句不计入响应头，仍参与预算检查。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    /**
+     * 返回语句数的响应头
+     */
+    public static final String COUNT_HEADER = "X-Query-Count";
+
+    private final Map<String, Integer> budgets;
+    private final int defaultBudget;
+
+    /**
+     * @param budgets       各路径的语句预算
+     * @param defaultBudget 未配置路径的语句预算
+     */
+    public QueryBudgetFilter(Map<String, Integer> budgets, int defaultBudget) {
+        this.budgets = budgets;
+        this.defaultBudget = defaultBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryCounter.start();
+        try {
+            filterChain.doFilter(request, new CountHeaderResponseWrapper(response));
+        } finally {
+            int count = QueryCounter.stop();
+            int budget = budgets.getOrDefault(request.getRequestURI(), defaultBudget);
+            if (count > budget) {
+                log.warn("SQL语句数超出预算: {} {} 执行{}条, 预算{}条",
+                        request.getMethod(), request.getRequestURI(), count, budget);
+            }
+            if (!response.isCommitted()) {
+                response.setHeader(COUNT_HEADER, String.valueOf(count));
+            }
+        }
+    }
+
+    /**
+     * 在响应提交前写入当前语句数
+     */
+    private static final class CountHeaderResponseWrapper extends OnCommittedResponseWrapper {
+
+        private CountHeaderResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            setHeader(COUNT_HEADER, String.valueOf(QueryCounter.current()));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.coupon.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * SQL语句计数器
+ * <p>
+ * 按线程统计执行的SQL语句数，仅在 {@link #start()} 与 {@link #stop()} 之间计数。
+ * 计数由 {@link QueryCountingDataSourcePostProcessor} 包装的数据源在语句执行时累加，
+ * 覆盖JPA与JdbcTemplate两种访问方式；跨分片并行查询通过 {@link #propagate(Supplier)} 计入发起线程。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<AtomicInteger> COUNT = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    /**
+     * 开始在当前线程计数，已有的计数清零
+     */
+    public static void start() {
+        COUNT.set(new AtomicInteger());
+    }
+
+    /**
+     * 结束计数
+     *
+     * @return 开始以来执行的语句数，未开始计数时返回0
+     */
+    public static int stop() {
+        AtomicInteger count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * 当前已执行的语句数
+     *
+     * @return 语句数，未开始计数时返回0
+     */
+    public static int current() {
+        AtomicInteger count = COUNT.get();
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * 使在其他线程执行的操作计入当前线程的计数
+     *
+     * @param action 操作
+     * @return 当前线程未在计数时返回原操作
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> action) {
+        AtomicInteger count = COUNT.get();
+        if (count == null) {
+            return action;
+        }
+        return () -> {
+            COUNT.set(count);
+            try {
+                return action.get();
+            } finally {
+                COUNT.remove();
+            }
+        };
+    }
+
+    /**
+     * 累加一条语句
+     */
+    static void increment() {
+        AtomicInteger count = COUNT.get();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.coupon.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 为数据源增加SQL语句计数
+ * <p>
+ * 以子类代理包装数据源，保留原有类型（如分片路由数据源），
+ * 取得的连接及其创建的语句在执行时向 {@link QueryCounter} 累加。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class QueryCountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        MethodInterceptor advice = invocation -> {
+            Object result = invocation.proceed();
+            return result instanceof Connection connection && "getConnection".equals(invocation.getMethod().getName())
+                    ? countingConnection(connection) : result;
+        };
+        if (bean instanceof Advised advised) {
+            advised.addAdvice(advice);
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(advice);
+        return factory.getProxy();
+    }
+
+    private static Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(QueryCounter.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        return countingStatement(statement, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    private static Statement countingStatement(Statement statement, Class<?> type) {
+        return (Statement) Proxy.newProxyInstance(QueryCounter.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        QueryCounter.increment();
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
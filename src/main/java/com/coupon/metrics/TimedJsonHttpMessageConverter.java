@@ -0,0 +1,41 @@
+package com.coupon.metrics;
+
+import com.coupon.dto.ApiResponse;
+import com.coupon.dto.CouponVerifyResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * 记录核销响应序列化耗时的JSON转换器
+ * <p>
+ * 核销接口返回后由此转换器写出响应体，其余响应照常写出不计时。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final VerificationStageMetrics stageMetrics;
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper, VerificationStageMetrics stageMetrics) {
+        super(objectMapper);
+        this.stageMetrics = stageMetrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        if (!(object instanceof ApiResponse<?> response) || !(response.getData() instanceof CouponVerifyResponse)) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        long start = stageMetrics.start();
+        super.writeInternal(object, type, outputMessage);
+        stageMetrics.record(VerificationStage.SERIALIZATION, start);
+    }
+}
@@ -0,0 +1,58 @@
+package com.coupon.metrics;
+
+/**
+ * 核销链路阶段
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public enum VerificationStage {
+
+    /**
+     * JWT令牌校验与解析（JwtAuthenticationFilter）
+     */
+    JWT_PARSE("jwt-parse"),
+
+    /**
+     * 按券码与企业查询券码（findByCodeAndCompanyId）
+     */
+    COUPON_LOOKUP("coupon-lookup"),
+
+    /**
+     * 更新券码使用状态并刷写到数据库
+     */
+    COUPON_SAVE("coupon-save"),
+
+    /**
+     * 插入核销日志
+     */
+    LOG_INSERT("log-insert"),
+
+    /**
+     * 事务提交
+     */
+    COMMIT("commit"),
+
+    /**
+     * 核销响应JSON序列化与写出
+     */
+    SERIALIZATION("serialization"),
+
+    /**
+     * 核销接口处理总耗时（CouponController，含分片路由与事务，不含序列化）
+     */
+    VERIFY("verify");
+
+    private final String tag;
+
+    VerificationStage(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * 指标标签值
+     */
+    public String getTag() {
+        return tag;
+    }
+}
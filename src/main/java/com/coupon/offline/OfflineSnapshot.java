@@ -0,0 +1,151 @@
+package com.coupon.offline;
+
+import com.coupon.state.CouponStateIndex;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+
+/**
+ * 离线核销快照
+ * <p>
+ * 扫码站断网前下载的企业未使用券码集合，券码按36进制压缩为48位整数后升序排列，离线时二分查找。
+ * 快照以服务端私钥（{@value #SIGNATURE_ALGORITHM}）签名，扫码站只持有公钥，无法伪造或篡改券码集合。
+ * 所有整数均为大端序，内容类型为 {@value #MEDIA_TYPE}：
+ * <pre>
+ * 魔数 "CPOS" 4字节 | 版本 1字节 | 企业ID 8字节 | 生成时间 8字节 | 过期时间 8字节 | 券码数 4字节
+ * | 券码 6字节 × 券码数（升序） | 签名 64字节（覆盖之前的全部内容）
+ * </pre>
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+public final class OfflineSnapshot {
+
+    /**
+     * 内容类型
+     */
+    public static final String MEDIA_TYPE = "application/x-coupon-snapshot";
+
+    /**
+     * 签名算法
+     */
+    public static final String SIGNATURE_ALGORITHM = "Ed25519";
+
+    private static final int MAGIC = 0x43504F53;
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 33;
+    private static final int CODE_BYTES = 6;
+    private static final int SIGNATURE_LENGTH = 64;
+
+    private final long companyId;
+    private final long generatedAt;
+    private final long expiresAt;
+    @Getter(AccessLevel.NONE)
+    private final long[] codes;
+
+    private OfflineSnapshot(long companyId, long generatedAt, long expiresAt, long[] codes) {
+        this.companyId = companyId;
+        this.generatedAt = generatedAt;
+        this.expiresAt = expiresAt;
+        this.codes = codes;
+    }
+
+    /**
+     * 编码并签名快照
+     *
+     * @param companyId   企业ID
+     * @param generatedAt 生成时间（毫秒时间戳）
+     * @param expiresAt   过期时间（毫秒时间戳）
+     * @param sortedCodes 升序排列的压缩券码
+     * @param privateKey  签名私钥
+     * @return 快照字节
+     */
+    public static byte[] encode(long companyId, long generatedAt, long expiresAt, long[] sortedCodes,
+                                PrivateKey privateKey) {
+        int bodyLength = HEADER_LENGTH + sortedCodes.length * CODE_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(bodyLength + SIGNATURE_LENGTH);
+        buffer.putInt(MAGIC).put(VERSION).putLong(companyId).putLong(generatedAt).putLong(expiresAt)
+                .putInt(sortedCodes.length);
+        for (long code : sortedCodes) {
+            buffer.putShort((short) (code >>> 32)).putInt((int) code);
+        }
+        try {
+            Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+            signature.initSign(privateKey);
+            signature.update(buffer.array(), 0, bodyLength);
+            buffer.put(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("离线快照签名失败", e);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 校验签名并解析快照，供扫码站客户端与校验程序使用
+     *
+     * @param data      快照字节
+     * @param publicKey 服务端公钥
+     * @return 快照
+     * @throws IllegalArgumentException 格式错误或签名不匹配
+     */
+    public static OfflineSnapshot decode(byte[] data, PublicKey publicKey) {
+        int bodyLength = data.length - SIGNATURE_LENGTH;
+        try {
+            Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+            signature.initVerify(publicKey);
+            signature.update(data, 0, Math.max(0, bodyLength));
+            if (bodyLength < HEADER_LENGTH || !signature.verify(data, bodyLength, SIGNATURE_LENGTH)) {
+                throw new IllegalArgumentException("离线快照签名校验失败");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("离线快照签名校验失败", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, bodyLength);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IllegalArgumentException("离线快照格式不支持");
+            }
+            long companyId = buffer.getLong();
+            long generatedAt = buffer.getLong();
+            long expiresAt = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * CODE_BYTES) {
+                throw new IllegalArgumentException("离线快照长度不正确");
+            }
+            long[] codes = new long[count];
+            for (int i = 0; i < count; i++) {
+                codes[i] = ((buffer.getShort() & 0xFFFFL) << 32) | (buffer.getInt() & 0xFFFFFFFFL);
+            }
+            return new OfflineSnapshot(companyId, generatedAt, expiresAt, codes);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("离线快照长度不正确", e);
+        }
+    }
+
+    /**
+     * 券码是否在快照中（快照生成时未使用）
+     *
+     * @param code 券码
+     * @return 是否存在
+     */
+    public boolean contains(String code) {
+        long packed = CouponStateIndex.packCode(code);
+        return packed >= 0 && Arrays.binarySearch(codes, packed) >= 0;
+    }
+
+    /**
+     * 券码数量
+     */
+    public int size() {
+        return codes.length;
+    }
+}
@@ -0,0 +1,201 @@
+package com.coupon.protocol;
+
+import com.coupon.dto.CouponVerifyRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * 核销二进制协议
+ * <p>
+ * 供低端嵌入式扫码枪使用，替代JSON请求与 ApiResponse 响应，内容类型为 {@value #MEDIA_TYPE}，所有整数均为大端序。
+ * <pre>
+ * 请求（10字节）: 券码 6字节（8位 0-9/A-Z 按36进制压缩为48位无符号整数） | 企业ID 4字节（无符号）
+ * 响应（9或13字节）: 状态 1字节 | 数值 8字节 | 企业ID 4字节（仅成功与重复扫码时出现，客户端据此查本地企业名称表）
+ * </pre>
+ * 数值含义：成功、重复扫码为核销时间，券码已使用为首次使用时间（多次券为用完时间，操作员次数已满时为0），不在有效期内为生效时间（尚未生效）或失效时间（已过期）
+ * （均为毫秒时间戳），请求过多为建议重试秒数，其他为0。
+ * 响应直接写入调用方提供的缓冲区，除缓冲区外不分配对象。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class BinaryVerifyProtocol {
+
+    /**
+     * 内容类型
+     */
+    public static final String MEDIA_TYPE = "application/x-coupon-verify";
+
+    /**
+     * 请求长度
+     */
+    public static final int REQUEST_LENGTH = 10;
+
+    /**
+     * 响应最大长度
+     */
+    public static final int MAX_RESPONSE_LENGTH = 13;
+
+    /** 核销成功 */
+    public static final byte SUCCESS = 0;
+    /** 与同时提交的相同请求合并的重复扫码 */
+    public static final byte DUPLICATE = 1;
+    /** 券码不存在或企业不匹配 */
+    public static final byte NOT_FOUND = 2;
+    /** 券码已被使用 */
+    public static final byte ALREADY_USED = 3;
+    /** 请求格式错误 */
+    public static final byte INVALID = 4;
+    /** 企业请求过多 */
+    public static final byte THROTTLED = 5;
+    /** 其他错误 */
+    public static final byte ERROR = 6;
+    /** 券码尚未生效或已过期 */
+    public static final byte OUT_OF_VALIDITY = 7;
+
+    private static final int CODE_LENGTH = 8;
+    private static final int RADIX = 36;
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+
+    private BinaryVerifyProtocol() {
+    }
+
+    /**
+     * 读取请求
+     *
+     * @param input 请求体
+     * @return 核销请求
+     * @throws IllegalArgumentException 请求长度或内容不合法
+     */
+    public static CouponVerifyRequest readRequest(InputStream input) throws IOException {
+        byte[] buffer = new byte[REQUEST_LENGTH];
+        int length = input.readNBytes(buffer, 0, REQUEST_LENGTH);
+        if (length != REQUEST_LENGTH || input.read() != -1) {
+            throw new IllegalArgumentException("请求长度应为" + REQUEST_LENGTH + "字节");
+        }
+        return decodeRequest(buffer);
+    }
+
+    /**
+     * 解析请求
+     *
+     * @param buffer 请求字节
+     * @return 核销请求
+     * @throws IllegalArgumentException 券码或企业ID不合法
+     */
+    public static CouponVerifyRequest decodeRequest(byte[] buffer) {
+        long packed = 0;
+        for (int i = 0; i < 6; i++) {
+            packed = (packed << 8) | (buffer[i] & 0xFF);
+        }
+        long companyId = 0;
+        for (int i = 6; i < REQUEST_LENGTH; i++) {
+            companyId = (companyId << 8) | (buffer[i] & 0xFF);
+        }
+        if (companyId == 0) {
+            throw new IllegalArgumentException("企业不能为空");
+        }
+
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            int digit = (int) (packed % RADIX);
+            code[i] = (char) (digit < 10 ? '0' + digit : 'A' + digit - 10);
+            packed /= RADIX;
+        }
+        if (packed != 0) {
+            throw new IllegalArgumentException("券码格式不正确");
+        }
+        return new CouponVerifyRequest(new String(code), companyId);
+    }
+
+    /**
+     * 编码请求，供客户端与基准测试使用
+     *
+     * @param code      8位券码
+     * @param companyId 企业ID
+     * @param buffer    输出缓冲区，至少 {@value #REQUEST_LENGTH} 字节
+     */
+    public static void encodeRequest(String code, long companyId, byte[] buffer) {
+        long packed = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            char c = code.charAt(i);
+            packed = packed * RADIX + (c <= '9' ? c - '0' : c - 'A' + 10);
+        }
+        for (int i = 5; i >= 0; i--) {
+            buffer[i] = (byte) packed;
+            packed >>>= 8;
+        }
+        for (int i = REQUEST_LENGTH - 1; i >= 6; i--) {
+            buffer[i] = (byte) companyId;
+            companyId >>>= 8;
+        }
+    }
+
+    /**
+     * 读取响应中的数值，供客户端与节点间转发使用
+     *
+     * @param buffer 响应字节
+     * @return 数值
+     */
+    public static long decodeValue(byte[] buffer) {
+        long value = 0;
+        for (int i = 1; i <= 8; i++) {
+            value = (value << 8) | (buffer[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 将响应中的毫秒时间戳还原为本地时间
+     *
+     * @param epochMillis 毫秒时间戳
+     * @return 本地时间
+     */
+    public static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE_RULES.getOffset(Instant.ofEpochMilli(epochMillis)));
+    }
+
+    /**
+     * 编码带时间的响应
+     *
+     * @param buffer    输出缓冲区，至少 {@value #MAX_RESPONSE_LENGTH} 字节
+     * @param status    状态
+     * @param time      核销或使用时间
+     * @param companyId 企业ID，仅在成功与重复扫码时写入
+     * @return 响应长度
+     */
+    public static int encodeResponse(byte[] buffer, byte status, LocalDateTime time, long companyId) {
+        long epochMillis = time.toEpochSecond(ZONE_RULES.getOffset(time)) * 1000 + time.getNano() / 1_000_000;
+        return encodeResponse(buffer, status, epochMillis, companyId);
+    }
+
+    /**
+     * 编码响应
+     *
+     * @param buffer    输出缓冲区，至少 {@value #MAX_RESPONSE_LENGTH} 字节
+     * @param status    状态
+     * @param value     数值
+     * @param companyId 企业ID，仅在成功与重复扫码时写入
+     * @return 响应长度
+     */
+    public static int encodeResponse(byte[] buffer, byte status, long value, long companyId) {
+        buffer[0] = status;
+        for (int i = 8; i >= 1; i--) {
+            buffer[i] = (byte) value;
+            value >>>= 8;
+        }
+        if (status != SUCCESS && status != DUPLICATE) {
+            return 9;
+        }
+        for (int i = 12; i >= 9; i--) {
+            buffer[i] = (byte) companyId;
+            companyId >>>= 8;
+        }
+        return MAX_RESPONSE_LENGTH;
+    }
+}
@@ -0,0 +1,99 @@
+package com.coupon.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按键限流的令牌桶
+ * <p>
+ * 每个键的令牌桶只保存一个理论到达时间（GCRA 形式的令牌桶）：每次放行把它推后一个令牌间隔，
+ * 推后后超出当前时间不多于突发容量个间隔即放行，以 CAS 更新，不加锁。
+ * 理论到达时间不晚于当前时间的桶已回满，与新建的桶等价，可以随时丢弃。
+ * 键数超过上限时由一个线程清理已回满的桶；仍超限（大量键同时活跃）时继续淘汰任意桶直到低于上限的九成，
+ * 被淘汰的键重新获得完整突发额度，以此保证内存有界。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxEntries;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量（允许的突发请求数）
+     * @param maxEntries    最多保留的令牌桶数量
+     */
+    public TokenBucketRateLimiter(int ratePerSecond, int burst, int maxEntries) {
+        if (ratePerSecond <= 0 || burst <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("限流速率、突发容量与键数上限必须大于0");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.burstNanos = intervalNanos * burst;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 尝试为键取一个令牌
+     *
+     * @param key 限流键
+     * @return 0 表示放行，否则为下一个令牌可用前需等待的纳秒数
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            AtomicLong created = new AtomicLong(now);
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+                if (buckets.size() > maxEntries) {
+                    evict(now);
+                }
+            }
+        }
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 当前保留的令牌桶数量
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+            int target = maxEntries - maxEntries / 10;
+            Iterator<AtomicLong> iterator = buckets.values().iterator();
+            while (buckets.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
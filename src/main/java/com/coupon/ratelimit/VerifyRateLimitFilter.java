@@ -0,0 +1,138 @@
+package com.coupon.ratelimit;
+
+import com.coupon.dto.ApiResponse;
+import com.coupon.security.ClientIpResolver;
+import com.coupon.security.UserPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 核销接口限流过滤器
+ * <p>
+ * 在安全过滤器链之后、请求体解析之前执行：先按操作员手机号取令牌，再按客户端IP取令牌，
+ * 任一令牌桶为空即返回 429 与 Retry-After，请求不会进入控制器与数据库。
+ * IP限流以连接的远端地址为键，客户端自带的转发头不会生效，只有经可信代理转发时才取代理记录的客户端地址。
+ * 扫码站长连接的核销消息不经过过滤器，由长连接处理器调用 {@link #tryAcquire(String, String)} 使用同一组令牌桶。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class VerifyRateLimitFilter extends OncePerRequestFilter {
+
+    private final TokenBucketRateLimiter operatorLimiter;
+    private final TokenBucketRateLimiter ipLimiter;
+    private final ClientIpResolver clientIpResolver;
+    private final ObjectMapper objectMapper;
+    private final Counter operatorRejected;
+    private final Counter ipRejected;
+
+    /**
+     * @param operatorLimiter  操作员限流
+     * @param ipLimiter        客户端IP限流
+     * @param clientIpResolver 客户端IP解析（只在远端地址为可信代理时采用转发头）
+     * @param objectMapper     JSON序列化
+     * @param meterRegistry    指标注册表
+     */
+    public VerifyRateLimitFilter(TokenBucketRateLimiter operatorLimiter, TokenBucketRateLimiter ipLimiter,
+                                 ClientIpResolver clientIpResolver, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.operatorLimiter = operatorLimiter;
+        this.ipLimiter = ipLimiter;
+        this.clientIpResolver = clientIpResolver;
+        this.objectMapper = objectMapper;
+        this.operatorRejected = rejectedCounter(meterRegistry, "operator");
+        this.ipRejected = rejectedCounter(meterRegistry, "ip");
+        Gauge.builder("coupon.rate-limit.entries", operatorLimiter, TokenBucketRateLimiter::size)
+                .description("限流令牌桶数量")
+                .tag("key", "operator")
+                .register(meterRegistry);
+        Gauge.builder("coupon.rate-limit.entries", ipLimiter, TokenBucketRateLimiter::size)
+                .description("限流令牌桶数量")
+                .tag("key", "ip")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String operator = authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                ? principal.getPhone() : null;
+        long waitNanos = tryAcquire(operator, clientIpResolver.resolve(request));
+        if (waitNanos > 0) {
+            reject(response, waitNanos);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 先按操作员、再按客户端IP取令牌
+     *
+     * @param operator  操作员手机号，未认证时为 null
+     * @param ipAddress 客户端IP
+     * @return 需要等待的纳秒数，0 表示放行
+     */
+    public long tryAcquire(String operator, String ipAddress) {
+        if (operator != null) {
+            long waitNanos = operatorLimiter.tryAcquire(operator);
+            if (waitNanos > 0) {
+                operatorRejected.increment();
+                return waitNanos;
+            }
+        }
+        if (ipAddress != null) {
+            long waitNanos = ipLimiter.tryAcquire(ipAddress);
+            if (waitNanos > 0) {
+                ipRejected.increment();
+                return waitNanos;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 等待时间换算为建议重试秒数，至少1秒
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * 被限流时的提示信息
+     */
+    public static String rejectedMessage(long retryAfterSeconds) {
+        return "核销请求过于频繁，请" + retryAfterSeconds + "秒后重试";
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = retryAfterSeconds(waitNanos);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json;charset=UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.error(rejectedMessage(retryAfterSeconds)));
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("coupon.rate-limit.rejected")
+                .description("核销限流拒绝次数")
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,75 @@
+package com.coupon.repository;
+
+import com.coupon.entity.ArchivedCoupon;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 归档券码数据访问层接口
+ * 
+ * @author System
+ * @version 1.0.0
+ */
+@Repository
+public interface ArchivedCouponRepository extends JpaRepository<ArchivedCoupon, Long> {
+
+    /**
+     * 根据券码和企业ID查询归档券码
+     *
+     * @param code      券码
+     * @param companyId 企业ID
+     * @return 归档券码信息
+     */
+    Optional<ArchivedCoupon> findByCodeAndCompanyId(String code, Long companyId);
+
+    /**
+     * 根据企业ID与券码批量查询归档券码
+     *
+     * @param companyId 企业ID
+     * @param codes     券码集合
+     * @return 归档券码列表
+     */
+    List<ArchivedCoupon> findByCompanyIdAndCodeIn(Long companyId, Collection<String> codes);
+
+    /**
+     * 检查券码是否已归档
+     *
+     * @param code 券码
+     * @return 是否存在
+     */
+    boolean existsByCode(String code);
+
+    /**
+     * 将热表中的券码复制到归档表
+     *
+     * @param ids        券码ID列表
+     * @param archivedAt 归档时间
+     * @return 复制的行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO coupons_archive (id, code, company_id, used_at, used_by, created_at, archived_at) " +
+                   "SELECT id, code, company_id, used_at, used_by, created_at, :archivedAt FROM coupons WHERE id IN :ids",
+           nativeQuery = true)
+    int copyFromHotTable(@Param("ids") List<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    /**
+     * 将热表中过期未使用的券码复制到归档表，以失效时间为过期时间
+     *
+     * @param ids        券码ID列表
+     * @param archivedAt 归档时间
+     * @return 复制的行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO coupons_archive (id, code, company_id, created_at, archived_at, expired_at) " +
+                   "SELECT id, code, company_id, created_at, :archivedAt, valid_until FROM coupons WHERE id IN :ids",
+           nativeQuery = true)
+    int copyExpiredFromHotTable(@Param("ids") List<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
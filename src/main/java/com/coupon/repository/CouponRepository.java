@@ -1,11 +1,16 @@
 package com.coupon.repository;
 
 import com.coupon.entity.Coupon;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,6 +32,80 @@ public interface CouponRepository extends JpaRepository<Coupon, Long> {
     @Query("SELECT c FROM Coupon c JOIN FETCH c.company comp WHERE c.code = :code AND c.company.id = :companyId")
     Optional<Coupon> findByCodeAndCompanyId(@Param("code") String code, @Param("companyId") Long companyId);
 
+    /**
+     * 根据企业ID与券码批量查询券码信息
+     *
+     * @param companyId 企业ID
+     * @param codes     券码集合
+     * @return 券码列表
+     */
+    @Query("SELECT c FROM Coupon c JOIN FETCH c.company comp WHERE c.company.id = :companyId AND c.code IN :codes")
+    List<Coupon> findByCompanyIdAndCodeIn(@Param("companyId") Long companyId, @Param("codes") Collection<String> codes);
+
+    /**
+     * 使用次数未达上限时加一，达到上限时标记已使用、记录最后一次使用并移出过期时间桶
+     *
+     * @param id     券码ID
+     * @param usedAt 使用时间
+     * @param usedBy 使用者手机号
+     * @return 更新的行数，次数已达上限时为0
+     */
+    @Modifying
+    @Query(value = "UPDATE coupons SET use_count = use_count + 1, " +
+                   "is_used = use_count + 1 >= usage_limit, " +
+                   "used_at = CASE WHEN use_count + 1 >= usage_limit THEN :usedAt ELSE used_at END, " +
+                   "used_by = CASE WHEN use_count + 1 >= usage_limit THEN :usedBy ELSE used_by END, " +
+                   "expiry_bucket = CASE WHEN use_count + 1 >= usage_limit THEN NULL ELSE expiry_bucket END " +
+                   "WHERE id = :id AND use_count < usage_limit",
+           nativeQuery = true)
+    int incrementUseCount(@Param("id") Long id, @Param("usedAt") LocalDateTime usedAt, @Param("usedBy") String usedBy);
+
+    /**
+     * 操作员对券码的使用次数未达上限时加一
+     *
+     * @param couponId  券码ID
+     * @param userPhone 操作员手机号
+     * @param limit     每个操作员的使用次数上限
+     * @return 更新的行数，已达上限时为0
+     */
+    @Modifying
+    @Query(value = "INSERT INTO coupon_operator_uses (coupon_id, user_phone, use_count) VALUES (:couponId, :userPhone, 1) " +
+                   "ON CONFLICT (coupon_id, user_phone) DO UPDATE SET use_count = use_count + 1 WHERE use_count < :limit",
+           nativeQuery = true)
+    int incrementOperatorUses(@Param("couponId") Long couponId, @Param("userPhone") String userPhone,
+                              @Param("limit") int limit);
+
+    /**
+     * 删除券码的操作员使用次数
+     *
+     * @param ids 券码ID列表
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query(value = "DELETE FROM coupon_operator_uses WHERE coupon_id IN :ids", nativeQuery = true)
+    int deleteOperatorUses(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询券码的剩余使用次数
+     *
+     * @param code      券码
+     * @param companyId 企业ID
+     * @return 剩余次数，券码不在热表时为空
+     */
+    @Query("SELECT c.usageLimit - c.useCount FROM Coupon c WHERE c.code = :code AND c.company.id = :companyId")
+    Optional<Integer> findRemainingUses(@Param("code") String code, @Param("companyId") Long companyId);
+
+    /**
+     * 查询企业下未使用且在给定时间尚未过期的券码
+     *
+     * @param companyId 企业ID
+     * @param time      时间
+     * @return 券码列表
+     */
+    @Query("SELECT c.code FROM Coupon c WHERE c.company.id = :companyId AND c.isUsed = false " +
+           "AND (c.validUntil IS NULL OR c.validUntil > :time)")
+    List<String> findUnusedCodesByCompanyId(@Param("companyId") Long companyId, @Param("time") LocalDateTime time);
+
     /**
      * 根据券码查询券码信息
      *
@@ -58,4 +137,43 @@ public interface CouponRepository extends JpaRepository<Coupon, Long> {
      * @return 已使用券码数量
      */
     long countByCompanyIdAndIsUsedTrue(Long companyId);
-} 
\ No newline at end of file
+
+    /**
+     * 查询可归档的券码ID（在截止时间前已核销），按核销时间先后，由部分索引 idx_coupons_used_at 同时完成过滤与排序
+     *
+     * @param cutoff   截止时间
+     * @param pageable 分页参数（用于限制单批数量）
+     * @return 券码ID列表
+     */
+    @Query("SELECT c.id FROM Coupon c WHERE c.isUsed = true AND c.usedAt < :cutoff ORDER BY c.usedAt, c.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * 查询给定时间桶之前最早的非空过期时间桶
+     *
+     * @param bucket 时间桶（不含）
+     * @return 时间桶编号，没有时为空
+     */
+    @Query("SELECT MIN(c.expiryBucket) FROM Coupon c WHERE c.expiryBucket < :bucket")
+    Long findFirstExpiryBucketBefore(@Param("bucket") long bucket);
+
+    /**
+     * 查询过期时间桶内的券码ID
+     *
+     * @param bucket   时间桶
+     * @param pageable 分页参数（用于限制单批数量）
+     * @return 券码ID列表
+     */
+    @Query("SELECT c.id FROM Coupon c WHERE c.expiryBucket = :bucket ORDER BY c.id")
+    List<Long> findIdsByExpiryBucket(@Param("bucket") long bucket, Pageable pageable);
+
+    /**
+     * 根据ID批量删除券码
+     *
+     * @param ids 券码ID列表
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM Coupon c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,498 @@
+package com.coupon.repository;
+
+import com.coupon.dto.VerificationRecord;
+import com.coupon.sharding.ShardContext;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 按月分区的核销记录数据访问层
+ * <p>
+ * 当月及尚未滚动的记录保存在热表 verification_logs 中；已结束月份的记录滚动到月分区表
+ * verification_logs_yyyyMM，更早的分区再导出为只读的压缩归档文件。查询只访问与时间范围重叠的分区，
+ * 分区目录保存在各库的 verification_log_partitions 表中。离线同步补写的历史记录直接进入所属月份的分区。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Repository
+public class PartitionedVerificationLogRepository {
+
+    private static final String HOT_TABLE = "verification_logs";
+    private static final String COLUMNS = "id, coupon_id, coupon_code, company_id, user_phone, ip_address, verification_time";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int BACKDATED_CHUNK_SIZE = 1000;
+
+    private static final RowMapper<VerificationRecord> RECORD_MAPPER = (rs, rowNum) -> {
+        long companyId = rs.getLong("company_id");
+        Long nullableCompanyId = rs.wasNull() ? null : companyId;
+        return new VerificationRecord(
+                rs.getLong("id"),
+                rs.getLong("coupon_id"),
+                rs.getString("coupon_code"),
+                nullableCompanyId,
+                rs.getString("user_phone"),
+                rs.getString("ip_address"),
+                rs.getTimestamp("verification_time").toLocalDateTime());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * 归档文件全量计数缓存（归档文件只读，计数不会变化）
+     */
+    private final Map<String, Long> archiveCountCache = new ConcurrentHashMap<>();
+
+    @Value("${coupon.log-partition.archive-dir:data/log-archive}")
+    private String archiveDir;
+
+    public PartitionedVerificationLogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * 分区状态
+     */
+    public enum State {
+        /**
+         * 正在从热表滚动
+         */
+        ROLLING,
+        /**
+         * 月分区表
+         */
+        TABLE,
+        /**
+         * 压缩归档文件
+         */
+        ARCHIVE
+    }
+
+    /**
+     * 分区目录项
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Partition {
+        private final YearMonth month;
+        private final State state;
+    }
+
+    /**
+     * 查询分区目录（按月份倒序）
+     *
+     * @return 分区列表
+     */
+    public List<Partition> findPartitions() {
+        return jdbcTemplate.query(
+                "SELECT month, state FROM verification_log_partitions ORDER BY month DESC",
+                (rs, rowNum) -> new Partition(YearMonth.parse(rs.getString("month"), MONTH_FORMAT),
+                        State.valueOf(rs.getString("state"))));
+    }
+
+    /**
+     * 分页查询核销记录，结果按核销时间倒序
+     *
+     * @param from      起始时间（含），为null时不限
+     * @param to        结束时间（不含），为null时不限
+     * @param companyId 企业ID，为null时不限
+     * @param pageable  分页参数
+     * @return 核销记录分页数据
+     */
+    public Page<VerificationRecord> findRecords(LocalDateTime from, LocalDateTime to, Long companyId, Pageable pageable) {
+        long skip = pageable.getOffset();
+        int remaining = pageable.getPageSize();
+        long total = 0;
+        List<VerificationRecord> content = new ArrayList<>(remaining);
+
+        for (Partition partition : partitionsFor(from, to)) {
+            long count = count(partition, companyId, from, to);
+            total += count;
+            if (remaining > 0 && skip < count) {
+                List<VerificationRecord> rows = read(partition, companyId, from, to, skip, remaining);
+                content.addAll(rows);
+                remaining -= rows.size();
+                skip = 0;
+            } else if (remaining > 0) {
+                skip -= count;
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 顺序读取时间范围内的全部核销记录，不保证顺序（分析快照导出）
+     *
+     * @param from     起始时间（含）
+     * @param to       结束时间（不含）
+     * @param consumer 记录处理函数
+     */
+    public void scanRecords(LocalDateTime from, LocalDateTime to, Consumer<VerificationRecord> consumer) {
+        for (Partition partition : partitionsFor(from, to)) {
+            if (partition == null || partition.getState() != State.ARCHIVE) {
+                List<Object> args = new ArrayList<>();
+                String where = whereClause(null, from, to, args);
+                jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + tableName(partition) + where,
+                        rs -> {
+                            consumer.accept(RECORD_MAPPER.mapRow(rs, 0));
+                        }, args.toArray());
+            } else {
+                scanArchive(archiveFile(partition.getMonth()), null, from, to, record -> {
+                    consumer.accept(record);
+                    return true;
+                });
+            }
+        }
+    }
+
+    /**
+     * 批量写入核销记录，保留记录自带的核销时间（离线核销同步）
+     * <p>
+     * 记录先写入热表；核销时间落在已滚动月份的记录随即移入该月分区，已归档的月份先从归档文件恢复为分区表，
+     * 由下次滚动重新归档。查询按月份只访问对应分区，补写的历史记录因此不会被漏掉。须在事务中调用。
+     *
+     * @param records 核销记录，忽略ID
+     */
+    public void insertRecords(List<VerificationRecord> records) {
+        Map<YearMonth, State> states = new HashMap<>();
+        for (Partition partition : findPartitions()) {
+            states.put(partition.getMonth(), partition.getState());
+        }
+        Set<YearMonth> months = new TreeSet<>();
+        for (VerificationRecord record : records) {
+            YearMonth month = YearMonth.from(record.getVerificationTime());
+            if (states.containsKey(month)) {
+                months.add(month);
+            }
+        }
+        for (YearMonth month : months) {
+            if (states.get(month) == State.ARCHIVE) {
+                restorePartition(month);
+            }
+            // 分区中可能有升级为 AUTOINCREMENT 之前分配的ID，新记录的ID须在其之后
+            jdbcTemplate.update("UPDATE sqlite_sequence SET seq = MAX(seq, COALESCE((SELECT MAX(id) FROM " +
+                    tableName(month) + "), 0)) WHERE name = ?", HOT_TABLE);
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO " + HOT_TABLE +
+                        " (coupon_id, coupon_code, company_id, user_phone, ip_address, verification_time) VALUES (?, ?, ?, ?, ?, ?)",
+                records, records.size(), (ps, record) -> {
+                    ps.setLong(1, record.getCouponId());
+                    ps.setString(2, record.getCouponCode());
+                    ps.setLong(3, record.getCompanyId());
+                    ps.setString(4, record.getUserPhone());
+                    ps.setString(5, record.getIpAddress());
+                    ps.setTimestamp(6, Timestamp.valueOf(record.getVerificationTime()));
+                });
+
+        for (YearMonth month : months) {
+            while (moveChunk(month, BACKDATED_CHUNK_SIZE) > 0) {
+                // 移入该月分区
+            }
+            // 正在滚动的月份由滚动任务完成，其余更新行数
+            if (states.get(month) != State.ROLLING) {
+                completeRollover(month);
+            }
+        }
+    }
+
+    /**
+     * 查询热表中早于指定月份且存在记录的月份
+     *
+     * @param before 截止月份（不含）
+     * @return 月份列表（升序）
+     */
+    public List<YearMonth> findHotMonthsBefore(YearMonth before) {
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(verification_time) FROM " + HOT_TABLE, Timestamp.class);
+        List<YearMonth> months = new ArrayList<>();
+        if (oldest == null) {
+            return months;
+        }
+        for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(before); month = month.plusMonths(1)) {
+            boolean hasRows = !jdbcTemplate.queryForList(
+                    "SELECT id FROM " + HOT_TABLE + " WHERE verification_time >= ? AND verification_time < ? LIMIT 1",
+                    Long.class, Timestamp.valueOf(start(month)), Timestamp.valueOf(start(month.plusMonths(1)))).isEmpty();
+            if (hasRows) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+    /**
+     * 开始滚动某月记录：创建分区表并登记目录
+     *
+     * @param month 月份
+     * @return 分区已归档时返回false，此时不再滚动
+     */
+    public boolean beginRollover(YearMonth month) {
+        createPartitionTable(month);
+        jdbcTemplate.update("INSERT OR IGNORE INTO verification_log_partitions (month, state, row_count) VALUES (?, ?, 0)",
+                month.format(MONTH_FORMAT), State.ROLLING.name());
+        return jdbcTemplate.update("UPDATE verification_log_partitions SET state = ? WHERE month = ? AND state <> ?",
+                State.ROLLING.name(), month.format(MONTH_FORMAT), State.ARCHIVE.name()) > 0;
+    }
+
+    /**
+     * 将热表中某月的一批记录移入分区表
+     *
+     * @param month     月份
+     * @param chunkSize 单批数量
+     * @return 移动的行数
+     */
+    public int moveChunk(YearMonth month, int chunkSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + HOT_TABLE + " WHERE verification_time >= ? AND verification_time < ? ORDER BY id LIMIT ?",
+                Long.class, Timestamp.valueOf(start(month)), Timestamp.valueOf(start(month.plusMonths(1))), chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        namedJdbcTemplate.update("INSERT INTO " + tableName(month) + " (" + COLUMNS + ") SELECT " + COLUMNS +
+                " FROM " + HOT_TABLE + " WHERE id IN (:ids)", params);
+        namedJdbcTemplate.update("DELETE FROM " + HOT_TABLE + " WHERE id IN (:ids)", params);
+        return ids.size();
+    }
+
+    /**
+     * 完成某月滚动
+     *
+     * @param month 月份
+     */
+    public void completeRollover(YearMonth month) {
+        jdbcTemplate.update("UPDATE verification_log_partitions SET state = ?, row_count = (SELECT COUNT(*) FROM " +
+                tableName(month) + ") WHERE month = ?", State.TABLE.name(), month.format(MONTH_FORMAT));
+    }
+
+    /**
+     * 将月分区表导出为只读压缩归档文件并删除分区表
+     *
+     * @param month 月份
+     */
+    public void archivePartition(YearMonth month) {
+        String table = tableName(month);
+        Path file = archiveFile(month);
+        try {
+            VerificationLogArchiveFile.write(file, sink -> jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM " + table + " ORDER BY verification_time DESC, id DESC",
+                    rs -> {
+                        sink.accept(RECORD_MAPPER.mapRow(rs, rs.getRow()));
+                    }));
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入核销记录归档文件失败: " + file, e);
+        }
+
+        jdbcTemplate.update("UPDATE verification_log_partitions SET state = ? WHERE month = ?",
+                State.ARCHIVE.name(), month.format(MONTH_FORMAT));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        evictArchiveCounts(file);
+        log.info("核销记录分区{}已归档至{}", month, file);
+    }
+
+    /**
+     * 把已归档月份恢复为分区表（状态由调用方更新），归档文件保留到重新归档时覆盖
+     *
+     * @param month 月份
+     */
+    private void restorePartition(YearMonth month) {
+        createPartitionTable(month);
+        Path file = archiveFile(month);
+        List<VerificationRecord> rows = new ArrayList<>();
+        scanArchive(file, null, null, null, rows::add);
+        jdbcTemplate.batchUpdate("INSERT OR IGNORE INTO " + tableName(month) + " (" + COLUMNS +
+                        ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+                rows, BACKDATED_CHUNK_SIZE, (ps, record) -> {
+                    ps.setLong(1, record.getId());
+                    ps.setLong(2, record.getCouponId());
+                    ps.setString(3, record.getCouponCode());
+                    ps.setObject(4, record.getCompanyId());
+                    ps.setString(5, record.getUserPhone());
+                    ps.setString(6, record.getIpAddress());
+                    ps.setTimestamp(7, Timestamp.valueOf(record.getVerificationTime()));
+                });
+        evictArchiveCounts(file);
+        log.info("核销记录分区{}因补写历史记录从归档文件恢复，{}条记录", month, rows.size());
+    }
+
+    private void createPartitionTable(YearMonth month) {
+        String table = tableName(month);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "id integer, coupon_id bigint not null, coupon_code varchar(8), company_id bigint, " +
+                "user_phone varchar(11) not null, ip_address varchar(45), verification_time timestamp not null, " +
+                "primary key (id))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_time ON " + table + " (verification_time)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_company_time ON " + table +
+                " (company_id, verification_time)");
+    }
+
+    private void evictArchiveCounts(Path file) {
+        String prefix = file + "|";
+        archiveCountCache.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 确定与时间范围重叠的分区，热表在前，其余按月份倒序
+     */
+    private List<Partition> partitionsFor(LocalDateTime from, LocalDateTime to) {
+        List<Partition> catalog = findPartitions();
+        List<Partition> result = new ArrayList<>();
+
+        YearMonth latestSealed = null;
+        for (Partition partition : catalog) {
+            if (partition.getState() != State.ROLLING) {
+                latestSealed = partition.getMonth();
+                break;
+            }
+        }
+        if (latestSealed == null || to == null || to.isAfter(start(latestSealed.plusMonths(1)))) {
+            result.add(null);
+        }
+
+        for (Partition partition : catalog) {
+            LocalDateTime monthStart = start(partition.getMonth());
+            LocalDateTime monthEnd = start(partition.getMonth().plusMonths(1));
+            if ((to == null || to.isAfter(monthStart)) && (from == null || from.isBefore(monthEnd))) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    private long count(Partition partition, Long companyId, LocalDateTime from, LocalDateTime to) {
+        if (partition == null || partition.getState() != State.ARCHIVE) {
+            List<Object> args = new ArrayList<>();
+            String where = whereClause(companyId, from, to, args);
+            Long count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + tableName(partition) + where, Long.class, args.toArray());
+            return count != null ? count : 0;
+        }
+
+        Path file = archiveFile(partition.getMonth());
+        boolean fullMonth = (from == null || !from.isAfter(start(partition.getMonth())))
+                && (to == null || !to.isBefore(start(partition.getMonth().plusMonths(1))));
+        if (fullMonth) {
+            return archiveCountCache.computeIfAbsent(file + "|" + companyId,
+                    key -> countArchive(file, companyId, from, to));
+        }
+        return countArchive(file, companyId, from, to);
+    }
+
+    private List<VerificationRecord> read(Partition partition, Long companyId, LocalDateTime from, LocalDateTime to,
+                                          long offset, int limit) {
+        if (partition == null || partition.getState() != State.ARCHIVE) {
+            List<Object> args = new ArrayList<>();
+            String where = whereClause(companyId, from, to, args);
+            args.add(limit);
+            args.add(offset);
+            return jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + tableName(partition) + where +
+                    " ORDER BY verification_time DESC, id DESC LIMIT ? OFFSET ?", RECORD_MAPPER, args.toArray());
+        }
+
+        List<VerificationRecord> rows = new ArrayList<>(limit);
+        long[] skipped = {0};
+        scanArchive(archiveFile(partition.getMonth()), companyId, from, to, record -> {
+            if (skipped[0] < offset) {
+                skipped[0]++;
+                return true;
+            }
+            rows.add(record);
+            return rows.size() < limit;
+        });
+        return rows;
+    }
+
+    private long countArchive(Path file, Long companyId, LocalDateTime from, LocalDateTime to) {
+        long[] count = {0};
+        scanArchive(file, companyId, from, to, record -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    private void scanArchive(Path file, Long companyId, LocalDateTime from, LocalDateTime to,
+                             Predicate<VerificationRecord> consumer) {
+        if (!Files.exists(file)) {
+            log.warn("核销记录归档文件不存在: {}", file);
+            return;
+        }
+        try {
+            VerificationLogArchiveFile.scan(file, record ->
+                    (companyId == null || companyId.equals(record.getCompanyId()))
+                            && (from == null || !record.getVerificationTime().isBefore(from))
+                            && (to == null || record.getVerificationTime().isBefore(to)),
+                    consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取核销记录归档文件失败: " + file, e);
+        }
+    }
+
+    private String whereClause(Long companyId, LocalDateTime from, LocalDateTime to, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (companyId != null) {
+            conditions.add("company_id = ?");
+            args.add(companyId);
+        }
+        if (from != null) {
+            conditions.add("verification_time >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            conditions.add("verification_time < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private String tableName(Partition partition) {
+        return partition == null ? HOT_TABLE : tableName(partition.getMonth());
+    }
+
+    private String tableName(YearMonth month) {
+        return HOT_TABLE + "_" + month.format(MONTH_FORMAT);
+    }
+
+    private Path archiveFile(YearMonth month) {
+        Integer shard = ShardContext.current();
+        Path dir = shard != null ? Paths.get(archiveDir, "shard-" + shard) : Paths.get(archiveDir);
+        return dir.resolve(tableName(month) + ".bin.gz");
+    }
+
+    private static LocalDateTime start(YearMonth month) {
+        return month.atDay(1).atStartOfDay();
+    }
+}
@@ -0,0 +1,121 @@
+package com.coupon.repository;
+
+import com.coupon.dto.VerificationRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 核销记录压缩归档文件
+ * <p>
+ * 文件为GZIP压缩的定长头部加逐行记录，记录按核销时间倒序排列，写入完成后置为只读。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+final class VerificationLogArchiveFile {
+
+    private static final int MAGIC = 0x43564C41;
+    private static final int VERSION = 1;
+
+    private VerificationLogArchiveFile() {
+    }
+
+    /**
+     * 写入归档文件
+     *
+     * @param target 目标文件
+     * @param source 按核销时间倒序逐行提供记录的数据源
+     * @throws IOException 写入失败
+     */
+    static void write(Path target, Consumer<Consumer<VerificationRecord>> source) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            IOException[] failure = new IOException[1];
+            source.accept(record -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writeRecord(out, record);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeBoolean(false);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        target.toFile().setReadOnly();
+    }
+
+    /**
+     * 顺序扫描归档文件
+     *
+     * @param file     归档文件
+     * @param filter   过滤条件
+     * @param consumer 记录处理函数，返回false时停止扫描
+     * @throws IOException 读取失败
+     */
+    static void scan(Path file, Predicate<VerificationRecord> filter,
+                     Predicate<VerificationRecord> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("无法识别的核销记录归档文件: " + file);
+            }
+            while (in.readBoolean()) {
+                VerificationRecord record = readRecord(in);
+                if (filter.test(record) && !consumer.test(record)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, VerificationRecord record) throws IOException {
+        out.writeBoolean(true);
+        out.writeLong(record.getId());
+        out.writeLong(record.getCouponId());
+        out.writeUTF(record.getCouponCode() != null ? record.getCouponCode() : "");
+        out.writeLong(record.getCompanyId() != null ? record.getCompanyId() : -1L);
+        out.writeUTF(record.getUserPhone());
+        out.writeUTF(record.getIpAddress() != null ? record.getIpAddress() : "");
+        out.writeLong(record.getVerificationTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private static VerificationRecord readRecord(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        long couponId = in.readLong();
+        String couponCode = in.readUTF();
+        long companyId = in.readLong();
+        String userPhone = in.readUTF();
+        String ipAddress = in.readUTF();
+        LocalDateTime verificationTime = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(in.readLong()), ZoneId.systemDefault());
+        return new VerificationRecord(id, couponId, couponCode.isEmpty() ? null : couponCode,
+                companyId < 0 ? null : companyId, userPhone, ipAddress.isEmpty() ? null : ipAddress,
+                verificationTime);
+    }
+}
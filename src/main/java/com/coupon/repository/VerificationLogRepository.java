@@ -1,17 +1,18 @@
 package com.coupon.repository;
 
+import com.coupon.dto.CouponVerifyResponse;
 import com.coupon.entity.VerificationLog;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
+import java.util.Optional;
 
 /**
  * 核销记录数据访问层接口
+ * <p>
+ * 负责热表的写入与维护，分页查询由 {@link PartitionedVerificationLogRepository} 按分区路由。
  * 
  * @author System
  * @version 1.0.0
@@ -20,47 +21,15 @@ import java.time.LocalDate;
 public interface VerificationLogRepository extends JpaRepository<VerificationLog, Long> {
 
     /**
-     * 分页查询核销记录
+     * 按操作员与幂等键查找首次核销结果，只访问核销记录与企业表
      *
-     * @param pageable 分页参数
-     * @return 核销记录分页数据
+     * @param userPhone      操作员手机号
+     * @param idempotencyKey 幂等键
+     * @return 首次核销的响应
      */
-    @Query("SELECT vl FROM VerificationLog vl JOIN FETCH vl.coupon c JOIN FETCH c.company comp ORDER BY vl.verificationTime DESC")
-    Page<VerificationLog> findAllWithDetails(Pageable pageable);
-
-    /**
-     * 根据日期分页查询核销记录
-     *
-     * @param date     查询日期
-     * @param pageable 分页参数
-     * @return 核销记录分页数据
-     */
-    @Query("SELECT vl FROM VerificationLog vl JOIN FETCH vl.coupon c JOIN FETCH c.company comp " +
-           "WHERE DATE(vl.verificationTime) = :date ORDER BY vl.verificationTime DESC")
-    Page<VerificationLog> findByDate(@Param("date") LocalDate date, Pageable pageable);
-
-    /**
-     * 根据企业ID分页查询核销记录
-     *
-     * @param companyId 企业ID
-     * @param pageable  分页参数
-     * @return 核销记录分页数据
-     */
-    @Query("SELECT vl FROM VerificationLog vl JOIN FETCH vl.coupon c JOIN FETCH c.company comp " +
-           "WHERE c.company.id = :companyId ORDER BY vl.verificationTime DESC")
-    Page<VerificationLog> findByCompanyId(@Param("companyId") Long companyId, Pageable pageable);
-
-    /**
-     * 根据日期和企业ID分页查询核销记录
-     *
-     * @param date      查询日期
-     * @param companyId 企业ID
-     * @param pageable  分页参数
-     * @return 核销记录分页数据
-     */
-    @Query("SELECT vl FROM VerificationLog vl JOIN FETCH vl.coupon c JOIN FETCH c.company comp " +
-           "WHERE DATE(vl.verificationTime) = :date AND c.company.id = :companyId ORDER BY vl.verificationTime DESC")
-    Page<VerificationLog> findByDateAndCompanyId(@Param("date") LocalDate date,
-                                                  @Param("companyId") Long companyId,
-                                                  Pageable pageable);
-} 
\ No newline at end of file
+    @Query("SELECT new com.coupon.dto.CouponVerifyResponse(v.couponCode, c.name, v.verificationTime, false) " +
+           "FROM VerificationLog v, Company c WHERE c.id = v.companyId " +
+           "AND v.userPhone = :userPhone AND v.idempotencyKey = :idempotencyKey")
+    Optional<CouponVerifyResponse> findResponseByIdempotencyKey(@Param("userPhone") String userPhone,
+                                                                @Param("idempotencyKey") String idempotencyKey);
+}
@@ -0,0 +1,82 @@
+package com.coupon.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 客户端IP解析
+ * <p>
+ * 默认直接使用连接的远端地址。X-Forwarded-For 与 X-Real-IP 可由客户端任意伪造，只有远端地址属于
+ * {@code coupon.client-ip.trusted-proxies}（IP或CIDR）时才采用：从 X-Forwarded-For 最右侧开始跳过可信代理，
+ * 取第一个不可信的地址，没有该请求头时取 X-Real-IP。核销记录与限流使用同一规则。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Component
+public class ClientIpResolver {
+
+    private final List<IpAddressMatcher> trustedProxies;
+
+    public ClientIpResolver(@Value("${coupon.client-ip.trusted-proxies:}") List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies.stream()
+                .map(String::trim)
+                .filter(proxy -> !proxy.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+    }
+
+    /**
+     * 获取客户端IP地址
+     *
+     * @param request HTTP请求
+     * @return IP地址
+     */
+    public String resolve(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        if (!isTrusted(remoteAddress)) {
+            return remoteAddress;
+        }
+
+        String xForwardedForHeader = request.getHeader("X-Forwarded-For");
+        if (xForwardedForHeader != null && !xForwardedForHeader.isBlank()) {
+            String[] hops = xForwardedForHeader.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (hop.isEmpty() || "unknown".equalsIgnoreCase(hop)) {
+                    // 无法识别的一跳之前的地址不可信，停在最近的可信代理
+                    return remoteAddress;
+                }
+                if (!isTrusted(hop)) {
+                    return hop;
+                }
+                remoteAddress = hop;
+            }
+            return remoteAddress;
+        }
+
+        String xRealIpHeader = request.getHeader("X-Real-IP");
+        if (xRealIpHeader != null && !xRealIpHeader.isBlank() && !"unknown".equalsIgnoreCase(xRealIpHeader)) {
+            return xRealIpHeader.trim();
+        }
+        return remoteAddress;
+    }
+
+    private boolean isTrusted(String address) {
+        for (IpAddressMatcher proxy : trustedProxies) {
+            try {
+                if (proxy.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                // 不是合法的IP地址
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package com.coupon.security;
+
+import com.coupon.dto.ApiResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.web.access.AccessDeniedHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 权限不足处理器
+ * <p>
+ * 直接写出403响应，避免转发到错误页时因无状态认证丢失而变成401；响应体在启动时序列化一次。
+ * 
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class JwtAccessDeniedHandler implements AccessDeniedHandler {
+
+    private static final byte[] FORBIDDEN_BODY = serialize(ApiResponse.error("无权访问该接口"));
+
+    @Override
+    public void handle(HttpServletRequest request,
+                       HttpServletResponse response,
+                       AccessDeniedException accessDeniedException) throws IOException, ServletException {
+        log.warn("Responding with forbidden error. URI - {}", request.getRequestURI());
+
+        response.setContentType("application/json;charset=UTF-8");
+        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+        response.setContentLength(FORBIDDEN_BODY.length);
+        response.getOutputStream().write(FORBIDDEN_BODY);
+    }
+
+    private static byte[] serialize(ApiResponse<Object> apiResponse) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(apiResponse);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.coupon.security;
 
 import com.coupon.dto.ApiResponse;
+import com.coupon.metrics.ExpectedOutcome;
+import com.coupon.metrics.ExpectedOutcomeLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
@@ -14,25 +17,37 @@ import java.io.IOException;
 
 /**
  * JWT认证入口点
- * 
+ * <p>
+ * 未认证请求是预期内失败，只计数并抽样记录日志；响应体在启动时序列化一次。
+ *
  * @author System
  * @version 1.0.0
  */
-@Slf4j
 @Component
+@RequiredArgsConstructor
 public class JwtAuthenticationEntryPoint implements AuthenticationEntryPoint {
 
+    private static final byte[] UNAUTHORIZED_BODY = serialize(ApiResponse.error("访问令牌缺失或无效"));
+
+    private final ExpectedOutcomeLog expectedOutcomeLog;
+
     @Override
     public void commence(HttpServletRequest request, 
                         HttpServletResponse response,
                         AuthenticationException authException) throws IOException, ServletException {
-        log.error("Responding with unauthorized error. Message - {}", authException.getMessage());
-        
+        expectedOutcomeLog.record(ExpectedOutcome.UNAUTHORIZED, request.getRequestURI());
+
         response.setContentType("application/json;charset=UTF-8");
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-        
-        ApiResponse<Object> apiResponse = ApiResponse.error("访问令牌缺失或无效");
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.writeValue(response.getOutputStream(), apiResponse);
+        response.setContentLength(UNAUTHORIZED_BODY.length);
+        response.getOutputStream().write(UNAUTHORIZED_BODY);
+    }
+
+    private static byte[] serialize(ApiResponse<Object> apiResponse) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(apiResponse);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
     }
 } 
\ No newline at end of file
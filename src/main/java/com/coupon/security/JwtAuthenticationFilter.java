@@ -1,12 +1,18 @@
 package com.coupon.security;
 
+import com.coupon.cache.UserStatusCache;
+import com.coupon.metrics.VerificationStage;
+import com.coupon.metrics.VerificationStageMetrics;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -14,10 +20,13 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * JWT认证过滤器
+ * <p>
+ * 令牌有效但用户已被禁用或删除时不建立认证，请求按未登录处理。
  * 
  * @author System
  * @version 1.0.0
@@ -28,6 +37,14 @@ import java.util.ArrayList;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
+    private final VerificationStageMetrics stageMetrics;
+    private final UserStatusCache userStatusCache;
+
+    /**
+     * 管理员手机号，登录后授予 ROLE_ADMIN
+     */
+    @Value("${coupon.admin.phones:}")
+    private Set<String> adminPhones;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -36,17 +53,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             
+            long parseStart = stageMetrics.start();
             if (StringUtils.hasText(jwt) && jwtUtil.validateToken(jwt)) {
                 String phone = jwtUtil.getPhoneFromToken(jwt);
                 Long userId = jwtUtil.getUserIdFromToken(jwt);
+                stageMetrics.record(VerificationStage.JWT_PARSE, parseStart);
                 
-                // 创建认证对象
-                UserPrincipal userPrincipal = new UserPrincipal(userId, phone);
-                UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(userPrincipal, null, new ArrayList<>());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (userStatusCache.isActive(userId)) {
+                    // 创建认证对象
+                    UserPrincipal userPrincipal = new UserPrincipal(userId, phone);
+                    List<GrantedAuthority> authorities = adminPhones.contains(phone)
+                        ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : List.of();
+                    UsernamePasswordAuthenticationToken authentication = 
+                        new UsernamePasswordAuthenticationToken(userPrincipal, null, authorities);
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                } else {
+                    log.warn("用户已被禁用，拒绝令牌: {}", phone);
+                }
             }
         } catch (Exception ex) {
             log.error("Could not set user authentication in security context", ex);
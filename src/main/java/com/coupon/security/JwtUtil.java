@@ -1,8 +1,10 @@
 package com.coupon.security;
 
+import com.coupon.metrics.ExpectedOutcome;
+import com.coupon.metrics.ExpectedOutcomeLog;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -12,14 +14,18 @@ import java.util.Date;
 
 /**
  * JWT工具类
- * 
+ * <p>
+ * 过期与无效令牌是客户端的预期内失败，只计数并抽样记录日志。
+ *
  * @author System
  * @version 1.0.0
  */
-@Slf4j
 @Component
+@RequiredArgsConstructor
 public class JwtUtil {
 
+    private final ExpectedOutcomeLog expectedOutcomeLog;
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
@@ -77,6 +83,16 @@ public class JwtUtil {
         return claims.get("userId", Long.class);
     }
 
+    /**
+     * 从令牌中获取过期时间
+     *
+     * @param token JWT令牌
+     * @return 过期时间
+     */
+    public Date getExpirationFromToken(String token) {
+        return getClaimsFromToken(token).getExpiration();
+    }
+
     /**
      * 从令牌中获取Claims
      *
@@ -104,16 +120,11 @@ public class JwtUtil {
                 .build()
                 .parseSignedClaims(token);
             return true;
-        } catch (SecurityException ex) {
-            log.error("Invalid JWT signature: {}", ex.getMessage());
-        } catch (MalformedJwtException ex) {
-            log.error("Invalid JWT token: {}", ex.getMessage());
         } catch (ExpiredJwtException ex) {
-            log.error("Expired JWT token: {}", ex.getMessage());
-        } catch (UnsupportedJwtException ex) {
-            log.error("Unsupported JWT token: {}", ex.getMessage());
-        } catch (IllegalArgumentException ex) {
-            log.error("JWT claims string is empty: {}", ex.getMessage());
+            expectedOutcomeLog.record(ExpectedOutcome.TOKEN_EXPIRED, ex.getMessage());
+        } catch (JwtException | IllegalArgumentException ex) {
+            // 签名不正确、格式错误、不支持的令牌或空令牌
+            expectedOutcomeLog.record(ExpectedOutcome.TOKEN_INVALID, ex.getMessage());
         }
         return false;
     }
@@ -0,0 +1,121 @@
+package com.coupon.service;
+
+import com.coupon.analytics.VerificationColumnFile;
+import com.coupon.cluster.ClusterRouter;
+import com.coupon.dto.VerificationRecord;
+import com.coupon.repository.PartitionedVerificationLogRepository;
+import com.coupon.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 核销分析快照服务
+ * <p>
+ * 每天凌晨把前一天的核销记录导出为列式文件（见 {@link VerificationColumnFile}），供分析查询使用。
+ * 离线核销同步会补写之前日期的记录，因此同时重新导出此前 refresh-days 天的文件。
+ * 导出按天顺序读取各分片的热表、月分区表或归档文件，只在夜间执行一次，不影响核销写入。
+ * 集群模式下各节点只有归自己的核销记录，导出不完整，定时导出不执行。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalyticsSnapshotService {
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final PartitionedVerificationLogRepository partitionedVerificationLogRepository;
+    private final ShardRouter shardRouter;
+    private final ClusterRouter clusterRouter;
+
+    @Value("${coupon.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.analytics.dir:data/analytics}")
+    private String dir;
+
+    @Value("${coupon.analytics.refresh-days:2}")
+    private int refreshDays;
+
+    /**
+     * 导出前一天及此前 refresh-days 天的快照
+     */
+    @Scheduled(cron = "${coupon.analytics.snapshot-cron:0 30 0 * * *}")
+    public void exportRecentDays() {
+        if (!enabled || clusterRouter.isEnabled()) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            exportRange(yesterday.minusDays(refreshDays), yesterday);
+        } catch (RuntimeException e) {
+            log.error("导出核销分析快照失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 导出日期范围内每天的快照，已存在的文件会被替换（补导历史数据）
+     *
+     * @param from 起始日期（含）
+     * @param to   结束日期（含），不能晚于昨天
+     * @return 导出的记录总数
+     */
+    public long exportRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("起始日期不能晚于结束日期");
+        }
+        if (!to.isBefore(LocalDate.now())) {
+            throw new RuntimeException("只能导出已结束的日期");
+        }
+        long total = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            total += exportDay(day);
+        }
+        return total;
+    }
+
+    /**
+     * 快照目录下某天的文件路径
+     *
+     * @param day 日期
+     * @return 文件路径，文件可能不存在
+     */
+    public Path snapshotFile(LocalDate day) {
+        return Paths.get(dir, "verifications-" + day.format(FILE_DATE) + ".col");
+    }
+
+    private int exportDay(LocalDate day) {
+        List<VerificationRecord> records = new ArrayList<>();
+        for (List<VerificationRecord> shardRecords : shardRouter.onAllShards(() -> {
+            List<VerificationRecord> result = new ArrayList<>();
+            partitionedVerificationLogRepository.scanRecords(day.atStartOfDay(), day.plusDays(1).atStartOfDay(),
+                    result::add);
+            return result;
+        })) {
+            records.addAll(shardRecords);
+        }
+
+        Path file = snapshotFile(day);
+        try {
+            long size = VerificationColumnFile.write(file, day, records);
+            log.info("核销分析快照{}导出完成，{}条记录，{}字节", day, records.size(), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("导出核销分析快照失败: " + file, e);
+        }
+        return records.size();
+    }
+}
@@ -0,0 +1,31 @@
+package com.coupon.service;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 券码已使用异常
+ * <p>
+ * 券码此前已被核销（多次券为使用次数已达上限）时抛出，携带用完时的核销时间，未知时为空。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+public class CouponAlreadyUsedException extends RuntimeException {
+
+    /**
+     * 使用时间
+     */
+    private final LocalDateTime usedAt;
+
+    public CouponAlreadyUsedException(LocalDateTime usedAt) {
+        this(usedAt != null ? "券码已被使用，使用时间: " + usedAt : "券码使用次数已达上限", usedAt);
+    }
+
+    protected CouponAlreadyUsedException(String message, LocalDateTime usedAt) {
+        super(message);
+        this.usedAt = usedAt;
+    }
+}
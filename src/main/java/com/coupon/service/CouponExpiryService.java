@@ -0,0 +1,120 @@
+package com.coupon.service;
+
+import com.coupon.entity.Coupon;
+import com.coupon.repository.ArchivedCouponRepository;
+import com.coupon.repository.CouponRepository;
+import com.coupon.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 券码过期清理服务
+ * <p>
+ * 带有效期的未使用券码按失效时间落入小时桶（见 {@link Coupon#EXPIRY_BUCKET_SECONDS}），桶号列上的部分索引只包含这些券码，
+ * 相当于以数据库索引实现的时间轮。清理任务从最早的非空桶开始，逐桶把已整体过期的桶（早于当前桶）分批移入归档表，
+ * 每批在独立的短事务中完成；查找下一个桶只需在索引上取最小值，不扫描整个热表。
+ * 当前桶内已过期的券码留到桶结束后清理，期间由核销时的有效期检查拒绝。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class CouponExpiryService {
+
+    private final CouponRepository couponRepository;
+    private final ArchivedCouponRepository archivedCouponRepository;
+    private final ShardRouter shardRouter;
+    private final PlatformTransactionManager transactionManager;
+    private final Counter expiredCounter;
+
+    @Value("${coupon.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.expiry.chunk-size:500}")
+    private int chunkSize;
+
+    public CouponExpiryService(CouponRepository couponRepository, ArchivedCouponRepository archivedCouponRepository,
+                               ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.couponRepository = couponRepository;
+        this.archivedCouponRepository = archivedCouponRepository;
+        this.shardRouter = shardRouter;
+        this.transactionManager = transactionManager;
+        this.expiredCounter = Counter.builder("coupon.expiry.archived")
+                .description("过期清理移入归档表的券码数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 归档已过期的券码
+     */
+    @Scheduled(fixedDelayString = "${coupon.expiry.interval-ms:300000}",
+               initialDelayString = "${coupon.expiry.interval-ms:300000}")
+    public void archiveExpiredCoupons() {
+        if (!enabled) {
+            return;
+        }
+
+        long currentBucket = Coupon.expiryBucketOf(LocalDateTime.now());
+        List<Integer> archived = shardRouter.onAllShards(() -> archiveBucketsBefore(currentBucket));
+        int total = archived.stream().mapToInt(Integer::intValue).sum();
+        if (total > 0) {
+            log.info("已归档{}个过期券码", total);
+        }
+    }
+
+    /**
+     * 在当前库中逐桶归档给定时间桶之前的过期券码
+     *
+     * @param currentBucket 当前时间桶（不含）
+     * @return 归档数量
+     */
+    private int archiveBucketsBefore(long currentBucket) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        Long bucket;
+        while ((bucket = couponRepository.findFirstExpiryBucketBefore(currentBucket)) != null) {
+            int archived = archiveBucket(transactionTemplate, bucket);
+            log.debug("过期时间桶{}已清理，归档{}个券码", bucket, archived);
+            total += archived;
+        }
+        return total;
+    }
+
+    /**
+     * 分批归档一个时间桶内的券码
+     *
+     * @param transactionTemplate 事务模板
+     * @param bucket              时间桶
+     * @return 归档数量
+     */
+    private int archiveBucket(TransactionTemplate transactionTemplate, long bucket) {
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> {
+                List<Long> ids = couponRepository.findIdsByExpiryBucket(bucket, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                archivedCouponRepository.copyExpiredFromHotTable(ids, LocalDateTime.now());
+                couponRepository.deleteOperatorUses(ids);
+                return couponRepository.deleteByIdIn(ids);
+            });
+            total += moved;
+            expiredCounter.increment(moved);
+        } while (moved == chunkSize);
+        return total;
+    }
+}
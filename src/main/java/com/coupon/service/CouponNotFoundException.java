@@ -0,0 +1,16 @@
+package com.coupon.service;
+
+/**
+ * 券码不存在异常
+ * <p>
+ * 券码不存在或不属于请求的企业时抛出。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class CouponNotFoundException extends RuntimeException {
+
+    public CouponNotFoundException() {
+        super("券码不存在或企业不匹配");
+    }
+}
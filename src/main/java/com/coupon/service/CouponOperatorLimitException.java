@@ -0,0 +1,17 @@
+package com.coupon.service;
+
+/**
+ * 操作员使用次数已达上限异常
+ * <p>
+ * 券码设置了每个操作员的使用次数上限、当前操作员已用满时抛出。券码本身仍可由其他操作员使用，
+ * 按已使用处理（二进制协议状态为已使用，时间为0）。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class CouponOperatorLimitException extends CouponAlreadyUsedException {
+
+    public CouponOperatorLimitException(int limit) {
+        super("该操作员对此券码的使用次数已达上限（" + limit + "次）", null);
+    }
+}
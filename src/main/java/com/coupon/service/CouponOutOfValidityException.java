@@ -0,0 +1,66 @@
+package com.coupon.service;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 券码不在有效期内异常
+ * <p>
+ * 券码尚未生效或已过期时抛出，携带生效时间或失效时间。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+public class CouponOutOfValidityException extends RuntimeException {
+
+    /**
+     * 是否已过期（否则为尚未生效）
+     */
+    private final boolean expired;
+
+    /**
+     * 已过期时为失效时间，尚未生效时为生效时间
+     */
+    private final LocalDateTime boundary;
+
+    private CouponOutOfValidityException(boolean expired, LocalDateTime boundary) {
+        super(expired ? "券码已过期，失效时间: " + boundary : "券码尚未生效，生效时间: " + boundary);
+        this.expired = expired;
+        this.boundary = boundary;
+    }
+
+    /**
+     * 券码已过期
+     *
+     * @param validUntil 失效时间
+     * @return 异常
+     */
+    public static CouponOutOfValidityException expired(LocalDateTime validUntil) {
+        return new CouponOutOfValidityException(true, validUntil);
+    }
+
+    /**
+     * 券码尚未生效
+     *
+     * @param validFrom 生效时间
+     * @return 异常
+     */
+    public static CouponOutOfValidityException notYetValid(LocalDateTime validFrom) {
+        return new CouponOutOfValidityException(false, validFrom);
+    }
+
+    /**
+     * 按给定时间判断券码为何不在有效期内
+     *
+     * @param validFrom  生效时间，可为空
+     * @param validUntil 失效时间，可为空
+     * @param time       判断时间
+     * @return 异常
+     */
+    public static CouponOutOfValidityException at(LocalDateTime validFrom, LocalDateTime validUntil,
+                                                  LocalDateTime time) {
+        return validFrom != null && time.isBefore(validFrom) ? notYetValid(validFrom) : expired(validUntil);
+    }
+}
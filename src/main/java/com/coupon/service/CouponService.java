@@ -1,28 +1,44 @@
 package com.coupon.service;
 
+import com.coupon.cache.CompanyCache;
+import com.coupon.cluster.ClusterRouter;
 import com.coupon.dto.BatchAddCouponRequest;
 import com.coupon.dto.CouponVerifyRequest;
 import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.dto.VerificationRecord;
 import com.coupon.entity.Company;
 import com.coupon.entity.Coupon;
 import com.coupon.entity.VerificationLog;
+import com.coupon.idempotency.IdempotencyCache;
+import com.coupon.metrics.VerificationStage;
+import com.coupon.metrics.VerificationStageMetrics;
+import com.coupon.repository.ArchivedCouponRepository;
 import com.coupon.repository.CompanyRepository;
 import com.coupon.repository.CouponRepository;
+import com.coupon.repository.PartitionedVerificationLogRepository;
 import com.coupon.repository.VerificationLogRepository;
+import com.coupon.sharding.ShardRouter;
+import com.coupon.state.CouponStateIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 
 /**
@@ -39,6 +55,17 @@ public class CouponService {
     private final CouponRepository couponRepository;
     private final CompanyRepository companyRepository;
     private final VerificationLogRepository verificationLogRepository;
+    private final ArchivedCouponRepository archivedCouponRepository;
+    private final PartitionedVerificationLogRepository partitionedVerificationLogRepository;
+    private final ShardRouter shardRouter;
+    private final CouponStateService couponStateService;
+    private final VerificationStageMetrics stageMetrics;
+    private final IdempotencyCache idempotencyCache;
+    private final ClusterRouter clusterRouter;
+    private final CompanyCache companyCache;
+
+    @Value("${coupon.expiry.default-valid-days:0}")
+    private int defaultValidDays;
 
     /**
      * 获取企业列表
@@ -50,47 +77,147 @@ public class CouponService {
         if (search != null && !search.trim().isEmpty()) {
             return companyRepository.findByNameContainingAndIsActiveTrue(search.trim());
         }
-        return companyRepository.findByIsActiveTrueOrderByName();
+        return companyCache.getActiveCompanies();
     }
 
     /**
      * 核销券码
      *
-     * @param request   核销请求
-     * @param userPhone 操作员手机号
-     * @param ipAddress IP地址
+     * @param request        核销请求
+     * @param userPhone      操作员手机号
+     * @param ipAddress      IP地址
+     * @param idempotencyKey 客户端幂等键，可为空；券码已被同一操作员以该幂等键核销时回放首次结果
      * @return 核销响应
      */
     @Transactional
-    public CouponVerifyResponse verifyCoupon(CouponVerifyRequest request, String userPhone, String ipAddress) {
-        // 查询券码
-        Coupon coupon = couponRepository.findByCodeAndCompanyId(request.getCode(), request.getCompanyId())
-                .orElseThrow(() -> new RuntimeException("券码不存在或企业不匹配"));
+    public CouponVerifyResponse verifyCoupon(CouponVerifyRequest request, String userPhone, String ipAddress,
+                                             String idempotencyKey) {
+        // 内存索引可直接判定不存在或已使用的券码
+        int state = couponStateService.lookup(request.getCode(), request.getCompanyId());
+        if (state == CouponStateIndex.ABSENT) {
+            throw new CouponNotFoundException();
+        }
+        if (state > CouponStateIndex.UNUSED) {
+            CouponVerifyResponse replayed = replayIdempotent(request, userPhone, idempotencyKey);
+            if (replayed != null) {
+                return replayed;
+            }
+            throw new CouponAlreadyUsedException(CouponStateService.toDateTime(state));
+        }
 
-        // 检查是否已使用
+        // 查询券码，热表未命中时回查归档表
+        long lookupStart = stageMetrics.start();
+        Optional<Coupon> found = couponRepository.findByCodeAndCompanyId(request.getCode(), request.getCompanyId());
+        stageMetrics.record(VerificationStage.COUPON_LOOKUP, lookupStart);
+        Coupon coupon = found
+                .orElseThrow(() -> archivedCouponRepository.findByCodeAndCompanyId(request.getCode(), request.getCompanyId())
+                        .<RuntimeException>map(archived -> archived.getExpiredAt() != null
+                                ? CouponOutOfValidityException.expired(archived.getExpiredAt())
+                                : new CouponAlreadyUsedException(archived.getUsedAt()))
+                        .orElseGet(CouponNotFoundException::new));
+
+        // 检查是否已使用（多次券为次数已用完）
         if (coupon.getIsUsed()) {
-            throw new RuntimeException("券码已被使用，使用时间: " + coupon.getUsedAt());
+            couponStateService.recordUsed(coupon.getCode(), request.getCompanyId(), coupon.getUsedAt());
+            CouponVerifyResponse replayed = replayIdempotent(request, userPhone, idempotencyKey);
+            if (replayed != null) {
+                return replayed;
+            }
+            throw new CouponAlreadyUsedException(coupon.getUsedAt());
         }
 
-        // 更新券码状态
-        coupon.setIsUsed(true);
-        coupon.setUsedAt(LocalDateTime.now());
-        coupon.setUsedBy(userPhone);
-        couponRepository.save(coupon);
+        // 检查有效期，券码行已随上面的查询载入，无需额外查询
+        LocalDateTime now = LocalDateTime.now();
+        if (!coupon.isValidAt(now)) {
+            throw CouponOutOfValidityException.at(coupon.getValidFrom(), coupon.getValidUntil(), now);
+        }
+
+        // 多次券未用完时不经过上面的已使用分支，同一幂等键的重试在此回放首次结果
+        if (coupon.getUsageLimit() > 1) {
+            CouponVerifyResponse replayed = replayIdempotent(request, userPhone, idempotencyKey);
+            if (replayed != null) {
+                return replayed;
+            }
+        }
+        if (coupon.getPerOperatorLimit() != null
+            && couponRepository.incrementOperatorUses(coupon.getId(), userPhone, coupon.getPerOperatorLimit()) == 0) {
+            throw new CouponOperatorLimitException(coupon.getPerOperatorLimit());
+        }
+
+        // 以条件UPDATE占用一次使用次数，不按读到的状态整行写回；用完时标记已使用并移出过期时间桶。
+        // 事务以 BEGIN IMMEDIATE 开始，读到的已使用次数在提交前不会被其他写事务改变
+        long saveStart = stageMetrics.start();
+        int updated = couponRepository.incrementUseCount(coupon.getId(), now, userPhone);
+        stageMetrics.record(VerificationStage.COUPON_SAVE, saveStart);
+        if (updated == 0) {
+            throw new CouponAlreadyUsedException(coupon.getUsedAt());
+        }
+        int remainingUses = coupon.getUsageLimit() - coupon.getUseCount() - 1;
 
         // 记录核销日志
         VerificationLog verificationLog = new VerificationLog();
         verificationLog.setCoupon(coupon);
+        verificationLog.setCouponCode(coupon.getCode());
+        verificationLog.setCompanyId(coupon.getCompany().getId());
         verificationLog.setUserPhone(userPhone);
         verificationLog.setIpAddress(ipAddress);
+        verificationLog.setIdempotencyKey(idempotencyKey);
+        long insertStart = stageMetrics.start();
         verificationLogRepository.save(verificationLog);
+        stageMetrics.record(VerificationStage.LOG_INSERT, insertStart);
 
-        // 构建响应
-        return new CouponVerifyResponse(
+        CouponVerifyResponse response = new CouponVerifyResponse(
                 coupon.getCode(),
                 coupon.getCompany().getName(),
-                LocalDateTime.now()
+                verificationLog.getVerificationTime(),
+                false,
+                coupon.getUsageLimit() > 1 ? remainingUses : null
         );
+
+        // 记录提交耗时，提交后同步内存索引与幂等结果缓存
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long commitStart;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitStart = stageMetrics.start();
+            }
+
+            @Override
+            public void afterCommit() {
+                stageMetrics.record(VerificationStage.COMMIT, commitStart);
+                if (remainingUses == 0) {
+                    couponStateService.recordUsed(coupon.getCode(), request.getCompanyId(), now);
+                }
+                if (idempotencyKey != null) {
+                    idempotencyCache.put(userPhone, idempotencyKey, request.getCompanyId(), response);
+                }
+            }
+        });
+
+        return response;
+    }
+
+    /**
+     * 按幂等键从核销记录回放首次核销结果，用于缓存已淘汰或应用重启后的重试
+     *
+     * @param request        核销请求
+     * @param userPhone      操作员手机号
+     * @param idempotencyKey 幂等键
+     * @return 首次核销的响应，没有幂等键或未找到时返回null
+     */
+    private CouponVerifyResponse replayIdempotent(CouponVerifyRequest request, String userPhone, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        return verificationLogRepository.findResponseByIdempotencyKey(userPhone, idempotencyKey)
+                .filter(response -> response.getCode().equals(request.getCode()))
+                .map(response -> {
+                    idempotencyCache.recordLogReplay();
+                    idempotencyCache.put(userPhone, idempotencyKey, request.getCompanyId(), response);
+                    return response;
+                })
+                .orElse(null);
     }
 
     /**
@@ -104,27 +231,25 @@ public class CouponService {
      */
     public Map<String, Object> getVerificationRecords(String date, Long companyId, int page, int limit) {
         Pageable pageable = PageRequest.of(page - 1, limit);
-        Page<VerificationLog> recordPage;
-
         LocalDate queryDate = date != null ? LocalDate.parse(date) : null;
+        LocalDateTime from = queryDate != null ? queryDate.atStartOfDay() : null;
+        LocalDateTime to = queryDate != null ? queryDate.plusDays(1).atStartOfDay() : null;
 
-        if (queryDate != null && companyId != null) {
-            recordPage = verificationLogRepository.findByDateAndCompanyId(queryDate, companyId, pageable);
-        } else if (queryDate != null) {
-            recordPage = verificationLogRepository.findByDate(queryDate, pageable);
-        } else if (companyId != null) {
-            recordPage = verificationLogRepository.findByCompanyId(companyId, pageable);
+        Page<VerificationRecord> recordPage;
+        if (companyId == null && shardRouter.isEnabled()) {
+            recordPage = findRecordsOnAllShards(from, to, pageable);
         } else {
-            recordPage = verificationLogRepository.findAllWithDetails(pageable);
+            recordPage = shardRouter.onShard(companyId,
+                    () -> partitionedVerificationLogRepository.findRecords(from, to, companyId, pageable));
         }
 
         // 构建响应数据
         List<Map<String, Object>> records = new ArrayList<>();
-        for (VerificationLog log : recordPage.getContent()) {
+        for (VerificationRecord log : recordPage.getContent()) {
             Map<String, Object> record = new HashMap<>();
             record.put("verificationTime", log.getVerificationTime());
-            record.put("code", log.getCoupon().getCode());
-            record.put("companyName", log.getCoupon().getCompany().getName());
+            record.put("code", log.getCouponCode());
+            record.put("companyName", companyCache.getName(log.getCompanyId()));
             record.put("userPhone", log.getUserPhone());
             record.put("ipAddress", log.getIpAddress());
             records.add(record);
@@ -144,6 +269,34 @@ public class CouponService {
         return result;
     }
 
+    /**
+     * 跨分片查询核销记录
+     * <p>
+     * 每个分片取前 (page + 1) * limit 条记录，按核销时间归并后截取目标页，总数为各分片之和。
+     *
+     * @param from     起始时间
+     * @param to       结束时间
+     * @param pageable 分页参数
+     * @return 核销记录分页数据
+     */
+    private Page<VerificationRecord> findRecordsOnAllShards(LocalDateTime from, LocalDateTime to, Pageable pageable) {
+        Pageable topN = PageRequest.of(0, (int) (pageable.getOffset() + pageable.getPageSize()));
+        List<Page<VerificationRecord>> shardPages = shardRouter.onAllShards(
+                () -> partitionedVerificationLogRepository.findRecords(from, to, null, topN));
+
+        List<VerificationRecord> merged = new ArrayList<>();
+        long total = 0;
+        for (Page<VerificationRecord> shardPage : shardPages) {
+            merged.addAll(shardPage.getContent());
+            total += shardPage.getTotalElements();
+        }
+        merged.sort(Comparator.comparing(VerificationRecord::getVerificationTime).reversed());
+
+        int fromIndex = (int) Math.min(pageable.getOffset(), merged.size());
+        int toIndex = Math.min(fromIndex + pageable.getPageSize(), merged.size());
+        return new PageImpl<>(merged.subList(fromIndex, toIndex), pageable, total);
+    }
+
     /**
      * 批量生成券码
      *
@@ -156,19 +309,38 @@ public class CouponService {
         Company company = companyRepository.findById(request.getCompanyId())
                 .orElseThrow(() -> new RuntimeException("企业不存在"));
 
+        // 未指定失效时间时按企业默认有效天数计算，企业未设置时使用全局默认值，0表示不限期
+        LocalDateTime validFrom = request.getValidFrom();
+        LocalDateTime validUntil = request.getValidUntil();
+        if (validUntil == null) {
+            int validDays = company.getCouponValidDays() != null ? company.getCouponValidDays() : defaultValidDays;
+            if (validDays > 0) {
+                validUntil = (validFrom != null ? validFrom : LocalDateTime.now()).plusDays(validDays);
+            }
+        }
+        if (validFrom != null && validUntil != null && !validUntil.isAfter(validFrom)) {
+            throw new RuntimeException("失效时间必须晚于生效时间");
+        }
+
         List<String> codes = new ArrayList<>();
         List<Coupon> coupons = new ArrayList<>();
 
         // 生成券码
         for (int i = 0; i < request.getCount(); i++) {
             String code;
+            // 集群模式下只生成归当前节点的券码，券码唯一性只需在所属节点检查
             do {
                 code = generateCouponCode();
-            } while (couponRepository.existsByCode(code));
+            } while (!clusterRouter.isLocal(code)
+                    || couponRepository.existsByCode(code) || archivedCouponRepository.existsByCode(code));
 
             Coupon coupon = new Coupon();
             coupon.setCode(code);
             coupon.setCompany(company);
+            coupon.setValidFrom(validFrom);
+            coupon.setValidUntil(validUntil);
+            coupon.setUsageLimit(request.getUsageLimit());
+            coupon.setPerOperatorLimit(request.getPerOperatorLimit());
             coupons.add(coupon);
             codes.add(code);
         }
@@ -176,6 +348,14 @@ public class CouponService {
         // 批量保存
         couponRepository.saveAll(coupons);
 
+        // 提交后同步内存索引
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                couponStateService.recordAdded(codes, company.getId());
+            }
+        });
+
         return codes;
     }
 
@@ -184,7 +364,7 @@ public class CouponService {
      *
      * @return 券码
      */
-    private String generateCouponCode() {
+    public static String generateCouponCode() {
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
         Random random = new Random();
         StringBuilder result = new StringBuilder();
@@ -0,0 +1,307 @@
+package com.coupon.service;
+
+import com.coupon.sharding.ShardContext;
+import com.coupon.sharding.ShardRouter;
+import com.coupon.state.CouponStateIndex;
+import com.coupon.state.CouponStateSnapshot;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 券码状态服务
+ * <p>
+ * 在内存中维护全部券码的存在性与使用状态，核销时可不访问数据库直接拒绝不存在或已使用的券码。
+ * 启动时内存映射加载最近一次快照，再只追赶快照水位之后新增的券码与核销记录；没有可用快照时全量重建。
+ * 运行期间定期及停机时写入快照。数据库始终是权威数据源，索引未就绪时所有请求照常走数据库。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CouponStateService {
+
+    /**
+     * 查询结果：索引未就绪，需查询数据库
+     */
+    public static final int UNKNOWN = -2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${coupon.state.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.state.snapshot-path:data/coupon-state.snapshot}")
+    private String snapshotPath;
+
+    @Value("${coupon.sharding.shard-count:1}")
+    private int configuredShardCount;
+
+    /**
+     * 当前索引，加载开始后即接收增量写入
+     */
+    private volatile CouponStateIndex index;
+
+    /**
+     * 索引已追上数据库，可用于判定
+     */
+    private volatile boolean ready;
+
+    /**
+     * 启动后在后台线程加载索引，不阻塞服务启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "coupon-state-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 查询券码状态
+     *
+     * @param code      券码
+     * @param companyId 企业ID
+     * @return {@link #UNKNOWN}、{@link CouponStateIndex#ABSENT}、{@link CouponStateIndex#UNUSED} 或使用时间epoch秒
+     */
+    public int lookup(String code, Long companyId) {
+        if (!ready) {
+            return UNKNOWN;
+        }
+        return index.lookup(code, companyId);
+    }
+
+    /**
+     * 记录新增券码（事务提交后调用）
+     *
+     * @param codes     券码列表
+     * @param companyId 企业ID
+     */
+    public void recordAdded(Collection<String> codes, Long companyId) {
+        CouponStateIndex current = index;
+        if (current != null) {
+            for (String code : codes) {
+                current.put(code, companyId, CouponStateIndex.UNUSED);
+            }
+        }
+    }
+
+    /**
+     * 记录券码已使用（事务提交后调用）
+     *
+     * @param code      券码
+     * @param companyId 企业ID
+     * @param usedAt    使用时间
+     */
+    public void recordUsed(String code, Long companyId, LocalDateTime usedAt) {
+        CouponStateIndex current = index;
+        if (current != null) {
+            current.put(code, companyId, toEpochSeconds(usedAt));
+        }
+    }
+
+    /**
+     * 将索引中的使用时间还原为本地时间
+     *
+     * @param epochSeconds 使用时间epoch秒
+     * @return 本地时间
+     */
+    public static LocalDateTime toDateTime(int epochSeconds) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(Integer.toUnsignedLong(epochSeconds)), ZoneId.systemDefault());
+    }
+
+    /**
+     * 定期写入快照
+     */
+    @Scheduled(fixedDelayString = "${coupon.state.snapshot-interval-ms:600000}",
+               initialDelayString = "${coupon.state.snapshot-interval-ms:600000}")
+    public void writeSnapshot() {
+        if (!ready) {
+            return;
+        }
+        long start = System.nanoTime();
+        // 先取水位再复制索引：水位之后的变更可能已在索引中，追赶时重复应用是幂等的
+        long[][] watermarks = currentWatermarks();
+        Path target = Paths.get(snapshotPath);
+        index.copySlots((codes, companies, usedAt, size) -> {
+            try {
+                new CouponStateSnapshot(System.currentTimeMillis(), watermarks[0], watermarks[1],
+                        codes, companies, usedAt, size).write(target);
+                log.info("券码状态快照已写入: {}个券码, 耗时{}ms", size, (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                log.warn("写入券码状态快照失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        writeSnapshot();
+    }
+
+    /**
+     * 加载索引：优先使用快照并追赶增量，否则全量重建
+     */
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            CouponStateSnapshot snapshot = readSnapshot();
+            long[][] watermarks;
+            String mode;
+            if (snapshot != null) {
+                index = CouponStateIndex.fromSlots(snapshot.getCodes(), snapshot.getCompanies(),
+                        snapshot.getUsedAt(), snapshot.getSize());
+                watermarks = new long[][]{snapshot.getLastCouponIds(), snapshot.getLastLogIds()};
+                mode = "快照";
+            } else {
+                List<Long> couponCounts = shardRouter.onAllShards(() -> maxId("coupons") + maxId("coupons_archive"));
+                long expectedSize = couponCounts.stream().mapToLong(Long::longValue).sum();
+                index = new CouponStateIndex((int) Math.min(expectedSize, Integer.MAX_VALUE >> 2));
+                watermarks = rebuildArchived();
+                mode = "全量重建";
+            }
+            long loadedAt = System.nanoTime();
+
+            long[] lastCouponIds = watermarks[0];
+            long[] lastLogIds = watermarks[1];
+            List<Integer> caughtUp = shardRouter.onAllShards(() -> {
+                int shard = currentShardIndex();
+                return catchUpCoupons(lastCouponIds[shard]) + catchUpLogs(lastLogIds[shard]);
+            });
+
+            ready = true;
+            log.info("券码状态就绪({}): {}个券码, 加载{}ms, 追赶{}条变更{}ms, 总耗时{}ms",
+                    mode, index.size(), (loadedAt - start) / 1_000_000,
+                    caughtUp.stream().mapToInt(Integer::intValue).sum(),
+                    (System.nanoTime() - loadedAt) / 1_000_000, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("券码状态加载失败，核销将直接查询数据库: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取快照，分片数量变化或文件损坏时放弃快照
+     */
+    private CouponStateSnapshot readSnapshot() {
+        Path file = Paths.get(snapshotPath);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            CouponStateSnapshot snapshot = CouponStateSnapshot.read(file);
+            if (snapshot.getLastCouponIds().length != shardCount()) {
+                log.warn("券码状态快照分片数量与当前配置不一致，改为全量重建");
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("券码状态快照不可用，改为全量重建: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 全量重建：载入归档券码，并以当前最大核销记录ID作为核销水位（热表券码由追赶步骤载入）
+     *
+     * @return 券码水位与核销记录水位
+     */
+    private long[][] rebuildArchived() {
+        long[] lastCouponIds = new long[shardCount()];
+        long[] lastLogIds = new long[shardCount()];
+        shardRouter.onAllShards(() -> {
+            lastLogIds[currentShardIndex()] = maxId("verification_logs");
+            jdbcTemplate.query("SELECT code, company_id, used_at FROM coupons_archive", rs -> {
+                index.put(rs.getString(1), rs.getLong(2), toEpochSeconds(rs.getTimestamp(3)));
+            });
+            return null;
+        });
+        return new long[][]{lastCouponIds, lastLogIds};
+    }
+
+    private int catchUpCoupons(long afterId) {
+        int[] count = {0};
+        jdbcTemplate.query("SELECT code, company_id, used_at FROM coupons WHERE id > ? ORDER BY id", rs -> {
+            index.put(rs.getString(1), rs.getLong(2), toEpochSeconds(rs.getTimestamp(3)));
+            count[0]++;
+        }, afterId);
+        return count[0];
+    }
+
+    /**
+     * 追赶水位之后有核销记录的券码的使用状态。多次券每次使用都有核销记录，只有次数用完（热表 is_used 为真，
+     * 或已移入归档表）的券码才记为已使用，使用时间取券码行上的 used_at
+     */
+    private int catchUpLogs(long afterId) {
+        int[] count = {0};
+        jdbcTemplate.query("SELECT DISTINCT l.coupon_code, l.company_id, COALESCE(c.used_at, a.used_at) " +
+                           "FROM verification_logs l " +
+                           "LEFT JOIN coupons c ON c.code = l.coupon_code AND c.is_used = 1 " +
+                           "LEFT JOIN coupons_archive a ON a.code = l.coupon_code AND a.used_at IS NOT NULL " +
+                           "WHERE l.id > ? AND l.coupon_code IS NOT NULL " +
+                           "AND (c.id IS NOT NULL OR a.id IS NOT NULL)", rs -> {
+            index.put(rs.getString(1), rs.getLong(2), toEpochSeconds(rs.getTimestamp(3)));
+            count[0]++;
+        }, afterId);
+        return count[0];
+    }
+
+    private long[][] currentWatermarks() {
+        long[] lastCouponIds = new long[shardCount()];
+        long[] lastLogIds = new long[shardCount()];
+        shardRouter.onAllShards(() -> {
+            int shard = currentShardIndex();
+            lastCouponIds[shard] = maxId("coupons");
+            lastLogIds[shard] = maxId("verification_logs");
+            return null;
+        });
+        return new long[][]{lastCouponIds, lastLogIds};
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max != null ? max : 0L;
+    }
+
+    private int shardCount() {
+        return shardRouter.isEnabled() ? configuredShardCount : 1;
+    }
+
+    private static int currentShardIndex() {
+        Integer shard = ShardContext.current();
+        return shard != null ? shard : 0;
+    }
+
+    private static int toEpochSeconds(Timestamp timestamp) {
+        return timestamp != null ? toEpochSeconds(timestamp.toLocalDateTime()) : CouponStateIndex.UNUSED;
+    }
+
+    private static int toEpochSeconds(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return CouponStateIndex.UNUSED;
+        }
+        return (int) Math.max(1, dateTime.atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+}
@@ -0,0 +1,89 @@
+package com.coupon.service;
+
+import com.coupon.repository.ArchivedCouponRepository;
+import com.coupon.repository.CouponRepository;
+import com.coupon.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 券码冷热分层服务
+ * <p>
+ * 定期把已核销超过保留时长的券码分批移入归档表，使热表与其索引的规模只与未使用的券码成正比。
+ * 每批在独立的短事务中完成，核销请求只需等待单批写入。券码ID为 AUTOINCREMENT，移出热表的ID不会被新券码复用，
+ * 归档表可直接沿用热表ID作为主键。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CouponTieringService {
+
+    private final CouponRepository couponRepository;
+    private final ArchivedCouponRepository archivedCouponRepository;
+    private final ShardRouter shardRouter;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${coupon.tiering.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.tiering.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${coupon.tiering.hot-retention-hours:24}")
+    private long hotRetentionHours;
+
+    /**
+     * 归档已核销的券码
+     */
+    @Scheduled(fixedDelayString = "${coupon.tiering.interval-ms:300000}",
+               initialDelayString = "${coupon.tiering.interval-ms:300000}")
+    public void archiveRedeemedCoupons() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(hotRetentionHours);
+        List<Integer> archived = shardRouter.onAllShards(() -> archiveBefore(cutoff));
+        int total = archived.stream().mapToInt(Integer::intValue).sum();
+        if (total > 0) {
+            log.info("已归档{}个已核销券码", total);
+        }
+    }
+
+    /**
+     * 在当前库中分批归档截止时间前已核销的券码
+     *
+     * @param cutoff 截止时间
+     * @return 归档数量
+     */
+    private int archiveBefore(LocalDateTime cutoff) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> {
+                List<Long> ids = couponRepository.findArchivableIds(cutoff, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                archivedCouponRepository.copyFromHotTable(ids, LocalDateTime.now());
+                couponRepository.deleteOperatorUses(ids);
+                return couponRepository.deleteByIdIn(ids);
+            });
+            total += moved;
+        } while (moved == chunkSize);
+        return total;
+    }
+}
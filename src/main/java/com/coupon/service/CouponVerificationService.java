@@ -0,0 +1,120 @@
+package com.coupon.service;
+
+import com.coupon.bulkhead.TenantBulkhead;
+import com.coupon.cluster.ClusterMember;
+import com.coupon.cluster.ClusterRouter;
+import com.coupon.coalescing.VerifyRequestCoalescer;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.idempotency.IdempotencyCache;
+import com.coupon.metrics.ExpectedOutcome;
+import com.coupon.metrics.ExpectedOutcomeLog;
+import com.coupon.sharding.ShardRouter;
+import com.coupon.usage.CouponUsageCounters;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * 核销入口服务
+ * <p>
+ * HTTP 接口与扫码站长连接共用的核销流程：集群模式下先把不归当前节点的券码转发到所属节点，
+ * 其余依次经过幂等回放、多次券内存预扣、合并重复请求、企业隔离舱、分片路由，最后执行核销事务。
+ * 券码不存在与已使用是预期内的失败，由所属节点计数并抽样记录日志，调用方不再逐条记录。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Service
+@RequiredArgsConstructor
+public class CouponVerificationService {
+
+    private final CouponService couponService;
+    private final ShardRouter shardRouter;
+    private final TenantBulkhead tenantBulkhead;
+    private final VerifyRequestCoalescer verifyRequestCoalescer;
+    private final IdempotencyCache idempotencyCache;
+    private final ClusterRouter clusterRouter;
+    private final ExpectedOutcomeLog expectedOutcomeLog;
+    private final CouponUsageCounters couponUsageCounters;
+
+    /**
+     * 核销券码
+     *
+     * @param request        核销请求
+     * @param userPhone      操作员手机号
+     * @param ipAddress      IP地址
+     * @param idempotencyKey 客户端幂等键，可为空
+     * @return 核销响应，与同时提交的相同请求合并时 duplicate 为 true
+     * @throws com.coupon.bulkhead.TenantBulkheadRejectedException 企业配额已满
+     */
+    public CouponVerifyResponse verify(CouponVerifyRequest request, String userPhone, String ipAddress,
+                                       String idempotencyKey) {
+        if (clusterRouter.isEnabled()) {
+            ClusterMember owner = clusterRouter.ownerOf(request.getCode());
+            if (!owner.isLocal()) {
+                return clusterRouter.forward(owner, request, userPhone, ipAddress, idempotencyKey);
+            }
+        }
+        return verifyOwned(request, userPhone, ipAddress, idempotencyKey);
+    }
+
+    /**
+     * 核销归当前节点所有的券码，不再转发
+     *
+     * @param request        核销请求
+     * @param userPhone      操作员手机号
+     * @param ipAddress      IP地址
+     * @param idempotencyKey 客户端幂等键，可为空
+     * @return 核销响应，与同时提交的相同请求合并时 duplicate 为 true
+     * @throws com.coupon.bulkhead.TenantBulkheadRejectedException 企业配额已满
+     */
+    public CouponVerifyResponse verifyOwned(CouponVerifyRequest request, String userPhone, String ipAddress,
+                                            String idempotencyKey) {
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotencyCache.MAX_KEY_LENGTH) {
+                throw new RuntimeException("幂等键不能为空且不能超过" + IdempotencyCache.MAX_KEY_LENGTH + "个字符");
+            }
+            CouponVerifyResponse replayed = idempotencyCache.lookup(userPhone, idempotencyKey,
+                    request.getCompanyId(), request.getCode());
+            if (replayed != null) {
+                return replayed;
+            }
+        }
+
+        // 多次券先在内存中预扣一次使用，核销结束后按结果结算
+        CouponUsageCounters.Permit permit = couponUsageCounters.acquire(request.getCompanyId(), request.getCode());
+        CouponVerifyResponse response = null;
+        try {
+            response = verifyRequestCoalescer.execute(request.getCompanyId(), request.getCode(), userPhone,
+                    () -> tenantBulkhead.execute(request.getCompanyId(),
+                            () -> shardRouter.onShard(request.getCompanyId(),
+                                    () -> couponService.verifyCoupon(request, userPhone, ipAddress, idempotencyKey))));
+            return response;
+        } catch (CouponNotFoundException e) {
+            expectedOutcomeLog.record(ExpectedOutcome.COUPON_NOT_FOUND, request.getCode());
+            throw e;
+        } catch (CouponAlreadyUsedException e) {
+            expectedOutcomeLog.record(ExpectedOutcome.COUPON_ALREADY_USED, request.getCode());
+            throw e;
+        } catch (CouponOutOfValidityException e) {
+            expectedOutcomeLog.record(ExpectedOutcome.COUPON_OUT_OF_VALIDITY, request.getCode());
+            throw e;
+        } finally {
+            if (response != null) {
+                couponUsageCounters.completed(request.getCompanyId(), request.getCode(), permit, response);
+            } else {
+                couponUsageCounters.release(permit);
+            }
+        }
+    }
+
+    /**
+     * 重复扫码的提示信息
+     *
+     * @param response 合并后的核销响应
+     * @return 提示信息
+     */
+    public static String duplicateMessage(CouponVerifyResponse response) {
+        return "重复扫码，券码已核销，核销时间: " + response.getVerificationTime();
+    }
+}
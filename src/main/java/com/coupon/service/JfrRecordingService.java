@@ -0,0 +1,317 @@
+package com.coupon.service;
+
+import com.coupon.dto.JfrRecordingSummary;
+import com.coupon.metrics.EndpointEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * JFR录制服务
+ * <p>
+ * 按需启动 JDK Flight Recorder 录制：在 profile 预设基础上开启分配采样，并把锁竞争阈值降到配置值。
+ * 停止后将录制写入文件，按 {@link EndpointEvent} 标记的请求区间把同一线程上的分配采样与锁等待事件
+ * 归属到接口，汇总每请求分配量、主要分配位置、竞争最多的锁与虚拟线程固定位置。同一时间只允许一个录制。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class JfrRecordingService {
+
+    private static final String ALLOCATION_EVENT = "jdk.ObjectAllocationSample";
+    private static final String MONITOR_EVENT = "jdk.JavaMonitorEnter";
+    private static final String PARK_EVENT = "jdk.ThreadPark";
+    /**
+     * 虚拟线程固定在载体线程上阻塞，仅 Java 21 及以上存在，低版本忽略该设置
+     */
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern ID_PATTERN = Pattern.compile("coupon-\\d{8}-\\d{6}");
+
+    /**
+     * 取位置时跳过JDK自身的帧，定位到发起分配或加锁的应用及框架代码
+     */
+    private static final String[] SKIPPED_FRAME_PREFIXES = {"java.", "jdk.", "sun."};
+
+    @Value("${coupon.jfr.dir:data/jfr}")
+    private String recordingDir;
+
+    @Value("${coupon.jfr.max-duration-seconds:300}")
+    private long maxDurationSeconds;
+
+    @Value("${coupon.jfr.lock-threshold-ms:1}")
+    private long lockThresholdMs;
+
+    @Value("${coupon.jfr.top-sites:10}")
+    private int topSites;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * 进行中的录制，请求拦截器据此决定是否记录接口事件
+     */
+    private volatile Recording recording;
+
+    /**
+     * 是否正在录制
+     */
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * 启动录制，超过最长时长后自动停止采集
+     *
+     * @return 录制ID
+     */
+    public String start() {
+        lock.lock();
+        try {
+            if (recording != null) {
+                throw new RuntimeException("已有录制正在进行: " + recording.getName());
+            }
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("profile").getSettings());
+            settings.put(ALLOCATION_EVENT + "#enabled", "true");
+            settings.put(ALLOCATION_EVENT + "#stackTrace", "true");
+            settings.put(MONITOR_EVENT + "#enabled", "true");
+            settings.put(MONITOR_EVENT + "#threshold", lockThresholdMs + " ms");
+            settings.put(PARK_EVENT + "#enabled", "true");
+            settings.put(PARK_EVENT + "#threshold", lockThresholdMs + " ms");
+            settings.put(PINNED_EVENT + "#enabled", "true");
+            settings.put(PINNED_EVENT + "#stackTrace", "true");
+            settings.put(PINNED_EVENT + "#threshold", lockThresholdMs + " ms");
+            settings.put(EndpointEvent.NAME + "#enabled", "true");
+
+            Recording newRecording = new Recording(settings);
+            newRecording.setName("coupon-" + LocalDateTime.now().format(ID_FORMAT));
+            newRecording.setDuration(Duration.ofSeconds(maxDurationSeconds));
+            newRecording.setToDisk(true);
+            newRecording.start();
+            recording = newRecording;
+            log.info("JFR录制已启动: {}, 最长{}秒", newRecording.getName(), maxDurationSeconds);
+            return newRecording.getName();
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException("加载JFR配置失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止录制，写入文件并汇总
+     *
+     * @return 录制摘要
+     */
+    public JfrRecordingSummary stop() {
+        Recording stopped;
+        lock.lock();
+        try {
+            if (recording == null) {
+                throw new RuntimeException("当前没有进行中的录制");
+            }
+            stopped = recording;
+            recording = null;
+        } finally {
+            lock.unlock();
+        }
+
+        try (stopped) {
+            if (stopped.getState() == RecordingState.RUNNING) {
+                stopped.stop();
+            }
+            Path file = Paths.get(recordingDir).resolve(stopped.getName() + ".jfr");
+            Files.createDirectories(file.getParent());
+            stopped.dump(file);
+            long durationMs = Duration.between(stopped.getStartTime(), stopped.getStopTime()).toMillis();
+            log.info("JFR录制已停止: {}, 时长{}ms", stopped.getName(), durationMs);
+            return new JfrRecordingSummary(stopped.getName(), durationMs, Files.size(file), summarize(file));
+        } catch (IOException e) {
+            throw new RuntimeException("写入JFR录制失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取录制文件
+     *
+     * @param id 录制ID
+     * @return 文件路径
+     */
+    public Path getRecordingFile(String id) {
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new RuntimeException("录制ID格式错误");
+        }
+        Path file = Paths.get(recordingDir).resolve(id + ".jfr");
+        if (!Files.exists(file)) {
+            throw new RuntimeException("录制文件不存在");
+        }
+        return file;
+    }
+
+    /**
+     * 两遍读取录制文件：先收集各线程的请求区间，再归属分配、锁等待与固定事件
+     */
+    private List<JfrRecordingSummary.EndpointProfile> summarize(Path file) throws IOException {
+        Map<Long, TreeMap<Instant, RequestSpan>> spansByThread = new HashMap<>();
+        Map<String, EndpointStats> stats = new HashMap<>();
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                if (!EndpointEvent.NAME.equals(event.getEventType().getName()) || event.getThread() == null) {
+                    continue;
+                }
+                String endpoint = event.getString("endpoint");
+                stats.computeIfAbsent(endpoint, key -> new EndpointStats()).requests++;
+                spansByThread.computeIfAbsent(event.getThread().getJavaThreadId(), key -> new TreeMap<>())
+                        .put(event.getStartTime(), new RequestSpan(endpoint, event.getEndTime()));
+            }
+        }
+
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String type = event.getEventType().getName();
+                boolean allocation = ALLOCATION_EVENT.equals(type);
+                boolean pinned = PINNED_EVENT.equals(type);
+                if (!allocation && !pinned && !MONITOR_EVENT.equals(type) && !PARK_EVENT.equals(type)) {
+                    continue;
+                }
+                String endpoint = endpointOf(spansByThread, event);
+                if (endpoint == null) {
+                    continue;
+                }
+                EndpointStats endpointStats = stats.get(endpoint);
+                if (allocation) {
+                    long weight = event.getLong("weight");
+                    endpointStats.allocatedBytes += weight;
+                    endpointStats.add(endpointStats.allocationSites,
+                            site(event.getClass("objectClass"), event.getStackTrace()), weight);
+                } else if (pinned) {
+                    endpointStats.add(endpointStats.pinnedSites,
+                            site(null, event.getStackTrace()), event.getDuration().toNanos());
+                } else {
+                    RecordedClass lockClass = event.getClass(MONITOR_EVENT.equals(type) ? "monitorClass" : "parkedClass");
+                    endpointStats.add(endpointStats.contendedLocks,
+                            site(lockClass, event.getStackTrace()), event.getDuration().toNanos());
+                }
+            }
+        }
+
+        List<JfrRecordingSummary.EndpointProfile> profiles = new ArrayList<>();
+        stats.forEach((endpoint, endpointStats) -> profiles.add(new JfrRecordingSummary.EndpointProfile(
+                endpoint,
+                endpointStats.requests,
+                endpointStats.allocatedBytes,
+                endpointStats.allocatedBytes / Math.max(1, endpointStats.requests),
+                top(endpointStats.allocationSites, 1),
+                top(endpointStats.contendedLocks, 1_000_000),
+                top(endpointStats.pinnedSites, 1_000_000))));
+        profiles.sort(Comparator.comparingLong(JfrRecordingSummary.EndpointProfile::getAllocatedBytes).reversed());
+        return profiles;
+    }
+
+    private static String endpointOf(Map<Long, TreeMap<Instant, RequestSpan>> spansByThread, RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        if (thread == null) {
+            return null;
+        }
+        TreeMap<Instant, RequestSpan> spans = spansByThread.get(thread.getJavaThreadId());
+        if (spans == null) {
+            return null;
+        }
+        Map.Entry<Instant, RequestSpan> span = spans.floorEntry(event.getStartTime());
+        if (span == null || span.getValue().end().isBefore(event.getStartTime())) {
+            return null;
+        }
+        return span.getValue().endpoint();
+    }
+
+    /**
+     * 位置描述，type 为空时（固定事件）只取栈顶方法
+     */
+    private static String site(RecordedClass type, RecordedStackTrace stackTrace) {
+        String typeName = type != null ? type.getName() : "?";
+        if (stackTrace == null) {
+            return typeName;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String method = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+            if (!isSkipped(method)) {
+                String location = method + ":" + frame.getLineNumber();
+                return type != null ? typeName + " @ " + location : location;
+            }
+        }
+        return typeName;
+    }
+
+    private static boolean isSkipped(String method) {
+        for (String prefix : SKIPPED_FRAME_PREFIXES) {
+            if (method.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<JfrRecordingSummary.Hotspot> top(Map<String, long[]> sites, long divisor) {
+        return sites.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[1]).reversed())
+                .limit(topSites)
+                .map(entry -> new JfrRecordingSummary.Hotspot(entry.getKey(), entry.getValue()[0],
+                        entry.getValue()[1] / divisor))
+                .toList();
+    }
+
+    /**
+     * 请求区间
+     */
+    private record RequestSpan(String endpoint, Instant end) {
+    }
+
+    /**
+     * 接口累计值，位置表的值为 {事件数, 累计值}
+     */
+    private static final class EndpointStats {
+        private long requests;
+        private long allocatedBytes;
+        private final Map<String, long[]> allocationSites = new HashMap<>();
+        private final Map<String, long[]> contendedLocks = new HashMap<>();
+        private final Map<String, long[]> pinnedSites = new HashMap<>();
+
+        private void add(Map<String, long[]> sites, String site, long value) {
+            long[] totals = sites.computeIfAbsent(site, key -> new long[2]);
+            totals[0]++;
+            totals[1] += value;
+        }
+    }
+}
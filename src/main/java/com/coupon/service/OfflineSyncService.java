@@ -0,0 +1,291 @@
+package com.coupon.service;
+
+import com.coupon.dto.OfflineRedemption;
+import com.coupon.dto.OfflineSyncConflict;
+import com.coupon.dto.OfflineSyncRequest;
+import com.coupon.dto.OfflineSyncResponse;
+import com.coupon.dto.VerificationRecord;
+import com.coupon.entity.ArchivedCoupon;
+import com.coupon.entity.Coupon;
+import com.coupon.offline.OfflineSnapshot;
+import com.coupon.repository.ArchivedCouponRepository;
+import com.coupon.repository.CompanyRepository;
+import com.coupon.repository.CouponRepository;
+import com.coupon.repository.PartitionedVerificationLogRepository;
+import com.coupon.state.CouponStateIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线核销服务
+ * <p>
+ * 扫码站在线时下载企业未使用券码的签名快照，断网期间本地核销，恢复后一次上传带时间戳的核销记录。
+ * 同步在单个事务中按核销时间升序处理整批记录，同一券码以最早的核销为准：
+ * 券码未使用或已有的核销更晚时本条生效（后者记为被取代），否则本条记为冲突。
+ * 结果只取决于各核销时间，与扫码站上传的先后顺序无关。调用方负责企业隔离舱与分片路由。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OfflineSyncService {
+
+    private static final Comparator<OfflineRedemption> EARLIEST_FIRST = Comparator
+            .comparing(OfflineRedemption::getRedeemedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(OfflineRedemption::getCode, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final CouponRepository couponRepository;
+    private final ArchivedCouponRepository archivedCouponRepository;
+    private final CompanyRepository companyRepository;
+    private final PartitionedVerificationLogRepository partitionedVerificationLogRepository;
+    private final CouponStateService couponStateService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${coupon.offline.private-key:}")
+    private String privateKeySpec;
+
+    @Value("${coupon.offline.public-key:}")
+    private String publicKeySpec;
+
+    @Value("${coupon.offline.snapshot-ttl-hours:24}")
+    private long snapshotTtlHours;
+
+    @Value("${coupon.offline.max-batch:1000}")
+    private int maxBatch;
+
+    @Value("${coupon.offline.max-clock-skew-seconds:300}")
+    private long maxClockSkewSeconds;
+
+    private PrivateKey privateKey;
+    private PublicKey publicKey;
+    private Counter appliedCounter;
+    private Map<OfflineSyncConflict.Reason, Counter> conflictCounters;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        KeyFactory keyFactory = KeyFactory.getInstance(OfflineSnapshot.SIGNATURE_ALGORITHM);
+        if (StringUtils.hasText(privateKeySpec) && StringUtils.hasText(publicKeySpec)) {
+            privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeySpec.trim())));
+            publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeySpec.trim())));
+        } else {
+            KeyPair keyPair = KeyPairGenerator.getInstance(OfflineSnapshot.SIGNATURE_ALGORITHM).generateKeyPair();
+            privateKey = keyPair.getPrivate();
+            publicKey = keyPair.getPublic();
+            log.warn("未配置离线快照签名密钥，使用临时密钥，重启后扫码站需重新获取公钥");
+        }
+
+        appliedCounter = Counter.builder("coupon.offline.applied")
+                .description("离线同步生效的核销数")
+                .register(meterRegistry);
+        conflictCounters = new HashMap<>();
+        for (OfflineSyncConflict.Reason reason : OfflineSyncConflict.Reason.values()) {
+            conflictCounters.put(reason, Counter.builder("coupon.offline.conflicts")
+                    .description("离线同步冲突数")
+                    .tag("reason", reason.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 快照签名公钥
+     *
+     * @return X.509编码公钥的Base64
+     */
+    public String publicKey() {
+        return Base64.getEncoder().encodeToString(publicKey.getEncoded());
+    }
+
+    /**
+     * 生成企业的离线快照，格式见 {@link OfflineSnapshot}
+     *
+     * @param companyId 企业ID
+     * @return 签名后的快照字节
+     */
+    @Transactional(readOnly = true)
+    public byte[] snapshot(Long companyId) {
+        if (!companyRepository.existsById(companyId)) {
+            throw new RuntimeException("企业不存在");
+        }
+        List<String> codes = couponRepository.findUnusedCodesByCompanyId(companyId, LocalDateTime.now());
+        long[] packed = new long[codes.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = CouponStateIndex.packCode(codes.get(i));
+        }
+        Arrays.sort(packed);
+        long now = System.currentTimeMillis();
+        return OfflineSnapshot.encode(companyId, now, now + TimeUnit.HOURS.toMillis(snapshotTtlHours), packed, privateKey);
+    }
+
+    /**
+     * 同步离线核销记录
+     *
+     * @param request   同步请求
+     * @param userPhone 操作员手机号
+     * @param ipAddress IP地址
+     * @return 生效数与冲突列表
+     */
+    @Transactional
+    public OfflineSyncResponse sync(OfflineSyncRequest request, String userPhone, String ipAddress) {
+        if (request.getRedemptions().size() > maxBatch) {
+            throw new RuntimeException("单次同步最多" + maxBatch + "条核销记录");
+        }
+        Long companyId = request.getCompanyId();
+        LocalDateTime latest = LocalDateTime.now().plusSeconds(maxClockSkewSeconds);
+        List<OfflineRedemption> ordered = new ArrayList<>(request.getRedemptions());
+        ordered.removeIf(Objects::isNull);
+        ordered.sort(EARLIEST_FIRST);
+
+        // 一次查出本批涉及的券码，热表未命中的再查归档表
+        Set<String> codes = new HashSet<>();
+        for (OfflineRedemption redemption : ordered) {
+            if (isValid(redemption, latest)) {
+                codes.add(redemption.getCode());
+            }
+        }
+        Map<String, Coupon> coupons = new HashMap<>();
+        Map<String, ArchivedCoupon> archived = new HashMap<>();
+        if (!codes.isEmpty()) {
+            for (Coupon coupon : couponRepository.findByCompanyIdAndCodeIn(companyId, codes)) {
+                coupons.put(coupon.getCode(), coupon);
+            }
+            codes.removeAll(coupons.keySet());
+        }
+        if (!codes.isEmpty()) {
+            for (ArchivedCoupon coupon : archivedCouponRepository.findByCompanyIdAndCodeIn(companyId, codes)) {
+                archived.put(coupon.getCode(), coupon);
+            }
+        }
+
+        List<OfflineSyncConflict> conflicts = new ArrayList<>();
+        Map<String, Coupon> applied = new HashMap<>();
+        List<VerificationRecord> records = new ArrayList<>();
+        for (OfflineRedemption redemption : ordered) {
+            String code = redemption.getCode();
+            LocalDateTime redeemedAt = redemption.getRedeemedAt();
+            if (!isValid(redemption, latest)) {
+                conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.INVALID, null, null));
+                continue;
+            }
+            Coupon coupon = coupons.get(code);
+            if (coupon == null) {
+                ArchivedCoupon archivedCoupon = archived.get(code);
+                if (archivedCoupon == null) {
+                    conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.NOT_FOUND, null, null));
+                } else if (archivedCoupon.getExpiredAt() != null) {
+                    conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.OUT_OF_VALIDITY, null, null));
+                } else {
+                    conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.ALREADY_USED,
+                            archivedCoupon.getUsedAt(), archivedCoupon.getUsedBy()));
+                }
+                continue;
+            }
+            if (!coupon.isValidAt(redeemedAt)) {
+                conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.OUT_OF_VALIDITY, null, null));
+                continue;
+            }
+            // 多次券的各次使用互不排斥，按时间顺序在剩余次数内逐条生效
+            if (coupon.getUsageLimit() > 1) {
+                if (coupon.getUseCount() >= coupon.getUsageLimit() || (coupon.getPerOperatorLimit() != null
+                        && couponRepository.incrementOperatorUses(coupon.getId(), userPhone,
+                                                                  coupon.getPerOperatorLimit()) == 0)) {
+                    conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.ALREADY_USED,
+                            coupon.getUsedAt(), coupon.getUsedBy()));
+                    continue;
+                }
+                coupon.setUseCount(coupon.getUseCount() + 1);
+                if (coupon.getUseCount() >= coupon.getUsageLimit()) {
+                    coupon.setIsUsed(true);
+                    coupon.setUsedAt(redeemedAt);
+                    coupon.setUsedBy(userPhone);
+                }
+                applied.put(code, coupon);
+                records.add(new VerificationRecord(null, coupon.getId(), code, companyId, userPhone, ipAddress, redeemedAt));
+                continue;
+            }
+            // 按时间升序处理，本批已生效的同一券码必然更早
+            if (coupon.getIsUsed() && (applied.containsKey(code)
+                    || coupon.getUsedAt() == null || !coupon.getUsedAt().isAfter(redeemedAt))) {
+                conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.ALREADY_USED,
+                        coupon.getUsedAt(), coupon.getUsedBy()));
+                continue;
+            }
+            if (coupon.getIsUsed()) {
+                conflicts.add(conflict(redemption, OfflineSyncConflict.Reason.SUPERSEDED,
+                        coupon.getUsedAt(), coupon.getUsedBy()));
+            }
+            // 保存时券码移出过期时间桶
+            coupon.setIsUsed(true);
+            coupon.setUseCount(1);
+            coupon.setUsedAt(redeemedAt);
+            coupon.setUsedBy(userPhone);
+            applied.put(code, coupon);
+            records.add(new VerificationRecord(null, coupon.getId(), code, companyId, userPhone, ipAddress, redeemedAt));
+        }
+
+        couponRepository.saveAllAndFlush(applied.values());
+        partitionedVerificationLogRepository.insertRecords(records);
+
+        // 提交后同步内存索引与指标
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (Coupon coupon : applied.values()) {
+                    if (coupon.getIsUsed()) {
+                        couponStateService.recordUsed(coupon.getCode(), companyId, coupon.getUsedAt());
+                    }
+                }
+                appliedCounter.increment(records.size());
+                for (OfflineSyncConflict conflict : conflicts) {
+                    conflictCounters.get(conflict.getReason()).increment();
+                }
+            }
+        });
+
+        log.info("离线核销同步: 企业{}，操作员{}，{}条记录，生效{}，冲突{}",
+                companyId, userPhone, ordered.size(), records.size(), conflicts.size());
+        return new OfflineSyncResponse(records.size(), conflicts);
+    }
+
+    private static boolean isValid(OfflineRedemption redemption, LocalDateTime latest) {
+        return CouponStateIndex.packCode(redemption.getCode()) >= 0
+                && redemption.getRedeemedAt() != null
+                && !redemption.getRedeemedAt().isAfter(latest);
+    }
+
+    private static OfflineSyncConflict conflict(OfflineRedemption redemption, OfflineSyncConflict.Reason reason,
+                                                LocalDateTime usedAt, String usedBy) {
+        return new OfflineSyncConflict(redemption.getCode(), redemption.getRedeemedAt(), reason, usedAt, usedBy);
+    }
+}
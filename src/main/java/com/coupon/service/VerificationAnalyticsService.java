@@ -0,0 +1,242 @@
+package com.coupon.service;
+
+import com.coupon.analytics.VerificationColumnFile;
+import com.coupon.cache.CompanyCache;
+import com.coupon.dto.VerificationAnalytics;
+import com.coupon.dto.VerificationAnalytics.CompanyCount;
+import com.coupon.dto.VerificationAnalytics.DailyCount;
+import com.coupon.dto.VerificationAnalytics.OperatorCount;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 核销分析服务
+ * <p>
+ * 在专用的 fork-join 线程池中并行读取日期范围内的每日列式快照，按天拆分任务并逐级合并部分结果，
+ * 计算核销曲线、星期×小时热力图、企业与操作员排行，全程不访问数据库（企业名称来自企业缓存）。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Service
+@RequiredArgsConstructor
+public class VerificationAnalyticsService {
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final AnalyticsSnapshotService analyticsSnapshotService;
+    private final CompanyCache companyCache;
+
+    @Value("${coupon.analytics.parallelism:0}")
+    private int parallelism;
+
+    @Value("${coupon.analytics.max-range-days:366}")
+    private int maxRangeDays;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("analytics-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 计算日期范围内的核销分析报表
+     *
+     * @param from      起始日期（含）
+     * @param to        结束日期（含）
+     * @param companyId 企业ID，为空表示全部企业
+     * @param limit     操作员排行条数
+     * @return 分析报表
+     */
+    public VerificationAnalytics analyze(LocalDate from, LocalDate to, Long companyId, int limit) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("起始日期不能晚于结束日期");
+        }
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > maxRangeDays) {
+            throw new RuntimeException("查询范围不能超过" + maxRangeDays + "天");
+        }
+        if (limit < 1) {
+            throw new RuntimeException("排行条数必须大于0");
+        }
+
+        List<Path> files = new ArrayList<>();
+        List<LocalDate> missingDays = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            Path file = analyticsSnapshotService.snapshotFile(day);
+            if (Files.isRegularFile(file)) {
+                files.add(file);
+            } else {
+                missingDays.add(day);
+            }
+        }
+
+        Aggregate aggregate = files.isEmpty()
+                ? new Aggregate(days)
+                : pool.invoke(new ScanTask(files, 0, files.size(), from, days, companyId));
+
+        List<DailyCount> daily = new ArrayList<>(days);
+        long cumulative = 0;
+        for (int i = 0; i < days; i++) {
+            cumulative += aggregate.daily[i];
+            daily.add(new DailyCount(from.plusDays(i), aggregate.daily[i], cumulative));
+        }
+        List<CompanyCount> companies = new ArrayList<>();
+        aggregate.companies.forEach((id, count) -> companies.add(new CompanyCount(id, companyCache.getName(id), count)));
+        companies.sort(Comparator.comparingLong(CompanyCount::getCount).reversed());
+        List<OperatorCount> operators = new ArrayList<>();
+        aggregate.operators.forEach((phone, count) -> operators.add(new OperatorCount(phone, count)));
+        operators.sort(Comparator.comparingLong(OperatorCount::getCount).reversed()
+                .thenComparing(OperatorCount::getUserPhone));
+
+        return new VerificationAnalytics(from, to, companyId, aggregate.total, daily, aggregate.heatmap, companies,
+                operators.subList(0, Math.min(limit, operators.size())), missingDays);
+    }
+
+    /**
+     * 部分聚合结果
+     */
+    private static final class Aggregate {
+        private long total;
+        private final long[] daily;
+        private final long[][] heatmap = new long[7][24];
+        private final Map<Long, Long> companies = new HashMap<>();
+        private final Map<String, Long> operators = new HashMap<>();
+
+        private Aggregate(int days) {
+            this.daily = new long[days];
+        }
+
+        private void merge(Aggregate other) {
+            total += other.total;
+            for (int i = 0; i < daily.length; i++) {
+                daily[i] += other.daily[i];
+            }
+            for (int day = 0; day < 7; day++) {
+                for (int hour = 0; hour < 24; hour++) {
+                    heatmap[day][hour] += other.heatmap[day][hour];
+                }
+            }
+            other.companies.forEach((id, count) -> companies.merge(id, count, Long::sum));
+            other.operators.forEach((phone, count) -> operators.merge(phone, count, Long::sum));
+        }
+    }
+
+    /**
+     * 按文件区间二分的扫描任务，单个文件为最小单位
+     */
+    private static final class ScanTask extends RecursiveTask<Aggregate> {
+        private final List<Path> files;
+        private final int start;
+        private final int end;
+        private final LocalDate from;
+        private final int days;
+        private final Long companyId;
+
+        private ScanTask(List<Path> files, int start, int end, LocalDate from, int days, Long companyId) {
+            this.files = files;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.days = days;
+            this.companyId = companyId;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (end - start == 1) {
+                return scan(files.get(start));
+            }
+            int middle = (start + end) >>> 1;
+            ScanTask left = new ScanTask(files, start, middle, from, days, companyId);
+            left.fork();
+            Aggregate right = new ScanTask(files, middle, end, from, days, companyId).compute();
+            Aggregate result = left.join();
+            result.merge(right);
+            return result;
+        }
+
+        private Aggregate scan(Path file) {
+            VerificationColumnFile columns;
+            try {
+                columns = VerificationColumnFile.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取核销分析快照失败: " + file, e);
+            }
+            Aggregate aggregate = new Aggregate(days);
+            // 企业筛选在字典上进行：快照中没有该企业时整天跳过
+            int companyIndex = -1;
+            if (companyId != null) {
+                long[] companies = columns.getCompanies();
+                for (int i = 0; i < companies.length; i++) {
+                    if (companies[i] == companyId) {
+                        companyIndex = i;
+                    }
+                }
+                if (companyIndex < 0) {
+                    return aggregate;
+                }
+            }
+
+            int[] millisOfDay = columns.getMillisOfDay();
+            int[] companyIndexes = columns.getCompanyIndexes();
+            int[] operatorIndexes = columns.getOperatorIndexes();
+            long[] companyCounts = new long[columns.getCompanies().length];
+            long[] operatorCounts = new long[columns.getOperators().length];
+            long[] weekdayHours = aggregate.heatmap[columns.getDay().getDayOfWeek().getValue() - 1];
+            long count = 0;
+            for (int row = 0; row < columns.getRowCount(); row++) {
+                if (companyIndex >= 0 && companyIndexes[row] != companyIndex) {
+                    continue;
+                }
+                count++;
+                weekdayHours[(int) (millisOfDay[row] / MILLIS_PER_HOUR)]++;
+                companyCounts[companyIndexes[row]]++;
+                operatorCounts[operatorIndexes[row]]++;
+            }
+
+            aggregate.total = count;
+            aggregate.daily[(int) ChronoUnit.DAYS.between(from, columns.getDay())] = count;
+            for (int i = 0; i < companyCounts.length; i++) {
+                if (companyCounts[i] > 0) {
+                    aggregate.companies.put(columns.getCompanies()[i], companyCounts[i]);
+                }
+            }
+            for (int i = 0; i < operatorCounts.length; i++) {
+                if (operatorCounts[i] > 0) {
+                    aggregate.operators.put(columns.getOperators()[i], operatorCounts[i]);
+                }
+            }
+            return aggregate;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.coupon.service;
+
+import com.coupon.repository.PartitionedVerificationLogRepository;
+import com.coupon.repository.PartitionedVerificationLogRepository.Partition;
+import com.coupon.repository.PartitionedVerificationLogRepository.State;
+import com.coupon.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+
+/**
+ * 核销记录分区滚动服务
+ * <p>
+ * 每天把热表中已结束月份的记录分批移入月分区表，并把超过保留期的分区表导出为压缩归档文件。
+ * 每批移动在独立的短事务中完成，不会长时间阻塞核销写入。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VerificationLogRolloverService {
+
+    private final PartitionedVerificationLogRepository partitionedVerificationLogRepository;
+    private final ShardRouter shardRouter;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${coupon.log-partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.log-partition.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${coupon.log-partition.archive-after-months:3}")
+    private int archiveAfterMonths;
+
+    /**
+     * 滚动核销记录分区
+     */
+    @Scheduled(cron = "${coupon.log-partition.rollover-cron:0 10 0 * * *}")
+    public void rollover() {
+        if (!enabled) {
+            return;
+        }
+        shardRouter.onAllShards(() -> {
+            rolloverCurrentDatabase();
+            return null;
+        });
+    }
+
+    /**
+     * 在当前库中滚动已结束月份并归档过期分区
+     */
+    private void rolloverCurrentDatabase() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        YearMonth currentMonth = YearMonth.now();
+
+        for (YearMonth month : partitionedVerificationLogRepository.findHotMonthsBefore(currentMonth)) {
+            Boolean started = transactionTemplate.execute(
+                    status -> partitionedVerificationLogRepository.beginRollover(month));
+            if (!Boolean.TRUE.equals(started)) {
+                continue;
+            }
+
+            int total = 0;
+            int moved;
+            do {
+                moved = transactionTemplate.execute(
+                        status -> partitionedVerificationLogRepository.moveChunk(month, chunkSize));
+                total += moved;
+            } while (moved > 0);
+
+            transactionTemplate.executeWithoutResult(
+                    status -> partitionedVerificationLogRepository.completeRollover(month));
+            log.info("核销记录分区{}滚动完成，移动{}条记录", month, total);
+        }
+
+        YearMonth archiveBefore = currentMonth.minusMonths(archiveAfterMonths);
+        for (Partition partition : partitionedVerificationLogRepository.findPartitions()) {
+            if (partition.getState() == State.TABLE && partition.getMonth().isBefore(archiveBefore)) {
+                partitionedVerificationLogRepository.archivePartition(partition.getMonth());
+            }
+        }
+    }
+}
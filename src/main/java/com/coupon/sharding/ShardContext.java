@@ -0,0 +1,39 @@
+package com.coupon.sharding;
+
+/**
+ * 当前线程的分片上下文
+ * <p>
+ * 保存本线程后续数据库操作应路由到的分片编号，为空时路由到全局库。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * 获取当前分片编号
+     *
+     * @return 分片编号，未设置时返回null
+     */
+    public static Integer current() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * 设置当前分片编号
+     *
+     * @param shard 分片编号，为null时清除
+     */
+    public static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+}
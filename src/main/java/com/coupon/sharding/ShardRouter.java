@@ -0,0 +1,212 @@
+package com.coupon.sharding;
+
+import com.coupon.metrics.QueryCounter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 分片路由器
+ * <p>
+ * 按企业ID把券码与核销记录的读写路由到对应分片；跨企业查询时并行访问所有分片，由调用方合并结果。
+ * 未开启分片时所有操作直接在当前线程执行；虚拟线程模式下并行访问使用虚拟线程。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardRouter {
+
+    private static final String COMPANY_SQL = "SELECT id, created_at, is_active, name, coupon_valid_days FROM companies";
+    private static final String UPSERT_COMPANY_SQL =
+            "INSERT OR REPLACE INTO companies (id, created_at, is_active, name, coupon_valid_days) VALUES (?, ?, ?, ?, ?)";
+
+    private final ObjectProvider<ShardRoutingDataSource> routingDataSourceProvider;
+    private final Environment environment;
+
+    @Value("${coupon.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${coupon.sharding.shard-count:1}")
+    private int shardCount;
+
+    private Executor fanOutExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (enabled && Threading.VIRTUAL.isActive(environment)) {
+            fanOutExecutor = new VirtualThreadTaskExecutor("shard-fanout-");
+        } else if (enabled) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            fanOutExecutor = Executors.newFixedThreadPool(shardCount, runnable -> {
+                Thread thread = new Thread(runnable, "shard-fanout-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fanOutExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * 是否开启分片存储
+     *
+     * @return 是否开启
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算企业所在分片
+     *
+     * @param companyId 企业ID
+     * @return 分片编号
+     */
+    public int shardFor(Long companyId) {
+        return (int) Math.floorMod(companyId, (long) shardCount);
+    }
+
+    /**
+     * 在企业所在分片上执行操作
+     * <p>
+     * 事务必须在本方法内部开启，否则连接已在路由前获取。
+     *
+     * @param companyId 企业ID
+     * @param action    数据库操作
+     * @param <T>       返回类型
+     * @return 操作结果
+     */
+    public <T> T onShard(Long companyId, Supplier<T> action) {
+        if (!enabled || companyId == null) {
+            return action.get();
+        }
+        return onShardIndex(shardFor(companyId), action);
+    }
+
+    /**
+     * 在所有分片上并行执行操作
+     *
+     * @param action 数据库操作
+     * @param <T>    返回类型
+     * @return 按分片编号排列的结果列表
+     */
+    public <T> List<T> onAllShards(Supplier<T> action) {
+        if (!enabled) {
+            return Collections.singletonList(action.get());
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int targetShard = shard;
+            futures.add(CompletableFuture.supplyAsync(
+                    QueryCounter.propagate(() -> onShardIndex(targetShard, action)), fanOutExecutor));
+        }
+
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 将全局库中的企业数据同步到所有分片
+     * <p>
+     * 分片内的券码查询需要关联企业表，因此每个分片保存一份企业数据副本。
+     */
+    public void syncCompanies() {
+        if (!enabled) {
+            return;
+        }
+
+        ShardRoutingDataSource routingDataSource = routingDataSourceProvider.getObject();
+        List<Object[]> companies = new JdbcTemplate(routingDataSource.getResolvedDefaultDataSource())
+                .query(COMPANY_SQL, ShardRouter::companyRow);
+        for (DataSource shardDataSource : routingDataSource.getResolvedDataSources().values()) {
+            new JdbcTemplate(shardDataSource).batchUpdate(UPSERT_COMPANY_SQL, companies);
+        }
+        log.info("已同步{}个企业到{}个分片", companies.size(), shardCount);
+    }
+
+    /**
+     * 将全局库中变更过的企业同步到所有分片，全局库中已删除的企业从分片删除
+     * <p>
+     * 启动后新增或修改的企业经变更日志到达，见 {@link com.coupon.changefeed.ChangeLogTailer}。
+     *
+     * @param companyIds 变更过的企业ID
+     */
+    public void syncCompanies(Collection<Long> companyIds) {
+        if (!enabled || companyIds.isEmpty()) {
+            return;
+        }
+
+        ShardRoutingDataSource routingDataSource = routingDataSourceProvider.getObject();
+        String placeholders = String.join(",", Collections.nCopies(companyIds.size(), "?"));
+        List<Object[]> companies = new JdbcTemplate(routingDataSource.getResolvedDefaultDataSource())
+                .query(COMPANY_SQL + " WHERE id IN (" + placeholders + ")", ShardRouter::companyRow,
+                        companyIds.toArray());
+        Set<Long> deleted = new HashSet<>(companyIds);
+        companies.forEach(company -> deleted.remove(((Number) company[0]).longValue()));
+        List<Object[]> deletedIds = deleted.stream().map(id -> new Object[]{id}).toList();
+
+        for (DataSource shardDataSource : routingDataSource.getResolvedDataSources().values()) {
+            JdbcTemplate shardTemplate = new JdbcTemplate(shardDataSource);
+            shardTemplate.batchUpdate(UPSERT_COMPANY_SQL, companies);
+            shardTemplate.batchUpdate("DELETE FROM companies WHERE id = ?", deletedIds);
+        }
+    }
+
+    private static Object[] companyRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Object[]{rs.getObject(1), rs.getObject(2), rs.getObject(3), rs.getObject(4), rs.getObject(5)};
+    }
+
+    private <T> T onShardIndex(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.coupon.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 分片路由数据源
+ * <p>
+ * 根据 {@link ShardContext} 中的分片编号选择目标SQLite文件，未设置分片时使用全局库。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
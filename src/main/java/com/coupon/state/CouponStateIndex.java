@@ -0,0 +1,253 @@
+package com.coupon.state;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 券码状态内存索引
+ * <p>
+ * 以开放寻址哈希表保存 (券码, 企业ID) 到使用时间的映射，券码按36进制压缩为long。
+ * 读取走 {@link StampedLock} 乐观读，不加锁；写入与扩容持有写锁。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public class CouponStateIndex {
+
+    /**
+     * 查询结果：券码不存在
+     */
+    public static final int ABSENT = -1;
+
+    /**
+     * 查询结果：券码未使用（大于0的结果为使用时间的epoch秒）
+     */
+    public static final int UNUSED = 0;
+
+    private static final String CODE_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final int CODE_LENGTH = 8;
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    private final StampedLock lock = new StampedLock();
+
+    private Table table;
+    private int size;
+
+    public CouponStateIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+        this.table = new Table(new long[capacity], new int[capacity], new int[capacity]);
+    }
+
+    private CouponStateIndex(Table table, int size) {
+        this.table = table;
+        this.size = size;
+    }
+
+    /**
+     * 由快照数组直接构建索引
+     *
+     * @param codes     压缩券码槽数组
+     * @param companies 企业ID槽数组
+     * @param usedAt    使用时间槽数组
+     * @param size      条目数量
+     * @return 索引
+     */
+    public static CouponStateIndex fromSlots(long[] codes, int[] companies, int[] usedAt, int size) {
+        if (Integer.bitCount(codes.length) != 1 || companies.length != codes.length || usedAt.length != codes.length) {
+            throw new IllegalArgumentException("快照槽数组长度不一致");
+        }
+        return new CouponStateIndex(new Table(codes, companies, usedAt), size);
+    }
+
+    /**
+     * 将8位券码压缩为long
+     *
+     * @param code 券码
+     * @return 压缩值，格式不正确时返回-1
+     */
+    public static long packCode(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        long packed = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            int digit = CODE_CHARS.indexOf(code.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            packed = packed * CODE_CHARS.length() + digit;
+        }
+        return packed;
+    }
+
+    /**
+     * 查询券码状态
+     *
+     * @param code      券码
+     * @param companyId 企业ID
+     * @return {@link #ABSENT}、{@link #UNUSED} 或使用时间的epoch秒
+     */
+    public int lookup(String code, long companyId) {
+        long key = packCode(code) + 1;
+        if (key <= 0) {
+            return ABSENT;
+        }
+        int company = (int) companyId;
+
+        long stamp = lock.tryOptimisticRead();
+        int result = probe(table, key, company);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probe(table, key, company);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入券码状态，已存在时只会由未使用变为已使用
+     *
+     * @param code          券码
+     * @param companyId     企业ID
+     * @param usedAtSeconds 使用时间epoch秒，未使用为0
+     */
+    public void put(String code, long companyId, int usedAtSeconds) {
+        long key = packCode(code) + 1;
+        if (key <= 0) {
+            return;
+        }
+        if (companyId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("企业ID超出索引范围: " + companyId);
+        }
+        int company = (int) companyId;
+
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int mask = current.codes.length - 1;
+            int slot = hash(key, company) & mask;
+            while (current.codes[slot] != 0) {
+                if (current.codes[slot] == key && current.companies[slot] == company) {
+                    if (current.usedAt[slot] == UNUSED && usedAtSeconds != UNUSED) {
+                        current.usedAt[slot] = usedAtSeconds;
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            current.companies[slot] = company;
+            current.usedAt[slot] = usedAtSeconds;
+            current.codes[slot] = key;
+            if (++size > current.codes.length * MAX_LOAD_FACTOR) {
+                table = resize(current);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 条目数量
+     *
+     * @return 条目数量
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 在读锁保护下复制槽数组，用于写快照
+     *
+     * @param visitor 复制结果处理函数
+     */
+    public void copySlots(SlotVisitor visitor) {
+        long[] codesCopy;
+        int[] companiesCopy;
+        int[] usedAtCopy;
+        int sizeCopy;
+        long stamp = lock.readLock();
+        try {
+            codesCopy = table.codes.clone();
+            companiesCopy = table.companies.clone();
+            usedAtCopy = table.usedAt.clone();
+            sizeCopy = size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        visitor.visit(codesCopy, companiesCopy, usedAtCopy, sizeCopy);
+    }
+
+    /**
+     * 槽数组处理函数
+     */
+    @FunctionalInterface
+    public interface SlotVisitor {
+        void visit(long[] codes, int[] companies, int[] usedAt, int size);
+    }
+
+    private static Table resize(Table old) {
+        int capacity = old.codes.length << 1;
+        Table resized = new Table(new long[capacity], new int[capacity], new int[capacity]);
+        int mask = capacity - 1;
+
+        for (int i = 0; i < old.codes.length; i++) {
+            if (old.codes[i] != 0) {
+                int slot = hash(old.codes[i], old.companies[i]) & mask;
+                while (resized.codes[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                resized.codes[slot] = old.codes[i];
+                resized.companies[slot] = old.companies[i];
+                resized.usedAt[slot] = old.usedAt[i];
+            }
+        }
+        return resized;
+    }
+
+    private static int probe(Table table, long key, int company) {
+        long[] codes = table.codes;
+        int mask = codes.length - 1;
+        int slot = hash(key, company) & mask;
+        for (int i = 0; i <= mask; i++) {
+            long current = codes[slot];
+            if (current == 0) {
+                return ABSENT;
+            }
+            if (current == key && table.companies[slot] == company) {
+                return table.usedAt[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    private static int hash(long key, int company) {
+        long h = key * 0x9E3779B97F4A7C15L + company;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * 哈希表槽数组（压缩券码加1，0表示空槽），扩容时整体替换，保证乐观读看到一致的数组组合
+     */
+    private static final class Table {
+        private final long[] codes;
+        private final int[] companies;
+        private final int[] usedAt;
+
+        private Table(long[] codes, int[] companies, int[] usedAt) {
+            this.codes = codes;
+            this.companies = companies;
+            this.usedAt = usedAt;
+        }
+    }
+}
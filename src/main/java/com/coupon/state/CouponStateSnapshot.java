@@ -0,0 +1,184 @@
+package com.coupon.state;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 券码状态快照
+ * <p>
+ * 文件布局：定长头部（魔数、版本、生成时间、各分片的券码与核销记录水位）后紧跟哈希表的三个槽数组，
+ * 最后是整个文件内容的CRC32C校验值。加载时对文件做内存映射并整块复制到数组，无需重新哈希。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public class CouponStateSnapshot {
+
+    private static final int MAGIC = 0x43535331;
+    private static final int VERSION = 1;
+
+    /**
+     * 快照生成时间（epoch毫秒）
+     */
+    private final long createdAt;
+
+    /**
+     * 各分片已纳入快照的最大券码ID
+     */
+    private final long[] lastCouponIds;
+
+    /**
+     * 各分片已纳入快照的最大核销记录ID
+     */
+    private final long[] lastLogIds;
+
+    private final long[] codes;
+    private final int[] companies;
+    private final int[] usedAt;
+    private final int size;
+
+    /**
+     * 写入快照文件（先写临时文件再原子替换）
+     *
+     * @param target 目标文件
+     * @throws IOException 写入失败
+     */
+    public void write(Path target) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        int shardCount = lastCouponIds.length;
+        int capacity = codes.length;
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize(shardCount)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(createdAt).putInt(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            header.putLong(lastCouponIds[shard]).putLong(lastLogIds[shard]);
+        }
+        header.putInt(capacity).putInt(size).flip();
+
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header, crc);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (long code : codes) {
+                if (chunk.remaining() < Long.BYTES) {
+                    writeFully(channel, chunk.flip(), crc);
+                    chunk.clear();
+                }
+                chunk.putLong(code);
+            }
+            for (int[] slots : new int[][]{companies, usedAt}) {
+                for (int value : slots) {
+                    if (chunk.remaining() < Integer.BYTES) {
+                        writeFully(channel, chunk.flip(), crc);
+                        chunk.clear();
+                    }
+                    chunk.putInt(value);
+                }
+            }
+            writeFully(channel, chunk.flip(), crc);
+
+            ByteBuffer checksum = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            checksum.putLong(crc.getValue()).flip();
+            channel.write(checksum);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 通过内存映射读取快照文件
+     *
+     * @param file 快照文件
+     * @return 快照
+     * @throws IOException 读取失败或文件损坏
+     */
+    public static CouponStateSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 20));
+            prefix.order(ByteOrder.LITTLE_ENDIAN);
+            if (fileSize < 20 || prefix.getInt() != MAGIC || prefix.getInt() != VERSION) {
+                throw new IOException("无法识别的券码状态快照: " + file);
+            }
+            long createdAt = prefix.getLong();
+            int shardCount = prefix.getInt();
+
+            int headerSize = headerSize(shardCount);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.position(20);
+            long[] lastCouponIds = new long[shardCount];
+            long[] lastLogIds = new long[shardCount];
+            for (int shard = 0; shard < shardCount; shard++) {
+                lastCouponIds[shard] = header.getLong();
+                lastLogIds[shard] = header.getLong();
+            }
+            int capacity = header.getInt();
+            int size = header.getInt();
+
+            long codesOffset = headerSize;
+            long companiesOffset = codesOffset + (long) capacity * Long.BYTES;
+            long usedAtOffset = companiesOffset + (long) capacity * Integer.BYTES;
+            long checksumOffset = usedAtOffset + (long) capacity * Integer.BYTES;
+            if (fileSize != checksumOffset + Long.BYTES) {
+                throw new IOException("券码状态快照长度不正确: " + file);
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize));
+            long[] codes = new long[capacity];
+            ByteBuffer codesBuffer = map(channel, codesOffset, (long) capacity * Long.BYTES);
+            crc.update(codesBuffer.duplicate());
+            codesBuffer.asLongBuffer().get(codes);
+            int[] companies = new int[capacity];
+            ByteBuffer companiesBuffer = map(channel, companiesOffset, (long) capacity * Integer.BYTES);
+            crc.update(companiesBuffer.duplicate());
+            companiesBuffer.asIntBuffer().get(companies);
+            int[] usedAt = new int[capacity];
+            ByteBuffer usedAtBuffer = map(channel, usedAtOffset, (long) capacity * Integer.BYTES);
+            crc.update(usedAtBuffer.duplicate());
+            usedAtBuffer.asIntBuffer().get(usedAt);
+
+            long expected = map(channel, checksumOffset, Long.BYTES).getLong();
+            if (expected != crc.getValue()) {
+                throw new IOException("券码状态快照校验失败: " + file);
+            }
+            return new CouponStateSnapshot(createdAt, lastCouponIds, lastLogIds, codes, companies, usedAt, size);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("券码状态快照过大，单段超过2GB");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int headerSize(int shardCount) {
+        return 20 + shardCount * 2 * Long.BYTES + 2 * Integer.BYTES;
+    }
+}
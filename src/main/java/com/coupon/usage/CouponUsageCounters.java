@@ -0,0 +1,258 @@
+package com.coupon.usage;
+
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.repository.CouponRepository;
+import com.coupon.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多次券的内存预扣计数
+ * <p>
+ * 多次券（使用次数上限大于1）首次核销成功后，以数据库中的剩余次数建立一个分段许可计数（{@link StripedPermits}）。
+ * 之后该券码的核销先在内存中取得许可再进入事务，大量操作员同时扫同一个共享券码时，只有剩余次数以内的请求访问数据库；
+ * 许可取完但仍有进行中的核销时，后到的请求等待它们结束（失败的核销会归还许可），而不是全部涌向数据库。
+ * 数据库中的条件 UPDATE 始终是次数的最终判定，内存计数只做准入：计数偏大时由数据库拒绝，没有许可且没有进行中的核销时
+ * 请求直接交给数据库判定，因此计数偏差不会导致误拒。离线同步等绕过本计数的使用由定期对账按数据库剩余次数校正，
+ * 对账时一个周期内未被使用的计数被移除，券码用完后计数随之移除，此后由券码状态索引直接拒绝。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class CouponUsageCounters {
+
+    private final Map<String, UsageCounter> counters = new ConcurrentHashMap<>();
+    private final CouponRepository couponRepository;
+    private final ShardRouter shardRouter;
+    private final Counter waitedCounter;
+
+    @Value("${coupon.usage.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coupon.usage.stripes:0}")
+    private int stripes;
+
+    @Value("${coupon.usage.max-counters:10000}")
+    private int maxCounters;
+
+    @Value("${coupon.usage.wait-timeout-ms:2000}")
+    private long waitTimeoutMs;
+
+    public CouponUsageCounters(CouponRepository couponRepository, ShardRouter shardRouter, MeterRegistry meterRegistry) {
+        this.couponRepository = couponRepository;
+        this.shardRouter = shardRouter;
+        this.waitedCounter = Counter.builder("coupon.usage.waited")
+                .description("许可取完后等待进行中核销结束的请求数")
+                .register(meterRegistry);
+        Gauge.builder("coupon.usage.counters", counters, Map::size)
+                .description("内存中的多次券计数数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 核销前取得许可
+     *
+     * @param companyId 企业ID
+     * @param code      券码
+     * @return 许可，券码没有内存计数或需交给数据库判定时为空
+     */
+    public Permit acquire(Long companyId, String code) {
+        if (!enabled) {
+            return null;
+        }
+        UsageCounter counter = counters.get(key(companyId, code));
+        if (counter == null) {
+            return null;
+        }
+        counter.touched = true;
+        if (counter.permits.tryAcquire()) {
+            counter.inFlight.increment();
+            return new Permit(counter);
+        }
+        return counter.awaitPermit() ? new Permit(counter) : null;
+    }
+
+    /**
+     * 核销成功后结算：新的一次使用消耗许可（未持有许可时从计数中扣除一次），
+     * 重复扫码与幂等回放归还许可；多次券首次成功时建立计数，用完时移除计数
+     *
+     * @param companyId 企业ID
+     * @param code      券码
+     * @param permit    核销前取得的许可，可为空
+     * @param response  核销响应
+     */
+    public void completed(Long companyId, String code, Permit permit, CouponVerifyResponse response) {
+        Integer remaining = response.getRemainingUses();
+        if (!enabled || response.isDuplicate() || remaining == null) {
+            release(permit);
+            return;
+        }
+
+        String key = key(companyId, code);
+        UsageCounter counter = permit != null ? permit.counter : counters.get(key);
+        if (remaining <= 0) {
+            if (counter != null) {
+                remove(key, counter);
+            }
+        } else if (counter == null) {
+            if (counters.size() < maxCounters) {
+                counters.putIfAbsent(key, new UsageCounter(companyId, code, stripeCount(), remaining));
+            }
+        } else if (permit == null) {
+            counter.permits.tryAcquire();
+        }
+        if (permit != null) {
+            permit.counter.settle();
+        }
+    }
+
+    /**
+     * 核销失败后归还许可
+     *
+     * @param permit 核销前取得的许可，可为空
+     */
+    public void release(Permit permit) {
+        if (permit != null) {
+            permit.counter.permits.release();
+            permit.counter.settle();
+        }
+    }
+
+    /**
+     * 按数据库剩余次数对账，移除空闲与已用完的计数
+     */
+    @Scheduled(fixedDelayString = "${coupon.usage.reconcile-interval-ms:5000}",
+               initialDelayString = "${coupon.usage.reconcile-interval-ms:5000}")
+    public void reconcile() {
+        for (Map.Entry<String, UsageCounter> entry : counters.entrySet()) {
+            UsageCounter counter = entry.getValue();
+            if (!counter.touched && counter.inFlight.sum() == 0) {
+                remove(entry.getKey(), counter);
+                continue;
+            }
+            counter.touched = false;
+            // 先读数据库再读进行中数量：期间提交的核销只会使计数偏大，由数据库拒绝
+            Optional<Integer> remaining = shardRouter.onShard(counter.companyId,
+                    () -> couponRepository.findRemainingUses(counter.code, counter.companyId));
+            if (remaining.isEmpty() || remaining.get() <= 0) {
+                remove(entry.getKey(), counter);
+            } else {
+                counter.permits.reset(remaining.get() - counter.inFlight.sum());
+                counter.wakeWaiters();
+            }
+        }
+    }
+
+    private void remove(String key, UsageCounter counter) {
+        if (counters.remove(key, counter)) {
+            counter.removed = true;
+            counter.wakeWaiters();
+            log.debug("多次券计数已移除: {}", key);
+        }
+    }
+
+    private int stripeCount() {
+        int requested = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        return 1 << (32 - Integer.numberOfLeadingZeros(Math.max(1, requested) - 1));
+    }
+
+    private static String key(Long companyId, String code) {
+        return companyId + ":" + code;
+    }
+
+    /**
+     * 核销前取得的许可，核销结束后必须通过 {@link #completed} 或 {@link #release} 结算
+     */
+    public static final class Permit {
+        private final UsageCounter counter;
+
+        private Permit(UsageCounter counter) {
+            this.counter = counter;
+        }
+    }
+
+    /**
+     * 单个券码的计数：分段许可、进行中的核销数，以及许可取完时等待进行中核销结束的条件
+     */
+    private final class UsageCounter {
+        private final Long companyId;
+        private final String code;
+        private final StripedPermits permits;
+        private final LongAdder inFlight = new LongAdder();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition settled = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile boolean touched = true;
+        private volatile boolean removed;
+
+        private UsageCounter(Long companyId, String code, int stripes, long permits) {
+            this.companyId = companyId;
+            this.code = code;
+            this.permits = new StripedPermits(stripes, permits);
+        }
+
+        /**
+         * 许可取完时等待进行中的核销结束；没有进行中的核销、计数已移除或等待超时时返回 false，交给数据库判定
+         */
+        private boolean awaitPermit() {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+            boolean waited = false;
+            lock.lock();
+            waiters.incrementAndGet();
+            try {
+                while (true) {
+                    if (permits.tryAcquire()) {
+                        inFlight.increment();
+                        return true;
+                    }
+                    if (removed || inFlight.sum() == 0 || nanos <= 0) {
+                        return false;
+                    }
+                    if (!waited) {
+                        waited = true;
+                        waitedCounter.increment();
+                    }
+                    nanos = settled.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+
+        private void settle() {
+            inFlight.decrement();
+            if (waiters.get() > 0) {
+                wakeWaiters();
+            }
+        }
+
+        private void wakeWaiters() {
+            lock.lock();
+            try {
+                settled.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.coupon.usage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段许可计数
+ * <p>
+ * 把剩余次数平均分到若干段，每段一个计数单元，单元之间间隔一个缓存行，避免伪共享。线程按自身哈希选定首选段，
+ * 在该段上以 CAS 减一；首选段为0时依次尝试其余各段，全部为0才判定没有许可。
+ * 同一热门券码上的并发核销因此分散到不同的计数单元，而不是争抢同一个原子变量。
+ * 各段之和在并发修改期间只是近似值，判定"没有许可"要求逐段看到0，不会在仍有许可时误判。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+public final class StripedPermits {
+
+    /**
+     * 相邻计数单元的间隔（8个 long，即64字节）
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * @param stripes 段数，必须为2的幂
+     * @param permits 初始许可数
+     */
+    public StripedPermits(int stripes, long permits) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("段数必须为2的幂: " + stripes);
+        }
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        this.mask = stripes - 1;
+        reset(permits);
+    }
+
+    /**
+     * 取得一个许可
+     *
+     * @return 是否取得
+     */
+    public boolean tryAcquire() {
+        int home = home();
+        for (int i = 0; i <= mask; i++) {
+            int index = ((home + i) & mask) * PADDING;
+            long value = cells.get(index);
+            while (value > 0) {
+                if (cells.compareAndSet(index, value, value - 1)) {
+                    return true;
+                }
+                value = cells.get(index);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 归还一个许可
+     */
+    public void release() {
+        cells.incrementAndGet(home() * PADDING);
+    }
+
+    /**
+     * 把许可总数重置为给定值并重新平均分段
+     *
+     * @param permits 许可数
+     */
+    public void reset(long permits) {
+        int stripes = mask + 1;
+        long share = Math.max(0, permits) / stripes;
+        long extra = Math.max(0, permits) % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, share + (i < extra ? 1 : 0));
+        }
+    }
+
+    /**
+     * 各段许可数之和
+     *
+     * @return 剩余许可数
+     */
+    public long available() {
+        long sum = 0;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private int home() {
+        int hash = System.identityHashCode(Thread.currentThread());
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
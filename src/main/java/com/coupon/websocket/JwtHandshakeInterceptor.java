@@ -0,0 +1,101 @@
+package com.coupon.websocket;
+
+import com.coupon.cache.UserStatusCache;
+import com.coupon.security.ClientIpResolver;
+import com.coupon.security.JwtUtil;
+import com.coupon.security.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 扫码站握手认证
+ * <p>
+ * 握手时校验JWT（Authorization 请求头；浏览器无法设置请求头，改用子协议 {@code Sec-WebSocket-Protocol: bearer, <令牌>}），
+ * 把操作员、客户端IP与令牌过期时间存入会话属性，之后的核销消息不再携带令牌，由处理器按会话属性逐条复核。
+ * 令牌不接受放在查询参数中，避免出现在访问日志与代理记录里。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    /**
+     * 会话属性：操作员
+     */
+    static final String PRINCIPAL_ATTRIBUTE = "principal";
+
+    /**
+     * 会话属性：客户端IP
+     */
+    static final String IP_ADDRESS_ATTRIBUTE = "ipAddress";
+
+    /**
+     * 会话属性：令牌过期时间（毫秒时间戳）
+     */
+    static final String TOKEN_EXPIRES_AT_ATTRIBUTE = "tokenExpiresAt";
+
+    /**
+     * 浏览器携带令牌的子协议名，令牌作为紧随其后的第二个子协议
+     */
+    static final String BEARER_PROTOCOL = "bearer";
+
+    private final JwtUtil jwtUtil;
+    private final UserStatusCache userStatusCache;
+    private final ClientIpResolver clientIpResolver;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String jwt = getJwtFromRequest(request);
+        if (!StringUtils.hasText(jwt) || !jwtUtil.validateToken(jwt)) {
+            log.warn("扫码站握手认证失败: {}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        Long userId = jwtUtil.getUserIdFromToken(jwt);
+        if (!userStatusCache.isActive(userId)) {
+            log.warn("扫码站握手认证失败，用户已被禁用: {}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(PRINCIPAL_ATTRIBUTE, new UserPrincipal(userId, jwtUtil.getPhoneFromToken(jwt)));
+        attributes.put(TOKEN_EXPIRES_AT_ATTRIBUTE, jwtUtil.getExpirationFromToken(jwt).getTime());
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            attributes.put(IP_ADDRESS_ATTRIBUTE, clientIpResolver.resolve(servletRequest.getServletRequest()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private String getJwtFromRequest(ServerHttpRequest request) {
+        String bearerToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        List<String> protocols = new WebSocketHttpHeaders(request.getHeaders()).getSecWebSocketProtocol();
+        if (protocols.size() >= 2 && BEARER_PROTOCOL.equals(protocols.get(0))) {
+            return protocols.get(1);
+        }
+        return null;
+    }
+}
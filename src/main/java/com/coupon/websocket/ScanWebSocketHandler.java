@@ -0,0 +1,316 @@
+package com.coupon.websocket;
+
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.cache.UserStatusCache;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.dto.ScanMessage;
+import com.coupon.dto.ScanResult;
+import com.coupon.ratelimit.VerifyRateLimitFilter;
+import com.coupon.security.UserPrincipal;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponNotFoundException;
+import com.coupon.service.CouponOutOfValidityException;
+import com.coupon.service.CouponVerificationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 扫码站长连接处理器
+ * <p>
+ * 扫码站握手认证一次后持续发送核销消息，每条消息带关联ID，在工作线程中异步执行与HTTP接口相同的核销流程，
+ * 结果按完成先后返回，不保证与发送顺序一致。单个连接的进行中消息数有上限，超出时该消息立即返回失败；
+ * 服务端定时发送心跳，两个心跳周期内没有任何消息或心跳应答的连接被关闭。
+ * 握手只认证一次，每条消息仍复核令牌是否过期与用户是否被禁用，不满足时关闭连接；
+ * 核销消息与HTTP核销接口共用操作员与客户端IP的限流令牌桶。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class ScanWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private final CouponVerificationService couponVerificationService;
+    private final UserStatusCache userStatusCache;
+    private final VerifyRateLimitFilter rateLimitFilter;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final Environment environment;
+    private final Map<String, Station> stations = new ConcurrentHashMap<>();
+    private final Counter scans;
+    private final Counter overloaded;
+
+    @Value("${coupon.websocket.max-in-flight:32}")
+    private int maxInFlight;
+
+    @Value("${coupon.websocket.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${coupon.websocket.worker-threads:16}")
+    private int workerThreads;
+
+    @Value("${coupon.websocket.send-timeout-ms:10000}")
+    private int sendTimeoutMs;
+
+    @Value("${coupon.websocket.send-buffer-bytes:524288}")
+    private int sendBufferBytes;
+
+    private Executor workerExecutor;
+
+    public ScanWebSocketHandler(CouponVerificationService couponVerificationService, UserStatusCache userStatusCache,
+                                ObjectProvider<VerifyRateLimitFilter> rateLimitFilter, ObjectMapper objectMapper,
+                                Validator validator, Environment environment, MeterRegistry meterRegistry) {
+        this.couponVerificationService = couponVerificationService;
+        this.userStatusCache = userStatusCache;
+        this.rateLimitFilter = rateLimitFilter.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.environment = environment;
+        this.scans = Counter.builder("coupon.websocket.scans")
+                .description("扫码站长连接收到的核销消息数")
+                .register(meterRegistry);
+        this.overloaded = Counter.builder("coupon.websocket.overloaded")
+                .description("超出单连接进行中上限而被拒绝的核销消息数")
+                .register(meterRegistry);
+        Gauge.builder("coupon.websocket.connections", stations, Map::size)
+                .description("扫码站长连接数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            workerExecutor = new VirtualThreadTaskExecutor("ws-scan-");
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            workerExecutor = Executors.newFixedThreadPool(workerThreads, runnable -> {
+                Thread thread = new Thread(runnable, "ws-scan-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workerExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * 浏览器以子协议携带令牌时，握手响应需回应所选的子协议
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(JwtHandshakeInterceptor.BEARER_PROTOCOL);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        UserPrincipal principal = (UserPrincipal) session.getAttributes().get(JwtHandshakeInterceptor.PRINCIPAL_ATTRIBUTE);
+        String ipAddress = (String) session.getAttributes().get(JwtHandshakeInterceptor.IP_ADDRESS_ATTRIBUTE);
+        long tokenExpiresAt = (Long) session.getAttributes().get(JwtHandshakeInterceptor.TOKEN_EXPIRES_AT_ATTRIBUTE);
+        stations.put(session.getId(), new Station(new ConcurrentWebSocketSessionDecorator(
+                session, sendTimeoutMs, sendBufferBytes), principal, ipAddress, tokenExpiresAt));
+        log.info("扫码站已连接: 操作员{}，IP {}", principal.getPhone(), ipAddress);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        Station station = stations.get(session.getId());
+        if (station == null) {
+            return;
+        }
+        station.lastSeen = System.nanoTime();
+        scans.increment();
+        if (!authorized(station)) {
+            return;
+        }
+
+        ScanMessage scan;
+        try {
+            scan = objectMapper.readValue(message.getPayload(), ScanMessage.class);
+        } catch (JsonProcessingException e) {
+            send(station, new ScanResult(null, false, "消息格式错误", null, null));
+            return;
+        }
+        if (rateLimitFilter != null) {
+            long waitNanos = rateLimitFilter.tryAcquire(station.principal.getPhone(), station.ipAddress);
+            if (waitNanos > 0) {
+                long retryAfterSeconds = VerifyRateLimitFilter.retryAfterSeconds(waitNanos);
+                send(station, new ScanResult(scan.getId(), false,
+                        VerifyRateLimitFilter.rejectedMessage(retryAfterSeconds), null, retryAfterSeconds));
+                return;
+            }
+        }
+        if (station.inFlight.incrementAndGet() > maxInFlight) {
+            station.inFlight.decrementAndGet();
+            overloaded.increment();
+            send(station, new ScanResult(scan.getId(), false, "进行中的核销请求过多，请稍后重试", null, null));
+            return;
+        }
+        try {
+            workerExecutor.execute(() -> {
+                try {
+                    send(station, verify(station, scan));
+                } finally {
+                    station.inFlight.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            station.inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        Station station = stations.get(session.getId());
+        if (station != null) {
+            station.lastSeen = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Station station = stations.remove(session.getId());
+        if (station != null) {
+            log.info("扫码站已断开: 操作员{}，{}", station.principal.getPhone(), status);
+        }
+    }
+
+    /**
+     * 发送心跳，关闭两个心跳周期内没有任何消息、令牌已过期或用户已被禁用的连接
+     */
+    @Scheduled(fixedDelayString = "${coupon.websocket.heartbeat-ms:15000}",
+            initialDelayString = "${coupon.websocket.heartbeat-ms:15000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        for (Station station : stations.values()) {
+            if (!authorized(station)) {
+                continue;
+            }
+            try {
+                if (now - station.lastSeen > heartbeatMs * 2_000_000) {
+                    log.warn("扫码站心跳超时，关闭连接: 操作员{}", station.principal.getPhone());
+                    station.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } else {
+                    station.session.sendMessage(new PingMessage(ByteBuffer.allocate(0)));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("扫码站心跳发送失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 复核令牌有效期与用户状态，不满足时关闭连接
+     *
+     * @return 是否仍可核销
+     */
+    private boolean authorized(Station station) {
+        String reason;
+        if (System.currentTimeMillis() >= station.tokenExpiresAt) {
+            reason = "令牌已过期，请重新登录";
+        } else if (!userStatusCache.isActive(station.principal.getUserId())) {
+            reason = "用户已被禁用";
+        } else {
+            return true;
+        }
+        log.warn("扫码站复核未通过（{}），关闭连接: 操作员{}", reason, station.principal.getPhone());
+        try {
+            station.session.close(CloseStatus.POLICY_VIOLATION.withReason(reason));
+        } catch (IOException | RuntimeException e) {
+            log.warn("扫码站连接关闭失败: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private ScanResult verify(Station station, ScanMessage scan) {
+        CouponVerifyRequest request = new CouponVerifyRequest(scan.getCode(), scan.getCompanyId());
+        Set<ConstraintViolation<CouponVerifyRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return new ScanResult(scan.getId(), false, violations.iterator().next().getMessage(), null, null);
+        }
+        try {
+            CouponVerifyResponse response = couponVerificationService.verify(request,
+                    station.principal.getPhone(), station.ipAddress, scan.getIdempotencyKey());
+            if (response.isDuplicate()) {
+                return new ScanResult(scan.getId(), false,
+                        CouponVerificationService.duplicateMessage(response), response, null);
+            }
+            return new ScanResult(scan.getId(), true, "核销成功", response, null);
+        } catch (TenantBulkheadRejectedException e) {
+            return new ScanResult(scan.getId(), false, e.getMessage(), null, e.getRetryAfterSeconds());
+        } catch (CouponNotFoundException | CouponAlreadyUsedException | CouponOutOfValidityException e) {
+            // 预期内的失败已由核销入口计数并抽样记录日志
+            return new ScanResult(scan.getId(), false, e.getMessage(), null, null);
+        } catch (Exception e) {
+            log.error("券码核销失败: {}", e.getMessage());
+            return new ScanResult(scan.getId(), false, e.getMessage(), null, null);
+        }
+    }
+
+    private void send(Station station, ScanResult result) {
+        try {
+            station.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(result)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("扫码站结果发送失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 扫码站连接
+     */
+    private static final class Station {
+        private final WebSocketSession session;
+        private final UserPrincipal principal;
+        private final String ipAddress;
+        private final long tokenExpiresAt;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastSeen = System.nanoTime();
+
+        private Station(WebSocketSession session, UserPrincipal principal, String ipAddress, long tokenExpiresAt) {
+            this.session = session;
+            this.principal = principal;
+            this.ipAddress = ipAddress;
+            this.tokenExpiresAt = tokenExpiresAt;
+        }
+    }
+}
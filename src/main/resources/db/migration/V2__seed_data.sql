@@ -0,0 +1,11 @@
+-- 初始企业与默认用户（默认密码 123456 的BCrypt摘要），已存在的记录保持不变
+INSERT OR IGNORE INTO companies (name, is_active, created_at)
+VALUES ('阿里巴巴集团', 1, CAST(strftime('%s', 'now') AS INTEGER) * 1000),
+       ('腾讯科技', 1, CAST(strftime('%s', 'now') AS INTEGER) * 1000),
+       ('百度公司', 1, CAST(strftime('%s', 'now') AS INTEGER) * 1000),
+       ('京东集团', 1, CAST(strftime('%s', 'now') AS INTEGER) * 1000),
+       ('美团点评', 1, CAST(strftime('%s', 'now') AS INTEGER) * 1000);
+
+INSERT OR IGNORE INTO users (phone, password_hash, is_active, created_at, updated_at)
+VALUES ('13800138000', '$2a$10$0jeUDZz3dhrT1UOlwL.zmO2W1qrXm7WZ8gd.RrS3tvII9jyMILkcS', 1,
+        CAST(strftime('%s', 'now') AS INTEGER) * 1000, CAST(strftime('%s', 'now') AS INTEGER) * 1000);
@@ -0,0 +1,6 @@
+-- 为冗余券码与企业ID列上线之前写入的核销记录回填数据
+UPDATE verification_logs
+SET coupon_code = (SELECT c.code FROM coupons c WHERE c.id = verification_logs.coupon_id),
+    company_id = (SELECT c.company_id FROM coupons c WHERE c.id = verification_logs.coupon_id)
+WHERE coupon_code IS NULL
+  AND coupon_id IN (SELECT id FROM coupons);
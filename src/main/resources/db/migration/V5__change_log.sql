@@ -0,0 +1,57 @@
+-- 变更日志：企业、用户与券码的写入由触发器在同一事务中记录，各节点按自增ID轮询后更新本地缓存
+-- 事务以 BEGIN IMMEDIATE 开始，写入串行提交，自增ID即提交顺序；AUTOINCREMENT 保证清理旧记录后ID不会复用
+-- 券码只记录新增与使用状态变化，移入归档表的删除不影响状态；changed_at 为毫秒时间戳
+CREATE TABLE IF NOT EXISTS change_log (
+    id integer primary key autoincrement,
+    entity varchar(16) not null,
+    entity_id bigint not null,
+    company_id bigint,
+    code varchar(8),
+    used_at timestamp,
+    changed_at bigint not null
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_changed_at ON change_log (changed_at);
+
+CREATE TRIGGER IF NOT EXISTS change_log_companies_insert AFTER INSERT ON companies
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('company', NEW.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_companies_update AFTER UPDATE ON companies
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('company', NEW.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_companies_delete AFTER DELETE ON companies
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('company', OLD.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_users_insert AFTER INSERT ON users
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('user', NEW.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_users_update AFTER UPDATE ON users
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('user', NEW.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_users_delete AFTER DELETE ON users
+BEGIN
+    INSERT INTO change_log (entity, entity_id, changed_at) VALUES ('user', OLD.id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_insert AFTER INSERT ON coupons
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_update AFTER UPDATE ON coupons
+WHEN NEW.is_used IS NOT OLD.is_used OR NEW.used_at IS NOT OLD.used_at
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
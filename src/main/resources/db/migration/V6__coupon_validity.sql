@@ -0,0 +1,13 @@
+-- 券码有效期：valid_from/valid_until 为空表示不限；企业的 coupon_valid_days 为批量生成时的默认有效天数
+-- expiry_bucket 为 valid_until 所在的小时桶（纪元秒 / 3600），券码核销后置空，
+-- 部分索引因此只包含带有效期的未使用券码，过期清理按桶从小到大逐桶处理
+ALTER TABLE companies ADD COLUMN coupon_valid_days integer;
+
+ALTER TABLE coupons ADD COLUMN valid_from timestamp;
+ALTER TABLE coupons ADD COLUMN valid_until timestamp;
+ALTER TABLE coupons ADD COLUMN expiry_bucket bigint;
+
+CREATE INDEX IF NOT EXISTS idx_coupons_expiry_bucket ON coupons (expiry_bucket) WHERE expiry_bucket IS NOT NULL;
+
+-- 过期清理移入归档表的券码记录过期时间，与已核销的归档券码区分
+ALTER TABLE coupons_archive ADD COLUMN expired_at timestamp;
@@ -0,0 +1,28 @@
+-- 核销记录ID改为 AUTOINCREMENT：滚动把已结束月份的记录移出热表后，SQLite 会复用被删除的最大ID，
+-- 离线同步补写到该月分区的记录随即与分区表主键冲突，新记录的ID也可能不大于状态快照水位，重启追赶时会被漏掉。
+-- SQLite 不能直接修改主键定义，这里重建表，记录与ID不变；分区表中的最大ID由补写前的检查覆盖
+CREATE TABLE verification_logs_rebuilt (
+    id integer primary key autoincrement,
+    ip_address varchar(45),
+    user_phone varchar(11) not null,
+    verification_time timestamp not null,
+    coupon_id bigint not null,
+    coupon_code varchar(8),
+    company_id bigint,
+    idempotency_key varchar(64)
+);
+
+INSERT INTO verification_logs_rebuilt (id, ip_address, user_phone, verification_time, coupon_id, coupon_code,
+                                       company_id, idempotency_key)
+SELECT id, ip_address, user_phone, verification_time, coupon_id, coupon_code, company_id, idempotency_key
+FROM verification_logs;
+
+DROP TABLE verification_logs;
+ALTER TABLE verification_logs_rebuilt RENAME TO verification_logs;
+
+DELETE FROM sqlite_sequence WHERE name IN ('verification_logs', 'verification_logs_rebuilt');
+INSERT INTO sqlite_sequence (name, seq) SELECT 'verification_logs', COALESCE(MAX(id), 0) FROM verification_logs;
+
+CREATE INDEX IF NOT EXISTS idx_verification_logs_time ON verification_logs (verification_time);
+CREATE INDEX IF NOT EXISTS idx_verification_logs_company_time ON verification_logs (company_id, verification_time);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_verification_logs_idempotency ON verification_logs (user_phone, idempotency_key);
@@ -0,0 +1,53 @@
+-- 分片库初始表结构（与全局库 db/migration 中的券码及核销记录表保持一致）
+CREATE TABLE IF NOT EXISTS companies (
+    id integer,
+    created_at timestamp not null,
+    is_active boolean not null,
+    name varchar(255) not null unique,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS coupons (
+    id integer,
+    code varchar(8) not null unique,
+    created_at timestamp not null,
+    is_used boolean not null,
+    used_at timestamp,
+    used_by varchar(11),
+    company_id bigint not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS verification_logs (
+    id integer,
+    ip_address varchar(45),
+    user_phone varchar(11) not null,
+    verification_time timestamp not null,
+    coupon_id bigint not null,
+    coupon_code varchar(8),
+    company_id bigint,
+    primary key (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_verification_logs_time ON verification_logs (verification_time);
+CREATE INDEX IF NOT EXISTS idx_verification_logs_company_time ON verification_logs (company_id, verification_time);
+
+CREATE TABLE IF NOT EXISTS coupons_archive (
+    id bigint not null,
+    code varchar(8) not null,
+    company_id bigint not null,
+    used_at timestamp,
+    used_by varchar(11),
+    created_at timestamp not null,
+    archived_at timestamp not null,
+    primary key (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_coupons_archive_code ON coupons_archive (code);
+
+CREATE TABLE IF NOT EXISTS verification_log_partitions (
+    month varchar(6) not null,
+    state varchar(16) not null,
+    row_count bigint not null default 0,
+    primary key (month)
+);
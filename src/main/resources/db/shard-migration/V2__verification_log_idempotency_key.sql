@@ -0,0 +1,4 @@
+-- 核销请求的幂等键：客户端重试时按操作员与幂等键回放首次核销结果
+ALTER TABLE verification_logs ADD COLUMN idempotency_key varchar(64);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_verification_logs_idempotency ON verification_logs (user_phone, idempotency_key);
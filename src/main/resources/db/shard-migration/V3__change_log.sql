@@ -0,0 +1,25 @@
+-- 变更日志（与全局库 db/migration 中的 change_log 一致）：分片只记录券码，企业表是全局库的副本
+CREATE TABLE IF NOT EXISTS change_log (
+    id integer primary key autoincrement,
+    entity varchar(16) not null,
+    entity_id bigint not null,
+    company_id bigint,
+    code varchar(8),
+    used_at timestamp,
+    changed_at bigint not null
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_changed_at ON change_log (changed_at);
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_insert AFTER INSERT ON coupons
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_update AFTER UPDATE ON coupons
+WHEN NEW.is_used IS NOT OLD.is_used OR NEW.used_at IS NOT OLD.used_at
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
@@ -0,0 +1,16 @@
+-- 多次券：usage_limit 为总使用次数上限（默认1，即单次券），use_count 为已使用次数，
+-- 核销以条件 UPDATE 在次数未达上限时加一，达到上限时 is_used 置为真，used_at/used_by 为最后一次使用
+ALTER TABLE coupons ADD COLUMN usage_limit integer not null default 1;
+ALTER TABLE coupons ADD COLUMN use_count integer not null default 0;
+-- 每个操作员的使用次数上限，为空表示不限
+ALTER TABLE coupons ADD COLUMN per_operator_limit integer;
+
+UPDATE coupons SET use_count = 1 WHERE is_used = 1;
+
+-- 设置了操作员上限的券码按操作员计数，以带条件的 UPSERT 原子加一
+CREATE TABLE IF NOT EXISTS coupon_operator_uses (
+    coupon_id bigint not null,
+    user_phone varchar(11) not null,
+    use_count integer not null,
+    primary key (coupon_id, user_phone)
+);
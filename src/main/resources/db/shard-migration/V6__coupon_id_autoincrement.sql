@@ -0,0 +1,67 @@
+-- 券码ID改为 AUTOINCREMENT：分层归档与过期清理把券码从热表删除后，SQLite 会复用被删除的最大ID，
+-- 复用的ID在再次归档时与 coupons_archive 的主键冲突，且不大于状态快照水位，重启追赶时会被漏掉。
+-- SQLite 不能直接修改主键定义，这里重建表；已复用归档券码ID的热表券码改用现有最大ID之后的新ID，
+-- 其核销记录（按券码区分新旧券码）与操作员计数随之修正。重建不触发变更日志，券码与使用状态不变
+CREATE TEMP TABLE coupon_id_remap AS
+SELECT c.id AS old_id,
+       c.code AS code,
+       (SELECT MAX(m) FROM (SELECT MAX(id) AS m FROM coupons UNION ALL SELECT MAX(id) FROM coupons_archive))
+           + ROW_NUMBER() OVER (ORDER BY c.id) AS new_id
+FROM coupons c
+WHERE c.id IN (SELECT id FROM coupons_archive);
+
+UPDATE verification_logs
+SET coupon_id = (SELECT r.new_id FROM coupon_id_remap r WHERE r.old_id = verification_logs.coupon_id)
+WHERE EXISTS (SELECT 1 FROM coupon_id_remap r
+              WHERE r.old_id = verification_logs.coupon_id AND r.code = verification_logs.coupon_code);
+
+UPDATE coupon_operator_uses
+SET coupon_id = (SELECT r.new_id FROM coupon_id_remap r WHERE r.old_id = coupon_operator_uses.coupon_id)
+WHERE coupon_id IN (SELECT old_id FROM coupon_id_remap);
+
+CREATE TABLE coupons_rebuilt (
+    id integer primary key autoincrement,
+    code varchar(8) not null unique,
+    created_at timestamp not null,
+    is_used boolean not null,
+    used_at timestamp,
+    used_by varchar(11),
+    company_id bigint not null,
+    valid_from timestamp,
+    valid_until timestamp,
+    expiry_bucket bigint,
+    usage_limit integer not null default 1,
+    use_count integer not null default 0,
+    per_operator_limit integer
+);
+
+INSERT INTO coupons_rebuilt (id, code, created_at, is_used, used_at, used_by, company_id, valid_from, valid_until,
+                             expiry_bucket, usage_limit, use_count, per_operator_limit)
+SELECT COALESCE(r.new_id, c.id), c.code, c.created_at, c.is_used, c.used_at, c.used_by, c.company_id, c.valid_from,
+       c.valid_until, c.expiry_bucket, c.usage_limit, c.use_count, c.per_operator_limit
+FROM coupons c
+LEFT JOIN coupon_id_remap r ON r.old_id = c.id;
+
+DROP TABLE coupons;
+ALTER TABLE coupons_rebuilt RENAME TO coupons;
+DROP TABLE coupon_id_remap;
+
+-- 新ID从热表与归档表中的最大ID之后开始分配
+DELETE FROM sqlite_sequence WHERE name IN ('coupons', 'coupons_rebuilt');
+INSERT INTO sqlite_sequence (name, seq)
+SELECT 'coupons', COALESCE(MAX(m), 0) FROM (SELECT MAX(id) AS m FROM coupons UNION ALL SELECT MAX(id) FROM coupons_archive);
+
+CREATE INDEX IF NOT EXISTS idx_coupons_expiry_bucket ON coupons (expiry_bucket) WHERE expiry_bucket IS NOT NULL;
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_insert AFTER INSERT ON coupons
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
+
+CREATE TRIGGER IF NOT EXISTS change_log_coupons_update AFTER UPDATE ON coupons
+WHEN NEW.is_used IS NOT OLD.is_used OR NEW.used_at IS NOT OLD.used_at
+BEGIN
+    INSERT INTO change_log (entity, entity_id, company_id, code, used_at, changed_at)
+    VALUES ('coupon', NEW.id, NEW.company_id, NEW.code, NEW.used_at, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER));
+END;
@@ -0,0 +1,3 @@
+-- 冷热分层按核销时间挑选可归档的券码（is_used = 1 AND used_at < 截止时间），没有索引时每批都要全表扫描。
+-- 部分索引只收录已用完的券码，热表中未使用的券码不占索引空间
+CREATE INDEX IF NOT EXISTS idx_coupons_used_at ON coupons (used_at) WHERE is_used = 1;
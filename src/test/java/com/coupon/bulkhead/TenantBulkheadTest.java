@@ -0,0 +1,149 @@
+package com.coupon.bulkhead;
+
+import com.coupon.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 企业隔离舱测试：每个数据库各有一份总并发，洪峰企业不影响其他企业的等待时间
+ *
+ * @author System
+ * @version 1.0.0
+ */
+class TenantBulkheadTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void companiesOnDifferentShardsDoNotShareThePermit() throws Exception {
+        TenantBulkhead bulkhead = bulkhead(true, 200);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> bulkhead.execute(1L, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        // 企业2在分片0，不等待分片1上的写入
+        assertEquals("shard-0", executor.submit(() -> bulkhead.execute(2L, () -> "shard-0")).get(1, TimeUnit.SECONDS));
+        // 企业3与企业1同在分片1，排队超时被拒绝
+        assertThrows(TenantBulkheadRejectedException.class, () -> bulkhead.execute(3L, () -> "shard-1"));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals("shard-1", bulkhead.execute(3L, () -> "shard-1"));
+    }
+
+    @Test
+    void companiesShareThePermitWithoutSharding() throws Exception {
+        TenantBulkhead bulkhead = bulkhead(false, 200);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> bulkhead.execute(1L, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        assertThrows(TenantBulkheadRejectedException.class, () -> bulkhead.execute(2L, () -> null));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void floodingCompanyDoesNotDelayOtherCompanies() throws Exception {
+        TenantBulkhead bulkhead = bulkhead(false, 5000);
+        int floodThreads = 16;
+        long floodActionMillis = 20;
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        List<Future<?>> flood = new ArrayList<>();
+        for (int i = 0; i < floodThreads; i++) {
+            flood.add(executor.submit(() -> {
+                while (flooding.get()) {
+                    try {
+                        bulkhead.execute(1L, () -> sleep(floodActionMillis));
+                    } catch (TenantBulkheadRejectedException e) {
+                        // 超出配额的洪峰请求被拒绝
+                    }
+                }
+            }));
+        }
+        Thread.sleep(200);
+
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            long start = System.nanoTime();
+            bulkhead.execute(2L, () -> sleep(1));
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        flooding.set(false);
+        for (Future<?> future : flood) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        Collections.sort(latencies);
+        long p99 = latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1);
+        // 先到先得时企业2要排在洪峰企业的全部排队请求之后（约 16 × 20ms）；公平排队时至多等待一个正在执行的请求
+        assertTrue(p99 < floodThreads * floodActionMillis / 2, "企业2核销 p99 " + p99 + " ms");
+    }
+
+    private TenantBulkhead bulkhead(boolean sharded, long queueTimeoutMs) {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.isEnabled()).thenReturn(sharded);
+        when(shardRouter.shardFor(anyLong())).thenAnswer(invocation -> (int) (invocation.<Long>getArgument(0) % 2));
+        TenantBulkhead bulkhead = new TenantBulkhead(new SimpleMeterRegistry(), shardRouter);
+        ReflectionTestUtils.setField(bulkhead, "enabled", true);
+        ReflectionTestUtils.setField(bulkhead, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(bulkhead, "tenantConcurrent", 1);
+        ReflectionTestUtils.setField(bulkhead, "queueCapacity", 50);
+        ReflectionTestUtils.setField(bulkhead, "queueTimeoutMs", queueTimeoutMs);
+        ReflectionTestUtils.setField(bulkhead, "weightsSpec", "");
+        bulkhead.init();
+        return bulkhead;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
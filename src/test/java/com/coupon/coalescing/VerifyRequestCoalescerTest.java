@@ -0,0 +1,76 @@
+package com.coupon.coalescing;
+
+import com.coupon.dto.CouponVerifyResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重复核销请求合并测试：合并的请求得到首个请求的完整结果，只标记为重复扫码
+ *
+ * @author System
+ * @version 1.0.0
+ */
+class VerifyRequestCoalescerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void followerGetsTheLeadersFullResponse() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VerifyRequestCoalescer coalescer = new VerifyRequestCoalescer(meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        CouponVerifyResponse verified = new CouponVerifyResponse("ABCD1234", "测试企业", LocalDateTime.now(), false, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<CouponVerifyResponse> leader = executor.submit(() -> coalescer.execute(1L, "ABCD1234", "13800138000",
+                () -> {
+                    started.countDown();
+                    await(release);
+                    return verified;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<CouponVerifyResponse> follower = executor.submit(() -> coalescer.execute(1L, "ABCD1234", "13800138000",
+                () -> {
+                    throw new AssertionError("合并的请求不应执行核销");
+                }));
+        while (meterRegistry.get("coupon.verify.coalescing.coalesced").counter().count() < 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertFalse(leader.get(5, TimeUnit.SECONDS).isDuplicate());
+        CouponVerifyResponse duplicate = follower.get(5, TimeUnit.SECONDS);
+        assertTrue(duplicate.isDuplicate());
+        assertEquals(verified.getCode(), duplicate.getCode());
+        assertEquals(verified.getCompany(), duplicate.getCompany());
+        assertEquals(verified.getVerificationTime(), duplicate.getVerificationTime());
+        assertEquals(4, duplicate.getRemainingUses());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
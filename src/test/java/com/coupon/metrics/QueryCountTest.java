@@ -0,0 +1,123 @@
+package com.coupon.metrics;
+
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.entity.Company;
+import com.coupon.offline.OfflineSnapshot;
+import com.coupon.service.CouponService;
+import com.coupon.sharding.ShardRouter;
+import com.coupon.support.ApplicationTestSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SQL语句数测试
+ * <p>
+ * 开启SQL语句计数，分别在服务层与接口层执行核销、记录查询与企业列表，每次调用执行的SQL语句数须与预期完全一致；
+ * 不经缓存直接写出的二进制下载同样带有语句数响应头。
+ * 服务层调用会对返回的实体执行 toString 与 hashCode，懒加载关联被意外触发时同样计入或报错。
+ * 修改数据访问方式后如语句数有意变化，需同步更新此处预期值与 application.yml 中的语句预算。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@TestPropertySource(properties = "coupon.query-guard.enabled=true")
+class QueryCountTest extends ApplicationTestSupport {
+
+    /**
+     * 核销：查询券码、更新券码、插入日志、读取自增ID
+     */
+    private static final int VERIFY_STATEMENTS = 4;
+
+    /**
+     * 核销记录分页：分区目录、总数、当页记录（企业名称取自企业缓存）
+     */
+    private static final int RECORDS_STATEMENTS = 3;
+
+    /**
+     * 企业列表：取自企业缓存
+     */
+    private static final int COMPANIES_STATEMENTS = 0;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private List<String> codes;
+
+    @BeforeEach
+    void seedCoupons() {
+        codes = shardRouter.onShard(COMPANY_ID,
+                () -> couponService.batchAddCoupons(new BatchAddCouponRequest(COMPANY_ID, 2)));
+    }
+
+    @Test
+    void serviceLayerStatementCounts() throws Exception {
+        assertStatements("服务 verifyCoupon", VERIFY_STATEMENTS, () -> shardRouter.onShard(COMPANY_ID,
+                () -> couponService.verifyCoupon(verifyRequest(codes.get(0)), PHONE, "127.0.0.1", null)));
+        assertStatements("服务 getVerificationRecords", RECORDS_STATEMENTS,
+                () -> couponService.getVerificationRecords(null, null, 1, 20));
+        assertStatements("服务 getCompanies", COMPANIES_STATEMENTS, () -> {
+            List<Company> companies = couponService.getCompanies(null);
+            return companies.toString().hashCode() + companies.hashCode();
+        });
+    }
+
+    @Test
+    void endpointStatementCounts() {
+        String token = login();
+        assertHeader("POST /api/coupon/verify", VERIFY_STATEMENTS,
+                post("/api/coupon/verify", verifyRequest(codes.get(1)), token));
+        assertHeader("GET /api/coupon/records", RECORDS_STATEMENTS, get("/api/coupon/records?page=1&limit=20", token));
+        assertHeader("GET /api/coupon/companies", COMPANIES_STATEMENTS, get("/api/coupon/companies", token));
+    }
+
+    @Test
+    void downloadsCarryTheHeader() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(login());
+        ResponseEntity<byte[]> response = restTemplate.exchange("/api/coupon/offline/snapshot?companyId=" + COMPANY_ID,
+                HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertEquals(OfflineSnapshot.MEDIA_TYPE, String.valueOf(response.getHeaders().getContentType()));
+        assertNotNull(response.getHeaders().getFirst(QueryBudgetFilter.COUNT_HEADER), "离线快照缺少SQL语句数响应头");
+    }
+
+    private static void assertStatements(String name, int expected, Callable<?> call) throws Exception {
+        QueryCounter.start();
+        try {
+            call.call();
+        } finally {
+            assertEquals(expected, QueryCounter.stop(), name + " 执行的SQL语句数");
+        }
+    }
+
+    private static void assertHeader(String name, int expected, ResponseEntity<JsonNode> response) {
+        JsonNode body = response.getBody();
+        assertTrue(body != null && body.path("success").asBoolean(), name + " 请求失败: " + body);
+        assertEquals(String.valueOf(expected), response.getHeaders().getFirst(QueryBudgetFilter.COUNT_HEADER),
+                name + " 执行的SQL语句数");
+    }
+
+    private static CouponVerifyRequest verifyRequest(String code) {
+        CouponVerifyRequest request = new CouponVerifyRequest();
+        request.setCode(code);
+        request.setCompanyId(COMPANY_ID);
+        return request;
+    }
+}
@@ -0,0 +1,79 @@
+package com.coupon.sharding;
+
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.entity.Company;
+import com.coupon.repository.CompanyRepository;
+import com.coupon.service.CouponService;
+import com.coupon.support.ApplicationTestSupport;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分片存储测试：分片连接池使用 spring.datasource.hikari.* 配置，启动后新增的企业经变更日志同步到各分片
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@TestPropertySource(properties = {
+        "coupon.sharding.enabled=true",
+        "coupon.sharding.shard-count=2",
+        "spring.datasource.hikari.maximum-pool-size=3",
+        "spring.datasource.hikari.connection-timeout=7000"
+})
+class ShardedStorageTest extends ApplicationTestSupport {
+
+    @Autowired
+    private ShardRoutingDataSource routingDataSource;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Test
+    void shardPoolsUseHikariProperties() {
+        assertHikariProperties(routingDataSource.getResolvedDefaultDataSource());
+        assertEquals(2, routingDataSource.getResolvedDataSources().size());
+        routingDataSource.getResolvedDataSources().values().forEach(ShardedStorageTest::assertHikariProperties);
+    }
+
+    @Test
+    void companiesCreatedAfterStartupReachTheShards() throws InterruptedException {
+        Company company = new Company();
+        company.setName("分片同步测试企业");
+        company.setIsActive(true);
+        long companyId = companyRepository.save(company).getId();
+
+        DataSource shard = routingDataSource.getResolvedDataSources().get(shardRouter.shardFor(companyId));
+        JdbcTemplate shardTemplate = new JdbcTemplate(shard);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (shardTemplate.queryForObject("SELECT COUNT(*) FROM companies WHERE id = ?", Integer.class,
+                companyId) == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "企业未同步到分片");
+            Thread.sleep(50);
+        }
+
+        List<String> codes = shardRouter.onShard(companyId,
+                () -> couponService.batchAddCoupons(new BatchAddCouponRequest(companyId, 3)));
+        assertEquals(3, codes.size());
+    }
+
+    private static void assertHikariProperties(DataSource dataSource) {
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        assertEquals(3, hikari.getMaximumPoolSize());
+        assertEquals(7000, hikari.getConnectionTimeout());
+    }
+}
@@ -0,0 +1,120 @@
+package com.coupon.support;
+
+import com.coupon.service.CouponStateService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 集成测试基类
+ * <p>
+ * 在随机端口上启动完整应用，数据库、归档与状态快照写入每个应用上下文各自的临时目录，JVM退出时删除。
+ * 关闭定时分层、分区滚动与核销限流（测试请求都来自本机），子类用 {@code @TestPropertySource} 追加配置。
+ * 每个测试开始前等待券码状态索引就绪。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public abstract class ApplicationTestSupport {
+
+    /**
+     * 演示数据中的企业与操作员（V2__seed_data）
+     */
+    protected static final long COMPANY_ID = 1L;
+    protected static final String PHONE = "13800138000";
+    protected static final String PASSWORD = "123456";
+
+    @Autowired
+    protected TestRestTemplate restTemplate;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    private CouponStateService couponStateService;
+
+    @DynamicPropertySource
+    static void workDirectory(DynamicPropertyRegistry registry) throws IOException {
+        Path workDir = Files.createTempDirectory("coupon-test");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                FileSystemUtils.deleteRecursively(workDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        registry.add("spring.datasource.url",
+                () -> "jdbc:sqlite:" + workDir.resolve("coupon_system.db") + "?transaction_mode=IMMEDIATE&busy_timeout=30000");
+        registry.add("coupon.sharding.url-pattern",
+                () -> "jdbc:sqlite:" + workDir.resolve("coupon_shard_%d.db") + "?transaction_mode=IMMEDIATE&busy_timeout=30000");
+        registry.add("coupon.log-partition.archive-dir", () -> workDir.resolve("log-archive").toString());
+        registry.add("coupon.analytics.dir", () -> workDir.resolve("analytics").toString());
+        registry.add("coupon.state.snapshot-path", () -> workDir.resolve("coupon-state.snapshot").toString());
+        registry.add("coupon.tiering.enabled", () -> "false");
+        registry.add("coupon.log-partition.enabled", () -> "false");
+        registry.add("coupon.rate-limit.enabled", () -> "false");
+        registry.add("spring.main.banner-mode", () -> "off");
+        registry.add("logging.level.root", () -> "WARN");
+        registry.add("logging.level.com.coupon", () -> "WARN");
+    }
+
+    @BeforeEach
+    void awaitCouponState() throws InterruptedException {
+        while (couponStateService.lookup("00000000", 0L) == CouponStateService.UNKNOWN) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 以演示操作员登录
+     *
+     * @return JWT令牌
+     */
+    protected String login() {
+        return login(PHONE, PASSWORD);
+    }
+
+    protected String login(String phone, String password) {
+        JsonNode json = post("/api/auth/login", Map.of("phone", phone, "password", password), null).getBody();
+        if (json == null || !json.path("success").asBoolean()) {
+            throw new IllegalStateException("登录失败: " + json);
+        }
+        return json.path("data").path("token").asText();
+    }
+
+    protected ResponseEntity<JsonNode> post(String path, Object body, String token) {
+        HttpHeaders headers = headers(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(path, HttpMethod.POST, new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    protected ResponseEntity<JsonNode> get(String path, String token) {
+        return restTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers(token)), JsonNode.class);
+    }
+
+    private static HttpHeaders headers(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        if (token != null) {
+            headers.setBearerAuth(token);
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,145 @@
+package com.coupon.usage;
+
+import com.coupon.bulkhead.TenantBulkheadRejectedException;
+import com.coupon.dto.BatchAddCouponRequest;
+import com.coupon.dto.CouponVerifyRequest;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.service.CouponAlreadyUsedException;
+import com.coupon.service.CouponService;
+import com.coupon.service.CouponVerificationService;
+import com.coupon.support.ApplicationTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多次券并发核销测试
+ * <p>
+ * 64个操作员线程同时反复核销同一多次券直到被判定已用完：成功次数、数据库中的已使用次数与核销记录数都恰好等于上限，
+ * 各次核销返回的剩余次数各出现一次，用完后再核销被拒绝；设置操作员上限时每个操作员不超过上限。
+ *
+ * @author System
+ * @version 1.0.0
+ */
+@TestPropertySource(properties = {
+        "coupon.bulkhead.queue-capacity=128",
+        "coupon.bulkhead.queue-timeout-ms=30000"
+})
+class MultiUseCouponConcurrencyTest extends ApplicationTestSupport {
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponVerificationService verificationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentOperatorsNeverOverRedeem() throws Exception {
+        int limit = 300;
+        String code = createCoupon(limit, null);
+        AtomicIntegerArray remainingSeen = new AtomicIntegerArray(limit);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        long successes = hammer(code, remainingSeen, failures);
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(limit, successes);
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT use_count, is_used FROM coupons WHERE code = ?", code);
+        assertEquals(limit, ((Number) row.get("use_count")).intValue());
+        assertEquals(1, ((Number) row.get("is_used")).intValue());
+        assertEquals(limit, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM verification_logs WHERE coupon_code = ?", Integer.class, code));
+        for (int i = 0; i < limit; i++) {
+            assertEquals(1, remainingSeen.get(i), "剩余次数 " + i + " 出现的次数");
+        }
+        assertThrows(CouponAlreadyUsedException.class, () -> verificationService.verify(
+                new CouponVerifyRequest(code, COMPANY_ID), "13700000000", "127.0.0.1", null));
+    }
+
+    @Test
+    void perOperatorLimitHoldsUnderConcurrency() throws Exception {
+        int limit = 100;
+        int operatorLimit = 1;
+        String code = createCoupon(limit, operatorLimit);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        long successes = hammer(code, null, failures);
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(Math.min(limit, THREADS * operatorLimit), successes);
+        Integer maxPerOperator = jdbcTemplate.queryForObject("SELECT MAX(n) FROM (SELECT COUNT(*) AS n " +
+                "FROM verification_logs WHERE coupon_code = ? GROUP BY user_phone)", Integer.class, code);
+        assertEquals(operatorLimit, maxPerOperator);
+    }
+
+    private String createCoupon(int usageLimit, Integer perOperatorLimit) {
+        BatchAddCouponRequest request = new BatchAddCouponRequest(COMPANY_ID, 1);
+        request.setUsageLimit(usageLimit);
+        request.setPerOperatorLimit(perOperatorLimit);
+        return couponService.batchAddCoupons(request).get(0);
+    }
+
+    /**
+     * 每个线程作为一个操作员反复核销同一券码，直到被判定已用完；隔离舱拒绝时稍后重试
+     */
+    private long hammer(String code, AtomicIntegerArray remainingSeen, List<String> failures) throws Exception {
+        AtomicLong successes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            String operator = String.valueOf(13900000000L + t);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        try {
+                            CouponVerifyResponse response = verificationService.verify(
+                                    new CouponVerifyRequest(code, COMPANY_ID), operator, "127.0.0.1", null);
+                            if (response.isDuplicate()) {
+                                failures.add(operator + " 的核销被合并为重复扫码");
+                                return;
+                            }
+                            successes.incrementAndGet();
+                            if (remainingSeen != null) {
+                                remainingSeen.incrementAndGet(response.getRemainingUses());
+                            }
+                        } catch (TenantBulkheadRejectedException e) {
+                            Thread.sleep(5);
+                        } catch (CouponAlreadyUsedException e) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failures.add(operator + " 核销失败: " + e);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "核销线程未在2分钟内结束");
+        return successes.get();
+    }
+}
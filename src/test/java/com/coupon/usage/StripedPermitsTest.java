@@ -0,0 +1,79 @@
+package com.coupon.usage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分段许可计数测试：并发取许可时总数恰好等于许可数
+ *
+ * @author System
+ * @version 1.0.0
+ */
+class StripedPermitsTest {
+
+    private static final int THREADS = 64;
+
+    @Test
+    void concurrentAcquiresNeverExceedPermits() throws Exception {
+        StripedPermits permits = new StripedPermits(8, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int acquired = 0;
+                while (permits.tryAcquire()) {
+                    acquired++;
+                }
+                return acquired;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1000, total);
+        assertEquals(0, permits.available());
+        assertFalse(permits.tryAcquire());
+    }
+
+    @Test
+    void releasedPermitIsAvailableFromAnyStripe() {
+        StripedPermits permits = new StripedPermits(4, 1);
+        assertTrue(permits.tryAcquire());
+        assertFalse(permits.tryAcquire());
+        permits.release();
+        assertEquals(1, permits.available());
+        assertTrue(permits.tryAcquire());
+    }
+
+    @Test
+    void resetSpreadsPermitsAcrossStripes() {
+        StripedPermits permits = new StripedPermits(4, 0);
+        permits.reset(7);
+        assertEquals(7, permits.available());
+        permits.reset(-3);
+        assertEquals(0, permits.available());
+    }
+
+    @Test
+    void stripesMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedPermits(3, 10));
+    }
+}
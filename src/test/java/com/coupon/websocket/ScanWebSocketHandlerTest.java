@@ -0,0 +1,157 @@
+package com.coupon.websocket;
+
+import com.coupon.cache.UserStatusCache;
+import com.coupon.dto.CouponVerifyResponse;
+import com.coupon.dto.ScanResult;
+import com.coupon.ratelimit.TokenBucketRateLimiter;
+import com.coupon.ratelimit.VerifyRateLimitFilter;
+import com.coupon.security.ClientIpResolver;
+import com.coupon.security.UserPrincipal;
+import com.coupon.service.CouponVerificationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 扫码站长连接测试：每条消息复核令牌有效期与用户状态，与HTTP核销接口共用限流令牌桶
+ *
+ * @author System
+ * @version 1.0.0
+ */
+class ScanWebSocketHandlerTest {
+
+    private static final long USER_ID = 1L;
+    private static final String PHONE = "13800138000";
+    private static final String IP_ADDRESS = "10.0.0.8";
+    private static final String SCAN = "{\"id\":\"1\",\"code\":\"12345678\",\"companyId\":1}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CouponVerificationService verificationService = mock(CouponVerificationService.class);
+    private final UserStatusCache userStatusCache = mock(UserStatusCache.class);
+    private final VerifyRateLimitFilter rateLimitFilter = new VerifyRateLimitFilter(
+            new TokenBucketRateLimiter(1, 2, 100), new TokenBucketRateLimiter(100, 100, 100),
+            new ClientIpResolver(List.of()), objectMapper, new SimpleMeterRegistry());
+    private ScanWebSocketHandler handler;
+
+    @BeforeEach
+    void createHandler() throws Exception {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<VerifyRateLimitFilter> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(rateLimitFilter);
+        handler = new ScanWebSocketHandler(verificationService, userStatusCache, provider, objectMapper,
+                mock(Validator.class), new MockEnvironment(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(handler, "maxInFlight", 32);
+        ReflectionTestUtils.setField(handler, "workerThreads", 2);
+        ReflectionTestUtils.setField(handler, "sendTimeoutMs", 1000);
+        ReflectionTestUtils.setField(handler, "sendBufferBytes", 65536);
+        handler.init();
+        when(userStatusCache.isActive(USER_ID)).thenReturn(true);
+        when(verificationService.verify(any(), anyString(), anyString(), any()))
+                .thenReturn(new CouponVerifyResponse());
+    }
+
+    @AfterEach
+    void shutdown() {
+        handler.shutdown();
+    }
+
+    @Test
+    void expiredTokenClosesTheSession() throws Exception {
+        WebSocketSession session = connect("expired", System.currentTimeMillis() - 1);
+
+        handler.handleTextMessage(session, new TextMessage(SCAN));
+
+        verify(session).close(CloseStatus.POLICY_VIOLATION.withReason("令牌已过期，请重新登录"));
+        verify(verificationService, never()).verify(any(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void disabledUserClosesTheSession() throws Exception {
+        WebSocketSession session = connect("disabled", System.currentTimeMillis() + 60_000);
+        when(userStatusCache.isActive(USER_ID)).thenReturn(false);
+
+        handler.handleTextMessage(session, new TextMessage(SCAN));
+
+        verify(session).close(CloseStatus.POLICY_VIOLATION.withReason("用户已被禁用"));
+        verify(verificationService, never()).verify(any(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void heartbeatClosesSessionsThatFailTheRecheck() throws Exception {
+        WebSocketSession session = connect("heartbeat", System.currentTimeMillis() + 60_000);
+        when(userStatusCache.isActive(USER_ID)).thenReturn(false);
+
+        handler.heartbeat();
+
+        verify(session).close(CloseStatus.POLICY_VIOLATION.withReason("用户已被禁用"));
+    }
+
+    @Test
+    void messagesShareTheOperatorBucket() throws Exception {
+        // 操作员令牌桶突发容量为2，HTTP核销接口先取走一个
+        assertEquals(0, rateLimitFilter.tryAcquire(PHONE, "10.0.0.9"));
+        WebSocketSession session = connect("limited", System.currentTimeMillis() + 60_000);
+
+        handler.handleTextMessage(session, new TextMessage(SCAN));
+        handler.handleTextMessage(session, new TextMessage(SCAN));
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(5000).times(2)).sendMessage(sent.capture());
+        verify(verificationService, atLeast(1)).verify(any(), anyString(), anyString(), any());
+        ScanResult rejected = sent.getAllValues().stream()
+                .map(message -> read(message.getPayload()))
+                .filter(result -> !result.isSuccess())
+                .findFirst()
+                .orElseThrow();
+        assertNotNull(rejected.getRetryAfter());
+        assertTrue(rejected.getRetryAfter() >= 1);
+        assertEquals(VerifyRateLimitFilter.rejectedMessage(rejected.getRetryAfter()), rejected.getMessage());
+    }
+
+    private WebSocketSession connect(String id, long tokenExpiresAt) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(JwtHandshakeInterceptor.PRINCIPAL_ATTRIBUTE, new UserPrincipal(USER_ID, PHONE));
+        attributes.put(JwtHandshakeInterceptor.IP_ADDRESS_ATTRIBUTE, IP_ADDRESS);
+        attributes.put(JwtHandshakeInterceptor.TOKEN_EXPIRES_AT_ATTRIBUTE, tokenExpiresAt);
+        when(session.getId()).thenReturn(id);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private ScanResult read(String payload) {
+        try {
+            return objectMapper.readValue(payload, ScanResult.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}